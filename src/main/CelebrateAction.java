@@ -25,4 +25,12 @@ public class CelebrateAction extends RobotAction {
 		return "All Done!";
 	}
 	
+	/**
+	 * No sensors are used.
+	 */
+	@Override
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return SamplingPolicy.IDLE;
+	}
 }
@@ -0,0 +1,137 @@
+package main;
+
+/**
+ * Chooses the speed to follow a vehicle at, so the robot keeps a constant time gap behind it instead of stopping and starting. The gap the robot
+ * should keep grows with its speed:
+ *
+ * <pre>
+ * desired gap = standstill gap + time gap * speed
+ * </pre>
+ *
+ * and the speed is the lead vehicle's speed, corrected by the gap gain times the error in the gap. Solving the two together gives
+ *
+ * <pre>
+ * speed = (lead speed + gain * (gap - standstill gap)) / (1 + gain * time gap)
+ * </pre>
+ *
+ * which is clamped between 0 and the cruising speed. The lead vehicle's speed is the robot's own speed, taken to be the last speed commanded,
+ * less the closing speed from a {@link LeadVehicleTracker}. When the lead vehicle stops, the robot slows smoothly to a stop at the standstill gap.
+ */
+public class CruiseController {
+
+	/**
+	 * The default gap gain, in 1/s: how fast a gap error is closed.
+	 */
+	public static final double DEFAULT_GAP_GAIN = 2;
+
+	/**
+	 * The time gap to keep, in s.
+	 */
+	private final double timeGap;
+	/**
+	 * The gap to keep when stopped, in m.
+	 */
+	private final double standstillGap;
+	/**
+	 * The gap gain, in 1/s.
+	 */
+	private final double gapGain;
+	/**
+	 * The fastest speed, in m/s.
+	 */
+	private final double cruiseSpeed;
+	/**
+	 * The last speed commanded, in m/s.
+	 */
+	private double speed;
+
+	/**
+	 * Makes a new cruise controller with {@link #DEFAULT_GAP_GAIN}.
+	 *
+	 * @param timeGap
+	 *            the time gap to keep, in s.
+	 * @param standstillGap
+	 *            the gap to keep when stopped, in m.
+	 * @param cruiseSpeed
+	 *            the fastest speed, in m/s.
+	 */
+	public CruiseController(double timeGap, double standstillGap, double cruiseSpeed) {
+
+		this(timeGap, standstillGap, DEFAULT_GAP_GAIN, cruiseSpeed);
+	}
+
+	/**
+	 * Makes a new cruise controller.
+	 *
+	 * @param timeGap
+	 *            the time gap to keep, in s.
+	 * @param standstillGap
+	 *            the gap to keep when stopped, in m.
+	 * @param gapGain
+	 *            how fast a gap error is closed, in 1/s.
+	 * @param cruiseSpeed
+	 *            the fastest speed, in m/s.
+	 */
+	public CruiseController(double timeGap, double standstillGap, double gapGain, double cruiseSpeed) {
+
+		if (!(timeGap >= 0))
+			throw new IllegalArgumentException("The time gap cannot be negative: " + timeGap);
+		if (!(standstillGap >= 0))
+			throw new IllegalArgumentException("The standstill gap cannot be negative: " + standstillGap);
+		if (!(gapGain > 0))
+			throw new IllegalArgumentException("The gap gain must be positive: " + gapGain);
+		if (!(cruiseSpeed > 0))
+			throw new IllegalArgumentException("The cruise speed must be positive: " + cruiseSpeed);
+		this.timeGap = timeGap;
+		this.standstillGap = standstillGap;
+		this.gapGain = gapGain;
+		this.cruiseSpeed = cruiseSpeed;
+		speed = cruiseSpeed;
+	}
+
+	/**
+	 * Gets the speed to follow the tracked vehicle at.
+	 *
+	 * @param lead
+	 *            the tracker of the vehicle ahead.
+	 * @return the speed, in m/s, or the cruising speed if nothing is tracked.
+	 */
+	public double update(LeadVehicleTracker lead) {
+
+		if (!lead.isTracking())
+			return speed = cruiseSpeed;
+		double leadSpeed = Math.max(0, speed - lead.getClosingSpeed());
+		double command = (leadSpeed + gapGain * (lead.getDistance() - standstillGap)) / (1 + gapGain * timeGap);
+		return speed = Math.min(cruiseSpeed, Math.max(0, command));
+	}
+
+	/**
+	 * Forgets the last speed commanded, for example when the road ahead is clear, so the robot is taken to be at the cruising speed.
+	 */
+	public void reset() {
+
+		speed = cruiseSpeed;
+	}
+
+	/**
+	 * Gets the gap that should be kept at a speed.
+	 *
+	 * @param speed
+	 *            the speed, in m/s.
+	 * @return the gap, in m.
+	 */
+	public double getDesiredGap(double speed) {
+
+		return standstillGap + timeGap * speed;
+	}
+
+	/**
+	 * Gets the last speed commanded.
+	 *
+	 * @return the speed, in m/s.
+	 */
+	public double getSpeed() {
+
+		return speed;
+	}
+}
@@ -1,12 +1,18 @@
 package main;
 
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import lejos.robotics.RegulatedMotor;
 import lejos.robotics.RegulatedMotorListener;
 import lejos.robotics.navigation.ArcRotateMoveController;
 import lejos.robotics.navigation.Move;
 import lejos.robotics.navigation.MoveListener;
+import robotics.motion.ProfileFollower;
+import utilities.regulation.MotionProfile;
+import utilities.task.CompletionFuture;
 
 /**
  * The DifferentialPilot class is a software abstraction of the Pilot mechanism
@@ -25,6 +31,9 @@ import lejos.robotics.navigation.MoveListener;
  * this object.<br>
  * Some methods optionally return immediately so the thread that called it can
  * do things while the robot is moving, such as monitor sensors and call {@link #stop()}.<br>
+ * Every move has a {@link Future}, from {@link #getMoveFuture()} or the methods such as {@link #travelAsync(double)}, that completes with the
+ * {@link Move} made when the motors stop. Waiting for it parks the thread rather than spinning, and it can be waited for with a timeout.
+ * Cancelling it stops the robot. The blocking methods wait for the same future.<br>
  * Handling stalls: If a stall is detected, <code>isStalled()</code> returns <code>
  * true </code>, <code>isMoving()</code> returns <code>false</code>, <code>moveStopped()
  * </code> is called, and, if a blocking method is executing, that method exits.
@@ -43,8 +52,8 @@ import lejos.robotics.navigation.MoveListener;
  * pilot.setRobotSpeed(30);  // cm per second
  * pilot.travel(50);         // cm
  * pilot.rotate(-90);        // degree clockwise
- * pilot.travel(-50,true);  //  move backward for 50 cm
- * while(pilot.isMoving())Thread.yield();
+ * Future&lt;Move&gt; move = pilot.travelAsync(-50);  //  move backward for 50 cm
+ * move.get(5, TimeUnit.SECONDS);
  * pilot.rotate(-90);
  * pilot.rotateTo(270);
  * pilot.steer(-50,180,true); // turn 180 degrees to the right
@@ -156,9 +165,12 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		// both
 		_trackWidth = (float) trackWidth;
 		_parity = (byte) (reverse ? -1 : 1);
+		_follower = new ProfileFollower(_left, _right, _leftDegPerDistance, _rightDegPerDistance, _parity);
 		setTravelSpeed(.8f * getMaxTravelSpeed());
 		setRotateSpeed(.8f * getMaxRotateSpeed());
 		setAcceleration((int) (_robotTravelSpeed * 4));
+		_completion = new MoveFuture();
+		_completion.complete(new Move(Move.MoveType.STOP, 0, 0, false));
 		new Monitor().start();
 	}
 	
@@ -184,6 +196,37 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		return _parity * _right.getTachoCount();
 	}
 	
+	/**
+	 * Gets how far the left wheel has travelled, from the motor's tacho count. Unlike {@link #getMovementIncrement()}, this is not
+	 * reset at the start of each move, so it can be used for odometry.
+	 *
+	 * @return the distance, in wheel diameter units. Positive is forward.
+	 */
+	public double getLeftDistance() {
+	
+		return getLeftCount() / _leftDegPerDistance;
+	}
+	
+	/**
+	 * Gets how far the right wheel has travelled, from the motor's tacho count.
+	 *
+	 * @return the distance, in wheel diameter units. Positive is forward.
+	 */
+	public double getRightDistance() {
+	
+		return getRightCount() / _rightDegPerDistance;
+	}
+	
+	/**
+	 * Gets the distance between the wheels.
+	 *
+	 * @return the track width, in wheel diameter units.
+	 */
+	public double getTrackWidth() {
+	
+		return _trackWidth;
+	}
+	
 	/*
 	 * public int getRightActualSpeed() { return _right.getRotationSpeed(); }
 	 */
@@ -296,6 +339,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			fwd();
 		else
 			bak();
+		track();
 	}
 	
 	/**
@@ -315,6 +359,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			bak();
 		else
 			fwd();
+		track();
 	}
 	
 	/**
@@ -351,6 +396,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			_left.forward();
 			_right.backward();
 		}
+		track();
 	}
 	
 	public void rotateRight() {
@@ -367,6 +413,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			_right.forward();
 			_left.backward();
 		}
+		track();
 	}
 	
 	/**
@@ -411,11 +458,25 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		int rotateAngleRight = _parity * (int) (angle * _rightTurnRatio);
 		_left.rotate(-rotateAngleLeft, true);
 		_leftDirection = (byte) Math.signum(-rotateAngleLeft);
-		_right.rotate(rotateAngleRight, immediateReturn);
+		_right.rotate(rotateAngleRight, true);
 		_rightDirection = (byte) Math.signum(rotateAngleRight);
+		MoveFuture move = track();
 		if (!immediateReturn)
-			while (isMoving())
-				Thread.yield();
+			await(move);
+	}
+	
+	/**
+	 * Starts rotating the robot through a specific angle, like {@link #rotate(double, boolean)}, and returns immediately.
+	 *
+	 * @param angle
+	 *            The wanted angle of rotation in degrees. Positive angle rotate
+	 *            left (anti-clockwise), negative right.
+	 * @return the future of the rotation.
+	 */
+	public Future<Move> rotateAsync(final double angle) {
+	
+		rotate(angle, true);
+		return getMoveFuture();
 	}
 	
 	/**
@@ -424,6 +485,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 	@Override
 	public void stop() {
 	
+		_follower.stop();
 		_left.stop(true);
 		_right.stop(true);
 		waitComplete();
@@ -495,9 +557,24 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		movementStart();
 		setSpeed(Math.round(_robotTravelSpeed * _leftDegPerDistance), Math.round(_robotTravelSpeed * _rightDegPerDistance));
 		_left.rotate((int) (_parity * distance * _leftDegPerDistance), true);
-		_right.rotate((int) (_parity * distance * _rightDegPerDistance), immediateReturn);
+		_right.rotate((int) (_parity * distance * _rightDegPerDistance), true);
+		MoveFuture move = track();
 		if (!immediateReturn)
-			waitComplete();
+			await(move);
+	}
+	
+	/**
+	 * Starts moving the robot a specific distance, like {@link #travel(double, boolean)}, and returns immediately.
+	 *
+	 * @param distance
+	 *            The distance to move. Unit of measure for distance must be
+	 *            same as wheelDiameter and trackWidth.
+	 * @return the future of the move. If the distance is infinite, it completes only when the robot is stopped.
+	 */
+	public Future<Move> travelAsync(final double distance) {
+	
+		travel(distance, true);
+		return getMoveFuture();
 	}
 	
 	@Override
@@ -522,6 +599,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			_inside.forward();
 		else
 			_inside.backward();
+		track();
 	}
 	
 	@Override
@@ -546,6 +624,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			_inside.backward();
 		else
 			_inside.forward();
+		track();
 	}
 	
 	@Override
@@ -566,6 +645,21 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		// if (!immediateReturn) waitComplete(); redundant I think - BB
 	}
 	
+	/**
+	 * Starts moving the robot along an arc, like {@link #arc(double, double, boolean)}, and returns immediately.
+	 *
+	 * @param radius
+	 *            the radius of the arc. Positive turns left, negative right.
+	 * @param angle
+	 *            the angle to turn through, in degrees.
+	 * @return the future of the move. If the angle is 0, the robot does not move, and this is the future of the last move.
+	 */
+	public Future<Move> arcAsync(final double radius, final double angle) {
+	
+		arc(radius, angle, true);
+		return getMoveFuture();
+	}
+	
 	@Override
 	public void travelArc(double radius, double distance) {
 	
@@ -679,6 +773,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		else
 			_inside.backward();
 		movementStart();
+		track();
 	}
 	
 	/**
@@ -715,6 +810,7 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 			_inside.backward();
 		else
 			_inside.forward();
+		track();
 	}
 	
 	/**
@@ -801,11 +897,12 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		int side = (int) Math.signum(turnRate);
 		int rotAngle = (int) (angle * _trackWidth * 2 / (_leftWheelDiameter * (1 - _steerRatio)));
 		_inside.rotate((int) (_parity * side * rotAngle * _steerRatio), true);
-		_outside.rotate(_parity * side * rotAngle, immediateReturn);
+		_outside.rotate(_parity * side * rotAngle, true);
 		setMotorAccel(_acceleration);
+		MoveFuture move = track();
 		if (immediateReturn)
 			return;
-		waitComplete();
+		await(move);
 		_inside.setSpeed(_outside.getSpeed());
 	}
 	
@@ -880,6 +977,67 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 				_rightDirection = -1;
 	}
 	
+	/**
+	 * Drives along a path of straight lines and arcs in one motion, such as one planned by {@link ReedsSheppPlanner}. Each piece follows a
+	 * {@link MotionProfile} that blends into the next, so the robot only comes to rest where the path changes direction, and a
+	 * {@link ProfileFollower} drives the wheels along the profiles and ends exactly at the end of the path. The robot is kept to the travel speed,
+	 * and the outside wheel of an arc to the most the motors can do. Does not return until the path is complete, the robot is stopped, or another
+	 * move is started; if this thread is interrupted, the robot stops.
+	 *
+	 * @param distances
+	 *            the distance along each piece. Negative is backwards.
+	 * @param curvatures
+	 *            the curvature of each piece, in 1/distance units. Positive turns left.
+	 */
+	public void followPath(final double[] distances, final double[] curvatures) {
+	
+		int n = distances.length;
+		double[] leftCoefficients = new double[n];
+		double[] rightCoefficients = new double[n];
+		double[] speeds = new double[n];
+		double length = 0, turn = 0;
+		for (int i = 0; i < n; i++) {
+			// How far each wheel moves for each unit along the path
+			leftCoefficients[i] = 1 - curvatures[i] * _trackWidth / 2;
+			rightCoefficients[i] = 1 + curvatures[i] * _trackWidth / 2;
+			double outside = Math.max(Math.abs(leftCoefficients[i]), Math.abs(rightCoefficients[i]));
+			speeds[i] = Math.min(_robotTravelSpeed, getMaxTravelSpeed() / outside);
+			length += Math.abs(distances[i]);
+			turn += Math.toDegrees(distances[i] * curvatures[i]);
+		}
+		// setAcceleration() only takes whole units, so it may be 0
+		double acceleration = _acceleration > 0 ? _acceleration : 4 * _robotTravelSpeed;
+		MotionProfile[] profiles = MotionProfile.blend(distances, speeds,
+				new MotionProfile.Limits(_robotTravelSpeed, acceleration, acceleration / PATH_JERK_TIME));
+		
+		_type = Move.MoveType.ARC;
+		_distance = length;
+		_angle = turn;
+		movementStart();
+		_follower.start();
+		// Start the motors, so that the future of the path is not complete before the first speed update
+		_left.setSpeed(0);
+		_right.setSpeed(0);
+		fwd();
+		MoveFuture move = track();
+		
+		try {
+			for (int i = 0; i < n; i++)
+				if (!_follower.follow(profiles[i], leftCoefficients[i], rightCoefficients[i]))
+					// Stopped, or replaced by another move, which has already dealt with the motors and the future
+					return;
+		} catch (InterruptedException e) {
+			move.cancel(true);
+			Thread.currentThread().interrupt();
+			return;
+		}
+		
+		// Take out whatever error is left, and stop there
+		setMotorAccel(_acceleration);
+		if (_follower.finish(_robotTravelSpeed))
+			await(move);
+	}
+	
 	/**
 	 * called by RegulatedMotor when a motor rotation is complete calls
 	 * movementStop() after both motors stop;
@@ -896,8 +1054,10 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 	
 		if (motor.isStalled())
 			stop();
-		else if (!isMoving())
+		else if (!isMoving()) {
 			_callStop = true; // new - replaces call to movementStop()
+			_completion.complete(currentMove());
+		}
 		// movementStop();// a motor has stopped
 	}
 	
@@ -923,8 +1083,11 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 	 */
 	protected void movementStart() {
 	
+		_follower.stop();
 		if (isMoving())
 			movementStop();
+		else
+			finishMove();
 		reset();
 		for (MoveListener ml : _listeners)
 			ml.moveStarted(new Move(_type, (float) _distance, (float) _angle, _robotTravelSpeed, _robotRotateSpeed, isMoving()), this);
@@ -936,8 +1099,54 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 	 */
 	private synchronized void movementStop() {
 	
+		Move move = currentMove();
 		for (MoveListener ml : _listeners)
-			ml.moveStopped(new Move(_type, getMovementIncrement(), getAngleIncrement(), _robotTravelSpeed, _robotRotateSpeed, isMoving()), this);
+			ml.moveStopped(move, this);
+		_completion.complete(move);
+	}
+	
+	/**
+	 * Completes the future of the last move, if the motors stopped without it being told. Called at the start of the next move.
+	 */
+	private synchronized void finishMove() {
+	
+		if (!_completion.isDone())
+			_completion.complete(currentMove());
+	}
+	
+	/**
+	 * Makes the future of a move that has just been started. This is called once the motors have been started, so the future is only completed
+	 * by the motors stopping at the end of this move; if they have already stopped, it is completed straight away.
+	 *
+	 * @return the future of the move.
+	 */
+	private synchronized MoveFuture track() {
+	
+		_completion = new MoveFuture();
+		if (!isMoving())
+			_completion.complete(currentMove());
+		return _completion;
+	}
+	
+	/**
+	 * Gets the future of the current move. It completes with the {@link Move} made when the move finishes, either because the motors have
+	 * reached their target or because the robot was stopped or given another move. Cancelling it stops the robot.
+	 *
+	 * @return the future of the current move, or of the last move if the robot has stopped.
+	 */
+	public synchronized Future<Move> getMoveFuture() {
+	
+		return _completion;
+	}
+	
+	/**
+	 * Gets the move made so far.
+	 *
+	 * @return the move since the last move started.
+	 */
+	private Move currentMove() {
+	
+		return new Move(_type, getMovementIncrement(), getAngleIncrement(), _robotTravelSpeed, _robotRotateSpeed, isMoving());
 	}
 	
 	/**
@@ -949,6 +1158,25 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		return _left.isMoving() || _right.isMoving();
 	}
 	
+	/**
+	 * Waits for a move to finish, parking the thread until its future is completed. If this thread is interrupted while waiting, the move is
+	 * cancelled, which stops the robot.
+	 *
+	 * @param move
+	 *            the future of the move.
+	 */
+	private void await(Future<Move> move) {
+	
+		try {
+			move.get();
+		} catch (InterruptedException e) {
+			move.cancel(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | CancellationException e) {
+			// Stopped some other way, which ends the move just the same
+		}
+	}
+	
 	/**
 	 * wait for the current operation on both motors to complete
 	 */
@@ -1038,6 +1266,31 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 		return _robotRotateSpeed;
 	}
 
+	/**
+	 * The future of a move. It is completed by {@link DifferentialPilot#rotationStopped(RegulatedMotor, int, boolean, long)} when both motors
+	 * have stopped, or by {@link DifferentialPilot#movementStop()} when the move is stopped or replaced by another.
+	 */
+	private class MoveFuture extends CompletionFuture<Move> {
+		
+		/**
+		 * Cancels the future and, if its move is still the current one, stops the robot.
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+		
+			if (!super.cancel(mayInterruptIfRunning))
+				return false;
+			boolean current;
+			synchronized (DifferentialPilot.this) {
+				current = _completion == this;
+			}
+			// Stopping waits for the motors, which call rotationStopped(), so the lock cannot be held
+			if (current)
+				stop();
+			return true;
+		}
+	}
+	
 	private class Monitor extends Thread {
 		
 		
@@ -1154,6 +1407,18 @@ public class DifferentialPilot implements RegulatedMotorListener, ArcRotateMoveC
 	 */
 
 	private boolean _callStop;
+	/**
+	 * The future of the current move, or of the last move if the robot has stopped. Guarded by this.
+	 */
+	private MoveFuture _completion;
+	/**
+	 * Drives the wheels along the profiles of a path. Stopped by {@link #stop()} and by the start of any other move.
+	 */
+	private final ProfileFollower _follower;
+	/**
+	 * The time taken to reach full acceleration while following a path, in s. This sets the jerk.
+	 */
+	private static final double PATH_JERK_TIME = .1;
 
 	public void setLinearSpeed(double speed) {
 		if (!isMoving()) {
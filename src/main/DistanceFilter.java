@@ -0,0 +1,207 @@
+package main;
+
+import utilities.filter.MedianFilter;
+import utilities.metrics.Counter;
+import utilities.metrics.MetricsRegistry;
+
+/**
+ * Cleans up the distances read by the ultrasonic sensor while it is held still. The sensor gives two kinds of bad readings: single sample spikes,
+ * where an echo is missed or picked up from something else, and infinity, when no echo comes back at all. Either would flip the rear end alert on
+ * or off for one sample. Each reading goes through three stages:
+ *
+ * <ol>
+ * <li>Infinite and NaN readings are replaced with {@link #MAXIMUM_RANGE}, the furthest the sensor can see, so they can be compared and averaged
+ * like any other reading.</li>
+ * <li>A reading that is further from the current distance than anything on the course could move since the last accepted reading is rejected.
+ * If {@link #window} readings in a row are rejected, though, the distance really has jumped, for example because a car pulled in ahead, so the
+ * filter starts again from the latest reading.</li>
+ * <li>The accepted readings go through a {@link MedianFilter}, which removes any spike the gate let through.</li>
+ * </ol>
+ *
+ * The filter also measures how much it trusts its output: the confidence is the fraction of the last {@link #window} readings, accepted or not,
+ * that agree with the output to within {@link #AGREEMENT}. It is low right after a reset, until the window fills, and whenever the sensor is
+ * noisy.
+ *
+ * A filter is not thread safe; it should be updated from one thread only.
+ */
+public class DistanceFilter {
+
+	/**
+	 * The furthest distance the EV3 ultrasonic sensor can read, in m. Readings beyond this are clamped to it.
+	 */
+	public static final double MAXIMUM_RANGE = 2.55;
+	/**
+	 * How close a reading must be to the output to count towards the confidence, in m. This is a little more than the noise of the sensor.
+	 */
+	public static final double AGREEMENT = .03;
+	/**
+	 * The change allowed between readings however close together they are, in m, so that the noise of the sensor is never gated out.
+	 */
+	public static final double NOISE = .02;
+
+	/**
+	 * The number of readings in the median window.
+	 */
+	private final int window;
+	/**
+	 * The fastest that the distance can really change, in m/s.
+	 */
+	private final double maximumRate;
+	/**
+	 * The median of the accepted readings.
+	 */
+	private final MedianFilter median;
+	/**
+	 * The last {@link #window} readings, clamped, accepted or not, with the oldest at {@link #next} once the window is full.
+	 */
+	private final double[] recent;
+	/**
+	 * The number of readings rejected, in {@link MetricsRegistry}.
+	 */
+	private final Counter rejectionCounter;
+	/**
+	 * The slot in {@link #recent} for the next reading.
+	 */
+	private int next;
+	/**
+	 * The number of readings in {@link #recent}.
+	 */
+	private int size;
+	/**
+	 * The time of the last accepted reading, from {@link System#nanoTime()}.
+	 */
+	private long lastAccepted;
+	/**
+	 * The number of readings rejected in a row.
+	 */
+	private int rejectedRun;
+	/**
+	 * The filtered distance, in m, or NaN if there have been no readings since the filter was made or reset.
+	 */
+	private double distance;
+	/**
+	 * The confidence in {@link #distance}, from 0 to 1.
+	 */
+	private double confidence;
+
+	/**
+	 * Makes a new filter.
+	 *
+	 * @param name
+	 *            the name of the filter. The metrics are named after it.
+	 * @param window
+	 *            the number of readings in the median window. Must be positive; an odd number is best.
+	 * @param maximumRate
+	 *            the fastest that the distance can really change, in m/s. This should be the fastest closing speed of anything on the course.
+	 */
+	public DistanceFilter(String name, int window, double maximumRate) {
+
+		if (window <= 0)
+			throw new IllegalArgumentException("The window must hold at least one reading: " + window);
+		if (!(maximumRate > 0))
+			throw new IllegalArgumentException("The maximum rate must be positive: " + maximumRate);
+		this.window = window;
+		this.maximumRate = maximumRate;
+		median = new MedianFilter(window);
+		recent = new double[window];
+		rejectionCounter = MetricsRegistry.counter(name + " rejected readings");
+		reset();
+	}
+
+	/**
+	 * Adds a reading. This does not allocate anything.
+	 *
+	 * @param reading
+	 *            the distance read by the sensor, in m. May be infinite or NaN if nothing was seen.
+	 * @param time
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 * @return the filtered distance, in m.
+	 */
+	public double update(double reading, long time) {
+
+		if (!(reading < MAXIMUM_RANGE))
+			reading = MAXIMUM_RANGE;
+		recent[next] = reading;
+		next = next + 1 == window ? 0 : next + 1;
+		if (size < window)
+			size++;
+
+		if (median.size() == 0 || accept(reading, time)) {
+			rejectedRun = 0;
+			lastAccepted = time;
+			median.addValue(reading);
+		} else if (++rejectedRun >= window) {
+			// The readings have disagreed with the output for a whole window, so the output is what is wrong
+			rejectedRun = 0;
+			lastAccepted = time;
+			median.reset();
+			median.addValue(reading);
+		}
+		distance = median.getFilteredOutput();
+
+		int agreeing = 0;
+		for (int x = 0; x < size; x++)
+			if (Math.abs(recent[x] - distance) <= AGREEMENT)
+				agreeing++;
+		confidence = (double) agreeing / window;
+		return distance;
+	}
+
+	/**
+	 * Checks whether a reading could really follow the current distance, and counts it if not.
+	 *
+	 * @param reading
+	 *            the reading, in m, clamped.
+	 * @param time
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 * @return true if the reading is close enough to the current distance.
+	 */
+	private boolean accept(double reading, long time) {
+
+		double allowed = NOISE + maximumRate * (time - lastAccepted) / 1e9;
+		if (Math.abs(reading - distance) <= allowed)
+			return true;
+		rejectionCounter.increment();
+		return false;
+	}
+
+	/**
+	 * Forgets every reading. This should be called whenever the sensor has been pointed somewhere else.
+	 */
+	public void reset() {
+
+		median.reset();
+		next = 0;
+		size = 0;
+		lastAccepted = 0;
+		rejectedRun = 0;
+		distance = Double.NaN;
+		confidence = 0;
+	}
+
+	/**
+	 * Gets the filtered distance.
+	 *
+	 * @return the filtered distance, in m, or NaN if there have been no readings since the filter was made or reset.
+	 */
+	public double getDistance() {
+
+		return distance;
+	}
+
+	/**
+	 * Gets how much the filtered distance can be trusted.
+	 *
+	 * @return the fraction of the last {@link #window} readings that agree with the filtered distance, from 0 to 1.
+	 */
+	public double getConfidence() {
+
+		return confidence;
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("%.3f m (%.0f%%)", distance, confidence * 100);
+	}
+}
@@ -0,0 +1,225 @@
+package main;
+
+import utilities.metrics.Counter;
+import utilities.metrics.LatencyHistogram;
+import utilities.metrics.MetricsRegistry;
+
+/**
+ * Turns a stream of noisy yes/no readings, such as "the front sensor sees red", into single detections. A detector is a small state machine:
+ *
+ * <ul>
+ * <li>While armed, it fires once at least {@link RobotConfig.Detection#confirmations} of the last {@link RobotConfig.Detection#window} readings
+ * are positive, so a single misread sample never fires it.</li>
+ * <li>Once fired, it is latched, and does not fire again until the event has ended, which is when at least as many of the last readings are
+ * negative. This gives one detection per red line or parking lot, instead of one per sample.</li>
+ * <li>After firing, it also does not fire again for the refractory period, so a detection cannot be repeated by a line that is crossed at an
+ * angle, or by noise at the edge of the line.</li>
+ * </ul>
+ *
+ * Each detection records when the event began (the first positive reading of the run that confirmed it) and when it was confirmed, and the
+ * difference, which is how long the confirmation cost, is added to the {@link LatencyHistogram} named after the detector in
+ * {@link MetricsRegistry}.
+ *
+ * A detector is not thread safe; it should be updated from one thread only.
+ */
+public class EventDetector {
+
+	/**
+	 * The name of the detector, for reports.
+	 */
+	private final String name;
+	/**
+	 * The number of positive readings in the window needed to fire.
+	 */
+	private final int confirmations;
+	/**
+	 * The number of readings in the window.
+	 */
+	private final int window;
+	/**
+	 * The shortest time between two detections, in ns.
+	 */
+	private final long refractory;
+	/**
+	 * The mask that keeps the last {@link #window} readings in {@link #history}.
+	 */
+	private final long mask;
+	/**
+	 * The latency from the start of each event to its detection.
+	 */
+	private final LatencyHistogram latencies;
+	/**
+	 * The number of detections, in {@link MetricsRegistry}.
+	 */
+	private final Counter detectionCounter;
+
+	/**
+	 * The last readings, one bit each, with the latest in bit 0.
+	 */
+	private long history;
+	/**
+	 * True once the detector has fired, until the event ends.
+	 */
+	private boolean latched;
+	/**
+	 * True if {@link #onset} holds the start of the current run of positive readings.
+	 */
+	private boolean inRun;
+	/**
+	 * The time of the first positive reading of the current run, from {@link System#nanoTime()}.
+	 */
+	private long onset;
+	/**
+	 * The time of the last detection, from {@link System#nanoTime()}.
+	 */
+	private long lastDetection;
+	/**
+	 * The time that the event behind the last detection began, from {@link System#nanoTime()}.
+	 */
+	private long lastOnset;
+	/**
+	 * The number of detections since the detector was made or reset.
+	 */
+	private long detections;
+
+	/**
+	 * Makes a new detector.
+	 *
+	 * @param name
+	 *            the name of the detector. The metrics are named after it.
+	 * @param settings
+	 *            the number of confirmations, the window, and the refractory period.
+	 */
+	public EventDetector(String name, RobotConfig.Detection settings) {
+
+		this.name = name;
+		confirmations = settings.confirmations;
+		window = settings.window;
+		refractory = (long) (settings.refractory * 1e9);
+		mask = window == 64 ? -1L : (1L << window) - 1;
+		latencies = MetricsRegistry.histogram(name + " detection latency");
+		detectionCounter = MetricsRegistry.counter(name + " detections");
+		reset();
+	}
+
+	/**
+	 * Adds a reading, and returns true if it confirms a new event.
+	 *
+	 * @param present
+	 *            true if the reading shows the event.
+	 * @param time
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 * @return true if the event has just been detected.
+	 */
+	public boolean update(boolean present, long time) {
+
+		history = (history << 1 | (present ? 1 : 0)) & mask;
+		int positives = Long.bitCount(history);
+		if (positives == 0)
+			inRun = false;
+		else if (present && !inRun) {
+			inRun = true;
+			onset = time;
+		}
+
+		if (latched) {
+			// The event has ended once the negatives would be enough to confirm it, had they been positives
+			if (window - positives >= confirmations) {
+				latched = false;
+				// Start the next run from the next positive reading, not from the tail of this one
+				inRun = false;
+			}
+			return false;
+		}
+		if (positives < confirmations || detections > 0 && time - lastDetection < refractory)
+			return false;
+
+		latched = true;
+		lastDetection = time;
+		lastOnset = inRun ? onset : time;
+		detections++;
+		latencies.record(time - lastOnset);
+		detectionCounter.increment();
+		return true;
+	}
+
+	/**
+	 * Forgets every reading and detection, so the next event is detected as if the detector were new.
+	 */
+	public void reset() {
+
+		history = 0;
+		latched = false;
+		inRun = false;
+		onset = 0;
+		lastDetection = 0;
+		lastOnset = 0;
+		detections = 0;
+	}
+
+	/**
+	 * Forgets the readings in the window, but not the detections, so the refractory period still applies. This is used after a gap in the
+	 * readings, when the old readings no longer say anything about what the sensor sees.
+	 */
+	public void clearReadings() {
+
+		history = 0;
+		inRun = false;
+	}
+
+	/**
+	 * Returns true if the detector has fired and the event has not yet ended.
+	 *
+	 * @return true if latched.
+	 */
+	public boolean isLatched() {
+
+		return latched;
+	}
+
+	/**
+	 * Gets the time of the last detection.
+	 *
+	 * @return the time of the reading that confirmed the last event, from {@link System#nanoTime()}, or 0 if there has not been one.
+	 */
+	public long getLastDetection() {
+
+		return lastDetection;
+	}
+
+	/**
+	 * Gets the time that the last detected event began.
+	 *
+	 * @return the time of the first positive reading of the last detected event, from {@link System#nanoTime()}, or 0 if there has not been one.
+	 */
+	public long getLastOnset() {
+
+		return lastOnset;
+	}
+
+	/**
+	 * Gets how long it took to confirm the last detected event.
+	 *
+	 * @return the time from the start of the last event to its detection, in ns.
+	 */
+	public long getLastLatency() {
+
+		return lastDetection - lastOnset;
+	}
+
+	/**
+	 * Gets the number of detections.
+	 *
+	 * @return the number of detections since the detector was made or reset.
+	 */
+	public long getDetections() {
+
+		return detections;
+	}
+
+	@Override
+	public String toString() {
+
+		return name + " [" + confirmations + " of " + window + ", " + refractory / 1e9 + " s, " + detections + " detections]";
+	}
+}
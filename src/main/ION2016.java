@@ -3,6 +3,8 @@ package main;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
@@ -21,10 +23,19 @@ import lejos.hardware.motor.EV3MediumRegulatedMotor;
 import lejos.hardware.port.MotorPort;
 import lejos.hardware.port.Port;
 import lejos.hardware.port.SensorPort;
+import lejos.hardware.sensor.EV3UltrasonicSensor;
+import lejos.robotics.SampleProvider;
 import sensing.ColorSensor;
+import sensing.RecordingColorSensor;
+import sensing.RecordingSampleProvider;
+import sensing.SensorRecorder;
 import utilities.Color;
+import utilities.ColorLookupTable;
 import utilities.ColorPalette;
+import utilities.GaussianClassifier;
 import utilities.io.IO;
+import utilities.metrics.MetricsRegistry;
+import utilities.regulation.GainSchedule;
 import utilities.units.Quantity;
 import utilities.units.Unit;
 
@@ -38,6 +49,47 @@ public class ION2016 {
 	 * their level is less than or equal to {@link #DEBUG_LEVEL}. Thus, a level of {@link Integer#MAX_VALUE} will cause everything to be printed.
 	 */
 	public static final int DEBUG_LEVEL = 0;
+	/**
+	 * True to record the raw sensor readings to {@link #RECORDING_FILE}, so the run can be replayed with {@link ReplayHarness}.
+	 */
+	public static final boolean RECORD_SENSORS = false;
+	/**
+	 * The file that the raw sensor readings are recorded to.
+	 */
+	public static final String RECORDING_FILE = "sensors.rec";
+	/**
+	 * The number of records that {@link #RECORDING_FILE} can hold. At 32 bytes a record, this is 16 MB, or about 20 minutes of all four sensors at
+	 * full rate.
+	 */
+	public static final int RECORDING_CAPACITY = 1 << 19;
+	/**
+	 * The recording channel of the sonar. The color sensors are recorded on the channels {@link #LEFT}, {@link #RIGHT}, and {@link #FRONT}.
+	 */
+	public static final int SONAR_CHANNEL = 3;
+	/**
+	 * The file that the color palette is saved to, one mean color per name.
+	 */
+	public static final String CALIBRATION_FILE = "calibration.txt";
+	/**
+	 * The file that the color classifier is saved to. If it is missing, colors are matched with a fixed tolerance around the palette colors.
+	 */
+	public static final String CLASSIFIER_FILE = "calibration.bin";
+	/**
+	 * The number of samples of each color taken in calibration mode.
+	 */
+	public static final int CALIBRATION_SAMPLES = 400;
+	/**
+	 * The file that the black and white balance of the color sensors is saved to, at the end of each run, so the next run can start from it.
+	 */
+	public static final String BALANCE_FILE = "balance.txt";
+	/**
+	 * True to adjust the black and white balance while running, from steady readings of the road and the line.
+	 */
+	public static final boolean TRACK_BALANCE = true;
+	/**
+	 * True to read each color sensor on its own thread, false to read them one after another on the line monitor thread.
+	 */
+	public static final boolean CONCURRENT_SAMPLING = true;
 
 	/**
 	 * Fields:
@@ -116,15 +168,34 @@ public class ION2016 {
 	 * minimumBlend
 	 */
 	public static final Map<String, Double> colorTolerances = new TreeMap<>();
+	/**
+	 * The line following gain schedule, indexed by travel speed in m/s, with the P, I and D gains in that order. Null if there is no schedule, in
+	 * which case lineFollowingP, lineFollowingI and lineFollowingD are used at all speeds.
+	 */
+	public static GainSchedule lineFollowingSchedule = null;
+	/**
+	 * The compiled configuration. It is compiled once, at startup, and never modified, so readers always see a complete and consistent
+	 * configuration.
+	 */
+	private static volatile RobotConfig config = null;
 	/**
 	 * The color palette used for color matching.
 	 */
 	public static final ColorPalette allColors = new ColorPalette();
+	/**
+	 * The lookup table used to classify sensor readings, made from {@link #allColors} once the calibration data is loaded. Null if the calibration
+	 * data could not be loaded.
+	 */
+	public static ColorLookupTable colorLookupTable = null;
+	/**
+	 * The recorder for the raw sensor readings, or null if {@link #RECORD_SENSORS} is false or the recording could not be started.
+	 */
+	private static SensorRecorder recorder = null;
 	/**
 	 * The names of all the colors.
 	 */
 	public static final Set<String> colorNames = new TreeSet<>();
-	{
+	static {
 		colorNames.add("red");
 		colorNames.add("yellow");
 		colorNames.add("white");
@@ -137,7 +208,7 @@ public class ION2016 {
 	 * The units supported when parsing strings.
 	 */
 	public static final Map<String, Unit> supportedUnits = new TreeMap<>();
-	{
+	static {
 		supportedUnits.put("m/s", Unit.METER_PER_SECOND);
 		supportedUnits.put("m", Unit.METER);
 		supportedUnits.put("cm", Unit.CENTIMETER);
@@ -200,7 +271,7 @@ public class ION2016 {
 	/**
 	 * Initializes all the maps with constants
 	 */
-	private static void initializeMaps() {
+	static void initializeMaps() {
 
 		try {
 
@@ -240,6 +311,75 @@ public class ION2016 {
 		}
 	}
 
+	/**
+	 * Gets the compiled configuration. This is a single volatile read, so it is cheap enough to call from control loops. Most classes, such as
+	 * {@link LineFollower}, {@link CruiseController}, and {@link Sonar}, copy the values they need when they are made instead.
+	 *
+	 * @return the configuration, or null if it has not been loaded.
+	 */
+	public static RobotConfig getConfig() {
+
+		return config;
+	}
+
+	/**
+	 * Sets the compiled configuration. The configuration is only read at startup: objects that have already copied values from the old
+	 * configuration keep using them, so this must be called before the robot is set up.
+	 *
+	 * @param newConfig
+	 *            the new configuration.
+	 */
+	public static void setConfig(RobotConfig newConfig) {
+
+		if (newConfig == null)
+			throw new IllegalArgumentException("The configuration cannot be null.");
+		config = newConfig;
+	}
+
+	/**
+	 * Compiles the configuration from the current contents of the maps and sets it. This is done once, at startup, after the maps have been
+	 * loaded and before the robot is set up; see {@link #setConfig(RobotConfig)}. If the maps do not make a valid configuration, nothing is set.
+	 *
+	 * @return the new configuration.
+	 * @throws IllegalArgumentException
+	 *             if the maps do not make a valid configuration. The message lists every problem.
+	 */
+	public static RobotConfig compileConfig() {
+
+		RobotConfig newConfig = new RobotConfig(courseConstants, robotConstants, colorFunctions, colorTolerances);
+		setConfig(newConfig);
+		return newConfig;
+	}
+
+	/**
+	 * Reads a gain schedule from a file. There is one row per line: the operating point, with units, then a tab, then the gains separated by commas.
+	 * For example: <code>3 m/min	11008, 25.5, 3</code>.
+	 *
+	 * @param fname
+	 *            the name of the file.
+	 * @param units
+	 *            the units the operating points should be converted to.
+	 * @return the gain schedule.
+	 * @throws FileNotFoundException
+	 *             if the file is not found.
+	 */
+	private static GainSchedule readGainSchedule(String fname, Unit units) throws FileNotFoundException {
+
+		Map<String, String> rows = IO.readMap(fname);
+		double[] points = new double[rows.size()];
+		double[][] gains = new double[rows.size()][];
+		int row = 0;
+		for (String key : rows.keySet()) {
+			points[row] = parseQuantity(key).getValueIn(units);
+			String[] split = rows.get(key).split(",");
+			gains[row] = new double[split.length];
+			for (int x = 0; x < split.length; x++)
+				gains[row][x] = Double.parseDouble(split[x].trim());
+			row++;
+		}
+		return new GainSchedule(points, gains);
+	}
+
 	/**
 	 * Saves all the configuration data for the next run.
 	 */
@@ -323,6 +463,7 @@ public class ION2016 {
 	public static void main(String... args) {
 
 		ExecutorService alabama = Executors.newFixedThreadPool(5);
+		MetricsRegistry.dumpOnShutdown();
 
 		new Thread("Stopper") {
 
@@ -332,10 +473,16 @@ public class ION2016 {
 				while (true)
 					if (Button.ESCAPE.isDown() && Button.ENTER.isDown()) {
 						ION2016.saveMaps();
+						ION2016.saveBalance();
 						ION2016.report("Maps saved");
 						if (sonar != null)
 							sonar.distanceAt(0);
 						System.exit(0);
+					} else if (Button.ESCAPE.isDown() && Button.DOWN.isDown()) {
+						MetricsRegistry.dump(System.out);
+						// Only dump once per press
+						while (Button.ESCAPE.isDown() || Button.DOWN.isDown())
+							Thread.yield();
 					}
 			}
 		}.start();
@@ -347,7 +494,32 @@ public class ION2016 {
 		// Initialize the data
 		initializeMaps();
 		report("Maps initialized");
+		try {
+			compileConfig();
+		} catch (IllegalArgumentException e) {
+			report(e.getMessage());
+			Button.waitForAnyPress();
+			System.exit(-1);
+		}
+		report("Config compiled");
+
+		// The gain schedule is optional; without it, the fixed gains are used at all speeds.
+		try {
+			lineFollowingSchedule = readGainSchedule("gainschedule.txt", Unit.METER_PER_SECOND);
+			report("Gain schedule loaded");
+		} catch (FileNotFoundException e) {
+			report("No gain schedule");
+		}
 	
+		if (RECORD_SENSORS)
+			try {
+				recorder = new SensorRecorder(RECORDING_FILE, RECORDING_CAPACITY);
+				report("Recording to " + RECORDING_FILE);
+			} catch (IOException e) {
+				report("Starting the recording failed");
+				e.printStackTrace();
+			}
+
 		Future<ColorSensor> frontFuture = alabama.submit(new ColorSensorInitializer(portMappings.get("frontSensor"), true));
 		Future<ColorSensor> leftFuture = alabama.submit(new ColorSensorInitializer(portMappings.get("leftSensor"),false));
 		Future<ColorSensor> rightFuture = alabama.submit(new ColorSensorInitializer(portMappings.get("rightSensor"),false));
@@ -356,8 +528,14 @@ public class ION2016 {
 			@Override
 			public void run() { 
 
-				sonar = new Sonar(new EV3MediumRegulatedMotor(ION2016.portMappings.get("frontMotor")), ION2016.portMappings.get("sonicSensor"),
-						robotConstants.get("sonarMaxAngle"), robotConstants.get("sonarGearRatio"));
+				EV3MediumRegulatedMotor sonarMotor = new EV3MediumRegulatedMotor(ION2016.portMappings.get("frontMotor"));
+				if (recorder != null) {
+					SampleProvider distance = new EV3UltrasonicSensor(ION2016.portMappings.get("sonicSensor")).getDistanceMode();
+					sonar = new Sonar(sonarMotor, new RecordingSampleProvider(distance, recorder, SONAR_CHANNEL), robotConstants.get("sonarMaxAngle"),
+							robotConstants.get("sonarGearRatio"));
+				} else
+					sonar = new Sonar(sonarMotor, ION2016.portMappings.get("sonicSensor"), robotConstants.get("sonarMaxAngle"), robotConstants.get(
+							"sonarGearRatio"));
 				report("Made sonar");
 			}
 		});
@@ -372,9 +550,9 @@ public class ION2016 {
 
 		try {
 	
-			colorSensorMap.put("frontSensor", frontFuture.get());
-			colorSensorMap.put("leftSensor", leftFuture.get());
-			colorSensorMap.put("rightSensor", rightFuture.get());
+			colorSensorMap.put("frontSensor", record(frontFuture.get(), FRONT));
+			colorSensorMap.put("leftSensor", record(leftFuture.get(), LEFT));
+			colorSensorMap.put("rightSensor", record(rightFuture.get(), RIGHT));
 		} catch (InterruptedException | ExecutionException e1) {
 			ION2016.report("Color sensor map initialization failed");
 			e1.printStackTrace();
@@ -383,19 +561,33 @@ public class ION2016 {
 
 		report("Sensor initialized");
 
-		// Calibrate the black and white balances
-		calibrateBalance();
-		report("Calibrated balance");
+		// Start from the black and white balances saved by the last run, or calibrate them if there are none
+		boolean balanced = loadBalance();
+		if (balanced)
+			report("Loaded balance");
+		else {
+			calibrateBalance();
+			report("Calibrated balance");
+		}
 
 		report("Waiting for button press");
 		// Check to see if the enter button is held down. Wait at least 3000 ms (3 s). If not zero, a button was hit.
 		if (0 != Button.waitForAnyPress(3000)) {
 			report("Button pressed");
+			// The colors are measured against the balance, so a saved balance is recalibrated with them
+			if (balanced) {
+				calibrateBalance();
+				report("Calibrated balance");
+			}
 			report("Entering calibration");
-			Map<String, Color> calData = calibrateColors();
+			GaussianClassifier classifier = calibrateColors();
+			Map<String, Color> calData = new TreeMap<>();
+			for (int x = 0; x < classifier.numClasses(); x++)
+				calData.put(classifier.getName(x), classifier.getMean(x));
 			try {
-				IO.saveMap(calData, "calibration.txt");
-			} catch (FileNotFoundException e) {
+				IO.saveMap(calData, CALIBRATION_FILE);
+				IO.save(CLASSIFIER_FILE, GaussianClassifier.serializer(), classifier);
+			} catch (IOException e) {
 				report("Saving calibration data failed");
 				e.printStackTrace();
 			}
@@ -404,10 +596,7 @@ public class ION2016 {
 			report("No button pressed");
 
 		try {
-			Map<String, String> calibration;
-			calibration = IO.readMap("calibration.txt");
-			for (String colorName : calibration.keySet())
-				allColors.add(Color.parseColor(calibration.get(colorName)), colorName);
+			colorLookupTable = loadCalibration(config);
 		} catch (FileNotFoundException e) {
 			report("Reading calibration data failed");
 			e.printStackTrace();
@@ -418,15 +607,16 @@ public class ION2016 {
 
 		// DifferentialPilot dp = new DifferentialPilot(ION.robotConstants.get("trackWidth"), ION.robotConstants.get("wheelDiameter"),
 		// new EV3LargeRegulatedMotor(ION.portMappings.get("leftMotor")), new EV3LargeRegulatedMotor(ION.portMappings.get("rightMotor")));
-		DifferentialPilot dp = new DifferentialPilot(ION2016.robotConstants.get("wheelDiameter").getValueIn(Unit.METER), ION2016.robotConstants.get(
-				"trackWidth").getValueIn(Unit.METER), new EV3LargeRegulatedMotor(ION2016.portMappings.get("leftMotor")), new EV3LargeRegulatedMotor(
-						ION2016.portMappings.get("rightMotor")));
+		DifferentialPilot dp = new DifferentialPilot(config.wheelDiameter, config.trackWidth, new EV3LargeRegulatedMotor(ION2016.portMappings.get(
+				"leftMotor")), new EV3LargeRegulatedMotor(ION2016.portMappings.get("rightMotor")));
 		dp.setTravelSpeed(new Quantity(6, Unit.divide(Unit.METER, Unit.MINUTE)).getValueIn(Unit.METER_PER_SECOND));
-		dp.setRotateSpeed(robotConstants.get("rotateSpeed").getValueIn(Unit.DEGREE_PER_SECOND));
+		dp.setRotateSpeed(config.rotateSpeed);
 
 		report("Made differential pilot");
 		LineMonitor lineMonitor = new LineMonitor(colorSensorMap.get("leftSensor"), colorSensorMap.get("rightSensor"),
-				colorSensorMap.get("frontSensor"), allColors, colorGroupings.get("blendColors"), colorFunctions.get("roadColor"));
+				colorSensorMap.get("frontSensor"), allColors, colorGroupings.get("blendColors"), config.roadColor, colorLookupTable, CONCURRENT_SAMPLING);
+		if (TRACK_BALANCE)
+			lineMonitor.trackBalance(colorFunctions.get("fastColor"));
 		report("Made line monitor");
 		try {
 			alabama.awaitTermination(300, TimeUnit.MILLISECONDS);
@@ -485,6 +675,15 @@ public class ION2016 {
 		// Waits for the end
 		controller.waitForEnd();
 		report("Done");
+		saveBalance();
+		if (recorder != null)
+			try {
+				recorder.close();
+				report("Recorded %d samples, dropped %d", recorder.size(), recorder.getDropped());
+			} catch (IOException e) {
+				report("Closing the recording failed");
+				e.printStackTrace();
+			}
 
 		System.exit(0);
 	}
@@ -523,10 +722,15 @@ public class ION2016 {
 	 * @param args
 	 *            the format string arguments. See {@link String#format(String, Object...)}.
 	 */
-	public static synchronized void debug(int debugLevel, String str, Object... args) {
-
-		System.out.println("[" + debugLevel + ":" + numReports + "] " + String.format(str, args));
-		numReports++;
+	public static void debug(int debugLevel, String str, Object... args) {
+
+		// Check the level first, so a message that is not printed is not formatted either
+		if (debugLevel > DEBUG_LEVEL)
+			return;
+		synchronized (ION2016.class) {
+			System.out.println("[" + debugLevel + ":" + numReports + "] " + String.format(str, args));
+			numReports++;
+		}
 	}
 
 	/**
@@ -542,6 +746,22 @@ public class ION2016 {
 		debug(debugLevel, str, new Object[] {});
 	}
 	
+	/**
+	 * Wraps a color sensor so that its raw readings are recorded, if {@link #recorder} is recording.
+	 *
+	 * @param sensor
+	 *            the sensor.
+	 * @param channel
+	 *            the ID of the sensor, which is used as its recording channel.
+	 * @return the sensor to use.
+	 */
+	private static ColorSensor record(ColorSensor sensor, int channel) {
+
+		if (recorder == null)
+			return sensor;
+		return new RecordingColorSensor(sensor, recorder, channel);
+	}
+
 	/**
 	 * Calibrates the white and black balance for all the sensors
 	 */
@@ -558,22 +778,120 @@ public class ION2016 {
 	}
 
 	/**
-	 * Calibrates the colors
+	 * Loads the black and white balance of each color sensor from {@link #BALANCE_FILE}.
+	 *
+	 * @return true if every sensor's balance was loaded, false if the file is missing or incomplete, in which case no balance is changed.
+	 */
+	private static boolean loadBalance() {
+
+		Map<String, String> saved;
+		try {
+			saved = IO.readMap(BALANCE_FILE);
+		} catch (FileNotFoundException e) {
+			return false;
+		}
+		Map<String, double[][]> balances = new HashMap<>();
+		try {
+			for (String key : colorSensorMap.keySet()) {
+				String black = saved.get(key + ".black");
+				String white = saved.get(key + ".white");
+				if (black == null || white == null)
+					return false;
+				balances.put(key, new double[][] { parseTriple(black), parseTriple(white) });
+			}
+		} catch (IllegalArgumentException e) {
+			report("Bad balance file");
+			return false;
+		}
+		for (String key : balances.keySet())
+			colorSensorMap.get(key).setBalance(balances.get(key)[0], balances.get(key)[1]);
+		return true;
+	}
+
+	/**
+	 * Saves the black and white balance of each color sensor to {@link #BALANCE_FILE}.
+	 */
+	private static void saveBalance() {
+
+		Map<String, String> balances = new TreeMap<>();
+		for (String key : colorSensorMap.keySet()) {
+			balances.put(key + ".black", Arrays.toString(colorSensorMap.get(key).getBlack()));
+			balances.put(key + ".white", Arrays.toString(colorSensorMap.get(key).getWhite()));
+		}
+		try {
+			IO.saveMap(balances, BALANCE_FILE);
+		} catch (FileNotFoundException e) {
+			report("Saving balance failed");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Parses three numbers in the format of {@link Arrays#toString(double[])}.
 	 *
-	 * @return a map containing the calibration data. The map maps color names to color values.
+	 * @param str
+	 *            the string, such as "[0.1, 0.2, 0.3]".
+	 * @return the numbers.
 	 */
-	private static Map<String, Color> calibrateColors() {
+	private static double[] parseTriple(String str) {
+
+		str = str.trim();
+		if (!str.startsWith("[") || !str.endsWith("]"))
+			throw new IllegalArgumentException("Not a list of numbers: " + str);
+		String[] split = str.substring(1, str.length() - 1).split(", ");
+		if (split.length != 3)
+			throw new IllegalArgumentException("Not three numbers: " + str);
+		return new double[] { Double.parseDouble(split[0]), Double.parseDouble(split[1]), Double.parseDouble(split[2]) };
+	}
 
-		Map<String, Color> calibrationData = new TreeMap<>();
+	/**
+	 * Calibrates the colors. {@link #CALIBRATION_SAMPLES} readings are taken of each color while the robot is moved around over it, so that the
+	 * classifier learns how much the readings of each color vary.
+	 *
+	 * @return the classifier fitted to the readings.
+	 */
+	private static GaussianClassifier calibrateColors() {
+
+		GaussianClassifier.Trainer trainer = new GaussianClassifier.Trainer();
+		ColorSensor front = colorSensorMap.get("frontSensor");
+		float[] sample = new float[3];
 		for (String color : colorNames) {
 			report("Place front sensor over " + color);
 			Button.waitForAnyPress();
-			if(calibrationData ==  null)
-				report("calibrate map is null");
-			calibrationData.put(color, colorSensorMap.get("frontSensor").getColor());
+			report("Move the sensor around over " + color);
+			for (int x = 0; x < CALIBRATION_SAMPLES; x++) {
+				front.readInto(sample);
+				trainer.add(color, sample[ColorSensor.RED], sample[ColorSensor.GREEN], sample[ColorSensor.BLUE]);
+			}
 		}
 
-		return calibrationData;
+		return trainer.build();
+	}
+
+	/**
+	 * Loads the color palette from {@link #CALIBRATION_FILE} into {@link #allColors}, and the classifier from {@link #CLASSIFIER_FILE} if there is
+	 * one, and makes the lookup table.
+	 *
+	 * @param config
+	 *            the configuration, which has the road color.
+	 * @return the lookup table.
+	 * @throws FileNotFoundException
+	 *             if there is no palette.
+	 */
+	static ColorLookupTable loadCalibration(RobotConfig config) throws FileNotFoundException {
+
+		Map<String, String> calibration = IO.readMap(CALIBRATION_FILE);
+		for (String colorName : calibration.keySet())
+			allColors.add(Color.parseColor(calibration.get(colorName)), colorName);
+		try {
+			allColors.setClassifier(IO.read(CLASSIFIER_FILE, GaussianClassifier.serializer())[0]);
+			report("Loaded color classifier");
+		} catch (IOException | IllegalArgumentException e) {
+			// Calibrated before there was a classifier, so fall back to the fixed tolerance
+			report("No color classifier");
+			allColors.setClassifier(null);
+		}
+		return new ColorLookupTable(allColors, allColors.indicesOf(colorGroupings.get("blendColors")), allColors.indexOf(config.roadColor));
 	}
 
 	/**
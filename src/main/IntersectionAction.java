@@ -1,5 +1,7 @@
 package main;
 
+import java.util.List;
+
 /**
  * Represents a new intersection action.
  */
@@ -9,9 +11,13 @@ public class IntersectionAction extends RobotAction {
 	 * The angle to turn. If positive, the robot will rotate right. If negative, the robot will rotate left.
 	 */
 	private final int angle;
+	/**
+	 * The regions to sweep before going through, from {@link SweepPlanner}, or null if they are not known.
+	 */
+	private final List<SweepPlanner.Sector> sweepSectors;
 	
 	/**
-	 * Makes a new intersection action.
+	 * Makes a new intersection action, which sweeps the region in the config.
 	 *
 	 * @param angle
 	 *            the angle to turn. If positive, the robot will rotate right. If negative, the robot will rotate left.
@@ -20,8 +26,24 @@ public class IntersectionAction extends RobotAction {
 	 */
 	public IntersectionAction(int angle, int seqNum) {
 
+		this(angle, null, seqNum);
+	}
+	
+	/**
+	 * Makes a new intersection action.
+	 *
+	 * @param angle
+	 *            the angle to turn. If positive, the robot will rotate right. If negative, the robot will rotate left.
+	 * @param sweepSectors
+	 *            the regions to sweep before going through, from {@link SweepPlanner}, or null to sweep the region in the config.
+	 * @param seqNum
+	 *            the sequence number.
+	 */
+	public IntersectionAction(int angle, List<SweepPlanner.Sector> sweepSectors, int seqNum) {
+
 		super(seqNum);
 		this.angle = angle;
+		this.sweepSectors = sweepSectors;
 	}
 
 	/**
@@ -30,7 +52,7 @@ public class IntersectionAction extends RobotAction {
 	@Override
 	protected String dataToString() {
 
-		return "angle=" + angle;
+		return "angle=" + angle + (sweepSectors != null ? ", sweep=" + sweepSectors : "");
 	}
 	
 	/**
@@ -40,4 +62,23 @@ public class IntersectionAction extends RobotAction {
 
 		return angle;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Gets the regions to sweep before going through.
+	 *
+	 * @return the regions, or null if they are not known and the region in the config should be swept.
+	 */
+	public List<SweepPlanner.Sector> getSweepSectors() {
+
+		return sweepSectors;
+	}
+	
+	/**
+	 * The front sensor is not used.
+	 */
+	@Override
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return SamplingPolicy.INTERSECTION;
+	}
+}
@@ -0,0 +1,158 @@
+package main;
+
+/**
+ * Estimates the distance to the vehicle ahead and how fast it is closing, from the filtered distances that the sonar sends with
+ * {@link RobotMessage#APPROACHING_OBJECT}. It is an alpha-beta filter: each distance is compared with the distance predicted from the last
+ * estimate and closing speed, and the estimates are moved towards it by a fixed fraction of the difference. The distances can arrive at any
+ * interval, so the prediction and the speed correction use the time between them.
+ *
+ * If no distance arrives for {@link #TRACK_TIMEOUT}, the track is dropped, and the next distance starts a new one with no closing speed.
+ *
+ * A tracker is not thread safe; it should be updated from one thread only.
+ */
+public class LeadVehicleTracker {
+
+	/**
+	 * The default fraction of the difference between the measured and predicted distance that is added to the distance estimate.
+	 */
+	public static final double DEFAULT_ALPHA = .5;
+	/**
+	 * The default fraction of the difference between the measured and predicted distance, per second between readings, that is added to the
+	 * speed estimate.
+	 */
+	public static final double DEFAULT_BETA = .05;
+	/**
+	 * The longest gap between distances before the track is dropped, in s.
+	 */
+	public static final double TRACK_TIMEOUT = 1;
+
+	/**
+	 * The weight of the distance correction.
+	 */
+	private final double alpha;
+	/**
+	 * The weight of the speed correction.
+	 */
+	private final double beta;
+	/**
+	 * True if there is a track.
+	 */
+	private boolean tracking;
+	/**
+	 * The estimated distance at {@link #lastUpdate}, in m.
+	 */
+	private double distance;
+	/**
+	 * The estimated rate of change of the distance, in m/s. Negative when closing.
+	 */
+	private double rate;
+	/**
+	 * The time of the last distance, from {@link System#nanoTime()}.
+	 */
+	private long lastUpdate;
+
+	/**
+	 * Makes a new tracker with {@link #DEFAULT_ALPHA} and {@link #DEFAULT_BETA}.
+	 */
+	public LeadVehicleTracker() {
+
+		this(DEFAULT_ALPHA, DEFAULT_BETA);
+	}
+
+	/**
+	 * Makes a new tracker.
+	 *
+	 * @param alpha
+	 *            the weight of the distance correction, in the range (0, 1].
+	 * @param beta
+	 *            the weight of the speed correction, in the range [0, 2). Should be well below alpha.
+	 */
+	public LeadVehicleTracker(double alpha, double beta) {
+
+		if (!(alpha > 0 && alpha <= 1))
+			throw new IllegalArgumentException("Alpha must be in the range (0, 1]: " + alpha);
+		if (!(beta >= 0 && beta < 2))
+			throw new IllegalArgumentException("Beta must be in the range [0, 2): " + beta);
+		this.alpha = alpha;
+		this.beta = beta;
+		reset();
+	}
+
+	/**
+	 * Adds a measured distance.
+	 *
+	 * @param measured
+	 *            the distance to the vehicle ahead, in m.
+	 * @param time
+	 *            the time of the measurement, from {@link System#nanoTime()}.
+	 */
+	public void update(double measured, long time) {
+
+		double dt = (time - lastUpdate) / 1e9;
+		if (!tracking || dt > TRACK_TIMEOUT) {
+			tracking = true;
+			distance = measured;
+			rate = 0;
+			lastUpdate = time;
+			return;
+		}
+		// Out of order or simultaneous measurements can only correct the distance
+		if (dt <= 0) {
+			distance += alpha * (measured - distance);
+			return;
+		}
+
+		double predicted = distance + rate * dt;
+		double residual = measured - predicted;
+		distance = predicted + alpha * residual;
+		rate += beta * residual / dt;
+		lastUpdate = time;
+	}
+
+	/**
+	 * Drops the track, for example when the road ahead is clear.
+	 */
+	public void reset() {
+
+		tracking = false;
+		distance = Double.POSITIVE_INFINITY;
+		rate = 0;
+		lastUpdate = 0;
+	}
+
+	/**
+	 * Returns true if a vehicle is being tracked.
+	 *
+	 * @return true if there is a track.
+	 */
+	public boolean isTracking() {
+
+		return tracking;
+	}
+
+	/**
+	 * Gets the estimated distance to the vehicle ahead, as of the last measurement.
+	 *
+	 * @return the distance, in m, or infinity if there is no track.
+	 */
+	public double getDistance() {
+
+		return distance;
+	}
+
+	/**
+	 * Gets the estimated speed at which the vehicle ahead is getting closer.
+	 *
+	 * @return the closing speed, in m/s. Positive when the gap is shrinking, negative when it is growing, and 0 if there is no track.
+	 */
+	public double getClosingSpeed() {
+
+		return -rate;
+	}
+
+	@Override
+	public String toString() {
+
+		return tracking ? String.format("Lead at %.3f m, closing at %.3f m/s", distance, -rate) : "No lead";
+	}
+}
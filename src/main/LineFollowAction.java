@@ -60,4 +60,12 @@ public class LineFollowAction extends RobotAction {
 		return endNode;
 	}
 	
+	/**
+	 * The side sensors are read as fast as possible, and the front sensor slowly until the red line is near.
+	 */
+	@Override
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return SamplingPolicy.LINE_FOLLOWING;
+	}
 }
@@ -2,6 +2,7 @@ package main;
 
 import lejos.hardware.Button;
 import utilities.regulation.DerivativeController;
+import utilities.regulation.GainSchedule;
 import utilities.units.Quantity;
 import utilities.units.Unit;
 
@@ -23,6 +24,15 @@ public class LineFollower {
 	 * The derivative constant
 	 */
 	private volatile double d;
+	/**
+	 * The gain schedule, indexed by travel speed in m/s, with the P, I and D gains in that order. If null, {@link #p}, {@link #i} and {@link #d}
+	 * are used at all speeds.
+	 */
+	private volatile GainSchedule gainSchedule;
+	/**
+	 * The gains looked up from the gain schedule on the last iteration. Only used by the line following thread.
+	 */
+	private final double[] scheduledGains = new double[3];
 	/**
 	 * The pilot used to control the robot
 	 */
@@ -89,8 +99,9 @@ public class LineFollower {
 		lineFollower = new UtilityDaemon(new LineDaemon());
 		angularCalculator = new DerivativeController(1, Double.POSITIVE_INFINITY);
 		dAECalculator = new DerivativeController(1, Double.POSITIVE_INFINITY);
-		whiteSpeed = ION2016.courseConstants.get("whiteSpeed").getValueIn(Unit.METER_PER_SECOND);
-		yellowSpeed = ION2016.courseConstants.get("yellowSpeed").getValueIn(Unit.METER_PER_SECOND);
+		RobotConfig config = ION2016.getConfig();
+		whiteSpeed = config.whiteSpeed;
+		yellowSpeed = config.yellowSpeed;
 	}
 	
 	/**
@@ -181,6 +192,30 @@ public class LineFollower {
 		this.d = d;
 	}
 	
+	/**
+	 * Gets the gain schedule.
+	 *
+	 * @return the gain schedule, or null if the fixed gains are used at all speeds.
+	 */
+	public GainSchedule getGainSchedule() {
+	
+		return gainSchedule;
+	}
+	
+	/**
+	 * Sets the gain schedule. While a schedule is set, the P, I and D gains are interpolated from the schedule using the current travel speed
+	 * instead of using {@link #getP()}, {@link #getI()} and {@link #getD()}.
+	 *
+	 * @param gainSchedule
+	 *            the gain schedule, indexed by travel speed in m/s, with the P, I and D gains in that order. If null, the fixed gains are used.
+	 */
+	public void setGainSchedule(GainSchedule gainSchedule) {
+	
+		if (gainSchedule != null && gainSchedule.getNumGains() != scheduledGains.length)
+			throw new IllegalArgumentException("The line following gain schedule must have P, I and D gains.");
+		this.gainSchedule = gainSchedule;
+	}
+	
 	/**
 	 * @return the pilot
 	 */
@@ -252,17 +287,22 @@ public class LineFollower {
 	 */
 	private class LineDaemon implements Runnable {
 		
+		/**
+		 * The frame that the sensor data is read into. Only used by the line following thread.
+		 */
+		private final SensorFrame frame = new SensorFrame();
+		
 		/**
 		 *
 		 */
 		@Override
 		public void run() {
 		
-			Object[] blendDataLeft = lineMonitor.getAllBlendData(ION2016.LEFT);
-			Object[] blendDataRight = lineMonitor.getAllBlendData(ION2016.RIGHT);
+			lineMonitor.readFrame(frame);
+			long sampleTime = frame.getTimestamp();
 			
-			double errorLeft = 2 * ((double) blendDataLeft[1] - .5);
-			double errorRight = 2 * ((double) blendDataRight[1] - .5);
+			double errorLeft = 2 * (frame.getComposition(ION2016.LEFT) - .5);
+			double errorRight = 2 * (frame.getComposition(ION2016.RIGHT) - .5);
 			synchronized (glueLock) {
 				if (glueRight) {
 					errorLeft = glueValue;
@@ -302,10 +342,28 @@ public class LineFollower {
 				ION2016.courseConstants.put("lineFollowingP", new Quantity(p, Unit.ONE));
 				ION2016.courseConstants.put("lineFollowingI", new Quantity(i, Unit.ONE));
 				ION2016.courseConstants.put("lineFollowingD", new Quantity(d, Unit.ONE));
+				if (gainSchedule != null) {
+					// The tuned gains would be overridden by the schedule
+					gainSchedule = null;
+					ION2016.report("Gain schedule disabled");
+				}
 				
 			}
 			
-			pilot.steer(-(angularError * p + posError * i + derAE * d));
+			// Look up the gains for the current speed
+			double kp = p;
+			double ki = i;
+			double kd = d;
+			GainSchedule schedule = gainSchedule;
+			if (schedule != null) {
+				schedule.getGains(pilot.getTravelSpeed(), scheduledGains);
+				kp = scheduledGains[0];
+				ki = scheduledGains[1];
+				kd = scheduledGains[2];
+			}
+			
+			pilot.steer(-(angularError * kp + posError * ki + derAE * kd));
+			lineFollower.getMetrics().recordAge(sampleTime);
 			// TODO Check speed limits
 			// String colorLeft = (String) blendDataLeft[0];
 			// String colorRight = (String) blendDataRight[0];
@@ -4,40 +4,87 @@ import static main.ION2016.FRONT;
 import static main.ION2016.LEFT;
 import static main.ION2016.RIGHT;
 
-import java.util.Observable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import sensing.BalanceEstimator;
 import sensing.ColorSensor;
 import utilities.Color;
+import utilities.ColorLookupTable;
 import utilities.ColorPalette;
+import utilities.events.EventDispatcher;
+import utilities.task.CompletionFuture;
 
 /**
  * @author jacob
  *
  */
-public class LineMonitor extends Observable {
+public class LineMonitor {
 
 	/**
 	 * The number of sensors
 	 */
 	private static final int NUM_SENSORS = 3;
+	/**
+	 * The longest time, in ms, that the monitor thread waits for a new set of readings in concurrent sampling mode.
+	 */
+	private static final long COMBINE_TIMEOUT = 100;
+	/**
+	 * The number of elements of {@link #frameData} used by each sensor: red, green, blue, match, blend, and composition.
+	 */
+	private static final int FRAME_FIELDS = 6;
+	/**
+	 * The red value of the front sensor above which an intersection is detected.
+	 */
+	private static final double INTERSECTION_THRESHOLD = .4;
+	/**
+	 * The red value of the front sensor above which the red line is near, so a burst is started if the sampling policy has one.
+	 */
+	private static final double BURST_THRESHOLD = .25;
+	/**
+	 * The longest time, in ns, that a thread waits for a sensor to be due. Bounds how long it takes a paused or terminated daemon to notice.
+	 */
+	private static final long MAX_POLICY_WAIT = 10000000;
+	/**
+	 * The line signal above which a sensor that is over the road moves onto a line. See {@link #updateEdge(int, int, double, long, boolean)}.
+	 */
+	private static final double EDGE_ENTER = .6;
+	/**
+	 * The line signal below which a sensor that is over a line moves back onto the road. The gap between this and {@link #EDGE_ENTER} keeps noise
+	 * near an edge from counting as several edges.
+	 */
+	private static final double EDGE_EXIT = .4;
+	/**
+	 * How long, in ns, a sensor must stay past a threshold before the edge is counted. Filters out single bad readings.
+	 */
+	private static final long EDGE_DWELL = 10000000;
+	/**
+	 * If a sensor has not been read for this long, in ns, for example because the sampling policy disabled it, its edge state is reset from its
+	 * next reading instead of counting an edge it did not see happen.
+	 */
+	private static final long EDGE_STALE = 100000000;
 
 	/**
 	 * An array with all the sensors
 	 */
 	private final ColorSensor[] sensors;
 	/**
-	 * An array with all the latest sensor readings
+	 * An array with all the latest sensor readings. readings[ID] holds the scaled RGB values, indexed by {@link ColorSensor#RED},
+	 * {@link ColorSensor#GREEN}, and {@link ColorSensor#BLUE}. The buffers are reused, so that reading the sensors does not allocate anything.
 	 */
-	private final Color[] readings;
+	private final float[][] readings;
 	/**
-	 * An array with all the latest color matches
+	 * An array with the palette indices of all the latest color matches, or -1 where there is no good match.
 	 */
-	private final String[] colorMatches;
+	private final int[] colorMatches;
 	/**
-	 * An array with all the latest color blends
+	 * An array with the palette indices of all the latest color blends
 	 */
-	private final String[] colorBlends;
+	private final int[] colorBlends;
 	/**
 	 * An array with all the latest blend compositions
 	 */
@@ -51,22 +98,162 @@ public class LineMonitor extends Observable {
 	 */
 	private final ColorPalette colors;
 	/**
-	 * The list of colors that might be found in a blend. Namely, white, yellow, and blue.
+	 * The palette indices of the colors that might be found in a blend. Namely, white, yellow, and blue.
+	 */
+	private final int[] blendColors;
+	/**
+	 * The palette index of the road color
+	 */
+	private final int roadColor;
+	/**
+	 * The lookup table used to classify the readings, or null to classify them exactly with the palette.
+	 */
+	private final ColorLookupTable lookupTable;
+	/**
+	 * The times of the latest sensor readings, from {@link System#nanoTime()}. Guarded by the sensor locks, like the readings.
 	 */
-	private final Set<String> blendColors;
+	private final long[] readingTimes;
 	/**
-	 * The road color
+	 * True for each sensor that missed readings, because it was not read for {@link #EDGE_STALE}, since events were last checked. Guarded by the
+	 * sensor locks.
 	 */
-	private final String roadColor;
+	private final boolean[] readingGaps;
 	/**
-	 * Flags which indicate if a specified sensor has triggered an event. For example, if the front sensor triggers an intersection event,
-	 * flags[FRONT] is set to true until the sensor leaves the red line. This prevents multiple events for the same thing.
+	 * The event detectors, indexed by sensor ID: the intersection detector for the front sensor, and the parking lot detectors for the side
+	 * sensors. They turn the readings into one event per intersection or parking lot. Only used by the thread that checks for events.
 	 */
-	private final boolean[] flags;
+	private final EventDetector[] detectors;
 	/**
-	 * The daemon that gathers sensor data.
+	 * True once the detectors have been made from {@link #detectorConfig}.
+	 */
+	private boolean detectorsReady = false;
+	/**
+	 * The configuration that the detectors and {@link #parkingIndex} were made from, or null if there was no configuration.
+	 */
+	private RobotConfig detectorConfig = null;
+	/**
+	 * The palette index of the parking color, or -1 if the palette does not have it or there is no configuration.
+	 */
+	private int parkingIndex = -1;
+	/**
+	 * The minimum blend composition for a blend to count as the parking color.
+	 */
+	private double parkingBlend = 1;
+	/**
+	 * The daemon that gathers sensor data. In concurrent sampling mode, this daemon only combines the readings from {@link #samplers} and checks
+	 * for events.
 	 */
 	private final UtilityDaemon daemon;
+	/**
+	 * The daemons that each read one sensor, indexed by sensor ID, or null if the sensors are read one after another by {@link #daemon}.
+	 */
+	private final UtilityDaemon[] samplers;
+	/**
+	 * Buffers that the raw readings are read into before they are copied into {@link #readings}, so that reading a sensor does not hold its lock.
+	 * Each buffer is only used by the thread that reads that sensor.
+	 */
+	private final float[][] scratch;
+	/**
+	 * Buffers that the unscaled readings are read into, for the balance estimators. Each buffer is only used by the thread that reads that sensor.
+	 */
+	private final float[][] rawScratch;
+	/**
+	 * The balance estimators, indexed by sensor ID, or null if the calibration is not adjusted while running. Each estimator is only updated by the
+	 * thread that reads its sensor.
+	 */
+	private volatile BalanceEstimator[] estimators = null;
+	/**
+	 * The palette index of the color that the balance estimators take as white, or -1 to only adjust the black. Written before
+	 * {@link #estimators}.
+	 */
+	private int balanceWhite = -1;
+	/**
+	 * The time at which each sensor was last read, from {@link System#nanoTime()}.
+	 */
+	private final long[] sensorSampleTimes;
+	/**
+	 * The number of times each sensor has been read. Guarded by {@link #sampleLock}.
+	 */
+	private final long[] sampleCounts;
+	/**
+	 * The value of {@link #sampleCounts} when the readings were last combined. Only used by {@link #daemon}.
+	 */
+	private final long[] combinedCounts;
+	/**
+	 * The lock used to wait for new readings in concurrent sampling mode.
+	 */
+	private final Object sampleLock;
+	/**
+	 * The time at which the latest sensor readings were taken, from {@link System#nanoTime()}. In concurrent sampling mode, this is the time of the
+	 * oldest reading in the latest set.
+	 */
+	private volatile long sampleTime;
+	/**
+	 * The producer that events are published to, or null if nobody is listening.
+	 */
+	private volatile EventDispatcher<RobotEvent>.Producer events;
+	/**
+	 * The latest published frame. Sensor x uses the elements from x * {@link #FRAME_FIELDS}: red, green and blue (as float bits), match, blend, and
+	 * composition (as double bits). The last element is the timestamp. Every element is written and read with volatile semantics, which is what
+	 * makes the seqlock in {@link #readFrame(SensorFrame)} safe.
+	 */
+	private final AtomicLongArray frameData;
+	/**
+	 * The seqlock version of {@link #frameData}. It is odd while a frame is being written, and goes up by 2 for each frame, so the sequence number of
+	 * the latest frame is half of it.
+	 */
+	private volatile long frameVersion;
+	/**
+	 * The sampling policy.
+	 */
+	private volatile SamplingPolicy samplingPolicy;
+	/**
+	 * The time at which the current burst ends, from {@link System#nanoTime()}. There is no burst once this is in the past.
+	 */
+	private volatile long burstEnd;
+	/**
+	 * The lock that threads waiting for a sensor to be due wait on. Notified when the policy changes or a burst starts.
+	 */
+	private final Object policyLock;
+	/**
+	 * The time at which each sensor last started a read, from {@link System#nanoTime()}, used to pace the sensors. Each element is only used by the
+	 * thread that reads that sensor.
+	 */
+	private final long[] lastReads;
+	/**
+	 * The same as {@link #lastReads}, but guarded by {@link #sampleLock}, so the monitor thread can pace itself in concurrent sampling mode.
+	 */
+	private final long[] readStartTimes;
+	/**
+	 * Which sensors have been read since the last check for events. Only used by {@link #daemon}.
+	 */
+	private final boolean[] fresh;
+	/**
+	 * Whether each sensor is over a line, as opposed to the road. Each element is only used by the thread that reads that sensor.
+	 */
+	private final boolean[] overLine;
+	/**
+	 * Whether each sensor has seen a reading past the threshold for the other state, which becomes an edge once it has lasted
+	 * {@link #EDGE_DWELL}. Each element is only used by the thread that reads that sensor.
+	 */
+	private final boolean[] edgePending;
+	/**
+	 * The time of the first reading of each pending edge, from {@link System#nanoTime()}. Each element is only used by the thread that reads that
+	 * sensor.
+	 */
+	private final long[] edgeSince;
+	/**
+	 * The number of edges each sensor has crossed. Guarded by {@link #edgeLock}.
+	 */
+	private final long[] edgeCounts;
+	/**
+	 * The futures waiting for edges. Guarded by {@link #edgeLock}.
+	 */
+	private final List<EdgeWaiter> edgeWaiters;
+	/**
+	 * The lock for the edge counts.
+	 */
+	private final Object edgeLock;
 
 	/**
 	 * Makes a new LineMontior with all the specified information. This does not start the daemon thread; {@link #startDaemon()} must be called to do
@@ -87,6 +274,64 @@ public class LineMonitor extends Observable {
 	 */
 	public LineMonitor(ColorSensor left, ColorSensor right, ColorSensor front, ColorPalette colors, Set<String> blendColors, String roadColor) {
 	
+		this(left, right, front, colors, blendColors, roadColor, null);
+	}
+
+	/**
+	 * Makes a new LineMontior that classifies the readings with a lookup table. This does not start the daemon thread; {@link #startDaemon()} must
+	 * be called to do that.
+	 *
+	 * @param left
+	 *            the color sensor on the left side of the robot.
+	 * @param right
+	 *            the color sensor on the right side of the robot.
+	 * @param front
+	 *            the color sensor in front of the robot.
+	 * @param colors
+	 *            all the colors on the course, to be used for color matching.
+	 * @param blendColors
+	 *            the colors that the road color might be blended with. Namely, white, yellow and blue.
+	 * @param roadColor
+	 *            the color of the road
+	 * @param lookupTable
+	 *            a lookup table made from colors, blendColors, and roadColor, or null to classify the readings exactly.
+	 */
+	public LineMonitor(ColorSensor left, ColorSensor right, ColorSensor front, ColorPalette colors, Set<String> blendColors, String roadColor,
+			ColorLookupTable lookupTable) {
+	
+		this(left, right, front, colors, blendColors, roadColor, lookupTable, false);
+	}
+
+	/**
+	 * Makes a new LineMontior. This does not start the daemon threads; {@link #startDaemon()} must be called to do that.
+	 *
+	 * In concurrent sampling mode, each sensor is read on its own thread, and the monitor thread waits until every sensor has a new reading before
+	 * checking for events. Because the sensors are read at the same time, the time between sets of readings is the time it takes to read the slowest
+	 * sensor, not all three.
+	 *
+	 * @param left
+	 *            the color sensor on the left side of the robot.
+	 * @param right
+	 *            the color sensor on the right side of the robot.
+	 * @param front
+	 *            the color sensor in front of the robot.
+	 * @param colors
+	 *            all the colors on the course, to be used for color matching.
+	 * @param blendColors
+	 *            the colors that the road color might be blended with. Namely, white, yellow and blue.
+	 * @param roadColor
+	 *            the color of the road
+	 * @param lookupTable
+	 *            a lookup table made from colors, blendColors, and roadColor, or null to classify the readings exactly.
+	 * @param concurrentSampling
+	 *            true to read each sensor on its own thread, false to read them one after another on a single thread.
+	 */
+	public LineMonitor(ColorSensor left, ColorSensor right, ColorSensor front, ColorPalette colors, Set<String> blendColors, String roadColor,
+			ColorLookupTable lookupTable, boolean concurrentSampling) {
+	
+		if (lookupTable != null && lookupTable.getPalette() != colors)
+			throw new IllegalArgumentException("The lookup table must be made from the same palette.");
+
 		// Set up the array of sensors
 		sensors = new ColorSensor[NUM_SENSORS];
 		sensors[LEFT] = left;
@@ -94,27 +339,60 @@ public class LineMonitor extends Observable {
 		sensors[FRONT] = front;
 
 		// Set up the arrays of data
-		readings = new Color[NUM_SENSORS];
-		colorMatches = new String[NUM_SENSORS];
-		colorBlends = new String[NUM_SENSORS];
+		readings = new float[NUM_SENSORS][3];
+		colorMatches = new int[NUM_SENSORS];
+		colorBlends = new int[NUM_SENSORS];
 		blendCompositions = new double[NUM_SENSORS];
+		scratch = new float[NUM_SENSORS][3];
+		rawScratch = new float[NUM_SENSORS][3];
+		sensorSampleTimes = new long[NUM_SENSORS];
+		sampleCounts = new long[NUM_SENSORS];
+		combinedCounts = new long[NUM_SENSORS];
+		sampleLock = new Object();
+		frameData = new AtomicLongArray(NUM_SENSORS * FRAME_FIELDS + 1);
+		frameVersion = 0;
+		samplingPolicy = SamplingPolicy.ALL;
+		long now = System.nanoTime();
+		burstEnd = now;
+		policyLock = new Object();
+		lastReads = new long[NUM_SENSORS];
+		readStartTimes = new long[NUM_SENSORS];
+		fresh = new boolean[NUM_SENSORS];
+		overLine = new boolean[NUM_SENSORS];
+		edgePending = new boolean[NUM_SENSORS];
+		edgeSince = new long[NUM_SENSORS];
+		edgeCounts = new long[NUM_SENSORS];
+		edgeWaiters = new ArrayList<>();
+		edgeLock = new Object();
+		// Start long enough ago that every sensor is due straight away
+		for (int x = 0; x < NUM_SENSORS; x++)
+			lastReads[x] = readStartTimes[x] = now - 3600000000000L;
 		sensorLocks = new Object[NUM_SENSORS];
 		for (int x = 0; x < sensorLocks.length; x++)
 			sensorLocks[x] = new Object();
 		this.colors = colors;
-		this.blendColors = blendColors;
-		this.roadColor = roadColor;
-		flags = new boolean[NUM_SENSORS];
-
-		// Flags stores the state of events. If the front sensor detects an intersection, then it should not keep sending detected messages until the
-		// robot leaves the intersection. With the flags, as soon as this class sends one intersection detected message, it will set flags[FRONT] to
-		// true, and will not send any more. Then, when the front sensor is not longer over an intersection, flags[FRONT] will be set to false. This
-		// will be the same for the other sensors, though it will be parking and not intersections.
-		for (int x = 0; x < flags.length; x++)
-			flags[x] = false;
+		this.blendColors = colors.indicesOf(blendColors);
+		this.roadColor = colors.indexOf(roadColor);
+		if (this.roadColor < 0)
+			throw new IllegalArgumentException("The road color " + roadColor + " is not in the palette.");
+		this.lookupTable = lookupTable;
+		readingTimes = new long[NUM_SENSORS];
+		readingGaps = new boolean[NUM_SENSORS];
+		// The detectors are made from the configuration on the first check, and again whenever it is replaced
+		detectors = new EventDetector[NUM_SENSORS];
 
 		// Set up and start the thread, which will, as isRunning is false, immediately go to sleep.
 		daemon = new UtilityDaemon(new SensorDaemon());
+		if (concurrentSampling) {
+			String[] names = new String[NUM_SENSORS];
+			names[LEFT] = "left";
+			names[RIGHT] = "right";
+			names[FRONT] = "front";
+			samplers = new UtilityDaemon[NUM_SENSORS];
+			for (int x = 0; x < samplers.length; x++)
+				samplers[x] = new UtilityDaemon(new SensorSampler(x), "SensorSampler " + names[x]);
+		} else
+			samplers = null;
 	}
 
 	/**
@@ -122,6 +400,10 @@ public class LineMonitor extends Observable {
 	 */
 	public void startDaemon() {
 	
+		// Start the samplers first, so the monitor has readings to combine
+		if (samplers != null)
+			for (UtilityDaemon sampler : samplers)
+				sampler.startDaemon();
 		daemon.startDaemon();
 	}
 
@@ -131,6 +413,9 @@ public class LineMonitor extends Observable {
 	public void pauseDeamon() {
 	
 		daemon.pauseDeamon();
+		if (samplers != null)
+			for (UtilityDaemon sampler : samplers)
+				sampler.pauseDeamon();
 	}
 
 	/**
@@ -139,6 +424,277 @@ public class LineMonitor extends Observable {
 	public void terminateDeamon() {
 	
 		daemon.terminateDeamon();
+		if (samplers != null)
+			for (UtilityDaemon sampler : samplers)
+				sampler.terminateDeamon();
+		// Nothing will count edges any more
+		synchronized (edgeLock) {
+			for (EdgeWaiter waiter : edgeWaiters)
+				waiter.fail(new IllegalStateException("The line monitor was terminated."));
+			edgeWaiters.clear();
+		}
+	}
+
+	/**
+	 * Sets the producer that intersection and parking lot events are published to. The events are published from the monitor thread.
+	 *
+	 * @param events
+	 *            the producer, or null to stop publishing events.
+	 */
+	public void setEventProducer(EventDispatcher<RobotEvent>.Producer events) {
+	
+		this.events = events;
+	}
+
+	/**
+	 * Starts or stops adjusting the black and white calibration of the sensors while running. Steady readings of the road color adjust the black,
+	 * and steady readings of the line color adjust the white. See {@link BalanceEstimator}. Starting again starts from the current calibration.
+	 *
+	 * @param lineColor
+	 *            the name of the color to take as white, or null to stop adjusting the calibration. If the palette does not have the color, only the
+	 *            black is adjusted.
+	 */
+	public void trackBalance(String lineColor) {
+
+		if (lineColor == null) {
+			estimators = null;
+			return;
+		}
+		BalanceEstimator[] estimators = new BalanceEstimator[NUM_SENSORS];
+		for (int x = 0; x < estimators.length; x++)
+			estimators[x] = new BalanceEstimator(sensors[x]);
+		balanceWhite = colors.indexOf(lineColor);
+		this.estimators = estimators;
+	}
+
+	/**
+	 * Sets the sampling policy, which says how often each sensor is read. Any burst in progress is ended. Sensors that are disabled keep their last
+	 * readings, and are not checked for events.
+	 *
+	 * @param policy
+	 *            the new policy.
+	 */
+	public void setSamplingPolicy(SamplingPolicy policy) {
+	
+		if (policy == null)
+			throw new IllegalArgumentException("The sampling policy cannot be null.");
+		synchronized (policyLock) {
+			samplingPolicy = policy;
+			burstEnd = System.nanoTime();
+			policyLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Gets the sampling policy.
+	 *
+	 * @return the sampling policy.
+	 */
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return samplingPolicy;
+	}
+
+	/**
+	 * Starts a burst, if the sampling policy has one, for example because the robot expects to reach an intersection soon. A burst also starts by
+	 * itself when the front sensor starts to see the red line.
+	 */
+	public void requestBurst() {
+	
+		startBurst(System.nanoTime());
+	}
+
+	/**
+	 * Returns true if a burst is in progress.
+	 *
+	 * @return true if the front sensor is being read at the burst rate.
+	 */
+	public boolean isBursting() {
+	
+		return burstEnd - System.nanoTime() > 0;
+	}
+
+	/**
+	 * Starts or extends a burst.
+	 *
+	 * @param now
+	 *            the current time, from {@link System#nanoTime()}.
+	 */
+	private void startBurst(long now) {
+	
+		SamplingPolicy policy = samplingPolicy;
+		if (!policy.hasBurst())
+			return;
+		boolean started = burstEnd - now <= 0;
+		burstEnd = now + policy.getBurstDuration();
+		// Wake the front sensor if it is waiting out a slow period
+		if (started)
+			synchronized (policyLock) {
+				policyLock.notifyAll();
+			}
+	}
+
+	/**
+	 * Works out how long it is until a sensor is due to be read under the current policy.
+	 *
+	 * @param x
+	 *            the ID of the sensor.
+	 * @param lastRead
+	 *            the time at which the sensor last started a read, from {@link System#nanoTime()}.
+	 * @param now
+	 *            the current time, from {@link System#nanoTime()}.
+	 * @return the time until the sensor is due in ns, 0 or less if it is due now, or {@link Long#MAX_VALUE} if it is disabled.
+	 */
+	private long untilDue(int x, long lastRead, long now) {
+	
+		long period = samplingPolicy.getPeriod(x, burstEnd - now > 0);
+		if (period == Long.MAX_VALUE)
+			return Long.MAX_VALUE;
+		return lastRead + period - now;
+	}
+
+	/**
+	 * Waits for a sensor to be due, or for the policy to change. Waits at most {@link #MAX_POLICY_WAIT}.
+	 *
+	 * @param policy
+	 *            the policy that the wait was worked out with. If the policy has already changed, this returns straight away.
+	 * @param nanos
+	 *            the time to wait, in ns.
+	 */
+	private void awaitPolicy(SamplingPolicy policy, long nanos) {
+	
+		nanos = Math.min(nanos, MAX_POLICY_WAIT);
+		synchronized (policyLock) {
+			if (samplingPolicy != policy)
+				return;
+			try {
+				policyLock.wait(nanos / 1000000, (int) (nanos % 1000000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of edges that a sensor has crossed since the monitor was made. An edge is counted when the sensor moves from the road onto a
+	 * line, or from a line back onto the road.
+	 *
+	 * @param ID
+	 *            the id of the sensor. Should be one of the following: {@link ION2016#LEFT}, {@link ION2016#RIGHT}, {@link ION2016#FRONT}.
+	 * @return the number of edges.
+	 */
+	public long getEdgeCount(int ID) {
+	
+		synchronized (edgeLock) {
+			return edgeCounts[ID];
+		}
+	}
+
+	/**
+	 * Makes a future that completes as soon as one of the specified sensors has crossed the specified number of edges, counting from now. The edges
+	 * are counted by the threads that read the sensors, at the sampling rate, so none are missed. The sensors must be enabled by the sampling
+	 * policy, or the future will not complete. Cancelling the future stops counting.
+	 *
+	 * @param numEdges
+	 *            the number of edges. Must be positive.
+	 * @param sensors
+	 *            the IDs of the sensors to count edges on. Should be {@link ION2016#LEFT}, {@link ION2016#RIGHT}, or {@link ION2016#FRONT}.
+	 * @return a future whose result is the index, in sensors, of the sensor that crossed the edges first.
+	 */
+	public Future<Integer> edgeCrossings(int numEdges, int... sensors) {
+	
+		if (numEdges <= 0)
+			throw new IllegalArgumentException("The number of edges must be positive: " + numEdges);
+		if (sensors.length == 0)
+			throw new IllegalArgumentException("There must be at least one sensor.");
+		if (!daemon.isActive())
+			throw new IllegalStateException("This daemon has been terminated.");
+		EdgeWaiter waiter = new EdgeWaiter(sensors.clone());
+		synchronized (edgeLock) {
+			for (int x = 0; x < sensors.length; x++)
+				waiter.targets[x] = edgeCounts[sensors[x]] + numEdges;
+			edgeWaiters.add(waiter);
+		}
+		return waiter;
+	}
+
+	/**
+	 * Waits until one of the specified sensors has crossed the specified number of edges, counting from now. See
+	 * {@link #edgeCrossings(int, int...)}.
+	 *
+	 * @param numEdges
+	 *            the number of edges. Must be positive.
+	 * @param sensors
+	 *            the IDs of the sensors to count edges on. Should be {@link ION2016#LEFT}, {@link ION2016#RIGHT}, or {@link ION2016#FRONT}.
+	 * @return the index, in sensors, of the sensor that crossed the edges first.
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting. The edges are no longer counted.
+	 */
+	public int awaitEdgeCrossings(int numEdges, int... sensors) throws InterruptedException {
+	
+		Future<Integer> crossings = edgeCrossings(numEdges, sensors);
+		try {
+			return crossings.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Counting edges failed.", e.getCause());
+		} finally {
+			// Stop counting if the wait was interrupted
+			crossings.cancel(false);
+		}
+	}
+
+	/**
+	 * Updates the edge state of a sensor with a new reading, and counts an edge if the sensor has moved between the road and a line. Called by the
+	 * thread that reads the sensor.
+	 *
+	 * The line signal is 0 when the reading matches the road color, 1 when it matches any other color, and the blend composition when it does not
+	 * match any color, which happens at the edge of a line. A sensor on the road moves onto a line when the signal goes above {@link #EDGE_ENTER},
+	 * and back when the signal goes below {@link #EDGE_EXIT}, and only once the signal has stayed there for {@link #EDGE_DWELL}.
+	 *
+	 * @param x
+	 *            the ID of the sensor.
+	 * @param match
+	 *            the palette index of the color match, or -1 if there is no good match.
+	 * @param composition
+	 *            the blend composition.
+	 * @param time
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 * @param stale
+	 *            true if the sensor has not been read for a while, so the state should be reset instead of counting an edge.
+	 */
+	private void updateEdge(int x, int match, double composition, long time, boolean stale) {
+	
+		double signal = match == roadColor ? 0 : match >= 0 ? 1 : composition;
+		if (stale) {
+			overLine[x] = signal >= .5;
+			edgePending[x] = false;
+			return;
+		}
+		boolean past = overLine[x] ? signal < EDGE_EXIT : signal > EDGE_ENTER;
+		if (!past) {
+			edgePending[x] = false;
+			return;
+		}
+		if (!edgePending[x]) {
+			edgePending[x] = true;
+			edgeSince[x] = time;
+		}
+		if (time - edgeSince[x] < EDGE_DWELL)
+			return;
+		overLine[x] = !overLine[x];
+		edgePending[x] = false;
+		synchronized (edgeLock) {
+			edgeCounts[x]++;
+			// Go backwards, so completed waiters can be removed as we go
+			for (int w = edgeWaiters.size() - 1; w >= 0; w--) {
+				EdgeWaiter waiter = edgeWaiters.get(w);
+				int winner = waiter.check(x);
+				if (winner >= 0) {
+					edgeWaiters.remove(w);
+					waiter.complete(winner);
+				}
+			}
+		}
 	}
 
 	/**
@@ -154,7 +710,8 @@ public class LineMonitor extends Observable {
 			throw new IllegalStateException("This daemon is not running (terminated or paused).");
 
 		synchronized (sensorLocks[ID]) {
-			return readings[ID];
+			float[] reading = readings[ID];
+			return new Color(reading[ColorSensor.RED], reading[ColorSensor.GREEN], reading[ColorSensor.BLUE]);
 		}
 	}
 
@@ -171,7 +728,7 @@ public class LineMonitor extends Observable {
 			throw new IllegalStateException("This daemon is not running (terminated or paused).");
 
 		synchronized (sensorLocks[ID]) {
-			return colorMatches[ID];
+			return colorMatches[ID] < 0 ? "" : colors.getName(colorMatches[ID]);
 		}
 	}
 
@@ -189,7 +746,7 @@ public class LineMonitor extends Observable {
 			throw new IllegalStateException("This daemon is not running (terminated or paused).");
 
 		synchronized (sensorLocks[ID]) {
-			return colorBlends[ID];
+			return colors.getName(colorBlends[ID]);
 		}
 	}
 
@@ -214,7 +771,98 @@ public class LineMonitor extends Observable {
 	}
 
 	/**
-	 * Gets the blend data by returning an object array with the string color and then the number.
+	 * Gets the time at which the latest sensor readings were taken.
+	 *
+	 * @return the time, from {@link System#nanoTime()}.
+	 */
+	public long getSampleTime() {
+	
+		return sampleTime;
+	}
+
+	/**
+	 * Fills a frame with the latest readings from all the sensors. Every value in the frame is from the same cycle of the monitor. This does not take
+	 * any locks or allocate anything; if a new frame is being published while this runs, this simply tries again.
+	 *
+	 * @param frame
+	 *            the frame to fill. Frames should not be shared between threads.
+	 * @return frame, for convenience.
+	 */
+	public SensorFrame readFrame(SensorFrame frame) {
+	
+		if (!daemon.isRunning())
+			throw new IllegalStateException("This daemon is not running (terminated or paused).");
+
+		return copyFrame(frame);
+	}
+
+	/**
+	 * Runs one cycle of the monitor on the calling thread: reads every sensor once, one after another, publishes the frame, and checks for events.
+	 * This is how recordings are replayed deterministically, as every cycle consumes exactly one reading from each sensor no matter how fast the
+	 * cycles are run. That is only true with {@link SamplingPolicy#ALL}; with any other policy, which sensors are read depends on the time. It is
+	 * also how the sampling path is measured. It does not need the daemon threads, and must not be called while they are running.
+	 *
+	 * @param frame
+	 *            the frame to fill with the result of the cycle.
+	 * @return frame, for convenience.
+	 */
+	public SensorFrame runCycle(SensorFrame frame) {
+
+		if (daemon.isRunning())
+			throw new IllegalStateException("Cycles cannot be run by hand while the daemon is running.");
+
+		readSensorData();
+		return copyFrame(frame);
+	}
+
+	/**
+	 * Copies the latest frame with the seqlock. See {@link #readFrame(SensorFrame)}.
+	 *
+	 * @param frame
+	 *            the frame to fill.
+	 * @return frame, for convenience.
+	 */
+	private SensorFrame copyFrame(SensorFrame frame) {
+
+		while (true) {
+			long version = frameVersion;
+			// Odd means the monitor is in the middle of writing a frame
+			if ((version & 1) != 0) {
+				Thread.yield();
+				continue;
+			}
+			for (int x = 0; x < SensorFrame.NUM_SENSORS; x++) {
+				int base = x * FRAME_FIELDS;
+				frame.red[x] = Float.intBitsToFloat((int) frameData.get(base));
+				frame.green[x] = Float.intBitsToFloat((int) frameData.get(base + 1));
+				frame.blue[x] = Float.intBitsToFloat((int) frameData.get(base + 2));
+				frame.matches[x] = (int) frameData.get(base + 3);
+				frame.blends[x] = (int) frameData.get(base + 4);
+				frame.compositions[x] = Double.longBitsToDouble(frameData.get(base + 5));
+			}
+			frame.timestamp = frameData.get(NUM_SENSORS * FRAME_FIELDS);
+			// If the version has not changed, nothing was written while the frame was being read
+			if (frameVersion == version) {
+				frame.sequence = version / 2;
+				frame.palette = colors;
+				return frame;
+			}
+		}
+	}
+
+	/**
+	 * Gets the sequence number of the latest frame.
+	 *
+	 * @return the sequence number of the frame that {@link #readFrame(SensorFrame)} would return.
+	 */
+	public long getFrameSequence() {
+	
+		return frameVersion / 2;
+	}
+
+	/**
+	 * Gets the blend data by returning an object array with the string color and then the number. This allocates, boxes, and takes a lock, so
+	 * {@link #readFrame(SensorFrame)} should be used in loops instead.
 	 *
 	 * @param ID
 	 *            the ID of the sensor to get blend data for.
@@ -226,32 +874,217 @@ public class LineMonitor extends Observable {
 			throw new IllegalStateException("This daemon is not running (terminated or paused).");
 
 		synchronized (sensorLocks[ID]) {
-			return new Object[] { colorBlends[ID], blendCompositions[ID] };
+			return new Object[] { colors.getName(colorBlends[ID]), blendCompositions[ID] };
 		}
 	}
 
 	/**
-	 * Reads and stores all the sensor data. This method also notifies any observers.
+	 * Reads and stores all the sensor data. This method also publishes any events. Apart from publishing events, this does not allocate
+	 * anything, as it runs continuously.
 	 */
 	private void readSensorData() {
 
-		// Read the data from all the sensors
-		for (int x = 0; x < sensorLocks.length; x++)
+		// Read the sensors that are due
+		SamplingPolicy policy = samplingPolicy;
+		long wait = Long.MAX_VALUE;
+		boolean any = false;
+		for (int x = 0; x < sensorLocks.length; x++) {
+			// Reading the earlier sensors takes time, so check the time for each one
+			long until = untilDue(x, lastReads[x], System.nanoTime());
+			fresh[x] = until <= 0;
+			if (fresh[x]) {
+				sampleSensor(x);
+				any = true;
+			} else
+				wait = Math.min(wait, until);
+		}
+		if (!any) {
+			awaitPolicy(policy, wait);
+			return;
+		}
+		sampleTime = System.nanoTime();
+		publishFrame(sampleTime);
+
+		checkForEvents();
+	}
+
+	/**
+	 * Waits until every sensor has a new reading, and then checks for events. This is what the monitor thread does in concurrent sampling mode. If
+	 * the readings do not arrive within {@link #COMBINE_TIMEOUT} ms, for example because the samplers have been paused, this returns without
+	 * checking for events.
+	 */
+	private void combineSensorData() {
+
+		long oldest = Long.MAX_VALUE;
+		synchronized (sampleLock) {
+			long deadline = System.currentTimeMillis() + COMBINE_TIMEOUT;
+			while (!readyToCombine()) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0)
+					return;
+				try {
+					sampleLock.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			for (int x = 0; x < sampleCounts.length; x++) {
+				fresh[x] = sampleCounts[x] != combinedCounts[x];
+				combinedCounts[x] = sampleCounts[x];
+				if (fresh[x])
+					oldest = Math.min(oldest, sensorSampleTimes[x]);
+			}
+		}
+		sampleTime = oldest;
+		publishFrame(oldest);
+
+		checkForEvents();
+	}
+
+	/**
+	 * Returns true if the readings are ready to be combined: at least one sensor has a new reading, and every sensor that is due under the sampling
+	 * policy has one. Sensors that are disabled, or read more slowly, are not waited for. Must be called with the lock on {@link #sampleLock} held.
+	 *
+	 * @return true if the readings are ready to be combined.
+	 */
+	private boolean readyToCombine() {
+
+		long now = System.nanoTime();
+		boolean any = false;
+		for (int x = 0; x < sampleCounts.length; x++)
+			if (sampleCounts[x] != combinedCounts[x])
+				any = true;
+			else if (untilDue(x, readStartTimes[x], now) <= 0)
+				return false;
+		return any;
+	}
+
+	/**
+	 * Publishes the latest readings as a new frame. The seqlock only works with one writer at a time. The monitor thread is normally the only
+	 * writer, but {@link UtilityDaemon#startDaemon()} runs the task on the calling thread, so writers hold the lock on {@link #frameData}. Readers
+	 * never take it.
+	 *
+	 * @param timestamp
+	 *            the time at which the readings were taken, from {@link System#nanoTime()}.
+	 */
+	private void publishFrame(long timestamp) {
+
+		synchronized (frameData) {
+			writeFrame(timestamp);
+		}
+	}
+
+	/**
+	 * Writes a frame. Must be called with the lock on {@link #frameData} held.
+	 *
+	 * @param timestamp
+	 *            the time at which the readings were taken, from {@link System#nanoTime()}.
+	 */
+	private void writeFrame(long timestamp) {
+
+		long version = frameVersion;
+		frameVersion = version + 1;
+		for (int x = 0; x < NUM_SENSORS; x++) {
+			int base = x * FRAME_FIELDS;
 			synchronized (sensorLocks[x]) {
-				readings[x] = sensors[x].getColor();
-				colorMatches[x] = colors.getBestMatch(readings[x]);
-				colorBlends[x] = colors.getBestBlend(blendColors, roadColor, readings[x]);
-				blendCompositions[x] = readings[x].determineComposition(colors.getColor(colorBlends[x]), colors.getColor(roadColor));
+				float[] reading = readings[x];
+				frameData.set(base, Float.floatToRawIntBits(reading[ColorSensor.RED]));
+				frameData.set(base + 1, Float.floatToRawIntBits(reading[ColorSensor.GREEN]));
+				frameData.set(base + 2, Float.floatToRawIntBits(reading[ColorSensor.BLUE]));
+				frameData.set(base + 3, colorMatches[x]);
+				frameData.set(base + 4, colorBlends[x]);
+				frameData.set(base + 5, Double.doubleToRawLongBits(blendCompositions[x]));
 			}
+		}
+		frameData.set(NUM_SENSORS * FRAME_FIELDS, timestamp);
+		frameVersion = version + 2;
+	}
 
-		//ION2016.report("RED: " + readings[ION2016.FRONT].getRed());
-		if (readings[ION2016.FRONT].getRed() > .4) { //old value is .15
-			setChanged();
-			notifyObservers(RobotMessage.INTERSECTION_DETECTED);
-			flags[FRONT] = true;
+	/**
+	 * Reads one sensor, classifies the reading, and stores the results. The sensor is read and the reading classified before its lock is taken, so
+	 * that readers are not held up by the sensor I/O.
+	 *
+	 * @param x
+	 *            the ID of the sensor.
+	 */
+	private void sampleSensor(int x) {
 
-		} else if (readings[ION2016.FRONT].getRed() <= .4)
-			flags[FRONT] = false;
+		float[] raw = scratch[x];
+		float[] unscaled = rawScratch[x];
+		long start = System.nanoTime();
+		boolean stale = start - lastReads[x] > EDGE_STALE;
+		lastReads[x] = start;
+		// Read and scale separately, so the unscaled reading is there for the balance estimator
+		sensors[x].readRaw(unscaled);
+		sensors[x].scale(unscaled, raw);
+		long time = System.nanoTime();
+		float red = raw[ColorSensor.RED];
+		float green = raw[ColorSensor.GREEN];
+		float blue = raw[ColorSensor.BLUE];
+		int match;
+		int blend;
+		double composition;
+		if (lookupTable != null) {
+			int bin = lookupTable.getBin(red, green, blue);
+			match = lookupTable.getMatch(bin);
+			blend = lookupTable.getBlend(bin);
+			composition = lookupTable.getComposition(bin, red, green, blue);
+		} else {
+			match = colors.getBestMatchIndex(red, green, blue);
+			blend = colors.getBestBlendIndex(blendColors, roadColor, red, green, blue);
+			composition = Color.determineComposition(red, green, blue, colors.getColor(blend), colors.getColor(roadColor));
+		}
+		updateEdge(x, match, composition, time, stale);
+		BalanceEstimator[] estimators = this.estimators;
+		if (estimators != null) {
+			int white = balanceWhite;
+			estimators[x].update(unscaled, match == roadColor ? BalanceEstimator.BLACK : white >= 0 && match == white ? BalanceEstimator.WHITE
+					: BalanceEstimator.NEITHER);
+		}
+		synchronized (sensorLocks[x]) {
+			float[] reading = readings[x];
+			reading[ColorSensor.RED] = red;
+			reading[ColorSensor.GREEN] = green;
+			reading[ColorSensor.BLUE] = blue;
+			colorMatches[x] = match;
+			colorBlends[x] = blend;
+			blendCompositions[x] = composition;
+			readingTimes[x] = time;
+			readingGaps[x] |= stale;
+		}
+		synchronized (sampleLock) {
+			sensorSampleTimes[x] = time;
+			readStartTimes[x] = start;
+			sampleCounts[x]++;
+			sampleLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Checks the latest readings for intersections and parking lots, and publishes any events.
+	 */
+	private void checkForEvents() {
+
+		configureDetectors();
+		//ION2016.report("RED: " + readings[ION2016.FRONT].getRed());
+		// Only check the sensors that have been read since the last check; the others still hold readings that have already been checked
+		if (fresh[FRONT]) {
+			// In concurrent sampling mode the samplers may be writing, so take the lock
+			float frontRed;
+			long time;
+			boolean gap;
+			synchronized (sensorLocks[FRONT]) {
+				frontRed = readings[FRONT][ColorSensor.RED];
+				time = readingTimes[FRONT];
+				gap = readingGaps[FRONT];
+				readingGaps[FRONT] = false;
+			}
+			if (frontRed > BURST_THRESHOLD)
+				startBurst(System.nanoTime());
+			if (detect(FRONT, frontRed > INTERSECTION_THRESHOLD, time, gap)) //old value is .15
+				publish(RobotMessage.INTERSECTION_DETECTED, detectors[FRONT]);
+		}
 
 		// TODO Try this!!
 		// Color testColor = readings[ION.FRONT];
@@ -263,54 +1096,102 @@ public class LineMonitor extends Observable {
 		//
 		// System.out.println(colorBlends[ION.FRONT]);
 
-		// Intersection detection
-		// // If the flag is not set and the front color is red, send an intersection detected message and set the flag
-		// if (!flags[FRONT] && colorMatches[FRONT].equals(ION.colorFunctions.get("intersectionColor"))) {
-		// // TODO Fix stop sign identification
-		// setChanged();
-		// notifyObservers(RobotMessage.INTERSECTION_DETECTED);
-		// flags[FRONT] = true;
-		// }
-		// // If the color is not red, reset the flag
-		// if (colorMatches[FRONT].equals(ION.colorFunctions.get("intersectionColor")))
-		// flags[FRONT] = false;
-
 		// Parking lot detection
-		if (parkingCheck(LEFT)) {
-			setChanged();
-			notifyObservers(RobotMessage.PARKING_LOT_LEFT_DETECTED);
-		}
-		if (parkingCheck(RIGHT)) {
-			setChanged();
-			notifyObservers(RobotMessage.PARKING_LOT_RIGHT_DETECTED);
+		if (fresh[LEFT])
+			parkingCheck(LEFT, RobotMessage.PARKING_LOT_LEFT_DETECTED);
+		if (fresh[RIGHT])
+			parkingCheck(RIGHT, RobotMessage.PARKING_LOT_RIGHT_DETECTED);
+	}
+
+	/**
+	 * Makes the event detectors from the configuration, if they have not been made yet or the configuration has been replaced. Without a
+	 * configuration, the detectors use {@link RobotConfig.Detection#DEFAULT}, and parking lots are not detected.
+	 */
+	private void configureDetectors() {
+
+		RobotConfig config = ION2016.getConfig();
+		if (detectorsReady && config == detectorConfig)
+			return;
+		RobotConfig.Detection intersection = config == null ? RobotConfig.Detection.DEFAULT : config.intersectionDetection;
+		RobotConfig.Detection parking = config == null ? RobotConfig.Detection.DEFAULT : config.parkingDetection;
+		detectors[FRONT] = new EventDetector("intersection", intersection);
+		detectors[LEFT] = new EventDetector("left parking lot", parking);
+		detectors[RIGHT] = new EventDetector("right parking lot", parking);
+		parkingIndex = config == null ? -1 : colors.indexOf(config.parkingColor);
+		parkingBlend = config == null ? 1 : config.minimumBlend;
+		detectorConfig = config;
+		detectorsReady = true;
+	}
+
+	/**
+	 * Feeds a reading to the detector of a sensor.
+	 *
+	 * @param x
+	 *            the ID of the sensor.
+	 * @param present
+	 *            true if the reading shows the event.
+	 * @param time
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 * @param gap
+	 *            true if the sensor missed readings since the last check, so the earlier readings should be forgotten.
+	 * @return true if the reading confirms a new event.
+	 */
+	private boolean detect(int x, boolean present, long time, boolean gap) {
+
+		if (gap)
+			detectors[x].clearReadings();
+		return detectors[x].update(present, time);
+	}
+
+	/**
+	 * Publishes an event, if anyone is listening.
+	 *
+	 * @param message
+	 *            the message.
+	 * @param detector
+	 *            the detector that detected the event. The event keeps the time of the reading that confirmed it, and its parameter is the
+	 *            time from the start of the event to its detection, in s.
+	 */
+	private void publish(RobotMessage message, EventDetector detector) {
+
+		EventDispatcher<RobotEvent>.Producer producer = events;
+		if (producer == null)
+			return;
+		// A producer must only be used by one thread at a time. The monitor thread is normally the only one, but startDaemon() runs a cycle on the
+		// calling thread, so guard against the two overlapping.
+		synchronized (producer) {
+			producer.publish(new RobotEvent(message, detector.getLastLatency() / 1e9, detector.getLastDetection()));
 		}
 	}
 
 	/**
-	 * Checks to see if a parking lot detected message needs to be sent out.
+	 * Checks the latest reading of a side sensor for a parking lot, and publishes a parking lot detected message if it confirms one.
 	 *
 	 * @param side
 	 *            the side on which to check
-	 * @return true if a parking lot detected message should be sent out, false otherwise
+	 * @param message
+	 *            the message to publish if a parking lot is detected.
 	 */
-	private boolean parkingCheck(int side) {
+	private void parkingCheck(int side, RobotMessage message) {
 	
-		String parkingColor = ION2016.colorFunctions.get("parkingColor");
-		// If the flag is not set and the left color or color blend indicates blue, send an parking lot detected message and set the flag
-		if (!flags[side])
-			// A parking lot will be detected if either the color match is blue, or the blend is blue, with a composition above a certain
-			// threshold (when mostly black blends are detected, the certainty of the other color is low).
-			if (colorMatches[side].equals(parkingColor) || colorBlends[side].equals(parkingColor)
-					&& blendCompositions[side] > ION2016.colorTolerances.get("minimumBlend")) {
-				flags[side] = true;
-				return true;
-			}
-		// If the color is not red, reset the flag
-		if (!(colorMatches[side].equals(parkingColor) || colorBlends[side].equals(parkingColor)
-				&& blendCompositions[side] > ION2016.colorTolerances.get("minimumBlend")))
-			flags[side] = false;
-
-		return false;
+		int match;
+		int blend;
+		double composition;
+		long time;
+		boolean gap;
+		synchronized (sensorLocks[side]) {
+			match = colorMatches[side];
+			blend = colorBlends[side];
+			composition = blendCompositions[side];
+			time = readingTimes[side];
+			gap = readingGaps[side];
+			readingGaps[side] = false;
+		}
+		// A parking lot is seen if either the color match is blue, or the blend is blue, with a composition above a certain threshold (when mostly
+		// black blends are detected, the certainty of the other color is low). A color match of -1 means no match, not the parking color.
+		boolean present = parkingIndex >= 0 && (match == parkingIndex || blend == parkingIndex && composition > parkingBlend);
+		if (detect(side, present, time, gap))
+			publish(message, detectors[side]);
 	}
 
 	/**
@@ -327,7 +1208,100 @@ public class LineMonitor extends Observable {
 		@Override
 		public void run() {
 		
-			readSensorData();
+			if (samplers == null)
+				readSensorData();
+			else
+				combineSensorData();
+		}
+	}
+
+	/**
+	 * The daemon class that reads one sensor in concurrent sampling mode.
+	 */
+	private class SensorSampler implements Runnable {
+
+		/**
+		 * The ID of the sensor.
+		 */
+		private final int ID;
+
+		/**
+		 * Makes a new sampler for the specified sensor.
+		 *
+		 * @param ID
+		 *            the ID of the sensor.
+		 */
+		public SensorSampler(int ID) {
+
+			this.ID = ID;
+		}
+
+		/**
+		 * Reads the sensor once, if it is due under the sampling policy. Otherwise, waits until it is due.
+		 */
+		@Override
+		public void run() {
+
+			SamplingPolicy policy = samplingPolicy;
+			long until = untilDue(ID, lastReads[ID], System.nanoTime());
+			if (until > 0)
+				awaitPolicy(policy, until);
+			else
+				sampleSensor(ID);
+		}
+	}
+
+	/**
+	 * A future that waits for edges on a set of sensors.
+	 */
+	private class EdgeWaiter extends CompletionFuture<Integer> {
+
+		/**
+		 * The IDs of the sensors.
+		 */
+		private final int[] sensors;
+		/**
+		 * The edge count each sensor must reach, indexed like {@link #sensors}. Guarded by {@link LineMonitor#edgeLock}.
+		 */
+		private final long[] targets;
+
+		/**
+		 * Makes a new waiter. The targets must be filled in before it is added to {@link LineMonitor#edgeWaiters}.
+		 *
+		 * @param sensors
+		 *            the IDs of the sensors.
+		 */
+		public EdgeWaiter(int[] sensors) {
+
+			this.sensors = sensors;
+			targets = new long[sensors.length];
+		}
+
+		/**
+		 * Checks whether an edge on a sensor completes this waiter. Must be called with the lock on {@link LineMonitor#edgeLock} held.
+		 *
+		 * @param sensor
+		 *            the ID of the sensor that crossed an edge.
+		 * @return the index of the sensor in {@link #sensors} if it has reached its target, -1 otherwise.
+		 */
+		public int check(int sensor) {
+
+			for (int x = 0; x < sensors.length; x++)
+				if (sensors[x] == sensor && edgeCounts[sensor] >= targets[x])
+					return x;
+			return -1;
+		}
+
+		/**
+		 * Cancels the waiter and stops counting edges for it.
+		 */
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+
+			synchronized (edgeLock) {
+				edgeWaiters.remove(this);
+			}
+			return super.cancel(mayInterruptIfRunning);
 		}
 	}
-}
\ No newline at end of file
+}
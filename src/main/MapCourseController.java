@@ -23,6 +23,7 @@ public class MapCourseController implements CourseController {
 	private RobotAction nextAction = new PulloutAction(ION2016.LEFT, seq);
 
 	private final ShortestPathCalculator robotPath;
+	private final SweepPlanner sweepPlanner;
 	private final Path thePath;
 	private final String[] nodeOrder;
 	private int currentNode = 0;
@@ -61,6 +62,7 @@ public class MapCourseController implements CourseController {
 
 		robotPath = new ShortestPathCalculator(baseName, endNode, requiredLots, MAP_NAME);
 		thePath = robotPath.cheapestPath;
+		sweepPlanner = new SweepPlanner(robotPath.getMap(), ION2016.getConfig().sonarMaxAngle);
 		
 		ArrayList<String> pathList = new ArrayList<String>();
 		
@@ -100,7 +102,7 @@ public class MapCourseController implements CourseController {
 			
 			int angle = robotPath.calculateTurnAngle(nodeA, nodeB, nodeC);
 			
-			nextAction = new IntersectionAction(angle, seq);
+			nextAction = new IntersectionAction(angle, sweepPlanner.plan(nodeA, nodeB, nodeC), seq);
 			
 			currentNode++;
 			
@@ -181,6 +183,8 @@ public class MapCourseController implements CourseController {
 		lots.add(5);
 		lots.add(6);
 		int startingBase = 2;
+		ION2016.initializeMaps();
+		ION2016.compileConfig();
 		
 		MapCourseController test = new MapCourseController(lots, startingBase);
 		
@@ -0,0 +1,479 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * A small map of what is around the robot, built from sonar readings. The map is a square grid of cells centered near the robot, and each cell
+ * holds the log-odds that something is in it: 0 means nothing is known, positive means occupied, and negative means free. Each reading marks the
+ * cells along the sonar's beam as more likely free, and the cells at the distance it read as more likely occupied.
+ *
+ * The grid is fixed to the ground, not to the robot, so that what was seen stays where it was as the robot moves. The robot's pose in the grid
+ * comes from the {@link OdometryEstimator}, with {@link #updatePose(OdometryEstimator.Pose)}, so the grid and the rest of the robot agree on
+ * where it is. When the robot gets too far from the middle, the grid is shifted by whole cells to put it back, and what falls off the edge is
+ * forgotten. The last poses are kept, so that a reading is placed where the
+ * robot was when the reading was taken, even if it is added later, as the samples of a {@link SonarScan} are.
+ *
+ * The evidence fades with time, since cars move: that a cell is occupied with a time constant of {@link #DECAY_TIME}, and that it is free within
+ * {@link #CLEAR_TIME}, so a region is not taken as clear for longer than a clear sweep is trusted. {@link #getEvidence(double, double, double)} says
+ * whether a region is known to be clear, known to be blocked, or not known, so a decision can use what the sonar has already seen instead of
+ * sweeping again.
+ *
+ * Angles are in degrees from straight ahead of the robot, positive right and negative left, like the angles of {@link Sonar}. All the methods are
+ * synchronized, so the grid can be updated from the odometry and sonar threads and read from the controller.
+ */
+public class OccupancyGrid {
+
+	/**
+	 * The result of {@link OccupancyGrid#getEvidence(double, double, double)}.
+	 */
+	public enum Evidence {
+		/**
+		 * Every cell in the region has recently been seen to be free.
+		 */
+		CLEAR,
+		/**
+		 * Some cell in the region has recently been seen to be occupied.
+		 */
+		BLOCKED,
+		/**
+		 * Neither; the region has to be swept.
+		 */
+		UNKNOWN
+	}
+
+	/**
+	 * The default side of a cell, in m.
+	 */
+	public static final double DEFAULT_CELL_SIZE = .025;
+	/**
+	 * The default number of cells along each side of the grid.
+	 */
+	public static final int DEFAULT_CELLS = 64;
+	/**
+	 * The log-odds added to a cell where the sonar saw something.
+	 */
+	public static final float OCCUPIED_UPDATE = .85f;
+	/**
+	 * The log-odds added to a cell that the sonar saw through.
+	 */
+	public static final float FREE_UPDATE = -.4f;
+	/**
+	 * The largest magnitude of the log-odds of a cell, so a cell that has been seen many times can still change quickly.
+	 */
+	public static final float LIMIT = 3.5f;
+	/**
+	 * The log-odds above which a cell counts as occupied, a probability of about 73%.
+	 */
+	public static final float OCCUPIED_EVIDENCE = 1;
+	/**
+	 * The log-odds below which a cell counts as free, a probability of about 33%, which takes two free readings.
+	 */
+	public static final float FREE_EVIDENCE = -.7f;
+	/**
+	 * Half the width of the ultrasonic sensor's beam, in degrees.
+	 */
+	public static final double BEAM_HALF_WIDTH = 10;
+	/**
+	 * The time constant of the fading of the evidence that a cell is occupied, in s.
+	 */
+	public static final double DECAY_TIME = 5;
+	/**
+	 * The longest time, in s, that a cell stays free after it was last seen, the same as {@link Sonar#CLEAR_HOLD}. Since a car can drive into a
+	 * region that was clear, the evidence that a cell is free fades much faster than the evidence that it is occupied.
+	 */
+	public static final double CLEAR_TIME = Sonar.CLEAR_HOLD / 1e3;
+	/**
+	 * The number of poses kept for placing late readings.
+	 */
+	private static final int POSE_HISTORY = 64;
+	/**
+	 * The shortest time between two fadings of the evidence, in ns.
+	 */
+	private static final long DECAY_INTERVAL = 100000000;
+	/**
+	 * The time constant of the fading of the evidence that a cell is free, in s, such that a cell at {@link #LIMIT} is no longer free after
+	 * {@link #CLEAR_TIME}, even though the evidence only fades every {@link #DECAY_INTERVAL}.
+	 */
+	private static final double FREE_DECAY_TIME = (CLEAR_TIME - DECAY_INTERVAL / 1e9) / Math.log(LIMIT / -FREE_EVIDENCE);
+
+	/**
+	 * The side of a cell, in m.
+	 */
+	private final double cellSize;
+	/**
+	 * The number of cells along each side of the grid.
+	 */
+	private final int cells;
+	/**
+	 * The log-odds of each cell, row by row: the cell at column i and row j is at index j * cells + i.
+	 */
+	private float[] logOdds;
+	/**
+	 * The grid that {@link #logOdds} is copied into when it is shifted, so shifting does not allocate.
+	 */
+	private float[] scratch;
+	/**
+	 * The reading that last updated each cell, so a reading updates a cell only once, however many of its rays cross it.
+	 */
+	private final int[] stamps;
+	/**
+	 * The number of readings added.
+	 */
+	private int reading;
+	/**
+	 * The ground position of the corner of column 0 and row 0, in cells.
+	 */
+	private int originX, originY;
+	/**
+	 * The times of the last poses, from {@link System#nanoTime()}, oldest at {@link #nextPose} once full.
+	 */
+	private final long[] poseTimes;
+	/**
+	 * The x, y, and heading of the last poses, in m and radians.
+	 */
+	private final double[] poseX, poseY, poseHeading;
+	/**
+	 * The slot for the next pose.
+	 */
+	private int nextPose;
+	/**
+	 * The number of poses kept.
+	 */
+	private int poses;
+	/**
+	 * The robot's position on the ground, in m, and its heading, in radians anticlockwise from the ground x axis, from the last pose.
+	 */
+	private double x, y, heading;
+	/**
+	 * The time the evidence last faded, from {@link System#nanoTime()}.
+	 */
+	private long lastDecay;
+
+	/**
+	 * Makes a new grid with {@link #DEFAULT_CELL_SIZE} and {@link #DEFAULT_CELLS}.
+	 */
+	public OccupancyGrid() {
+
+		this(DEFAULT_CELL_SIZE, DEFAULT_CELLS);
+	}
+
+	/**
+	 * Makes a new grid, with the robot in the middle, at the origin and facing along the x axis, as an {@link OdometryEstimator} starts.
+	 *
+	 * @param cellSize
+	 *            the side of a cell, in m.
+	 * @param cells
+	 *            the number of cells along each side of the grid.
+	 */
+	public OccupancyGrid(double cellSize, int cells) {
+
+		if (!(cellSize > 0))
+			throw new IllegalArgumentException("The cell size must be positive: " + cellSize);
+		if (cells < 4)
+			throw new IllegalArgumentException("The grid must be at least 4 cells across: " + cells);
+		this.cellSize = cellSize;
+		this.cells = cells;
+		logOdds = new float[cells * cells];
+		scratch = new float[cells * cells];
+		stamps = new int[cells * cells];
+		poseTimes = new long[POSE_HISTORY];
+		poseX = new double[POSE_HISTORY];
+		poseY = new double[POSE_HISTORY];
+		poseHeading = new double[POSE_HISTORY];
+		x = 0;
+		y = 0;
+		heading = 0;
+		clear();
+	}
+
+	/**
+	 * Forgets everything, and moves the grid so the robot is in the middle. This must be called after the {@link OdometryEstimator} is reset, since
+	 * what was seen before is in the old frame.
+	 */
+	public synchronized void clear() {
+
+		Arrays.fill(logOdds, 0);
+		Arrays.fill(stamps, 0);
+		reading = 0;
+		originX = (int) Math.floor(x / cellSize) - cells / 2;
+		originY = (int) Math.floor(y / cellSize) - cells / 2;
+		nextPose = 0;
+		poses = 0;
+		lastDecay = 0;
+	}
+
+	/**
+	 * Moves the robot to its latest pose, fades the evidence, and shifts the grid if the robot has got too far from the middle.
+	 *
+	 * @param pose
+	 *            the pose, from {@link OdometryEstimator#update(double, double, long)}.
+	 */
+	public synchronized void updatePose(OdometryEstimator.Pose pose) {
+
+		x = pose.x;
+		y = pose.y;
+		heading = Math.toRadians(pose.heading);
+		long time = pose.time;
+		recordPose(time);
+		if (poses == 1) {
+			lastDecay = time;
+			return;
+		}
+
+		if (time - lastDecay >= DECAY_INTERVAL) {
+			double elapsed = (time - lastDecay) / 1e9;
+			float factor = (float) Math.exp(-elapsed / DECAY_TIME);
+			float freeFactor = (float) Math.exp(-elapsed / FREE_DECAY_TIME);
+			for (int i = 0; i < logOdds.length; i++)
+				logOdds[i] *= logOdds[i] < 0 ? freeFactor : factor;
+			lastDecay = time;
+		}
+		recenter();
+	}
+
+	/**
+	 * Adds the current pose to the history.
+	 *
+	 * @param time
+	 *            the time of the pose, from {@link System#nanoTime()}.
+	 */
+	private void recordPose(long time) {
+
+		poseTimes[nextPose] = time;
+		poseX[nextPose] = x;
+		poseY[nextPose] = y;
+		poseHeading[nextPose] = heading;
+		nextPose = nextPose + 1 == POSE_HISTORY ? 0 : nextPose + 1;
+		if (poses < POSE_HISTORY)
+			poses++;
+	}
+
+	/**
+	 * Shifts the grid by whole cells if the robot has moved more than a quarter of the grid from the middle.
+	 */
+	private void recenter() {
+
+		int dx = (int) Math.floor(x / cellSize) - (originX + cells / 2);
+		int dy = (int) Math.floor(y / cellSize) - (originY + cells / 2);
+		if (Math.abs(dx) <= cells / 4 && Math.abs(dy) <= cells / 4)
+			return;
+		Arrays.fill(scratch, 0);
+		for (int row = 0; row < cells; row++) {
+			int from = row + dy;
+			if (from < 0 || from >= cells)
+				continue;
+			int start = Math.max(0, -dx);
+			int end = Math.min(cells, cells - dx);
+			if (start < end)
+				System.arraycopy(logOdds, from * cells + start + dx, scratch, row * cells + start, end - start);
+		}
+		float[] swap = logOdds;
+		logOdds = scratch;
+		scratch = swap;
+		// The stamps are only compared within one reading, so they do not need to move
+		originX += dx;
+		originY += dy;
+	}
+
+	/**
+	 * Adds a sonar reading taken now.
+	 *
+	 * @param angle
+	 *            the angle of the sonar, in degrees from straight ahead. Positive is right, negative is left.
+	 * @param distance
+	 *            the distance read, in m. Infinite if nothing was seen.
+	 */
+	public synchronized void addReading(double angle, double distance) {
+
+		addReading(angle, distance, x, y, heading);
+	}
+
+	/**
+	 * Adds every sample of a scan, each from where the robot was when it was read.
+	 *
+	 * @param scan
+	 *            the scan.
+	 */
+	public synchronized void addScan(SonarScan scan) {
+
+		for (int i = 0; i < scan.size(); i++) {
+			int slot = poseAt(scan.getTime(i));
+			if (slot < 0)
+				addReading(scan.getAngle(i), scan.getDistance(i), x, y, heading);
+			else
+				addReading(scan.getAngle(i), scan.getDistance(i), poseX[slot], poseY[slot], poseHeading[slot]);
+		}
+	}
+
+	/**
+	 * Finds the last pose taken at or before a time.
+	 *
+	 * @param time
+	 *            the time, from {@link System#nanoTime()}.
+	 * @return the slot of the pose, or -1 if there are no poses. The oldest pose is used for times before it.
+	 */
+	private int poseAt(long time) {
+
+		if (poses == 0)
+			return -1;
+		int slot = nextPose;
+		for (int i = 0; i < poses; i++) {
+			slot = slot == 0 ? POSE_HISTORY - 1 : slot - 1;
+			if (poseTimes[slot] - time <= 0)
+				return slot;
+		}
+		return slot;
+	}
+
+	/**
+	 * Adds a sonar reading taken from a pose. Rays are cast across the beam, close enough together to cross every cell at the distance read.
+	 *
+	 * @param angle
+	 *            the angle of the sonar, in degrees from straight ahead. Positive is right, negative is left.
+	 * @param distance
+	 *            the distance read, in m.
+	 * @param fromX
+	 *            the x of the robot, in m.
+	 * @param fromY
+	 *            the y of the robot, in m.
+	 * @param fromHeading
+	 *            the heading of the robot, in radians.
+	 */
+	private void addReading(double angle, double distance, double fromX, double fromY, double fromHeading) {
+
+		if (Double.isNaN(distance) || distance <= 0)
+			return;
+		// Nothing beyond the grid can be updated
+		double reach = cells * cellSize * Math.sqrt(2);
+		boolean hit = distance < Math.min(reach, DistanceFilter.MAXIMUM_RANGE);
+		double free = Math.min(distance, reach) - cellSize / 2;
+		double bearing = fromHeading - Math.toRadians(angle);
+		double halfWidth = Math.toRadians(BEAM_HALF_WIDTH);
+		int rays = Math.max(1, (int) Math.ceil(2 * halfWidth * Math.min(distance, reach) / cellSize));
+		reading++;
+
+		// Mark the occupied cells first, so the free rays do not undo them
+		if (hit)
+			for (int ray = 0; ray <= rays; ray++) {
+				double b = bearing - halfWidth + 2 * halfWidth * ray / rays;
+				update(fromX + distance * Math.cos(b), fromY + distance * Math.sin(b), OCCUPIED_UPDATE);
+			}
+		for (int ray = 0; ray <= rays; ray++) {
+			double b = bearing - halfWidth + 2 * halfWidth * ray / rays;
+			double cos = Math.cos(b);
+			double sin = Math.sin(b);
+			// The grid is convex, so once a ray leaves it, it does not come back
+			for (double r = cellSize / 2; r < free; r += cellSize / 2)
+				if (!update(fromX + r * cos, fromY + r * sin, FREE_UPDATE))
+					break;
+		}
+	}
+
+	/**
+	 * Adds log-odds to the cell at a point, unless the current reading has already updated it.
+	 *
+	 * @param px
+	 *            the x of the point, in m.
+	 * @param py
+	 *            the y of the point, in m.
+	 * @param update
+	 *            the log-odds to add.
+	 * @return false if the point is off the grid.
+	 */
+	private boolean update(double px, double py, float update) {
+
+		int index = index(px, py);
+		if (index < 0)
+			return false;
+		if (stamps[index] != reading) {
+			stamps[index] = reading;
+			logOdds[index] = Math.max(-LIMIT, Math.min(LIMIT, logOdds[index] + update));
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the index of the cell at a point.
+	 *
+	 * @param px
+	 *            the x of the point, in m.
+	 * @param py
+	 *            the y of the point, in m.
+	 * @return the index in {@link #logOdds}, or -1 if the point is off the grid.
+	 */
+	private int index(double px, double py) {
+
+		int column = (int) Math.floor(px / cellSize) - originX;
+		int row = (int) Math.floor(py / cellSize) - originY;
+		if (column < 0 || column >= cells || row < 0 || row >= cells)
+			return -1;
+		return row * cells + column;
+	}
+
+	/**
+	 * Gets the probability that there is something at a point near the robot.
+	 *
+	 * @param angle
+	 *            the direction of the point, in degrees from straight ahead. Positive is right, negative is left.
+	 * @param distance
+	 *            the distance to the point, in m.
+	 * @return the probability, from 0 to 1, or .5 if the point is off the grid.
+	 */
+	public synchronized double getOccupancy(double angle, double distance) {
+
+		double bearing = heading - Math.toRadians(angle);
+		int index = index(x + distance * Math.cos(bearing), y + distance * Math.sin(bearing));
+		return index < 0 ? .5 : 1 - 1 / (1 + Math.exp(logOdds[index]));
+	}
+
+	/**
+	 * Checks what the grid knows about a region in front of the robot, out to a distance.
+	 *
+	 * @param startAngle
+	 *            one side of the region, in degrees from straight ahead. Positive is right, negative is left.
+	 * @param endAngle
+	 *            the other side of the region, in degrees.
+	 * @param distance
+	 *            how far out the region goes, in m.
+	 * @return {@link Evidence#BLOCKED} if any cell in the region is occupied, {@link Evidence#CLEAR} if every cell is free, and
+	 *         {@link Evidence#UNKNOWN} otherwise, including when the region runs off the grid.
+	 */
+	public synchronized Evidence getEvidence(double startAngle, double endAngle, double distance) {
+
+		double low = Math.toRadians(Math.min(startAngle, endAngle));
+		double high = Math.toRadians(Math.max(startAngle, endAngle));
+		int rays = Math.max(1, (int) Math.ceil((high - low) * distance / cellSize));
+		boolean clear = true;
+		for (int ray = 0; ray <= rays; ray++) {
+			double b = heading - (low + (high - low) * ray / rays);
+			double cos = Math.cos(b);
+			double sin = Math.sin(b);
+			// The cells under the robot are never seen by the sonar
+			for (double r = cellSize; r <= distance; r += cellSize / 2) {
+				int index = index(x + r * cos, y + r * sin);
+				if (index < 0) {
+					clear = false;
+					continue;
+				}
+				if (logOdds[index] > OCCUPIED_EVIDENCE)
+					return Evidence.BLOCKED;
+				if (logOdds[index] > FREE_EVIDENCE)
+					clear = false;
+			}
+		}
+		return clear ? Evidence.CLEAR : Evidence.UNKNOWN;
+	}
+
+	@Override
+	public synchronized String toString() {
+
+		int occupied = 0, free = 0;
+		for (float value : logOdds)
+			if (value > OCCUPIED_EVIDENCE)
+				occupied++;
+			else if (value < FREE_EVIDENCE)
+				free++;
+		return String.format("Grid of %dx%d cells of %.3f m: %d occupied, %d free, robot at (%.2f, %.2f) facing %.0f", cells, cells, cellSize,
+				occupied, free, x, y, Math.toDegrees(heading));
+	}
+}
@@ -0,0 +1,215 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps track of the robot's pose from the wheel tacho counts. {@link #update(double, double, long)} is called at a fixed rate with the distance
+ * each wheel has travelled, and integrates the difference since the last update along the arc the robot drove. It also counts the distance along
+ * the current edge of the map, which {@link #startEdge()} sets back to 0 whenever the robot leaves an intersection or a parking space, so the
+ * controller knows how far along the road the robot is between events.
+ *
+ * The estimate is published as an immutable {@link Pose}, so any thread can read it with {@link #getPose()} without taking a lock or holding up
+ * the updates. Only one thread may call {@link #update(double, double, long)}; the resets can be called from any thread, and take effect at the
+ * next update.
+ *
+ * Positions are in m, on the ground, from where the robot was when the estimator was made or reset. Headings are in degrees anticlockwise, like
+ * the angles of the map, with the robot starting at 0.
+ */
+public class OdometryEstimator {
+
+	/**
+	 * A snapshot of the estimate. Poses are immutable.
+	 */
+	public static class Pose {
+
+		/**
+		 * The x coordinate, in m. The robot starts facing along the x axis.
+		 */
+		public final double x;
+		/**
+		 * The y coordinate, in m. Positive is left of where the robot started.
+		 */
+		public final double y;
+		/**
+		 * The heading, in degrees anticlockwise from the x axis, in the range [0, 360).
+		 */
+		public final double heading;
+		/**
+		 * The distance travelled, in m, counting backwards travel as negative.
+		 */
+		public final double distance;
+		/**
+		 * The distance travelled along the current edge, in m.
+		 */
+		public final double edgeDistance;
+		/**
+		 * The speed at the last update, in m/s. Negative when backing up.
+		 */
+		public final double speed;
+		/**
+		 * The time of the pose, from {@link System#nanoTime()}.
+		 */
+		public final long time;
+
+		/**
+		 * Makes a new pose.
+		 *
+		 * @param x
+		 *            the x coordinate, in m.
+		 * @param y
+		 *            the y coordinate, in m.
+		 * @param heading
+		 *            the heading, in degrees anticlockwise. It is put in the range [0, 360).
+		 * @param distance
+		 *            the distance travelled, in m.
+		 * @param edgeDistance
+		 *            the distance travelled along the current edge, in m.
+		 * @param speed
+		 *            the speed, in m/s.
+		 * @param time
+		 *            the time of the pose, from {@link System#nanoTime()}.
+		 */
+		public Pose(double x, double y, double heading, double distance, double edgeDistance, double speed, long time) {
+
+			this.x = x;
+			this.y = y;
+			this.heading = (heading % 360 + 360) % 360;
+			this.distance = distance;
+			this.edgeDistance = edgeDistance;
+			this.speed = speed;
+			this.time = time;
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format("(%.3f, %.3f) at %.1f deg, %.3f m along the edge", x, y, heading, edgeDistance);
+		}
+	}
+
+	/**
+	 * The distance between the wheels, in m.
+	 */
+	private final double trackWidth;
+	/**
+	 * The latest estimate.
+	 */
+	private volatile Pose pose;
+	/**
+	 * A pose to start from at the next update, or null if none has been asked for.
+	 */
+	private final AtomicReference<Pose> pendingReset;
+	/**
+	 * The value of {@link Pose#distance} at the start of the current edge. Written by {@link #startEdge()} and read by the updating thread.
+	 */
+	private volatile double edgeStart;
+	/**
+	 * The wheel distances at the last update, in m, or NaN if there has not been one yet. Only used by the updating thread.
+	 */
+	private double lastLeft, lastRight;
+	/**
+	 * The heading, in radians, kept unwrapped between updates so that small turns are not rounded. Only used by the updating thread.
+	 */
+	private double heading;
+
+	/**
+	 * Makes a new estimator, with the robot at the origin facing along the x axis.
+	 *
+	 * @param trackWidth
+	 *            the distance between the wheels, in m, from {@link DifferentialPilot#getTrackWidth()}.
+	 */
+	public OdometryEstimator(double trackWidth) {
+
+		if (!(trackWidth > 0))
+			throw new IllegalArgumentException("The track width must be positive: " + trackWidth);
+		this.trackWidth = trackWidth;
+		pendingReset = new AtomicReference<>();
+		pose = new Pose(0, 0, 0, 0, 0, 0, System.nanoTime());
+		edgeStart = 0;
+		lastLeft = Double.NaN;
+		lastRight = Double.NaN;
+		heading = 0;
+	}
+
+	/**
+	 * Moves the robot by how far each wheel has turned since the last update, and publishes the new pose. The first update only records the wheel
+	 * distances. Must only be called from one thread.
+	 *
+	 * @param left
+	 *            the total distance the left wheel has travelled, in m, from {@link DifferentialPilot#getLeftDistance()}.
+	 * @param right
+	 *            the total distance the right wheel has travelled, in m, from {@link DifferentialPilot#getRightDistance()}.
+	 * @param time
+	 *            the time the distances were read, from {@link System#nanoTime()}.
+	 * @return the new pose.
+	 */
+	public Pose update(double left, double right, long time) {
+
+		Pose last = pose;
+		Pose reset = pendingReset.getAndSet(null);
+		if (reset != null) {
+			last = reset;
+			heading = Math.toRadians(reset.heading);
+		}
+		if (Double.isNaN(lastLeft)) {
+			lastLeft = left;
+			lastRight = right;
+			return pose = new Pose(last.x, last.y, last.heading, last.distance, last.distance - edgeStart, 0, time);
+		}
+
+		double distance = (left - lastLeft + right - lastRight) / 2;
+		double turn = (right - lastRight - (left - lastLeft)) / trackWidth;
+		lastLeft = left;
+		lastRight = right;
+		// Move along the chord of the arc
+		double x = last.x + distance * Math.cos(heading + turn / 2);
+		double y = last.y + distance * Math.sin(heading + turn / 2);
+		heading += turn;
+		double total = last.distance + distance;
+		double dt = (time - last.time) / 1e9;
+		double speed = dt > 0 ? distance / dt : last.speed;
+		return pose = new Pose(x, y, Math.toDegrees(heading), total, total - edgeStart, speed, time);
+	}
+
+	/**
+	 * Starts counting the distance along a new edge from 0. Called when the robot leaves an intersection or a parking space.
+	 */
+	public void startEdge() {
+
+		edgeStart = pose.distance;
+	}
+
+	/**
+	 * Puts the robot at a pose, for example one known from the map. This takes effect at the next update. An {@link OccupancyGrid} given the
+	 * poses of this estimator has to be cleared as well.
+	 *
+	 * @param x
+	 *            the x coordinate, in m.
+	 * @param y
+	 *            the y coordinate, in m.
+	 * @param heading
+	 *            the heading, in degrees anticlockwise.
+	 */
+	public void reset(double x, double y, double heading) {
+
+		Pose current = pose;
+		edgeStart = current.distance;
+		pendingReset.set(new Pose(x, y, heading, current.distance, 0, current.speed, current.time));
+	}
+
+	/**
+	 * Gets the latest estimate. This never blocks.
+	 *
+	 * @return the pose at the last update.
+	 */
+	public Pose getPose() {
+
+		return pose;
+	}
+
+	@Override
+	public String toString() {
+
+		return pose.toString();
+	}
+}
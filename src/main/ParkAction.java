@@ -61,4 +61,12 @@ public class ParkAction extends RobotAction {
 		return side;
 	}
 	
+	/**
+	 * The front sensor is not used.
+	 */
+	@Override
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return SamplingPolicy.PARKING;
+	}
 }
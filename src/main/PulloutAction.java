@@ -44,4 +44,12 @@ public class PulloutAction extends RobotAction {
 		return side;
 	}
 	
+	/**
+	 * Only the front sensor is used.
+	 */
+	@Override
+	public SamplingPolicy getSamplingPolicy() {
+	
+		return SamplingPolicy.PULLOUT;
+	}
 }
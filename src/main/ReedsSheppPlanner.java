@@ -0,0 +1,671 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Plans the shortest path to a pose for a robot that turns no tighter than a minimum radius but can drive both forwards and backwards, after
+ * Reeds and Shepp. A path is a few arcs of the minimum radius and straight lines, and may change direction between them. Turning on the spot
+ * would be shorter for this robot, but every turn on the spot stops the robot and adds heading error, so the parking manoeuvres use paths
+ * instead, and drive them in one motion.
+ *
+ * Every path is one of 48 words of up to five pieces, in nine families, and each family has a formula for its lengths. The planner tries every
+ * family in every reflection and direction, and keeps the shortest path. The formulas are those of the paper, as corrected in later work.
+ *
+ * The goal is relative to the robot: x is forwards, y is to the left, and the heading is in degrees anticlockwise, like the angles of the map.
+ */
+public class ReedsSheppPlanner {
+
+	/**
+	 * A piece of a path: an arc or a straight line. Segments are immutable.
+	 */
+	public static class Segment {
+
+		/**
+		 * The distance along the piece, in m. Negative is backwards.
+		 */
+		public final double distance;
+		/**
+		 * The curvature of the piece, in 1/m. Positive turns left, negative right, and 0 is straight.
+		 */
+		public final double curvature;
+
+		/**
+		 * Makes a new segment.
+		 *
+		 * @param distance
+		 *            the distance along the piece, in m. Negative is backwards.
+		 * @param curvature
+		 *            the curvature of the piece, in 1/m. Positive turns left, negative right, and 0 is straight.
+		 */
+		public Segment(double distance, double curvature) {
+
+			this.distance = distance;
+			this.curvature = curvature;
+		}
+
+		@Override
+		public String toString() {
+
+			String turn = curvature > 0 ? "L" : curvature < 0 ? "R" : "S";
+			return String.format("%s%+.3f", turn, distance);
+		}
+	}
+
+	/**
+	 * The shape of a piece of a word.
+	 */
+	private static final int LEFT = 1, STRAIGHT = 0, RIGHT = -1;
+	/**
+	 * The families of words, named for the form {@link #solve(int, double, double, double, double[])} finds, which starts with a left turn
+	 * forwards. The others are the reflections and reversals of these.
+	 */
+	private static final int LEFT_STRAIGHT_LEFT = 0, LEFT_STRAIGHT_RIGHT = 1, LEFT_RIGHT_LEFT = 2, LEFT_RIGHT_UP_LEFT_DOWN_RIGHT = 3,
+			LEFT_RIGHT_DOWN_LEFT_DOWN_RIGHT = 4, LEFT_RIGHT_STRAIGHT_LEFT = 5, LEFT_RIGHT_STRAIGHT_RIGHT = 6, LEFT_RIGHT_STRAIGHT_LEFT_RIGHT = 7;
+	/**
+	 * How far below 0 a length may be, from rounding, and still count as 0.
+	 */
+	private static final double ZERO = 1e-9;
+
+	/**
+	 * The minimum turning radius, in m.
+	 */
+	private final double radius;
+	/**
+	 * The lengths of the pieces of the shortest word found so far by {@link #plan(double, double, double)}, in units of the radius.
+	 */
+	private double[] best;
+	/**
+	 * The shapes of the pieces of {@link #best}.
+	 */
+	private int[] bestShape;
+	/**
+	 * The length of {@link #best}, in units of the radius.
+	 */
+	private double bestLength;
+
+	/**
+	 * Makes a new planner.
+	 *
+	 * @param radius
+	 *            the minimum turning radius, in m.
+	 */
+	public ReedsSheppPlanner(double radius) {
+
+		if (!(radius > 0))
+			throw new IllegalArgumentException("The turning radius must be positive: " + radius);
+		this.radius = radius;
+	}
+
+	/**
+	 * Plans the shortest path to a goal.
+	 *
+	 * @param x
+	 *            how far ahead of the robot the goal is, in m.
+	 * @param y
+	 *            how far to the left of the robot the goal is, in m.
+	 * @param heading
+	 *            the heading at the goal, in degrees anticlockwise from the robot's heading.
+	 * @return the pieces of the path, in order, without any of zero length. The list cannot be modified.
+	 */
+	public synchronized List<Segment> plan(double x, double y, double heading) {
+
+		// Work with a radius of 1
+		x /= radius;
+		y /= radius;
+		double phi = Math.toRadians(heading);
+		best = new double[0];
+		bestShape = new int[0];
+		bestLength = Double.POSITIVE_INFINITY;
+		csc(x, y, phi);
+		ccc(x, y, phi);
+		cccc(x, y, phi);
+		ccsc(x, y, phi);
+		ccscc(x, y, phi);
+
+		List<Segment> path = new ArrayList<>();
+		for (int i = 0; i < best.length; i++)
+			if (Math.abs(best[i]) > ZERO)
+				path.add(new Segment(best[i] * radius, bestShape[i] / radius));
+		return Collections.unmodifiableList(path);
+	}
+
+	/**
+	 * Tries the words made of an arc, a straight line, and an arc.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 */
+	private void csc(double x, double y, double phi) {
+
+		tryWord(LEFT_STRAIGHT_LEFT, new int[] { LEFT, STRAIGHT, LEFT }, x, y, phi, false);
+		tryWord(LEFT_STRAIGHT_RIGHT, new int[] { LEFT, STRAIGHT, RIGHT }, x, y, phi, false);
+	}
+
+	/**
+	 * Tries the words made of three arcs, with a change of direction before or after the middle one.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 */
+	private void ccc(double x, double y, double phi) {
+
+		int[] shape = { LEFT, RIGHT, LEFT };
+		tryWord(LEFT_RIGHT_LEFT, shape, x, y, phi, false);
+		tryWord(LEFT_RIGHT_LEFT, shape, backX(x, y, phi), backY(x, y, phi), phi, true);
+	}
+
+	/**
+	 * Tries the words made of four arcs.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 */
+	private void cccc(double x, double y, double phi) {
+
+		int[] shape = { LEFT, RIGHT, LEFT, RIGHT };
+		tryWord(LEFT_RIGHT_UP_LEFT_DOWN_RIGHT, shape, x, y, phi, false);
+		tryWord(LEFT_RIGHT_DOWN_LEFT_DOWN_RIGHT, shape, x, y, phi, false);
+	}
+
+	/**
+	 * Tries the words made of two arcs, a straight line, and an arc, with a quarter turn for the second arc, in either order.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 */
+	private void ccsc(double x, double y, double phi) {
+
+		int[] leftLeft = { LEFT, RIGHT, STRAIGHT, LEFT };
+		int[] leftRight = { LEFT, RIGHT, STRAIGHT, RIGHT };
+		double xb = backX(x, y, phi), yb = backY(x, y, phi);
+		tryWord(LEFT_RIGHT_STRAIGHT_LEFT, leftLeft, x, y, phi, false);
+		tryWord(LEFT_RIGHT_STRAIGHT_RIGHT, leftRight, x, y, phi, false);
+		tryWord(LEFT_RIGHT_STRAIGHT_LEFT, leftLeft, xb, yb, phi, true);
+		tryWord(LEFT_RIGHT_STRAIGHT_RIGHT, leftRight, xb, yb, phi, true);
+	}
+
+	/**
+	 * Tries the words made of two arcs, a straight line, and two arcs, with a quarter turn for the second and fourth arcs.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 */
+	private void ccscc(double x, double y, double phi) {
+
+		tryWord(LEFT_RIGHT_STRAIGHT_LEFT_RIGHT, new int[] { LEFT, RIGHT, STRAIGHT, LEFT, RIGHT }, x, y, phi, false);
+	}
+
+	/**
+	 * Tries a family of words in all four of its forms: as it is, driven the other way, reflected left to right, and both. Each form that reaches
+	 * the goal is kept if it is shorter than the best so far.
+	 *
+	 * @param family
+	 *            the family, one of the constants like {@link #LEFT_STRAIGHT_LEFT}.
+	 * @param shape
+	 *            the shapes of the pieces of the family, in the order its formula gives them.
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param backwards
+	 *            true if the goal has been moved with {@link #backX(double, double, double)} and {@link #backY(double, double, double)}, so that
+	 *            the pieces are found from the goal back to the start, and have to be driven in reverse order.
+	 */
+	private void tryWord(int family, int[] shape, double x, double y, double phi, boolean backwards) {
+
+		double[] lengths = new double[shape.length];
+		for (int flip = 1; flip >= -1; flip -= 2)
+			for (int reflect = 1; reflect >= -1; reflect -= 2) {
+				if (!solve(family, flip * x, reflect * y, flip * reflect * phi, lengths))
+					continue;
+				double length = 0;
+				for (double l : lengths)
+					length += Math.abs(l);
+				if (length >= bestLength)
+					continue;
+				bestLength = length;
+				best = new double[shape.length];
+				bestShape = new int[shape.length];
+				for (int i = 0; i < shape.length; i++) {
+					int j = backwards ? shape.length - 1 - i : i;
+					best[i] = flip * lengths[j];
+					bestShape[i] = reflect * shape[j];
+				}
+			}
+	}
+
+	/**
+	 * Finds the lengths of the pieces of a word of a family, driven forwards from the start to the goal.
+	 *
+	 * @param family
+	 *            the family, one of the constants like {@link #LEFT_STRAIGHT_LEFT}.
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces, in units of the radius. Negative is backwards.
+	 * @return true if the family has a word that reaches the goal.
+	 */
+	private static boolean solve(int family, double x, double y, double phi, double[] lengths) {
+
+		switch (family) {
+		case LEFT_STRAIGHT_LEFT:
+			return leftStraightLeft(x, y, phi, lengths);
+		case LEFT_STRAIGHT_RIGHT:
+			return leftStraightRight(x, y, phi, lengths);
+		case LEFT_RIGHT_LEFT:
+			return leftRightLeft(x, y, phi, lengths);
+		case LEFT_RIGHT_UP_LEFT_DOWN_RIGHT:
+			return leftRightUpLeftDownRight(x, y, phi, lengths);
+		case LEFT_RIGHT_DOWN_LEFT_DOWN_RIGHT:
+			return leftRightDownLeftDownRight(x, y, phi, lengths);
+		case LEFT_RIGHT_STRAIGHT_LEFT:
+			return leftRightStraightLeft(x, y, phi, lengths);
+		case LEFT_RIGHT_STRAIGHT_RIGHT:
+			return leftRightStraightRight(x, y, phi, lengths);
+		case LEFT_RIGHT_STRAIGHT_LEFT_RIGHT:
+			return leftRightStraightLeftRight(x, y, phi, lengths);
+		default:
+			throw new IllegalArgumentException("No such family: " + family);
+		}
+	}
+
+	/**
+	 * Finds the path that turns left forwards, goes straight forwards, and turns left forwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftStraightLeft(double x, double y, double phi, double[] lengths) {
+
+		double dx = x - Math.sin(phi);
+		double dy = y - 1 + Math.cos(phi);
+		double t = Math.atan2(dy, dx);
+		double v = mod2pi(phi - t);
+		if (t < -ZERO || v < -ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = Math.hypot(dx, dy);
+		lengths[2] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, goes straight forwards, and turns right forwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftStraightRight(double x, double y, double phi, double[] lengths) {
+
+		double dx = x + Math.sin(phi);
+		double dy = y - 1 - Math.cos(phi);
+		double squared = dx * dx + dy * dy;
+		if (squared < 4)
+			return false;
+		double u = Math.sqrt(squared - 4);
+		double t = mod2pi(Math.atan2(dy, dx) + Math.atan2(2, u));
+		double v = mod2pi(t - phi);
+		if (t < -ZERO || v < -ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = u;
+		lengths[2] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right backwards, and turns left either way.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightLeft(double x, double y, double phi, double[] lengths) {
+
+		double dx = x - Math.sin(phi);
+		double dy = y - 1 + Math.cos(phi);
+		double distance = Math.hypot(dx, dy);
+		if (distance > 4)
+			return false;
+		double u = -2 * Math.asin(distance / 4);
+		double t = mod2pi(Math.atan2(dy, dx) + u / 2 + Math.PI);
+		if (t < -ZERO || u > ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = u;
+		lengths[2] = mod2pi(phi - t + u);
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right forwards, turns left backwards through the same angle, and turns right backwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightUpLeftDownRight(double x, double y, double phi, double[] lengths) {
+
+		double dx = x + Math.sin(phi);
+		double dy = y - 1 - Math.cos(phi);
+		double rho = (2 + Math.hypot(dx, dy)) / 4;
+		if (rho > 1)
+			return false;
+		double u = Math.acos(rho);
+		double t = tau(u, -u, dx, dy);
+		double v = omega(t, u, -u, phi);
+		if (t < -ZERO || v > ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = u;
+		lengths[2] = -u;
+		lengths[3] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right backwards, turns left backwards through the same angle, and turns right forwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightDownLeftDownRight(double x, double y, double phi, double[] lengths) {
+
+		double dx = x + Math.sin(phi);
+		double dy = y - 1 - Math.cos(phi);
+		double rho = (20 - dx * dx - dy * dy) / 16;
+		if (rho < 0 || rho > 1)
+			return false;
+		double u = -Math.acos(rho);
+		if (u < -Math.PI / 2)
+			return false;
+		double t = tau(u, u, dx, dy);
+		double v = omega(t, u, u, phi);
+		if (t < -ZERO || v < -ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = u;
+		lengths[2] = u;
+		lengths[3] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right a quarter turn backwards, goes straight backwards, and turns left backwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightStraightLeft(double x, double y, double phi, double[] lengths) {
+
+		double dx = x - Math.sin(phi);
+		double dy = y - 1 + Math.cos(phi);
+		double rho = Math.hypot(dx, dy);
+		if (rho < 2)
+			return false;
+		double r = Math.sqrt(rho * rho - 4);
+		double u = 2 - r;
+		double t = mod2pi(Math.atan2(dy, dx) + Math.atan2(r, -2));
+		double v = mod2pi(phi - Math.PI / 2 - t);
+		if (t < -ZERO || u > ZERO || v > ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = -Math.PI / 2;
+		lengths[2] = u;
+		lengths[3] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right a quarter turn backwards, goes straight backwards, and turns right backwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightStraightRight(double x, double y, double phi, double[] lengths) {
+
+		double dx = x + Math.sin(phi);
+		double dy = y - 1 - Math.cos(phi);
+		double rho = Math.hypot(dx, dy);
+		if (rho < 2)
+			return false;
+		double t = Math.atan2(dx, -dy);
+		double u = 2 - rho;
+		double v = mod2pi(t + Math.PI / 2 - phi);
+		if (t < -ZERO || u > ZERO || v > ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = -Math.PI / 2;
+		lengths[2] = u;
+		lengths[3] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the path that turns left forwards, turns right a quarter turn backwards, goes straight backwards, turns left a quarter turn
+	 * backwards, and turns right forwards.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @param lengths
+	 *            filled in with the lengths of the pieces.
+	 * @return true if there is such a path.
+	 */
+	private static boolean leftRightStraightLeftRight(double x, double y, double phi, double[] lengths) {
+
+		double dx = x + Math.sin(phi);
+		double dy = y - 1 - Math.cos(phi);
+		double rho = Math.hypot(dx, dy);
+		if (rho < 2)
+			return false;
+		double u = 4 - Math.sqrt(rho * rho - 4);
+		if (u > ZERO)
+			return false;
+		// The paper has a sign wrong here
+		double t = mod2pi(Math.atan2((4 - u) * dx - 2 * dy, -2 * dx + (u - 4) * dy));
+		double v = mod2pi(t - phi);
+		if (t < -ZERO || v < -ZERO)
+			return false;
+		lengths[0] = t;
+		lengths[1] = -Math.PI / 2;
+		lengths[2] = u;
+		lengths[3] = -Math.PI / 2;
+		lengths[4] = v;
+		return true;
+	}
+
+	/**
+	 * Finds the angle of the first arc of a word of four arcs.
+	 *
+	 * @param u
+	 *            the angle of the second arc.
+	 * @param v
+	 *            the angle of the third arc.
+	 * @param dx
+	 *            the x coordinate of the centre of the last arc, relative to the centre of the first.
+	 * @param dy
+	 *            the y coordinate of the centre of the last arc, relative to the centre of the first.
+	 * @return the angle of the first arc.
+	 */
+	private static double tau(double u, double v, double dx, double dy) {
+
+		double delta = mod2pi(u - v);
+		double a = Math.sin(u) - Math.sin(delta);
+		double b = Math.cos(u) - Math.cos(delta) - 1;
+		double t = Math.atan2(dy * a - dx * b, dx * a + dy * b);
+		if (2 * (Math.cos(delta) - Math.cos(v) - Math.cos(u)) + 3 < 0)
+			t += Math.PI;
+		return mod2pi(t);
+	}
+
+	/**
+	 * Finds the angle of the last arc of a word of four arcs, so that it ends at the goal's heading.
+	 *
+	 * @param t
+	 *            the angle of the first arc.
+	 * @param u
+	 *            the angle of the second arc.
+	 * @param v
+	 *            the angle of the third arc.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @return the angle of the last arc.
+	 */
+	private static double omega(double t, double u, double v, double phi) {
+
+		return mod2pi(t - u + v - phi);
+	}
+
+	/**
+	 * Moves the goal so that a word can be found from the goal back to the start: the start as seen from the goal, reflected.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @return the new x coordinate.
+	 */
+	private static double backX(double x, double y, double phi) {
+
+		return x * Math.cos(phi) + y * Math.sin(phi);
+	}
+
+	/**
+	 * Moves the goal so that a word can be found from the goal back to the start: the start as seen from the goal, reflected.
+	 *
+	 * @param x
+	 *            the x coordinate of the goal, in units of the radius.
+	 * @param y
+	 *            the y coordinate of the goal, in units of the radius.
+	 * @param phi
+	 *            the heading of the goal, in radians.
+	 * @return the new y coordinate.
+	 */
+	private static double backY(double x, double y, double phi) {
+
+		return x * Math.sin(phi) - y * Math.cos(phi);
+	}
+
+	/**
+	 * Puts an angle in the range [-pi, pi].
+	 *
+	 * @param angle
+	 *            the angle, in radians.
+	 * @return the same angle in the range [-pi, pi].
+	 */
+	private static double mod2pi(double angle) {
+
+		double v = angle % (2 * Math.PI);
+		if (v < -Math.PI)
+			v += 2 * Math.PI;
+		else if (v > Math.PI)
+			v -= 2 * Math.PI;
+		return v;
+	}
+
+	/**
+	 * Gets the length of a path.
+	 *
+	 * @param path
+	 *            the path.
+	 * @return the total distance along it, forwards and backwards, in m.
+	 */
+	public static double getLength(List<Segment> path) {
+
+		double length = 0;
+		for (Segment segment : path)
+			length += Math.abs(segment.distance);
+		return length;
+	}
+
+	/**
+	 * Gets the minimum turning radius.
+	 *
+	 * @return the radius, in m.
+	 */
+	public double getRadius() {
+
+		return radius;
+	}
+}
@@ -0,0 +1,151 @@
+package main;
+
+import static main.ION2016.FRONT;
+import static main.ION2016.LEFT;
+import static main.ION2016.RIGHT;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import sensing.ReplayClock;
+import sensing.ReplayColorSensor;
+import sensing.ReplaySampleProvider;
+import sensing.SensorRecording;
+import utilities.ColorLookupTable;
+import utilities.events.EventDispatcher;
+import utilities.events.EventListener;
+
+/**
+ * Replays a recording made with {@link ION2016#RECORD_SENSORS} through a {@link LineMonitor}, off the robot. This is used to reproduce problems
+ * seen on the course, and to benchmark the perception code on a desktop.
+ *
+ * The monitor is run one cycle at a time with {@link LineMonitor#runCycle(SensorFrame)}, so every cycle uses exactly one reading from each color
+ * sensor, and replaying the same recording always gives the same frames and events. The harness prints how many cycles it ran, how fast, the
+ * events that were published, and a fingerprint of every frame, which is the same on every replay of the same recording and configuration.
+ *
+ * The harness needs the same ionconfig.txt, calibration.txt, and calibration.bin (if any) as the robot, in the working directory.
+ */
+public class ReplayHarness {
+
+	/**
+	 * The capacity of the event queue. The monitor runs much faster than on the robot, so the harness waits for the queue to drain whenever it is
+	 * half full, so that no events are dropped.
+	 */
+	private static final int EVENT_CAPACITY = 1024;
+
+	/**
+	 * Counts the events published by the monitor.
+	 */
+	private static class EventCounter implements EventListener<RobotEvent> {
+
+		/**
+		 * The number of each kind of event. Guarded by this.
+		 */
+		private final Map<RobotMessage, Integer> counts = new EnumMap<>(RobotMessage.class);
+
+		@Override
+		public synchronized void eventReceived(RobotEvent event) {
+
+			Integer count = counts.get(event.getMessage());
+			counts.put(event.getMessage(), count == null ? 1 : count + 1);
+		}
+
+		@Override
+		public synchronized String toString() {
+
+			return counts.toString();
+		}
+	}
+
+	/**
+	 * Replays a recording.
+	 *
+	 * @param args
+	 *            the name of the recording, then optionally "realtime" to replay it at the speed it was recorded at instead of as fast as possible.
+	 * @throws IOException
+	 *             if the recording or the configuration cannot be read.
+	 * @throws InterruptedException
+	 *             if the harness is interrupted while waiting for the events to be handled.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		if (args.length < 1) {
+			System.out.println("Usage: ReplayHarness <recording> [realtime]");
+			return;
+		}
+		boolean realTime = args.length > 1 && args[1].equalsIgnoreCase("realtime");
+
+		// Load the same configuration as the robot
+		ION2016.initializeMaps();
+		RobotConfig config = ION2016.compileConfig();
+		ColorLookupTable lookupTable;
+		try {
+			lookupTable = ION2016.loadCalibration(config);
+		} catch (FileNotFoundException e) {
+			System.out.println("Reading calibration data failed");
+			throw e;
+		}
+
+		SensorRecording recording = new SensorRecording(args[0]);
+		System.out.printf("%d records: %d left, %d right, %d front, %d sonar\n", recording.size(), recording.countSamples(LEFT), recording
+				.countSamples(RIGHT), recording.countSamples(FRONT), recording.countSamples(ION2016.SONAR_CHANNEL));
+
+		ReplayClock clock = new ReplayClock(recording, realTime);
+		ReplayColorSensor[] sensors = new ReplayColorSensor[3];
+		for (int x = 0; x < sensors.length; x++)
+			sensors[x] = new ReplayColorSensor(recording, x, clock);
+		LineMonitor monitor = new LineMonitor(sensors[LEFT], sensors[RIGHT], sensors[FRONT], ION2016.allColors, ION2016.colorGroupings.get(
+				"blendColors"), config.roadColor, lookupTable, false);
+
+		EventCounter counter = new EventCounter();
+		EventDispatcher<RobotEvent> dispatcher = new EventDispatcher<>("ReplayHarness events", counter);
+		EventDispatcher<RobotEvent>.Producer producer = dispatcher.createProducer("LineMonitor", EVENT_CAPACITY);
+		monitor.setEventProducer(producer);
+		dispatcher.start();
+
+		// Run the monitor until a sensor runs out
+		SensorFrame frame = new SensorFrame();
+		long fingerprint = 17;
+		int cycles = 0;
+		long start = System.nanoTime();
+		while (!sensors[LEFT].isFinished() && !sensors[RIGHT].isFinished() && !sensors[FRONT].isFinished()) {
+			monitor.runCycle(frame);
+			cycles++;
+			while (dispatcher.getDepth() > EVENT_CAPACITY / 2)
+				Thread.yield();
+			for (int x = 0; x < sensors.length; x++) {
+				fingerprint = 31 * fingerprint + frame.getMatch(x);
+				fingerprint = 31 * fingerprint + frame.getBlend(x);
+				fingerprint = 31 * fingerprint + Double.doubleToLongBits(frame.getComposition(x));
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+
+		// Let the dispatcher catch up before counting
+		while (dispatcher.getDepth() > 0)
+			Thread.sleep(1);
+		dispatcher.terminate();
+
+		// The sonar is replayed on its own, as the rear end daemon needs the sonar motor
+		ReplaySampleProvider sonar = new ReplaySampleProvider(recording, ION2016.SONAR_CHANNEL, 1, new ReplayClock(recording, false));
+		float[] distance = new float[1];
+		int sonarSamples = 0;
+		int alerts = 0;
+		float closest = Float.POSITIVE_INFINITY;
+		while (!sonar.isFinished()) {
+			sonar.fetchSample(distance, 0);
+			sonarSamples++;
+			if (distance[0] < config.sonarAlertThreshold)
+				alerts++;
+			closest = Math.min(closest, distance[0]);
+		}
+
+		System.out.printf("%d cycles in %.1f ms (%.0f cycles/s)%s\n", cycles, elapsed / 1e6, cycles / (elapsed / 1e9), realTime ? ", real time"
+				: "");
+		System.out.println("Events: " + counter + ", dropped " + producer.getDropped());
+		System.out.printf("Sonar: %d samples, %d below %.2f m, closest %.2f m\n", sonarSamples, alerts, config.sonarAlertThreshold, closest);
+		System.out.printf("Fingerprint: %016x\n", fingerprint);
+	}
+}
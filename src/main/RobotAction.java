@@ -28,6 +28,17 @@ public abstract class RobotAction {
 	 */
 	protected abstract String dataToString();
 
+	/**
+	 * Gets the sampling policy that the line monitor should use while this action runs. Actions that do not need every sensor should override this,
+	 * so that the sensors they do need are read more often.
+	 *
+	 * @return the sampling policy.
+	 */
+	public SamplingPolicy getSamplingPolicy() {
+
+		return SamplingPolicy.ALL;
+	}
+
 	@Override
 	public String toString() {
 	
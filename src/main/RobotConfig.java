@@ -0,0 +1,531 @@
+package main;
+
+import java.util.Map;
+
+import utilities.units.Quantity;
+import utilities.units.Unit;
+
+/**
+ * The configuration of the robot and the course, compiled from the maps in {@link ION2016}. Every value is converted once, when the configuration is
+ * made, into a plain double in base units: distances in m, speeds in m/s, times in s, and angles in degrees (the base unit of angle in
+ * {@link Unit}). A configuration is immutable, so it can be read from any thread without locking. It is compiled once, at startup, with
+ * {@link ION2016#compileConfig()}; there is no reloading, as many classes copy their values from it when they are made.
+ */
+public class RobotConfig {
+	
+	/**
+	 * The settings for a sonar sweep.
+	 */
+	public static class Sweep {
+		
+		/**
+		 * The start angle, in degrees. Positive is right, negative is left.
+		 */
+		public final int start;
+		/**
+		 * The end angle, in degrees. Positive is right, negative is left.
+		 */
+		public final int end;
+		/**
+		 * The distance, in m, that everything in the sweep must be beyond for the sweep to pass.
+		 */
+		public final double threshold;
+		/**
+		 * The increment, in degrees. Always positive.
+		 */
+		public final int increment;
+		
+		/**
+		 * Makes a new sweep.
+		 * 
+		 * @param start
+		 *            the start angle, in degrees.
+		 * @param end
+		 *            the end angle, in degrees.
+		 * @param threshold
+		 *            the threshold, in m.
+		 * @param increment
+		 *            the increment, in degrees.
+		 */
+		public Sweep(int start, int end, double threshold, int increment) {
+		
+			this.start = start;
+			this.end = end;
+			this.threshold = threshold;
+			this.increment = increment;
+		}
+		
+		@Override
+		public String toString() {
+		
+			return "[" + start + " to " + end + " deg by " + increment + ", " + threshold + " m]";
+		}
+	}
+	
+	/**
+	 * The settings for an event detector. See {@link EventDetector}.
+	 */
+	public static class Detection {
+		
+		/**
+		 * The settings used when there is no configuration: 3 of 5 samples, and 1 s between detections.
+		 */
+		public static final Detection DEFAULT = new Detection(3, 5, 1);
+		
+		/**
+		 * The number of samples in the window that must show the event for it to be detected.
+		 */
+		public final int confirmations;
+		/**
+		 * The number of samples in the window, from {@link #confirmations} to 64.
+		 */
+		public final int window;
+		/**
+		 * The shortest time between two detections, in s.
+		 */
+		public final double refractory;
+		
+		/**
+		 * Makes new detector settings.
+		 * 
+		 * @param confirmations
+		 *            the number of samples in the window that must show the event.
+		 * @param window
+		 *            the number of samples in the window.
+		 * @param refractory
+		 *            the shortest time between two detections, in s.
+		 */
+		public Detection(int confirmations, int window, double refractory) {
+		
+			if (confirmations < 1 || confirmations > window || window > 64)
+				throw new IllegalArgumentException("Need 1 <= confirmations <= window <= 64, not " + confirmations + " of " + window);
+			if (!(refractory >= 0))
+				throw new IllegalArgumentException("The refractory period cannot be negative: " + refractory);
+			this.confirmations = confirmations;
+			this.window = window;
+			this.refractory = refractory;
+		}
+		
+		@Override
+		public String toString() {
+		
+			return "[" + confirmations + " of " + window + ", " + refractory + " s]";
+		}
+	}
+	
+	/**
+	 * The time to stop at an intersection, in s.
+	 */
+	public final double stopDelay;
+	/**
+	 * The width of the road, in m.
+	 */
+	public final double roadWidth;
+	/**
+	 * The speed limit on roads with a yellow line, in m/s.
+	 */
+	public final double yellowSpeed;
+	/**
+	 * The speed limit on roads with a white line, in m/s.
+	 */
+	public final double whiteSpeed;
+	/**
+	 * The distance between the wheels, in m.
+	 */
+	public final double trackWidth;
+	/**
+	 * The diameter of the wheels, in m.
+	 */
+	public final double wheelDiameter;
+	/**
+	 * The number of motor rotations required to rotate the sonar 360 degrees.
+	 */
+	public final double sonarGearRatio;
+	/**
+	 * The maximum angle the sonar can turn from straight ahead, in degrees.
+	 */
+	public final double sonarMaxAngle;
+	/**
+	 * The proportional line following gain.
+	 */
+	public final double lineFollowingP;
+	/**
+	 * The integral line following gain.
+	 */
+	public final double lineFollowingI;
+	/**
+	 * The derivative line following gain.
+	 */
+	public final double lineFollowingD;
+	/**
+	 * The distance at which the sonar sends an approaching object alert, in m.
+	 */
+	public final double sonarAlertThreshold;
+	/**
+	 * How far beyond the alert threshold the sonar must read before the alert is cleared, in m. Optional; defaults to 3 cm.
+	 */
+	public final double sonarAlertHysteresis;
+	/**
+	 * The time gap kept behind a vehicle ahead, in s. Optional; defaults to 2 s.
+	 */
+	public final double cruiseTimeGap;
+	/**
+	 * The gap kept behind a stopped vehicle, in m. Optional; defaults to 5 cm.
+	 */
+	public final double cruiseStandstillGap;
+	/**
+	 * The distance to pull up at an intersection, in m.
+	 */
+	public final double intersectionPullup;
+	/**
+	 * The distance to pull up before parking, in m.
+	 */
+	public final double parkPullup;
+	/**
+	 * The speed used while parking, in m/s.
+	 */
+	public final double parkingSpeed;
+	/**
+	 * The speed used while rotating in place, in degrees/s.
+	 */
+	public final double rotateSpeed;
+	/**
+	 * The longest time a sonar sweep may wait for a clear path, in s.
+	 */
+	public final double sonarSweepTimeout;
+	/**
+	 * The speed the sonar is rotated at during a sweep, in degrees/s, or 0 to stop at each increment. Optional; defaults to 120 degrees/s.
+	 */
+	public final double sonarSweepSpeed;
+	/**
+	 * The sweep done before going through an intersection.
+	 */
+	public final Sweep intersectionSweep;
+	/**
+	 * The sweep done before pulling into a parking space.
+	 */
+	public final Sweep parkingSweep;
+	/**
+	 * The distance to back up when a parking space is blocked, in m.
+	 */
+	public final double parkAvoidBackup;
+	/**
+	 * The sweep done after backing up from a blocked parking space.
+	 */
+	public final Sweep parkAvoidSweep;
+	/**
+	 * The angle of the maneuver into a parking space, in degrees.
+	 */
+	public final double parkManeuverAngle;
+	/**
+	 * The distance of the maneuver into a parking space, in m.
+	 */
+	public final double parkManeuverDistance;
+	/**
+	 * The distance to back up to center on a parking space, in m.
+	 */
+	public final double parkCenterDistance;
+	/**
+	 * The angle to turn into a parking space, in degrees.
+	 */
+	public final double parkAngle;
+	/**
+	 * The distance to back into a parking space, in m.
+	 */
+	public final double parkBackInDistance;
+	/**
+	 * How far to the side of the centre of the robot the edge of a parking space is when the side sensor finds the space, in m. Optional; by
+	 * default, half the track width.
+	 */
+	public final double parkEdgeOffset;
+	/**
+	 * The radius of the arcs the robot drives while parking, in m. Optional; by default, the inside wheel stands still.
+	 */
+	public final double parkTurnRadius;
+	/**
+	 * The time to stay parked, in s.
+	 */
+	public final double parkDelay;
+	/**
+	 * The sweep done before pulling out of a parking space.
+	 */
+	public final Sweep pulloutSweep;
+	/**
+	 * The color of the road.
+	 */
+	public final String roadColor;
+	/**
+	 * The color of parking lots.
+	 */
+	public final String parkingColor;
+	/**
+	 * The color of intersections.
+	 */
+	public final String intersectionColor;
+	/**
+	 * The minimum blend composition for a blend to count as the parking color.
+	 */
+	public final double minimumBlend;
+	/**
+	 * The settings of the intersection detector. Optional; the keys are robotConstants.intersectionConfirmations, intersectionWindow, and
+	 * intersectionRefractory.
+	 */
+	public final Detection intersectionDetection;
+	/**
+	 * The settings of the parking lot detectors. Optional; the keys are robotConstants.parkingConfirmations, parkingWindow, and parkingRefractory.
+	 */
+	public final Detection parkingDetection;
+	
+	/**
+	 * Compiles a configuration from the maps read from the configuration file. Every required value is checked for presence, units, and range, and
+	 * all the problems are reported at once.
+	 * 
+	 * @param courseConstants
+	 *            the course constants, as in {@link ION2016#courseConstants}.
+	 * @param robotConstants
+	 *            the robot constants, as in {@link ION2016#robotConstants}.
+	 * @param colorFunctions
+	 *            the color functions, as in {@link ION2016#colorFunctions}.
+	 * @param colorTolerances
+	 *            the color tolerances, as in {@link ION2016#colorTolerances}.
+	 * @throws IllegalArgumentException
+	 *             if any value is missing, has the wrong units, or is out of range. The message lists every problem.
+	 */
+	public RobotConfig(Map<String, Quantity> courseConstants, Map<String, Quantity> robotConstants, Map<String, String> colorFunctions,
+			Map<String, Double> colorTolerances) {
+	
+		Reader course = new Reader("courseConstants", courseConstants);
+		Reader robot = new Reader("robotConstants", robotConstants);
+		
+		stopDelay = course.nonNegative("stopDelay", Unit.SECOND);
+		roadWidth = course.positive("roadWidth", Unit.METER);
+		yellowSpeed = course.positive("yellowSpeed", Unit.METER_PER_SECOND);
+		whiteSpeed = course.positive("whiteSpeed", Unit.METER_PER_SECOND);
+		
+		trackWidth = robot.positive("trackWidth", Unit.METER);
+		wheelDiameter = robot.positive("wheelDiameter", Unit.METER);
+		sonarGearRatio = robot.positive("sonarGearRatio", Unit.ONE);
+		sonarMaxAngle = robot.positive("sonarMaxAngle", Unit.DEGREE);
+		lineFollowingP = robot.get("lineFollowingP", Unit.ONE);
+		lineFollowingI = robot.get("lineFollowingI", Unit.ONE);
+		lineFollowingD = robot.get("lineFollowingD", Unit.ONE);
+		sonarAlertThreshold = robot.positive("sonarAlertThreshold", Unit.METER);
+		sonarAlertHysteresis = robot.optional("sonarAlertHysteresis", Unit.METER, .03);
+		cruiseTimeGap = robot.optional("cruiseTimeGap", Unit.SECOND, 2);
+		cruiseStandstillGap = robot.optional("cruiseStandstillGap", Unit.METER, .05);
+		intersectionPullup = robot.nonNegative("intersectionPullup", Unit.METER);
+		parkPullup = robot.nonNegative("parkPullup", Unit.METER);
+		parkingSpeed = robot.positive("parkingSpeed", Unit.METER_PER_SECOND);
+		rotateSpeed = robot.positive("rotateSpeed", Unit.DEGREE_PER_SECOND);
+		sonarSweepTimeout = robot.positive("sonarSweepTimeout", Unit.SECOND);
+		sonarSweepSpeed = robot.optional("sonarSweepSpeed", Unit.DEGREE_PER_SECOND, 120);
+		intersectionSweep = robot.sweep("intersectionSweep");
+		parkingSweep = robot.sweep("parkingSweep");
+		parkAvoidBackup = robot.nonNegative("parkAvoidBackup", Unit.METER);
+		parkAvoidSweep = robot.sweep("parkAvoidSweep");
+		parkManeuverAngle = robot.get("parkManeuverAngle", Unit.DEGREE);
+		parkManeuverDistance = robot.nonNegative("parkManeuverDistance", Unit.METER);
+		parkCenterDistance = robot.nonNegative("parkCenterDistance", Unit.METER);
+		parkAngle = robot.get("parkAngle", Unit.DEGREE);
+		parkBackInDistance = robot.nonNegative("parkBackInDistance", Unit.METER);
+		parkEdgeOffset = robot.optional("parkEdgeOffset", Unit.METER, trackWidth / 2);
+		parkTurnRadius = robot.optional("parkTurnRadius", Unit.METER, trackWidth / 2);
+		parkDelay = robot.nonNegative("parkDelay", Unit.SECOND);
+		pulloutSweep = robot.sweep("pulloutSweep");
+		intersectionDetection = robot.detection("intersection");
+		parkingDetection = robot.detection("parking");
+		
+		String problems = course.problems + robot.problems;
+		if (!(parkTurnRadius > 0))
+			problems += "\n robotConstants.parkTurnRadius must be positive";
+		if (!(parkEdgeOffset >= 0))
+			problems += "\n robotConstants.parkEdgeOffset must not be negative";
+		roadColor = colorFunctions.get("roadColor");
+		parkingColor = colorFunctions.get("parkingColor");
+		intersectionColor = colorFunctions.get("intersectionColor");
+		if (roadColor == null)
+			problems += "\n colorFunctions.roadColor is missing";
+		if (parkingColor == null)
+			problems += "\n colorFunctions.parkingColor is missing";
+		if (intersectionColor == null)
+			problems += "\n colorFunctions.intersectionColor is missing";
+		
+		Double blend = colorTolerances.get("minimumBlend");
+		if (blend == null) {
+			problems += "\n colorTolerances.minimumBlend is missing";
+			blend = Double.NaN;
+		}
+		minimumBlend = blend;
+		
+		if (!problems.isEmpty())
+			throw new IllegalArgumentException("Bad configuration:" + problems);
+	}
+	
+	/**
+	 * Gets the sonar sweep timeout.
+	 * 
+	 * @return the sonar sweep timeout, in ms.
+	 */
+	public long getSonarSweepTimeoutMillis() {
+	
+		return Math.round(sonarSweepTimeout * 1000);
+	}
+	
+	/**
+	 * Reads and checks values from one map, collecting the problems instead of stopping at the first one.
+	 */
+	private static class Reader {
+		
+		/**
+		 * The name of the map, used in problem descriptions.
+		 */
+		private final String prefix;
+		/**
+		 * The map.
+		 */
+		private final Map<String, Quantity> map;
+		/**
+		 * The problems found so far, one per line.
+		 */
+		private String problems;
+		
+		/**
+		 * Makes a new reader.
+		 * 
+		 * @param prefix
+		 *            the name of the map, used in problem descriptions.
+		 * @param map
+		 *            the map.
+		 */
+		public Reader(String prefix, Map<String, Quantity> map) {
+		
+			this.prefix = prefix;
+			this.map = map;
+			problems = "";
+		}
+		
+		/**
+		 * Gets a value in the specified units.
+		 * 
+		 * @param key
+		 *            the key.
+		 * @param units
+		 *            the units.
+		 * @return the value, or NaN if it is missing or has the wrong units.
+		 */
+		public double get(String key, Unit units) {
+		
+			Quantity quantity = map.get(key);
+			if (quantity == null) {
+				problems += "\n " + prefix + "." + key + " is missing";
+				return Double.NaN;
+			}
+			try {
+				return quantity.getValueIn(units);
+			} catch (IllegalArgumentException e) {
+				problems += "\n " + prefix + "." + key + " has the wrong units: " + quantity;
+				return Double.NaN;
+			}
+		}
+		
+		/**
+		 * Gets an optional value in the specified units.
+		 * 
+		 * @param key
+		 *            the key.
+		 * @param units
+		 *            the units.
+		 * @param missing
+		 *            the value to use if the key is missing.
+		 * @return the value, missing if it is missing, or NaN if it has the wrong units.
+		 */
+		public double optional(String key, Unit units, double missing) {
+		
+			if (!map.containsKey(key))
+				return missing;
+			return get(key, units);
+		}
+		
+		/**
+		 * Gets a value in the specified units, which must be greater than 0.
+		 * 
+		 * @param key
+		 *            the key.
+		 * @param units
+		 *            the units.
+		 * @return the value, or NaN if it is missing, has the wrong units, or is out of range.
+		 */
+		public double positive(String key, Unit units) {
+		
+			double value = get(key, units);
+			if (value <= 0) {
+				problems += "\n " + prefix + "." + key + " must be positive";
+				return Double.NaN;
+			}
+			return value;
+		}
+		
+		/**
+		 * Gets a value in the specified units, which must be at least 0.
+		 * 
+		 * @param key
+		 *            the key.
+		 * @param units
+		 *            the units.
+		 * @return the value, or NaN if it is missing, has the wrong units, or is out of range.
+		 */
+		public double nonNegative(String key, Unit units) {
+		
+			double value = get(key, units);
+			if (value < 0) {
+				problems += "\n " + prefix + "." + key + " must not be negative";
+				return Double.NaN;
+			}
+			return value;
+		}
+		
+		/**
+		 * Gets the settings for a sweep, from the keys name + Start, End, Threshold, and Increment.
+		 * 
+		 * @param name
+		 *            the name of the sweep.
+		 * @return the sweep.
+		 */
+		public Sweep sweep(String name) {
+		
+			int start = (int) get(name + "Start", Unit.DEGREE);
+			int end = (int) get(name + "End", Unit.DEGREE);
+			double threshold = positive(name + "Threshold", Unit.METER);
+			double increment = positive(name + "Increment", Unit.DEGREE);
+			if (increment < 1)
+				problems += "\n " + prefix + "." + name + "Increment must be at least 1 deg";
+			return new Sweep(start, end, threshold, (int) increment);
+		}
+		
+		/**
+		 * Gets the settings for an event detector, from the optional keys name + Confirmations, Window, and Refractory. Missing keys take their
+		 * values from {@link Detection#DEFAULT}.
+		 * 
+		 * @param name
+		 *            the name of the detector.
+		 * @return the settings, or the default settings if they are invalid.
+		 */
+		public Detection detection(String name) {
+		
+			Detection defaults = Detection.DEFAULT;
+			double confirmations = optional(name + "Confirmations", Unit.ONE, defaults.confirmations);
+			double window = optional(name + "Window", Unit.ONE, defaults.window);
+			double refractory = optional(name + "Refractory", Unit.SECOND, defaults.refractory);
+			if (Double.isNaN(confirmations + window + refractory))
+				return defaults;
+			try {
+				if (confirmations != Math.rint(confirmations) || window != Math.rint(window))
+					throw new IllegalArgumentException("the confirmations and window must be whole numbers");
+				return new Detection((int) confirmations, (int) window, refractory);
+			} catch (IllegalArgumentException e) {
+				problems += "\n " + prefix + "." + name + " detection is invalid: " + e.getMessage();
+				return defaults;
+			}
+		}
+	}
+}
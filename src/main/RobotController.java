@@ -1,29 +1,47 @@
 package main;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import lejos.hardware.Sound;
+import lejos.robotics.navigation.Move;
 import utilities.Color;
 import utilities.Delay;
-import utilities.units.Quantity;
-import utilities.units.Unit;
+import utilities.events.EventDispatcher;
+import utilities.events.EventListener;
+import utilities.task.CompletionFuture;
 
 /**
- * This class controls the robot. It receives events from all observable things, such as the LineMontior, and then uses those events to control the
- * robot.
+ * This class controls the robot. It receives events from all the sensor classes, such as the LineMontior, and then uses those events to control
+ * the robot. The events are handled on a dedicated thread, so handling an event never holds up the sensor loops.
  *
  * @author jacob
  *
  */
-public class RobotController implements Observer {
+public class RobotController implements EventListener<RobotEvent> {
 	
+	/**
+	 * The maximum number of events waiting from each sensor class.
+	 */
+	private static final int EVENT_CAPACITY = 64;
+	/**
+	 * The time between odometry updates, in ms.
+	 */
+	private static final long ODOMETRY_PERIOD = 10;
+	/**
+	 * The time between beeps while backing up, in ms.
+	 */
+	private static final long BACKUP_BEEP_PERIOD = 500;
 	/**
 	 * The course controller used to determine the course.
 	 */
@@ -44,6 +62,30 @@ public class RobotController implements Observer {
 	 * The line follower.
 	 */
 	private final LineFollower lf;
+	/**
+	 * The tracker of the vehicle ahead. Only used on the event thread.
+	 */
+	private final LeadVehicleTracker leadVehicle;
+	/**
+	 * The controller that chooses the speed to follow the vehicle ahead at. Only used on the event thread.
+	 */
+	private final CruiseController cruiseController;
+	/**
+	 * The map of what the sonar has seen around the robot.
+	 */
+	private final OccupancyGrid grid;
+	/**
+	 * The robot's pose and distance along the current edge, from the wheel tacho counts.
+	 */
+	private final OdometryEstimator odometer;
+	/**
+	 * The daemon that keeps {@link #odometer} up to date from the wheel tacho counts, and gives its pose to {@link #grid}.
+	 */
+	private final UtilityDaemon odometry;
+	/**
+	 * The planner of the paths driven while parking.
+	 */
+	private final ReedsSheppPlanner parkingPlanner;
 	/**
 	 * The executor service used to run all the actions.
 	 */
@@ -51,7 +93,11 @@ public class RobotController implements Observer {
 	/**
 	 * The status of the currently running task.
 	 */
-	private Future<?> taskStatus;
+	private volatile Future<?> taskStatus;
+	/**
+	 * The dispatcher that delivers events from the sensor classes to {@link #eventReceived(RobotEvent)}.
+	 */
+	private final EventDispatcher<RobotEvent> eventDispatcher;
 	/**
 	 * True if the robot has completed the course, false otherwise.
 	 */
@@ -82,14 +128,35 @@ public class RobotController implements Observer {
 		
 		isDone = new AtomicBoolean(false);
 		
-		// Set up the observing
-		lineMonitor.addObserver(this);
-		sonar.addObserver(this);
-		sonar.setAlertThreshold(ION2016.robotConstants.get("sonarAlertThreshold").getValueIn(Unit.METER));
+		// Set up the events. Each sensor class publishes from its own thread, so each gets its own producer.
+		eventDispatcher = new EventDispatcher<>("RobotController events", this);
+		lineMonitor.setEventProducer(eventDispatcher.createProducer("LineMonitor", EVENT_CAPACITY));
+		sonar.setEventProducer(eventDispatcher.createProducer("Sonar", EVENT_CAPACITY));
+		sonar.setAlertThreshold(ION2016.getConfig().sonarAlertThreshold);
+		sonar.setAlertHysteresis(ION2016.getConfig().sonarAlertHysteresis);
+		sonar.setSweepSpeed(ION2016.getConfig().sonarSweepSpeed);
+		
+		// Map what the sonar sees, so decisions can use it instead of sweeping again
+		grid = new OccupancyGrid();
+		sonar.setOccupancyGrid(grid);
+		odometer = new OdometryEstimator(dp.getTrackWidth());
+		parkingPlanner = new ReedsSheppPlanner(ION2016.getConfig().parkTurnRadius);
+		odometry = new UtilityDaemon(new Runnable() {
+			
+			@Override
+			public void run() {
+			
+				grid.updatePose(odometer.update(pilot.getLeftDistance(), pilot.getRightDistance(), System.nanoTime()));
+				Delay.delay(ODOMETRY_PERIOD);
+			}
+		}, "Odometry");
 		
 		// Set up line following
-		lf = new LineFollower(ION2016.robotConstants.get("lineFollowingP").getValueIn(Unit.ONE), ION2016.robotConstants.get("lineFollowingI").getValueIn(
-				Unit.ONE), ION2016.robotConstants.get("lineFollowingD").getValueIn(Unit.ONE), dp, lm);
+		RobotConfig config = ION2016.getConfig();
+		lf = new LineFollower(config.lineFollowingP, config.lineFollowingI, config.lineFollowingD, dp, lm);
+		lf.setGainSchedule(ION2016.lineFollowingSchedule);
+		leadVehicle = new LeadVehicleTracker();
+		cruiseController = new CruiseController(config.cruiseTimeGap, config.cruiseStandstillGap, config.yellowSpeed);
 	}
 	
 	/**
@@ -98,7 +165,9 @@ public class RobotController implements Observer {
 	public void start() {
 	
 		// Start all daemons
+		eventDispatcher.start();
 		lineMonitor.startDaemon();
+		odometry.startDaemon();
 		sonar.startDaemon();
 		
 		// Get and run the initial task from the courseController
@@ -122,10 +191,20 @@ public class RobotController implements Observer {
 	}
 	
 	/**
-	 * Receives updates from observable things. arg should always be a {@link RobotMessage}.
+	 * Gets the dispatcher that delivers events to this controller.
+	 *
+	 * @return the event dispatcher.
+	 */
+	public EventDispatcher<RobotEvent> getEventDispatcher() {
+	
+		return eventDispatcher;
+	}
+	
+	/**
+	 * Receives events from the sensor classes. This is called on the event dispatcher thread.
 	 */
 	@Override
-	public void update(Observable o, Object arg) {
+	public void eventReceived(RobotEvent event) {
 	
 		// XXX
 		// if (System.currentTimeMillis() > 0)
@@ -133,27 +212,20 @@ public class RobotController implements Observer {
 		//courseController.logEvent((RobotMessage)arg);
 		// ensure that everything is ignored while the executor is running
 		if (taskStatus != null && taskStatus.isDone()) {
-			if (!(arg instanceof RobotMessage))
-				throw new IllegalArgumentException("arg is not a RobotMessage");
-			
-			RobotMessage message = (RobotMessage) arg;
-			ION2016.report(message.toString());
+			RobotMessage message = event.getMessage();
+			ION2016.report(event.toString());
 			
 			if (message == RobotMessage.APPROACHING_OBJECT) {
-				// TODO improve rear end prevention.
-				double speedCorrection = 1;
-				double distance = RobotMessage.APPROACHING_OBJECT.getParameter();
-				if (distance <= .05)
-					speedCorrection = 0;
-				else if (distance > .05 && distance <= .2)
-					speedCorrection = (distance - .05) / (.2 - .05);
-				
-				double objectSpeed = ION2016.courseConstants.get("yellowSpeed").getValueIn(Unit.METER_PER_SECOND) * speedCorrection;
+				// Follow the vehicle ahead at a constant time gap
+				leadVehicle.update(event.getParameter(), event.getReadingTime());
+				double objectSpeed = cruiseController.update(leadVehicle);
 				
-				ION2016.report("Object Speed %.2f: ", objectSpeed);
+				ION2016.report("%s, speed %.3f", leadVehicle, objectSpeed);
 				lf.setMaxSpeed(objectSpeed);
 				return;
 			} else if (message == RobotMessage.ALL_CLEAR) {
+				leadVehicle.reset();
+				cruiseController.reset();
 				lf.setMaxSpeed(Double.POSITIVE_INFINITY);
 				//pilot.setTravelSpeed(ION2016.courseConstants.get("yellowSpeed").getValueIn(Unit.METER_PER_SECOND));
 				return;
@@ -161,6 +233,7 @@ public class RobotController implements Observer {
 			
 			//fix?
 			// Inform the course controller
+			ION2016.report("%s at %s", message, odometer.getPose());
 			courseController.logEvent(message);
 			
 			RobotAction nextAction = courseController.getNextAction();
@@ -172,10 +245,10 @@ public class RobotController implements Observer {
 				pilot.stop();
 				if (message == RobotMessage.INTERSECTION_DETECTED) {
 					Sound.beep();
-					actionExecutor.submit(new RobotDelay(ION2016.courseConstants.get("stopDelay")));
+					actionExecutor.submit(new RobotDelay(ION2016.getConfig().stopDelay));
 				} else if (message == RobotMessage.PARKING_LOT_RIGHT_DETECTED)
 					// We have to pause when entering a parking lot
-					actionExecutor.submit(new RobotDelay(ION2016.robotConstants.get("parkDelay")));
+					actionExecutor.submit(new RobotDelay(ION2016.getConfig().parkDelay));
 				
 				taskStatus = actionExecutor.submit(new RobotTask(nextAction));
 			}
@@ -233,27 +306,31 @@ public class RobotController implements Observer {
 		// RobotMessage.INTERSECTION_NAVIGATED
 		ION2016.report("Started Intesection Action");
 		
-		sonarSweepTimeout((int) ION2016.robotConstants.get("intersectionSweepStart").getValueIn(Unit.DEGREE),
-				(int) ION2016.robotConstants.get("intersectionSweepEnd").getValueIn(Unit.DEGREE), ION2016.robotConstants.get("intersectionSweepThreshold")
-						.getValueIn(Unit.METER), (int) ION2016.robotConstants.get("intersectionSweepIncrement").getValueIn(Unit.DEGREE),
-				(long) ION2016.robotConstants.get("sonarSweepTimeout").getValueIn(Unit.MILLISECOND));
+		RobotConfig config = ION2016.getConfig();
+		RobotConfig.Sweep sweep = config.intersectionSweep;
+		// Sweep while pulling up, and only wait for the result before turning. Only look down the roads that traffic can come from, if the map says.
+		List<SweepPlanner.Sector> sectors = ia.getSweepSectors();
+		if (sectors == null)
+			sectors = Collections.singletonList(new SweepPlanner.Sector(sweep.start, sweep.end));
+		Future<Boolean> clear = sweepUnlessClear(sectors, sweep.threshold, sweep.increment, config.getSonarSweepTimeoutMillis());
 		
-		Object[] blendDataLeft = lineMonitor.getAllBlendData(ION2016.LEFT);
-		Object[] blendDataRight = lineMonitor.getAllBlendData(ION2016.RIGHT);
+		SensorFrame frame = lineMonitor.readFrame(new SensorFrame());
 		
-		double errorLeft = 2 * ((double) blendDataLeft[1] - .5);
-		double errorRight = 2 * ((double) blendDataRight[1] - .5);
+		double errorLeft = 2 * (frame.getComposition(ION2016.LEFT) - .5);
+		double errorRight = 2 * (frame.getComposition(ION2016.RIGHT) - .5);
 		double posError = LineFollower.error(errorLeft, errorRight, .5);
 		ION2016.report("Starting intersection, pos error=%.2f", posError);
 		// + -> right, - -> left
 		int angle = ia.getAngle();
 		
 		// Pull up so that the center of the robot is over the red line
-		pilot.travel(ION2016.robotConstants.get("intersectionPullup").getValueIn(Unit.METER));
-		pilot.arc(-1 * Math.signum(angle) * ION2016.courseConstants.get("roadWidth").getValueIn(Unit.METER) / 2,
+		pilot.travel(config.intersectionPullup);
+		awaitSweep(clear);
+		pilot.arc(-1 * Math.signum(angle) * config.roadWidth / 2,
 				-1 * Math.signum(angle) * Math.abs(angle));
 		
 		courseController.logEvent(RobotMessage.INTERSECTION_NAVIGATED);
+		odometer.startEdge();
 		
 		/*RobotAction next = courseController.getNextAction();
 		
@@ -290,12 +367,13 @@ public class RobotController implements Observer {
 	 */
 	private void alignWithRedLine() {
 	
-		String intersectionColor = ION2016.colorFunctions.get("intersectionColor");
-		String roadColor = ION2016.colorFunctions.get("roadColor");
+		RobotConfig config = ION2016.getConfig();
+		String intersectionColor = config.intersectionColor;
+		String roadColor = config.roadColor;
 		double initialBlend = lineMonitor.getColor(ION2016.FRONT).determineComposition(ION2016.allColors.getColor(intersectionColor),
 				ION2016.allColors.getColor(roadColor));
 		if (Math.abs(initialBlend - .5) > .3) {
-			pilot.setTravelSpeed(ION2016.robotConstants.get("parkingSpeed").getValueIn(Unit.METER_PER_SECOND));
+			pilot.setTravelSpeed(config.parkingSpeed);
 			if (initialBlend > .9)
 				pilot.forward();
 			else
@@ -307,7 +385,7 @@ public class RobotController implements Observer {
 			// dank XXX memes
 			pilot.stop();
 		}
-		pilot.setTravelSpeed(ION2016.courseConstants.get("yellowSpeed").getValueIn(Unit.METER_PER_SECOND));
+		pilot.setTravelSpeed(config.yellowSpeed);
 	}
 	
 	/**
@@ -325,59 +403,51 @@ public class RobotController implements Observer {
 		// then asks the robot to pull out of the space, this action should submit the pull out task to the executor before exiting.
 		// RobotMessage.PARKED
 		
-		pilot.setTravelSpeed(ION2016.robotConstants.get("parkingSpeed").getValueIn(Unit.METER_PER_SECOND));
+		RobotConfig config = ION2016.getConfig();
+		pilot.setTravelSpeed(config.parkingSpeed);
 		int side = pa.getSide() == ION2016.RIGHT ? 1 : -1;
 		
 		// System.out.println(sonar.sweep(side * 90, side * 60, .3, 10));
 		// Button.waitForAnyPress();
-		int parkingSweepStart = (int) ION2016.robotConstants.get("parkingSweepStart").getValueIn(Unit.DEGREE);
-		int parkingSweepEnd = (int) ION2016.robotConstants.get("parkingSweepEnd").getValueIn(Unit.DEGREE);
-		double parkingSweepThreshold = ION2016.robotConstants.get("parkingSweepThreshold").getValueIn(Unit.METER);
-		int parkingSweepIncrement = (int) ION2016.robotConstants.get("parkingSweepIncrement").getValueIn(Unit.DEGREE);
-		long timeout = (long) ION2016.robotConstants.get("sonarSweepTimeout").getValueIn(Unit.MILLISECOND);
+		RobotConfig.Sweep parkingSweep = config.parkingSweep;
+		long timeout = config.getSonarSweepTimeoutMillis();
 		
-		if (!sonar.sweep(side * parkingSweepStart, side * parkingSweepEnd, parkingSweepThreshold, parkingSweepIncrement)) {
+		if (!awaitSweep(sweepUnlessClear(parkingSweep, side, 0))) {
 			
 			// Back up and make sound
-			double avoidDistance = ION2016.robotConstants.get("parkAvoidBackup").getValueIn(Unit.METER);
-			pilot.travel(-avoidDistance, true);
-			while (pilot.isMoving())
-				Sound.beep();
+			double avoidDistance = config.parkAvoidBackup;
+			Future<Move> backup = pilot.travelAsync(-avoidDistance);
 			
-			int parkAvoidSweepStart = (int) ION2016.robotConstants.get("parkAvoidSweepStart").getValueIn(Unit.DEGREE);
-			int parkAvoidSweepEnd = (int) ION2016.robotConstants.get("parkAvoidSweepEnd").getValueIn(Unit.DEGREE);
-			double parkAvoidSweepThreshold = ION2016.robotConstants.get("parkAvoidSweepThreshold").getValueIn(Unit.METER);
-			int parkAvoidSweepIncrement = (int) ION2016.robotConstants.get("parkAvoidSweepIncrement").getValueIn(Unit.DEGREE);
-			sonarSweepTimeout(side * parkAvoidSweepStart, side * parkAvoidSweepEnd, parkAvoidSweepThreshold, parkAvoidSweepIncrement, timeout);
+			// Start sweeping again while backing up
+			RobotConfig.Sweep parkAvoidSweep = config.parkAvoidSweep;
+			Future<Boolean> clear = sweepUnlessClear(parkAvoidSweep, side, timeout);
+			do
+				Sound.beep();
+			while (!awaitMove(backup, BACKUP_BEEP_PERIOD));
+			awaitSweep(clear);
 			pilot.travel(avoidDistance);
 		}
 		
-		double parkManeuverAngle = ION2016.robotConstants.get("parkManeuverAngle").getValueIn(Unit.DEGREE);
-		double parkManeuverDistance = ION2016.robotConstants.get("parkManeuverDistance").getValueIn(Unit.METER);
-		pilot.rotate(-parkManeuverAngle * (pa.getSide() == ION2016.LEFT ? -1 : 1));
-		pilot.travel(parkManeuverDistance);
-		pilot.rotate(parkManeuverAngle * (pa.getSide() == ION2016.LEFT ? -1 : 1));
+		// Move over towards the space, in one motion rather than turning on the spot, turning back, and turning again, and go on until the side
+		// sensor finds the space
+		double parkManeuverAngle = Math.toRadians(config.parkManeuverAngle);
+		double parkManeuverDistance = config.parkManeuverDistance;
+		drive(parkingPlanner, parkManeuverDistance * Math.cos(parkManeuverAngle), -side * parkManeuverDistance * Math.sin(parkManeuverAngle), 0);
 		pilot.forward();
 		waitForEdgeCrossings(1, pa.getSide());
+		OdometryEstimator.Pose edge = odometer.getPose();
 		pilot.stop();
+		// Let the odometry catch up with where the robot stopped
+		Delay.delay(2 * ODOMETRY_PERIOD);
 		
-		pilot.travel(-ION2016.robotConstants.get("parkCenterDistance").getValueIn(Unit.METER));
-		
-		int angle = (int) ION2016.robotConstants.get("parkAngle").getValueIn(Unit.DEGREE) * (pa.getSide() == ION2016.LEFT ? -1 : 1);// -90 for left (turn
+		// Back up to center on the space, turn to face away from it, and back in, all in one motion. The space is placed from where its edge was
+		// seen, rather than found again with the sensors on the way in.
+		int angle = (int) config.parkAngle * (pa.getSide() == ION2016.LEFT ? -1 : 1);// -90 for left (turn
 		// right to back in), 90
 		// for right (turn left to
 		// back in)
-		pilot.rotate(angle);
-		pilot.backward();
-		// Button.waitForAnyPress();
-		waitForEdgeCrossings(1, ION2016.LEFT, ION2016.RIGHT);
-		pilot.travel(-ION2016.robotConstants.get("parkBackInDistance").getValueIn(Unit.METER));
-		
-		while (pilot.isMoving())
-			Sound.beep();
-		
-		pilot.stop();
-		Delay.delay(ION2016.robotConstants.get("parkDelay"));
+		drive(parkingPlanner, edge, -config.parkCenterDistance, -side * (config.parkEdgeOffset + config.parkBackInDistance), angle);
+		Delay.delay(Math.round(config.parkDelay * 1000));
 		
 		courseController.logEvent(RobotMessage.PARKED);
 		RobotAction nextAction = courseController.getNextAction();
@@ -402,15 +472,14 @@ public class RobotController implements Observer {
 		// exiting.
 		// RobotMessage.PULLED_OUT
 		
-		int pulloutSweepStart = (int) ION2016.robotConstants.get("pulloutSweepStart").getValueIn(Unit.DEGREE);
-		int pulloutSweepEnd = (int) ION2016.robotConstants.get("pulloutSweepEnd").getValueIn(Unit.DEGREE);
-		double pulloutSweepThreshold = ION2016.robotConstants.get("pulloutSweepThreshold").getValueIn(Unit.METER);
-		int pulloutSweepIncrement = (int) ION2016.robotConstants.get("pulloutSweepIncrement").getValueIn(Unit.DEGREE);
-		long timeout = (long) ION2016.robotConstants.get("sonarSweepTimeout").getValueIn(Unit.MILLISECOND);
-		sonarSweepTimeout(pulloutSweepStart, pulloutSweepEnd, pulloutSweepThreshold, pulloutSweepIncrement, timeout);
+		RobotConfig config = ION2016.getConfig();
+		RobotConfig.Sweep pulloutSweep = config.pulloutSweep;
+		// Creep forward while sweeping, and only wait for the result before driving out
+		Future<Boolean> clear = sweepUnlessClear(pulloutSweep, 1, config.getSonarSweepTimeoutMillis());
 		
-		pilot.setTravelSpeed(ION2016.robotConstants.get("parkingSpeed").getValueIn(Unit.METER_PER_SECOND));
+		pilot.setTravelSpeed(config.parkingSpeed);
 		pilot.travel(.05);
+		awaitSweep(clear);
 		pilot.forward();
 		waitForEdgeCrossings(1, ION2016.FRONT);
 		//pilot.travel(-.015);
@@ -420,6 +489,7 @@ public class RobotController implements Observer {
 		pilot.rotate((angle-10));//XXX Dank Memes : 10 is for anglw correction
 		
 		courseController.logEvent(RobotMessage.PULLED_OUT);
+		odometer.startEdge();
 		RobotAction nextAction = courseController.getNextAction();
 		taskStatus = actionExecutor.submit(new RobotTask(nextAction));
 	}
@@ -440,69 +510,172 @@ public class RobotController implements Observer {
 	
 	/**
 	 * Waits for the specified number of edge crossings to occur. Returns as soon as the robot's specified sensor has crossed the specified number of
-	 * edges.
+	 * edges. The edges are counted by the line monitor as the sensors are read, so this thread just sleeps until they have been crossed.
 	 *
 	 * @param numEdges
 	 *            the number of edges the robot should cross.
 	 * @param sensor
 	 *            the sensor ID of the sensor that should detect the edges. Should be either {@link ION2016#FRONT}, {@link ION2016#LEFT}, or {@link ION2016#RIGHT}
 	 *            .
-	 * @return the sensor that crossed the edge
+	 * @return the sensor that crossed the edge, or -1 if the wait was interrupted
 	 */
 	private int waitForEdgeCrossings(int numEdges, int... sensor) {
 	
-		int[] numEdgesCrossed = new int[sensor.length];
-		for (int x = 0; x < numEdgesCrossed.length; x++)
-			numEdgesCrossed[x] = 0;
-		
-		String roadColor = ION2016.colorFunctions.get("roadColor");
-		boolean[] overLine = new boolean[sensor.length];
-		for (int x = 0; x < sensor.length; x++)
-			overLine[x] = !lineMonitor.getColorMatch(sensor[x]).equals(roadColor);
-		
-		int winningSensor = -1;
-		// numEdgesCrossed < numEdges
-		while (winningSensor == -1)
-			for (int x = 0; x < sensor.length; x++) {
-				if (!overLine[x]) {
-					if (!lineMonitor.getColorMatch(sensor[x]).equals(roadColor)) {
-						overLine[x] = true;
-						numEdgesCrossed[x]++;
-					}
-				} else if (overLine[x])
-					if (lineMonitor.getColorMatch(sensor[x]).equals(roadColor)) {
-						overLine[x] = false;
-						numEdgesCrossed[x]++;
-					}
-				if (numEdgesCrossed[x] >= numEdges)
-					winningSensor = x;
-			}
-		
-		return winningSensor;
+		try {
+			return lineMonitor.awaitEdgeCrossings(numEdges, sensor);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+	}
+	
+	/**
+	 * Starts a sweep with {@link Sonar#sweepAsync(int, int, double, int, long)}, unless the occupancy grid has recently seen that the region is
+	 * clear.
+	 *
+	 * @param sweep
+	 *            the region to sweep.
+	 * @param side
+	 *            1 to sweep the region as it is, or -1 to sweep its mirror image.
+	 * @param timeout
+	 *            how long to keep sweeping until the region is clear, in ms, or 0 to sweep once.
+	 * @return a future that gives true if the region is clear.
+	 */
+	private Future<Boolean> sweepUnlessClear(RobotConfig.Sweep sweep, int side, long timeout) {
+	
+		return sweepUnlessClear(Collections.singletonList(new SweepPlanner.Sector(side * sweep.start, side * sweep.end)), sweep.threshold,
+				sweep.increment, timeout);
 	}
 	
 	/**
-	 * Will sweep from an angle to another angle and will have a timeout
+	 * Starts a sweep with {@link Sonar#sweepAsync(List, double, int, long)} of the regions that the occupancy grid has not seen to be clear
+	 * within the last {@link OccupancyGrid#CLEAR_TIME}. If it has seen them all, the daemon is started, as it would be after a clear sweep, and the result is already known.
 	 *
-	 * @param startAngle
-	 *            the start angle, in degrees, from the equilibrium position. Positive is right, negative is left.
-	 * @param endAngle
-	 *            the end angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @param sectors
+	 *            the regions to sweep.
 	 * @param threshold
-	 *            the distance required to return false.
+	 *            the distance that everything in the regions must be beyond, in m.
 	 * @param increment
-	 *            the increment in degrees. Should be positive.
+	 *            the increment in degrees.
 	 * @param timeout
-	 *            timeout in millis
-	 * @return Returns true if everything in the region is greater than threshold away.
+	 *            how long to keep sweeping until the regions are clear, in ms, or 0 to sweep once.
+	 * @return a future that gives true if the regions are clear.
+	 */
+	private Future<Boolean> sweepUnlessClear(List<SweepPlanner.Sector> sectors, double threshold, int increment, long timeout) {
+	
+		List<SweepPlanner.Sector> unknown = new ArrayList<>();
+		for (SweepPlanner.Sector sector : sectors)
+			if (grid.getEvidence(sector.start, sector.end, threshold) != OccupancyGrid.Evidence.CLEAR)
+				unknown.add(sector);
+		ION2016.debug(2, "Sweeping %s of %s; %s", unknown, sectors, grid);
+		if (!unknown.isEmpty())
+			return sonar.sweepAsync(unknown, threshold, increment, timeout);
+		sonar.startDaemon();
+		CompletionFuture<Boolean> clear = new CompletionFuture<>();
+		clear.complete(true);
+		return clear;
+	}
+	
+	/**
+	 * Waits for a sweep started with {@link Sonar#sweepAsync(int, int, double, int, long)} to finish. If this thread is interrupted while waiting,
+	 * the sweep is cancelled.
+	 *
+	 * @param sweep
+	 *            the sweep.
+	 * @return true if the region was clear, false if it was still blocked when the sweep timed out, or the sweep failed or was cancelled.
+	 */
+	private boolean awaitSweep(Future<Boolean> sweep) {
+	
+		try {
+			return sweep.get();
+		} catch (InterruptedException e) {
+			sweep.cancel(true);
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			ION2016.report("Sweep failed");
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	/**
+	 * Drives the shortest path to a pose, in one motion.
+	 *
+	 * @param planner
+	 *            the planner of the path.
+	 * @param x
+	 *            how far ahead of the robot the pose is, in m.
+	 * @param y
+	 *            how far to the left of the robot the pose is, in m.
+	 * @param heading
+	 *            the heading at the pose, in degrees anticlockwise from the robot's heading.
+	 */
+	private void drive(ReedsSheppPlanner planner, double x, double y, double heading) {
+	
+		drive(planner, odometer.getPose(), x, y, heading);
+	}
+	
+	/**
+	 * Drives the shortest path to a pose given relative to an earlier pose of the robot, in one motion. The robot does not have to be where it
+	 * was at that pose; the path starts from where the odometry says it is now.
+	 *
+	 * @param planner
+	 *            the planner of the path.
+	 * @param from
+	 *            the earlier pose.
+	 * @param x
+	 *            how far ahead of the earlier pose the pose is, in m.
+	 * @param y
+	 *            how far to the left of the earlier pose the pose is, in m.
+	 * @param heading
+	 *            the heading at the pose, in degrees anticlockwise from the heading of the earlier pose.
 	 */
-	private boolean sonarSweepTimeout(int startAngle, int endAngle, double threshold, int increment, long timeout) {
+	private void drive(ReedsSheppPlanner planner, OdometryEstimator.Pose from, double x, double y, double heading) {
+	
+		OdometryEstimator.Pose pose = odometer.getPose();
+		// Where the goal is, and then where it is from the current pose
+		double fromHeading = Math.toRadians(from.heading);
+		double dx = from.x + x * Math.cos(fromHeading) - y * Math.sin(fromHeading) - pose.x;
+		double dy = from.y + x * Math.sin(fromHeading) + y * Math.cos(fromHeading) - pose.y;
+		double poseHeading = Math.toRadians(pose.heading);
+		double turn = Math.IEEEremainder(from.heading + heading - pose.heading, 360);
+		List<ReedsSheppPlanner.Segment> path = planner.plan(dx * Math.cos(poseHeading) + dy * Math.sin(poseHeading), -dx * Math.sin(poseHeading) + dy
+				* Math.cos(poseHeading), turn);
+		ION2016.report("Driving %s from %s", path, pose);
+		double[] distances = new double[path.size()];
+		double[] curvatures = new double[path.size()];
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = path.get(i).distance;
+			curvatures[i] = path.get(i).curvature;
+		}
+		pilot.followPath(distances, curvatures);
+	}
 	
-		long startTime = System.currentTimeMillis();
-		while (!sonar.sweep(startAngle, endAngle, threshold, increment))
-			if (System.currentTimeMillis() - startTime > timeout)
-				return true;
-		return false;
+	/**
+	 * Waits for a move started with one of the asynchronous methods of {@link DifferentialPilot} to finish. If this thread is interrupted while
+	 * waiting, the move is cancelled, which stops the robot.
+	 *
+	 * @param move
+	 *            the future of the move.
+	 * @param timeout
+	 *            the longest to wait, in ms.
+	 * @return true if the move has finished, false if it is still going after the timeout.
+	 */
+	private boolean awaitMove(Future<Move> move, long timeout) {
+	
+		try {
+			move.get(timeout, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (InterruptedException e) {
+			move.cancel(true);
+			Thread.currentThread().interrupt();
+			return true;
+		} catch (ExecutionException | CancellationException e) {
+			return true;
+		}
 	}
 	
 	/**
@@ -533,9 +706,10 @@ public class RobotController implements Observer {
 	 */
 	public double wiggle() {
 	
-		pilot.setTravelSpeed(ION2016.robotConstants.get("parkingSpeed").getValueIn(Unit.METER_PER_SECOND));
-		Color intersectionColor = ION2016.allColors.getColor(ION2016.colorFunctions.get("intersectionColor"));
-		Color roadColor = ION2016.allColors.getColor(ION2016.colorFunctions.get("roadColor"));
+		RobotConfig config = ION2016.getConfig();
+		pilot.setTravelSpeed(config.parkingSpeed);
+		Color intersectionColor = ION2016.allColors.getColor(config.intersectionColor);
+		Color roadColor = ION2016.allColors.getColor(config.roadColor);
 		
 		// TODO add to config file
 		int valueToRotate = 5;
@@ -556,7 +730,7 @@ public class RobotController implements Observer {
 		
 		Sound.twoBeeps();
 		
-		pilot.setTravelSpeed(ION2016.courseConstants.get("yellowSpeed").getValueIn(Unit.METER_PER_SECOND));
+		pilot.setTravelSpeed(config.yellowSpeed);
 		return angle;
 	}
 	
@@ -644,6 +818,8 @@ public class RobotController implements Observer {
 		public void run() {
 		
 			ION2016.report("Robot action run called " + r.toString());
+			// Give the sensor I/O to the sensors that this action needs
+			lineMonitor.setSamplingPolicy(r.getSamplingPolicy());
 			if (r instanceof LineFollowAction)
 				executeAction((LineFollowAction) r);
 			else if (r instanceof IntersectionAction)
@@ -666,19 +842,19 @@ public class RobotController implements Observer {
 	private class RobotDelay implements Runnable {
 		
 		/**
-		 * The amount of time to delay for
+		 * The amount of time to delay for, in ms
 		 */
-		private final Quantity delay;
+		private final long delay;
 		
 		/**
 		 * Makes a new delay task with the specified delay
 		 *
 		 * @param delay
-		 *            the delay to use
+		 *            the delay to use, in s
 		 */
-		public RobotDelay(Quantity delay) {
+		public RobotDelay(double delay) {
 		
-			this.delay = delay;
+			this.delay = Math.round(delay * 1000);
 		}
 		
 		@Override
@@ -0,0 +1,136 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import utilities.events.TimedEvent;
+
+/**
+ * An event sent to the robot controller. Events are immutable, so they can be passed safely from the sensor threads to the controller thread.
+ */
+public class RobotEvent implements TimedEvent {
+	
+	/**
+	 * The source of sequence numbers for all events.
+	 */
+	private static final AtomicLong nextSequence = new AtomicLong(0);
+	
+	/**
+	 * The message.
+	 */
+	private final RobotMessage message;
+	/**
+	 * The parameter of the message. For {@link RobotMessage#APPROACHING_OBJECT}, this is the distance to the object in m. For intersections and
+	 * parking lots, it is the detection latency in s.
+	 */
+	private final double parameter;
+	/**
+	 * The time at which the event was made, from {@link System#nanoTime()}. The dispatcher measures its latency from this.
+	 */
+	private final long timestamp;
+	/**
+	 * The time of the reading that the event is about, from {@link System#nanoTime()}.
+	 */
+	private final long readingTime;
+	/**
+	 * The sequence number of the event.
+	 */
+	private final long sequence;
+	
+	/**
+	 * Makes a new event with no parameter.
+	 * 
+	 * @param message
+	 *            the message.
+	 */
+	public RobotEvent(RobotMessage message) {
+	
+		this(message, 0);
+	}
+	
+	/**
+	 * Makes a new event, timestamped now.
+	 * 
+	 * @param message
+	 *            the message.
+	 * @param parameter
+	 *            the parameter of the message.
+	 */
+	public RobotEvent(RobotMessage message, double parameter) {
+	
+		this.message = message;
+		this.parameter = parameter;
+		timestamp = System.nanoTime();
+		readingTime = timestamp;
+		sequence = nextSequence.incrementAndGet();
+	}
+	
+	/**
+	 * Makes a new event about an earlier reading, timestamped now. This is used for detections, which keep the time of the reading that confirmed
+	 * them as well as the time they were published.
+	 * 
+	 * @param message
+	 *            the message.
+	 * @param parameter
+	 *            the parameter of the message.
+	 * @param readingTime
+	 *            the time of the reading, from {@link System#nanoTime()}.
+	 */
+	public RobotEvent(RobotMessage message, double parameter, long readingTime) {
+	
+		this.message = message;
+		this.parameter = parameter;
+		this.readingTime = readingTime;
+		timestamp = System.nanoTime();
+		sequence = nextSequence.incrementAndGet();
+	}
+	
+	/**
+	 * Gets the message.
+	 * 
+	 * @return the message.
+	 */
+	public RobotMessage getMessage() {
+	
+		return message;
+	}
+	
+	/**
+	 * Gets the parameter of the message.
+	 * 
+	 * @return the parameter. For {@link RobotMessage#APPROACHING_OBJECT}, this is the distance to the object in m. For intersections and parking
+	 *         lots, it is the time from the start of the event to its detection, in s. For other messages, it is 0.
+	 */
+	public double getParameter() {
+	
+		return parameter;
+	}
+	
+	@Override
+	public long getTimestamp() {
+	
+		return timestamp;
+	}
+	
+	/**
+	 * Gets the time of the reading that the event is about. For detections, this is the reading that confirmed them, which is before the event
+	 * was made; otherwise it is the same as {@link #getTimestamp()}.
+	 * 
+	 * @return the time, from {@link System#nanoTime()}.
+	 */
+	public long getReadingTime() {
+	
+		return readingTime;
+	}
+	
+	@Override
+	public long getSequence() {
+	
+		return sequence;
+	}
+	
+	@Override
+	public String toString() {
+	
+		return message + (parameter != 0 ? "(" + parameter + ")" : "") + " #" + sequence;
+	}
+}
@@ -1,7 +1,7 @@
 package main;
 
 /**
- * This enum has all the messages that the observable classes might send to the robot controller.
+ * This enum has all the messages that the sensor classes might send to the robot controller. The messages are sent wrapped in a {@link RobotEvent}.
  *
  * @author jacob
  *
@@ -33,34 +33,12 @@ public enum RobotMessage {
 	 */
 	INTERSECTION_NAVIGATED,
 	/**
-	 * Sent from sonar meaning that an object is in front and will rear end the robot. parameter will be set to the distance in meters.
+	 * Sent from sonar meaning that an object is in front and will rear end the robot. The parameter of the {@link RobotEvent} is the distance in
+	 * meters.
 	 */
 	APPROACHING_OBJECT,
 	/**
 	 * Nothing if front, speed up
 	 */
 	ALL_CLEAR;
-	
-	/**
-	 * Indicates the severity of a message. Represents the distance in m from the approaching object.
-	 */
-	private double parameter = 0;
-	
-	/**
-	 * @return the parameter
-	 */
-	public double getParameter() {
-
-		return parameter;
-	}
-	
-	/**
-	 * @param parameter
-	 *            the parameter to set
-	 */
-	public void setParameter(double parameter) {
-
-		this.parameter = parameter;
-	}
-	
 }
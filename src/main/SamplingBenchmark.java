@@ -0,0 +1,158 @@
+package main;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import sensing.ColorSensor;
+import utilities.Color;
+import utilities.ColorPalette;
+
+/**
+ * Checks that the sensor sampling path does not allocate. A {@link LineMonitor} is given stub sensors and run one cycle at a time with
+ * {@link LineMonitor#runCycle(SensorFrame)}, and the bytes this thread allocated are measured around the cycles. If the JVM cannot count allocated
+ * bytes, the number of garbage collections during the cycles is shown instead, which should stay at 0. The first rounds let the JIT warm up and may
+ * allocate; the later rounds should show 0 bytes/cycle.
+ *
+ * The stub readings sweep across the road, the lines and the blends between them, but never raise an event, as publishing an event allocates.
+ * Each reading is held for a few cycles, so that the balance estimators see steady colors and adjust the calibration. Applying a new calibration
+ * makes a new pair of references, once every {@link sensing.BalanceEstimator#APPLY_INTERVAL} readings they use, so those rounds show a little over
+ * 1 byte/cycle.
+ */
+public class SamplingBenchmark {
+
+	/**
+	 * The number of cycles run per round.
+	 */
+	private static final int CYCLES = 200000;
+	/**
+	 * The number of rounds to run.
+	 */
+	private static final int ROUNDS = 5;
+	/**
+	 * The number of cycles each stub reading is held for. Enough for the balance estimators to take the color as steady.
+	 */
+	private static final int HOLD = 6;
+	/**
+	 * The raw readings the side sensors sweep across, in RGB order: black, white, yellow, and blends of black with each.
+	 */
+	private static final float[][] SIDE_READINGS = { { 0.03f, 0.03f, 0.03f }, { 0.45f, 0.46f, 0.44f }, { 0.45f, 0.42f, 0.08f },
+			{ 0.25f, 0.25f, 0.24f }, { 0.24f, 0.22f, 0.05f }, { 0.12f, 0.12f, 0.11f } };
+	/**
+	 * The raw readings the front sensor sweeps across, in RGB order. Their red stays low enough not to be taken for an intersection.
+	 */
+	private static final float[][] FRONT_READINGS = { { 0.03f, 0.03f, 0.03f }, { 0.1f, 0.1f, 0.1f }, { 0.12f, 0.11f, 0.04f } };
+
+	/**
+	 * Runs the benchmark.
+	 *
+	 * @param args
+	 *            not used.
+	 */
+	public static void main(String[] args) {
+
+		ColorPalette colors = new ColorPalette();
+		colors.add(new Color(0.02, 0.02, 0.02), "black");
+		colors.add(new Color(0.9, 0.92, 0.88), "white");
+		colors.add(new Color(0.9, 0.84, 0.12), "yellow");
+		colors.add(new Color(0.1, 0.2, 0.7), "blue");
+		colors.add(new Color(0.8, 0.1, 0.1), "red");
+		ION2016.colorFunctions.put("parkingColor", "blue");
+		ION2016.colorTolerances.put("minimumBlend", 0.1);
+
+		LineMonitor monitor = new LineMonitor(new StubSensor(SIDE_READINGS, 0), new StubSensor(SIDE_READINGS, 3), new StubSensor(FRONT_READINGS,
+				0), colors, new HashSet<>(Arrays.asList("white", "yellow", "blue")), "black");
+		monitor.trackBalance("white");
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocations = null;
+		if (threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			allocations = (com.sun.management.ThreadMXBean) threads;
+			allocations.setThreadAllocatedMemoryEnabled(true);
+		}
+		long id = Thread.currentThread().getId();
+		SensorFrame frame = new SensorFrame();
+
+		for (int round = 0; round < ROUNDS; round++) {
+			// Count the collections outside the allocation measurement, since getting the collectors allocates
+			long collections = getCollectionCount();
+			long bytes = allocations == null ? 0 : allocations.getThreadAllocatedBytes(id);
+			long start = System.nanoTime();
+			for (int x = 0; x < CYCLES; x++)
+				monitor.runCycle(frame);
+			long elapsed = System.nanoTime() - start;
+			if (allocations != null)
+				bytes = allocations.getThreadAllocatedBytes(id) - bytes;
+			collections = getCollectionCount() - collections;
+			if (allocations != null)
+				System.out.printf("Round %d: %7.1f ns/cycle, %.3f bytes/cycle, %d GCs%n", round + 1, (double) elapsed / CYCLES, (double) bytes
+						/ CYCLES, collections);
+			else
+				System.out.printf("Round %d: %7.1f ns/cycle, %d GCs%n", round + 1, (double) elapsed / CYCLES, collections);
+		}
+	}
+
+	/**
+	 * Gets the number of garbage collections so far.
+	 *
+	 * @return the total number of collections done by all the collectors that count them.
+	 */
+	private static long getCollectionCount() {
+
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, collector.getCollectionCount());
+		return count;
+	}
+
+	/**
+	 * A sensor that sweeps across a fixed set of raw readings, holding each for {@link #HOLD} reads, so that the monitor can be run without any
+	 * hardware. It is calibrated so that a raw reading of 0.02 is black and 0.5 is white.
+	 */
+	private static class StubSensor extends ColorSensor {
+
+		/**
+		 * The raw readings to sweep across, in RGB order.
+		 */
+		private final float[][] readings;
+		/**
+		 * The index in {@link #readings} of the next reading.
+		 */
+		private int next;
+		/**
+		 * The number of times the current reading has been read.
+		 */
+		private int held;
+
+		/**
+		 * Makes a new stub sensor.
+		 *
+		 * @param readings
+		 *            the raw readings to sweep across, in RGB order.
+		 * @param first
+		 *            the index of the first reading, so that sensors sharing readings can be out of step.
+		 */
+		public StubSensor(float[][] readings, int first) {
+
+			this.readings = readings;
+			next = first;
+			setBlack(new double[] { 0.02, 0.02, 0.02 });
+			setWhite(new double[] { 0.5, 0.5, 0.5 });
+		}
+
+		@Override
+		public void readRaw(float[] sample) {
+
+			float[] reading = readings[next];
+			if (++held == HOLD) {
+				held = 0;
+				next = next + 1 == readings.length ? 0 : next + 1;
+			}
+			sample[RED] = reading[0];
+			sample[GREEN] = reading[1];
+			sample[BLUE] = reading[2];
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package main;
+
+import static main.ION2016.FRONT;
+import static main.ION2016.LEFT;
+import static main.ION2016.RIGHT;
+
+/**
+ * How often {@link LineMonitor} reads each color sensor. Each sensor is either disabled, or read at most once per period; a period of
+ * {@link #FULL_RATE} reads the sensor as fast as it can be read. The front sensor can also have a burst period, which is used for a short time when
+ * the robot is about to reach an intersection, so that the front sensor can be read slowly for most of a road and quickly at the red line.
+ *
+ * Policies are immutable, so a policy can be swapped in from any thread with {@link LineMonitor#setSamplingPolicy(SamplingPolicy)}. Each kind of
+ * {@link RobotAction} says which policy it needs with {@link RobotAction#getSamplingPolicy()}.
+ */
+public class SamplingPolicy {
+
+	/**
+	 * The period, in s, that reads a sensor as fast as possible.
+	 */
+	public static final double FULL_RATE = 0;
+	/**
+	 * The period, in s, that disables a sensor.
+	 */
+	public static final double DISABLED = Double.POSITIVE_INFINITY;
+
+	/**
+	 * Reads every sensor as fast as possible. This is what the monitor does before any policy is set.
+	 */
+	public static final SamplingPolicy ALL = new SamplingPolicy("all", FULL_RATE, FULL_RATE, FULL_RATE);
+	/**
+	 * Line following: the side sensors steer, so they are read as fast as possible. The front sensor is only needed to find the red line, so it is
+	 * read at 50 Hz, and as fast as possible for half a second once the red line is near.
+	 */
+	public static final SamplingPolicy LINE_FOLLOWING = new SamplingPolicy("line following", FULL_RATE, FULL_RATE, .02, FULL_RATE, .5);
+	/**
+	 * Going through an intersection: the side sensors give the position on the road before the turn. The front sensor is already past the red
+	 * line, and is not used.
+	 */
+	public static final SamplingPolicy INTERSECTION = new SamplingPolicy("intersection", FULL_RATE, FULL_RATE, DISABLED);
+	/**
+	 * Parking: the side sensors find the edges of the space. The front sensor is not used.
+	 */
+	public static final SamplingPolicy PARKING = new SamplingPolicy("parking", FULL_RATE, FULL_RATE, DISABLED);
+	/**
+	 * Pulling out: only the front sensor, which finds the edge of the road, is used.
+	 */
+	public static final SamplingPolicy PULLOUT = new SamplingPolicy("pullout", DISABLED, DISABLED, FULL_RATE);
+	/**
+	 * Done: no sensors are needed.
+	 */
+	public static final SamplingPolicy IDLE = new SamplingPolicy("idle", DISABLED, DISABLED, DISABLED);
+
+	/**
+	 * The name of the policy, for reports.
+	 */
+	private final String name;
+	/**
+	 * The period of each sensor in ns, indexed by sensor ID, or {@link Long#MAX_VALUE} if the sensor is disabled.
+	 */
+	private final long[] periods;
+	/**
+	 * The period of the front sensor during a burst in ns, or -1 if the policy has no burst.
+	 */
+	private final long burstPeriod;
+	/**
+	 * How long a burst lasts, in ns.
+	 */
+	private final long burstDuration;
+
+	/**
+	 * Makes a new policy without a burst.
+	 *
+	 * @param name
+	 *            the name of the policy, for reports.
+	 * @param leftPeriod
+	 *            the shortest time between readings of the left sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 * @param rightPeriod
+	 *            the shortest time between readings of the right sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 * @param frontPeriod
+	 *            the shortest time between readings of the front sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 */
+	public SamplingPolicy(String name, double leftPeriod, double rightPeriod, double frontPeriod) {
+
+		this(name, leftPeriod, rightPeriod, frontPeriod, DISABLED, 0);
+	}
+
+	/**
+	 * Makes a new policy.
+	 *
+	 * @param name
+	 *            the name of the policy, for reports.
+	 * @param leftPeriod
+	 *            the shortest time between readings of the left sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 * @param rightPeriod
+	 *            the shortest time between readings of the right sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 * @param frontPeriod
+	 *            the shortest time between readings of the front sensor, in s, or {@link #FULL_RATE} or {@link #DISABLED}.
+	 * @param burstPeriod
+	 *            the shortest time between readings of the front sensor during a burst, in s, or {@link #DISABLED} for no burst.
+	 * @param burstDuration
+	 *            how long a burst lasts, in s.
+	 */
+	public SamplingPolicy(String name, double leftPeriod, double rightPeriod, double frontPeriod, double burstPeriod, double burstDuration) {
+
+		if (burstDuration < 0)
+			throw new IllegalArgumentException("The burst duration cannot be negative: " + burstDuration);
+		this.name = name;
+		periods = new long[3];
+		periods[LEFT] = toNanos(leftPeriod);
+		periods[RIGHT] = toNanos(rightPeriod);
+		periods[FRONT] = toNanos(frontPeriod);
+		this.burstPeriod = burstPeriod == DISABLED ? -1 : toNanos(burstPeriod);
+		this.burstDuration = (long) (burstDuration * 1e9);
+	}
+
+	/**
+	 * Converts a period to ns.
+	 *
+	 * @param period
+	 *            the period, in s.
+	 * @return the period in ns, or {@link Long#MAX_VALUE} if the period is {@link #DISABLED}.
+	 */
+	private static long toNanos(double period) {
+
+		if (!(period >= 0))
+			throw new IllegalArgumentException("A period cannot be negative: " + period);
+		if (period == DISABLED)
+			return Long.MAX_VALUE;
+		return (long) (period * 1e9);
+	}
+
+	/**
+	 * Gets the name of the policy.
+	 *
+	 * @return the name.
+	 */
+	public String getName() {
+
+		return name;
+	}
+
+	/**
+	 * Returns true if a sensor is read under this policy.
+	 *
+	 * @param ID
+	 *            the id of the sensor. Should be one of the following: {@link ION2016#LEFT}, {@link ION2016#RIGHT}, {@link ION2016#FRONT}.
+	 * @return true if the sensor is read, false if it is disabled.
+	 */
+	public boolean isEnabled(int ID) {
+
+		return periods[ID] != Long.MAX_VALUE;
+	}
+
+	/**
+	 * Gets the shortest time between readings of a sensor.
+	 *
+	 * @param ID
+	 *            the id of the sensor. Should be one of the following: {@link ION2016#LEFT}, {@link ION2016#RIGHT}, {@link ION2016#FRONT}.
+	 * @param burst
+	 *            true if a burst is in progress.
+	 * @return the period in ns, or {@link Long#MAX_VALUE} if the sensor is disabled.
+	 */
+	public long getPeriod(int ID, boolean burst) {
+
+		if (burst && ID == FRONT && burstPeriod >= 0)
+			return Math.min(burstPeriod, periods[FRONT]);
+		return periods[ID];
+	}
+
+	/**
+	 * Returns true if this policy has a burst.
+	 *
+	 * @return true if the front sensor is read faster during a burst.
+	 */
+	public boolean hasBurst() {
+
+		return burstPeriod >= 0 && burstDuration > 0;
+	}
+
+	/**
+	 * Gets how long a burst lasts.
+	 *
+	 * @return the duration, in ns.
+	 */
+	public long getBurstDuration() {
+
+		return burstDuration;
+	}
+
+	@Override
+	public String toString() {
+
+		String result = name + " [";
+		String[] sides = { "left", "right", "front" };
+		for (int x = 0; x < periods.length; x++) {
+			result += sides[x] + " ";
+			if (periods[x] == Long.MAX_VALUE)
+				result += "off";
+			else if (periods[x] == 0)
+				result += "full";
+			else
+				result += String.format("%.0f Hz", 1e9 / periods[x]);
+			result += x < periods.length - 1 ? ", " : "";
+		}
+		if (hasBurst())
+			result += String.format(", burst %s for %.2f s", burstPeriod == 0 ? "full" : String.format("%.0f Hz", 1e9 / burstPeriod),
+					burstDuration / 1e9);
+		return result + "]";
+	}
+}
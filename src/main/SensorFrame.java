@@ -0,0 +1,198 @@
+package main;
+
+import utilities.ColorPalette;
+
+/**
+ * A consistent set of readings from all the sensors of a {@link LineMonitor}, taken in the same cycle. A frame is owned by the thread that reads it:
+ * make one, and pass it to {@link LineMonitor#readFrame(SensorFrame)} each time new data is needed. Filling a frame does not allocate anything or
+ * take any locks.
+ *
+ * Sensor IDs are {@link ION2016#LEFT}, {@link ION2016#RIGHT}, and {@link ION2016#FRONT}.
+ */
+public class SensorFrame {
+	
+	/**
+	 * The number of sensors in a frame.
+	 */
+	static final int NUM_SENSORS = 3;
+	
+	/**
+	 * The scaled red component of each reading.
+	 */
+	final float[] red;
+	/**
+	 * The scaled green component of each reading.
+	 */
+	final float[] green;
+	/**
+	 * The scaled blue component of each reading.
+	 */
+	final float[] blue;
+	/**
+	 * The palette index of the color match of each reading, or -1 if there is no good match.
+	 */
+	final int[] matches;
+	/**
+	 * The palette index of the blend of each reading.
+	 */
+	final int[] blends;
+	/**
+	 * The blend composition of each reading.
+	 */
+	final double[] compositions;
+	/**
+	 * The time at which the readings were taken, from {@link System#nanoTime()}.
+	 */
+	long timestamp;
+	/**
+	 * The sequence number of the frame. Each cycle of the monitor publishes a frame with the next number.
+	 */
+	long sequence;
+	/**
+	 * The palette that the indices refer to.
+	 */
+	ColorPalette palette;
+	
+	/**
+	 * Makes a new empty frame. It has a sequence number of 0 until it is filled.
+	 */
+	public SensorFrame() {
+	
+		red = new float[NUM_SENSORS];
+		green = new float[NUM_SENSORS];
+		blue = new float[NUM_SENSORS];
+		matches = new int[NUM_SENSORS];
+		blends = new int[NUM_SENSORS];
+		compositions = new double[NUM_SENSORS];
+		timestamp = 0;
+		sequence = 0;
+	}
+	
+	/**
+	 * Gets the scaled red component of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the red component, in the range [0, 1].
+	 */
+	public float getRed(int ID) {
+	
+		return red[ID];
+	}
+	
+	/**
+	 * Gets the scaled green component of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the green component, in the range [0, 1].
+	 */
+	public float getGreen(int ID) {
+	
+		return green[ID];
+	}
+	
+	/**
+	 * Gets the scaled blue component of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the blue component, in the range [0, 1].
+	 */
+	public float getBlue(int ID) {
+	
+		return blue[ID];
+	}
+	
+	/**
+	 * Gets the palette index of the color match of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the palette index of the color match, or -1 if there is no good match.
+	 */
+	public int getMatch(int ID) {
+	
+		return matches[ID];
+	}
+	
+	/**
+	 * Gets the name of the color match of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the name of the color match, or an empty string if there is no good match.
+	 * @see LineMonitor#getColorMatch(int)
+	 */
+	public String getMatchName(int ID) {
+	
+		return matches[ID] < 0 ? "" : palette.getName(matches[ID]);
+	}
+	
+	/**
+	 * Gets the palette index of the blend of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the palette index of the color blended with the road color.
+	 */
+	public int getBlend(int ID) {
+	
+		return blends[ID];
+	}
+	
+	/**
+	 * Gets the name of the blend of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the name of the color blended with the road color.
+	 * @see LineMonitor#getBlend(int)
+	 */
+	public String getBlendName(int ID) {
+	
+		return palette.getName(blends[ID]);
+	}
+	
+	/**
+	 * Gets the blend composition of a reading.
+	 * 
+	 * @param ID
+	 *            the id of the sensor.
+	 * @return the blend composition.
+	 * @see LineMonitor#getBlendComposition(int)
+	 */
+	public double getComposition(int ID) {
+	
+		return compositions[ID];
+	}
+	
+	/**
+	 * Gets the time at which the readings were taken.
+	 * 
+	 * @return the time, from {@link System#nanoTime()}.
+	 */
+	public long getTimestamp() {
+	
+		return timestamp;
+	}
+	
+	/**
+	 * Gets the sequence number of the frame. Comparing sequence numbers is the way to tell whether a frame is new.
+	 * 
+	 * @return the sequence number. 0 if the frame has never been filled.
+	 */
+	public long getSequence() {
+	
+		return sequence;
+	}
+	
+	@Override
+	public String toString() {
+	
+		String result = "Frame " + sequence + " @ " + timestamp + ":";
+		for (int x = 0; x < NUM_SENSORS; x++)
+			result += " [" + red[x] + ", " + green[x] + ", " + blue[x] + " " + getMatchName(x) + " " + getBlendName(x) + " " + compositions[x] + "]";
+		return result;
+	}
+}
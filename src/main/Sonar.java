@@ -1,12 +1,20 @@
 package main;
 
-import java.util.Observable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import lejos.hardware.Button;
 import lejos.hardware.motor.BaseRegulatedMotor;
 import lejos.hardware.port.Port;
 import lejos.hardware.sensor.EV3UltrasonicSensor;
 import lejos.robotics.SampleProvider;
+import utilities.events.EventDispatcher;
+import utilities.task.CompletionFuture;
 import utilities.units.Quantity;
 import utilities.units.Unit;
 
@@ -19,7 +27,34 @@ import utilities.units.Unit;
  *         and not work properly
  *
  */
-public class Sonar extends Observable {
+public class Sonar {
+	
+	/**
+	 * The number of readings in the median window of the rear end daemon. At the sensor's 30 or so readings a second, this adds about 80 ms of
+	 * delay, and removes spikes up to two readings long.
+	 */
+	public static final int FILTER_WINDOW = 5;
+	/**
+	 * The fastest that the distance ahead can really change, in m/s. Nothing on the course closes faster than about twice the yellow speed.
+	 */
+	public static final double MAXIMUM_CLOSING_SPEED = 1;
+	/**
+	 * The lowest confidence, from {@link DistanceFilter#getConfidence()}, at which the rear end daemon changes its alert.
+	 */
+	public static final double MINIMUM_CONFIDENCE = .6;
+	/**
+	 * How far the distance must move, in m, before a new {@link RobotMessage#APPROACHING_OBJECT} is sent with the new distance.
+	 */
+	public static final double ALERT_STEP = .01;
+	/**
+	 * The longest time between {@link RobotMessage#APPROACHING_OBJECT} messages while the alert is on, in s, so that a vehicle that is keeping its
+	 * distance is still tracked.
+	 */
+	public static final double ALERT_PERIOD = .2;
+	/**
+	 * How long a region that was found to be clear is trusted during {@link #sweepAsync(List, double, int, long)}, in ms.
+	 */
+	public static final long CLEAR_HOLD = 1000;
 	
 	/**
 	 * The motor that rotates the sensor.
@@ -29,14 +64,14 @@ public class Sonar extends Observable {
 	 * The tacho count when the motor is at the zero point.
 	 */
 	private float zeroPoint;
-	/**
-	 * The sensor.
-	 */
-	private final EV3UltrasonicSensor sensor;
 	/**
 	 * The amount of motor rotations required for a 360 degree rotation of the sensor.
 	 */
 	private final double gearRatio;
+	/**
+	 * The furthest the sensor can turn from the equilibrium position, in degrees. Angles beyond it are clamped to it.
+	 */
+	private final double maxAngle;
 	/**
 	 * The sample provider.
 	 */
@@ -53,6 +88,48 @@ public class Sonar extends Observable {
 	 * The threshold for sending {@link RobotMessage#APPROACHING_OBJECT}.
 	 */
 	private double alertThreshold = Double.POSITIVE_INFINITY;
+	/**
+	 * How far beyond the alert threshold the distance must go before {@link RobotMessage#ALL_CLEAR} is sent, in m.
+	 */
+	private double alertHysteresis = 0;
+	/**
+	 * The distance in the last {@link RobotMessage#APPROACHING_OBJECT} sent by the daemon, in m. Only used by the daemon.
+	 */
+	private double lastDistance = Double.NaN;
+	/**
+	 * The time of the last {@link RobotMessage#APPROACHING_OBJECT} sent by the daemon, from {@link System#nanoTime()}. Only used by the daemon.
+	 */
+	private long lastAlert = 0;
+	/**
+	 * The filter that the daemon's readings go through. Only used by the daemon.
+	 */
+	private final DistanceFilter filter;
+	/**
+	 * The buffer the daemon reads samples into. Only used by the daemon.
+	 */
+	private final float[] daemonSample;
+	/**
+	 * True while the sensor is pointing straight ahead and the daemon's readings are in {@link #filter}. Anything else that moves the motor sets
+	 * this to false, so the daemon moves the sensor back and starts the filter again.
+	 */
+	private volatile boolean holding = false;
+	/**
+	 * The grid that every reading is added to, or null if there is none.
+	 */
+	private volatile OccupancyGrid grid;
+	/**
+	 * The producer that events are published to, or null if nobody is listening.
+	 */
+	private volatile EventDispatcher<RobotEvent>.Producer events;
+	/**
+	 * The speed that {@link #sweep(int, int, double, int)} rotates the sensor at, in degrees/s, or 0 to step through the sweep one increment at a
+	 * time.
+	 */
+	private double sweepSpeed = 0;
+	/**
+	 * The thread that runs {@link #sweepAsync(int, int, double, int, long)}. One thread, so that sweeps never fight over the motor.
+	 */
+	private final ExecutorService sweeper;
 	
 	/**
 	 * Makes a new sonar.
@@ -68,20 +145,51 @@ public class Sonar extends Observable {
 	 */
 	public Sonar(BaseRegulatedMotor controlMotor, Port sensorPort, Quantity maxAngle, Quantity gearRatio) {
 
+		this(controlMotor, new EV3UltrasonicSensor(sensorPort).getDistanceMode(), maxAngle, gearRatio);
+	}
+
+	/**
+	 * Makes a new sonar that reads distances from a sample provider instead of an ultrasonic sensor, for example to record or replay the
+	 * distances.
+	 *
+	 * @param controlMotor
+	 *            the motor that controls the sonar rotation
+	 * @param distanceMode
+	 *            the sample provider that gives the distance in m as the first value of each sample
+	 * @param maxAngle
+	 *            the maximum number of degrees from the straight position that the sensor will rotate
+	 * @param gearRatio
+	 *            the number of motor rotations required to rotate the sensor 360 degrees
+	 */
+	public Sonar(BaseRegulatedMotor controlMotor, SampleProvider distanceMode, Quantity maxAngle, Quantity gearRatio) {
+
 		sensorMotor = controlMotor;
-		sensor = new EV3UltrasonicSensor(sensorPort);
 		this.gearRatio = gearRatio.getValueIn(Unit.ONE);
-		m = sensor.getDistanceMode();
+		this.maxAngle = maxAngle.getValueIn(Unit.DEGREE);
+		m = distanceMode;
+		filter = new DistanceFilter("Sonar", FILTER_WINDOW, MAXIMUM_CLOSING_SPEED);
+		daemonSample = new float[m.sampleSize()];
 		daemon = new UtilityDaemon(new SonarDaemon());
+		sweeper = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+
+				Thread thread = new Thread(r, "Sonar sweep");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
 		state = RobotMessage.ALL_CLEAR;
 	}
 
 	/**
-	 * Starts the sensor daemon thread and starts getting data.
+	 * Starts the sensor daemon thread and starts getting data. The first reading is taken on the daemon thread, which is the only thread that
+	 * publishes events.
 	 */
 	public void startDaemon() {
 
-		daemon.startDaemon();
+		daemon.resumeDaemon();
 	}
 	
 	/**
@@ -93,11 +201,53 @@ public class Sonar extends Observable {
 	}
 	
 	/**
-	 * Terminates the daemon thread. This is irreversible; the thread cannot be restarted. Compare to {@link #pauseDeamon()}.
+	 * Terminates the daemon thread, and stops accepting asynchronous sweeps. This is irreversible; the thread cannot be restarted. Compare to
+	 * {@link #pauseDeamon()}.
 	 */
 	public void terminateDeamon() {
 
 		daemon.terminateDeamon();
+		sweeper.shutdown();
+	}
+	
+	/**
+	 * Sets the producer that {@link RobotMessage#APPROACHING_OBJECT} and {@link RobotMessage#ALL_CLEAR} events are published to. The events are
+	 * published from the daemon thread.
+	 *
+	 * @param events
+	 *            the producer, or null to stop publishing events.
+	 */
+	public void setEventProducer(EventDispatcher<RobotEvent>.Producer events) {
+
+		this.events = events;
+	}
+	
+	/**
+	 * Sets the grid that readings are added to: every sample of every scan, every reading of a stepwise sweep, and the filtered distances read
+	 * by the daemon.
+	 *
+	 * @param grid
+	 *            the grid, or null to stop adding readings.
+	 */
+	public void setOccupancyGrid(OccupancyGrid grid) {
+
+		this.grid = grid;
+	}
+	
+	/**
+	 * Publishes an event, if anyone is listening.
+	 *
+	 * @param message
+	 *            the message.
+	 * @param parameter
+	 *            the parameter of the message.
+	 */
+	private void publish(RobotMessage message, double parameter) {
+
+		EventDispatcher<RobotEvent>.Producer producer = events;
+		if (producer == null)
+			return;
+		producer.publish(new RobotEvent(message, parameter));
 	}
 	
 	/**
@@ -109,6 +259,7 @@ public class Sonar extends Observable {
 			if (sensorMotor == null)
 				ION2016.report("Sensor Motor is Null");
 			
+			holding = false;
 			zeroPoint = (int) sensorMotor.getPosition();
 			
 			while (Button.ENTER.isUp()) {
@@ -137,9 +288,8 @@ public class Sonar extends Observable {
 	 */
 	public float distanceAt(int angle) {
 
-		angle *= -1;
-		double target = gearRatio * angle + zeroPoint;
-		sensorMotor.rotateTo((int) Math.round(target));
+		holding = false;
+		sensorMotor.rotateTo(toMotor(angle));
 		
 		float[] sample = new float[m.sampleSize()];
 		m.fetchSample(sample, 0);
@@ -148,7 +298,150 @@ public class Sonar extends Observable {
 	}
 	
 	/**
-	 * Returns true if everything in the region is greater than threshold away.
+	 * Converts an angle of the sensor to a motor position. Angles beyond {@link #maxAngle} are clamped to it, so the sensor is never turned
+	 * further than it can go.
+	 *
+	 * @param angle
+	 *            the angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @return the motor position, in degrees.
+	 */
+	private int toMotor(double angle) {
+
+		double clamped = Math.max(-maxAngle, Math.min(maxAngle, angle));
+		return (int) Math.round(-clamped * gearRatio + zeroPoint);
+	}
+
+	/**
+	 * Converts a motor position to an angle of the sensor.
+	 *
+	 * @param position
+	 *            the motor position, in degrees.
+	 * @return the angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 */
+	private float toAngle(double position) {
+
+		return (float) (-(position - zeroPoint) / gearRatio);
+	}
+
+	/**
+	 * Scans a region while rotating the sensor continuously, instead of stopping at each angle. The sensor is moved to the start angle, then
+	 * rotated to the end angle at the specified speed, and read as fast as it can be read on the way. Each sample is tagged with the angle of the
+	 * sensor while it was read, from the tacho count before and after the reading.
+	 *
+	 * @param startAngle
+	 *            the start angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @param endAngle
+	 *            the end angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @param speed
+	 *            the speed to rotate the sensor at, in degrees/s.
+	 * @param stopBelow
+	 *            the scan stops as soon as a distance below this is read, in m. Use 0 to always scan the whole region.
+	 * @return the scan.
+	 */
+	public SonarScan scan(int startAngle, int endAngle, double speed, double stopBelow) {
+
+		return scan(startAngle, endAngle, speed, stopBelow, null);
+	}
+
+	/**
+	 * Scans a region while rotating the sensor continuously, stopping early if a future is cancelled.
+	 *
+	 * @param startAngle
+	 *            the start angle, in degrees.
+	 * @param endAngle
+	 *            the end angle, in degrees.
+	 * @param speed
+	 *            the speed to rotate the sensor at, in degrees/s.
+	 * @param stopBelow
+	 *            the scan stops as soon as a distance below this is read, in m.
+	 * @param cancel
+	 *            the scan stops if this future is cancelled, or null if it cannot be cancelled.
+	 * @return the scan.
+	 */
+	private SonarScan scan(int startAngle, int endAngle, double speed, double stopBelow, Future<?> cancel) {
+
+		if (!(speed > 0))
+			throw new IllegalArgumentException("The scan speed must be positive: " + speed);
+		holding = false;
+		sensorMotor.rotateTo(toMotor(startAngle));
+
+		int oldSpeed = sensorMotor.getSpeed();
+		sensorMotor.setSpeed((float) (speed * gearRatio));
+		float[] sample = new float[m.sampleSize()];
+		float[] angles = new float[64];
+		float[] distances = new float[64];
+		long[] times = new long[64];
+		int size = 0;
+		boolean stoppedEarly = false;
+		try {
+			sensorMotor.rotateTo(toMotor(endAngle), true);
+			while (true) {
+				if (cancel != null && cancel.isCancelled()) {
+					stoppedEarly = true;
+					sensorMotor.stop();
+					break;
+				}
+				// Check before reading, so the last sample is taken after the sensor has stopped at the end angle
+				boolean moving = sensorMotor.isMoving();
+				float before = sensorMotor.getPosition();
+				long start = System.nanoTime();
+				m.fetchSample(sample, 0);
+				long end = System.nanoTime();
+				float after = sensorMotor.getPosition();
+				if (size == angles.length) {
+					angles = Arrays.copyOf(angles, 2 * size);
+					distances = Arrays.copyOf(distances, 2 * size);
+					times = Arrays.copyOf(times, 2 * size);
+				}
+				angles[size] = toAngle((before + after) / 2);
+				distances[size] = sample[0];
+				times[size] = start + (end - start) / 2;
+				size++;
+				if (sample[0] < stopBelow) {
+					stoppedEarly = moving;
+					sensorMotor.stop();
+					break;
+				}
+				if (!moving)
+					break;
+			}
+		} finally {
+			sensorMotor.setSpeed(oldSpeed);
+		}
+		SonarScan result = new SonarScan(angles, distances, times, size, stoppedEarly);
+		OccupancyGrid map = grid;
+		if (map != null)
+			map.addScan(result);
+		return result;
+	}
+
+	/**
+	 * Sets how {@link #sweep(int, int, double, int)} moves the sensor.
+	 *
+	 * @param sweepSpeed
+	 *            the speed to rotate the sensor at continuously while sweeping, in degrees/s, or 0 to stop at each increment.
+	 */
+	public void setSweepSpeed(double sweepSpeed) {
+
+		if (!(sweepSpeed >= 0))
+			throw new IllegalArgumentException("The sweep speed cannot be negative: " + sweepSpeed);
+		this.sweepSpeed = sweepSpeed;
+	}
+
+	/**
+	 * Gets the speed that the sensor is rotated at while sweeping.
+	 *
+	 * @return the speed, in degrees/s, or 0 if the sweep stops at each increment.
+	 */
+	public double getSweepSpeed() {
+
+		return sweepSpeed;
+	}
+
+	/**
+	 * Returns true if everything in the region is greater than threshold away. If a sweep speed is set, the sensor is rotated through the region
+	 * continuously with {@link #scan(int, int, double, double)}; otherwise it stops at each increment. The daemon is paused while sweeping, and
+	 * started again if the region is clear.
 	 *
 	 * @param startAngle
 	 *            the start angle, in degrees, from the equilibrium position. Positive is right, negative is left.
@@ -157,20 +450,156 @@ public class Sonar extends Observable {
 	 * @param threshold
 	 *            the distance required to return false.
 	 * @param increment
-	 *            the increment in degrees. Should be positive.
+	 *            the increment in degrees. Should be positive. Not used when the sensor is rotated continuously.
 	 * @return true if everything in the region is greater than threshold away, false otherwise.
 	 */
 	public boolean sweep(int startAngle, int endAngle, double threshold, int increment) {
 	
 		pauseDeamon();
+		boolean clear = sweep(startAngle, endAngle, threshold, increment, null);
+		if (clear)
+			startDaemon();
+		return clear;
+	}
+
+	/**
+	 * Starts sweeping a region on the sweep thread, and returns at once, so the robot can move while the sonar sweeps. The region is swept again
+	 * and again until it is clear or the timeout has passed. Cancelling the future stops the sweep at the next angle or sample. The rear end
+	 * daemon is paused while sweeping, and started again when the sweep finishes, whatever the result.
+	 *
+	 * Only one sweep runs at a time; a sweep started while another is running waits for it to finish.
+	 *
+	 * @param startAngle
+	 *            the start angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @param endAngle
+	 *            the end angle, in degrees, from the equilibrium position. Positive is right, negative is left.
+	 * @param threshold
+	 *            the distance that everything in the region must be beyond, in m.
+	 * @param increment
+	 *            the increment in degrees. Should be positive. Not used when the sensor is rotated continuously.
+	 * @param timeout
+	 *            how long to keep sweeping until the region is clear, in ms, or 0 to sweep once.
+	 * @return a future that gives true if the region was clear, or false if it was still blocked when the timeout passed.
+	 */
+	public Future<Boolean> sweepAsync(int startAngle, int endAngle, double threshold, int increment, long timeout) {
+
+		return sweepAsync(Collections.singletonList(new SweepPlanner.Sector(startAngle, endAngle)), threshold, increment, timeout);
+	}
+
+	/**
+	 * Starts sweeping several regions on the sweep thread, such as those planned by {@link SweepPlanner}, and returns at once. The regions are
+	 * swept in turn, in whichever direction is closest to where the sensor is, until they are all clear or the timeout has passed. A region that
+	 * was clear is not swept again for {@link #CLEAR_HOLD}, so while waiting for one road to clear, the sonar only looks at that road. Otherwise
+	 * this is just like {@link #sweepAsync(int, int, double, int, long)}.
+	 *
+	 * @param sectors
+	 *            the regions to sweep. If there are none, the result is true at once.
+	 * @param threshold
+	 *            the distance that everything in the regions must be beyond, in m.
+	 * @param increment
+	 *            the increment in degrees. Should be positive. Not used when the sensor is rotated continuously.
+	 * @param timeout
+	 *            how long to keep sweeping until the regions are clear, in ms, or 0 to sweep once.
+	 * @return a future that gives true if every region was clear, or false if one was still blocked when the timeout passed.
+	 */
+	public Future<Boolean> sweepAsync(final List<SweepPlanner.Sector> sectors, final double threshold, final int increment, final long timeout) {
+
+		final CompletionFuture<Boolean> result = new CompletionFuture<>();
+		sweeper.execute(new Runnable() {
+
+			@Override
+			public void run() {
+
+				pauseDeamon();
+				ION2016.debug(2, "Sweeping %s", sectors);
+				boolean clear = false;
+				try {
+					long start = System.currentTimeMillis();
+					long[] clearUntil = new long[sectors.size()];
+					while (!result.isCancelled()) {
+						clear = sweepSectors(sectors, threshold, increment, clearUntil, result);
+						if (clear || System.currentTimeMillis() - start >= timeout)
+							break;
+					}
+					result.complete(clear);
+				} catch (RuntimeException e) {
+					result.fail(e);
+				} finally {
+					startDaemon();
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Sweeps each region that has not been clear recently, nearest end first.
+	 *
+	 * @param sectors
+	 *            the regions.
+	 * @param threshold
+	 *            the distance that everything in the regions must be beyond, in m.
+	 * @param increment
+	 *            the increment in degrees.
+	 * @param clearUntil
+	 *            for each region, the time until which it is known to be clear, from {@link System#currentTimeMillis()}. Updated for the regions
+	 *            that are clear.
+	 * @param cancel
+	 *            the sweep stops if this future is cancelled.
+	 * @return true if every region is clear.
+	 */
+	private boolean sweepSectors(List<SweepPlanner.Sector> sectors, double threshold, int increment, long[] clearUntil, Future<?> cancel) {
+
+		int count = sectors.size();
+		// Go through the regions from whichever end the sensor is closer to
+		float angle = toAngle(sensorMotor.getPosition());
+		boolean rightToLeft = count > 0 && Math.abs(angle - sectors.get(count - 1).end) < Math.abs(angle - sectors.get(0).start);
+		boolean clear = true;
+		for (int i = 0; i < count; i++) {
+			int index = rightToLeft ? count - 1 - i : i;
+			if (System.currentTimeMillis() < clearUntil[index])
+				continue;
+			SweepPlanner.Sector sector = sectors.get(index);
+			angle = toAngle(sensorMotor.getPosition());
+			boolean fromStart = Math.abs(angle - sector.start) <= Math.abs(angle - sector.end);
+			if (sweep(fromStart ? sector.start : sector.end, fromStart ? sector.end : sector.start, threshold, increment, cancel))
+				clearUntil[index] = System.currentTimeMillis() + CLEAR_HOLD;
+			else
+				clear = false;
+			if (cancel.isCancelled())
+				return false;
+		}
+		return clear;
+	}
+
+	/**
+	 * Sweeps a region, stopping early if a future is cancelled. This does not pause or start the daemon.
+	 *
+	 * @param startAngle
+	 *            the start angle, in degrees.
+	 * @param endAngle
+	 *            the end angle, in degrees.
+	 * @param threshold
+	 *            the distance required to return false.
+	 * @param increment
+	 *            the increment in degrees.
+	 * @param cancel
+	 *            the sweep stops if this future is cancelled, or null if it cannot be cancelled.
+	 * @return true if everything in the region is greater than threshold away, false otherwise or if the sweep was cancelled.
+	 */
+	private boolean sweep(int startAngle, int endAngle, double threshold, int increment, Future<?> cancel) {
+	
+		if (sweepSpeed > 0) {
+			SonarScan scan = scan(startAngle, endAngle, sweepSpeed, threshold, cancel);
+			ION2016.debug(3, "%s", scan);
+			if (!scan.isClear(threshold)) {
+				ION2016.debug(2, "Sweep False, %.2f, %.2f", threshold, scan.getMinimum(startAngle, endAngle));
+				return false;
+			}
+			ION2016.debug(2, "Sweep True, %.2f, %.2f s", threshold, scan.getDuration());
+			return true;
+		}
 
-		ION2016.report("1Start: "+startAngle+ " End: "+endAngle);
-		
-		startAngle = 30;
-		endAngle = -30;//perfect sweeping angle
-		
-		
-		ION2016.report("2Start: "+startAngle+ " End: "+endAngle);
 		int sign = endAngle - startAngle > 0 ? 1 : -1;
 
 		ION2016.debug(2, "SDS: " + startAngle + ", " + endAngle);
@@ -181,7 +610,12 @@ public class Sonar extends Observable {
 
 		for (int x = startAngle; x != endAngle + sign; x += sign * increment) {
 			
+			if (cancel != null && cancel.isCancelled())
+				return false;
 			double dist = distanceAt(x);
+			OccupancyGrid map = grid;
+			if (map != null)
+				map.addReading(x, dist);
 			ION2016.debug(3, "SD: %.2f ,%.2f", threshold, dist);
 			if (dist < threshold) {
 				ION2016.debug(2, "Sweep False, %.2f, %.2f", threshold, dist);
@@ -191,7 +625,6 @@ public class Sonar extends Observable {
 		}
 		
 		ION2016.debug(2, "Sweep True, %.2f", threshold);
-		startDaemon();
 		return true;
 	}
 	
@@ -215,34 +648,75 @@ public class Sonar extends Observable {
 	}
 	
 	/**
-	 * Background thread that prevents rear ending.
+	 * Gets how far beyond the alert threshold the distance must go before the alert is cleared.
 	 *
+	 * @return the hysteresis, in m.
+	 */
+	public double getAlertHysteresis() {
+
+		return alertHysteresis;
+	}
+	
+	/**
+	 * Sets how far beyond the alert threshold the distance must go before the alert is cleared, so that a distance hovering around the threshold
+	 * does not flip the alert on and off.
+	 *
+	 * @param alertHysteresis
+	 *            the hysteresis, in m.
+	 */
+	public void setAlertHysteresis(double alertHysteresis) {
+
+		if (!(alertHysteresis >= 0))
+			throw new IllegalArgumentException("The alert hysteresis cannot be negative: " + alertHysteresis);
+		this.alertHysteresis = alertHysteresis;
+	}
+	
+	/**
+	 * Background thread that prevents rear ending. The sensor is held straight ahead: it is moved there once, when the daemon starts or after
+	 * something else has moved it, and then only read. Each reading goes through a {@link DistanceFilter}, and the alert only changes when the
+	 * filter is at least {@link #MINIMUM_CONFIDENCE} sure. {@link RobotMessage#APPROACHING_OBJECT} is sent when the distance falls below the
+	 * alert threshold, and again each time it moves by {@link #ALERT_STEP} or {@link #ALERT_PERIOD} has passed, so the speed can follow it; {@link RobotMessage#ALL_CLEAR} is only
+	 * sent once the distance is beyond the threshold plus the hysteresis.
 	 */
 	class SonarDaemon implements Runnable {
 		
 		/**
-		 * Runs!
+		 * Runs! This only runs on the daemon thread, so it can publish without a lock.
 		 */
 		@Override
 		public void run() {
 		
-			double distance = distanceAt(0);
-			boolean shouldNofity = distance != RobotMessage.APPROACHING_OBJECT.getParameter();
-			RobotMessage.APPROACHING_OBJECT.setParameter(distance);
+			if (!holding) {
+				sensorMotor.rotateTo(toMotor(0));
+				filter.reset();
+				holding = true;
+			}
+			m.fetchSample(daemonSample, 0);
+			long time = System.nanoTime();
+			double distance = filter.update(daemonSample[0], time);
+			if (filter.getConfidence() < MINIMUM_CONFIDENCE)
+				return;
+			OccupancyGrid map = grid;
+			if (map != null)
+				map.addReading(0, distance);
 			
-			// Notify only if distance changes
-			if (distance < alertThreshold && shouldNofity) {
-				ION2016.report("Nofity approach!");
-				notifyObservers(RobotMessage.APPROACHING_OBJECT);
-				state = RobotMessage.APPROACHING_OBJECT;
-				setChanged();
-			} else if (distance >= alertThreshold && state != RobotMessage.ALL_CLEAR) {
-				ION2016.report("Nofity clear!");
-				notifyObservers(RobotMessage.ALL_CLEAR);
+			if (state == RobotMessage.ALL_CLEAR) {
+				if (distance < alertThreshold) {
+					ION2016.debug(2, "Nofity approach! %s", filter);
+					publish(RobotMessage.APPROACHING_OBJECT, distance);
+					state = RobotMessage.APPROACHING_OBJECT;
+					lastDistance = distance;
+					lastAlert = time;
+				}
+			} else if (distance > alertThreshold + alertHysteresis) {
+				ION2016.debug(2, "Nofity clear! %s", filter);
+				publish(RobotMessage.ALL_CLEAR, distance);
 				state = RobotMessage.ALL_CLEAR;
-				setChanged();
+			} else if (Math.abs(distance - lastDistance) >= ALERT_STEP || time - lastAlert >= ALERT_PERIOD * 1e9) {
+				publish(RobotMessage.APPROACHING_OBJECT, distance);
+				lastDistance = distance;
+				lastAlert = time;
 			}
-			
 		}
 		
 	}
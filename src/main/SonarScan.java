@@ -0,0 +1,180 @@
+package main;
+
+/**
+ * A polar scan taken by {@link Sonar#scan(int, int, double, double)}: the distances read while the sonar rotated, each tagged with the angle of
+ * the sonar when it was read and the time it was read. The samples are in the order they were taken, so the angles run from the start of the scan
+ * to the end. Scans are immutable.
+ */
+public class SonarScan {
+
+	/**
+	 * The angle of each sample, in degrees from the equilibrium position. Positive is right, negative is left.
+	 */
+	private final float[] angles;
+	/**
+	 * The distance of each sample, in m.
+	 */
+	private final float[] distances;
+	/**
+	 * The time of each sample, from {@link System#nanoTime()}.
+	 */
+	private final long[] times;
+	/**
+	 * The number of samples.
+	 */
+	private final int size;
+	/**
+	 * True if the scan stopped early because it found something too close.
+	 */
+	private final boolean stoppedEarly;
+
+	/**
+	 * Makes a new scan. The arrays are not copied, and may be longer than the number of samples.
+	 *
+	 * @param angles
+	 *            the angle of each sample, in degrees.
+	 * @param distances
+	 *            the distance of each sample, in m.
+	 * @param times
+	 *            the time of each sample, from {@link System#nanoTime()}.
+	 * @param size
+	 *            the number of samples.
+	 * @param stoppedEarly
+	 *            true if the scan stopped before it reached the end angle.
+	 */
+	SonarScan(float[] angles, float[] distances, long[] times, int size, boolean stoppedEarly) {
+
+		this.angles = angles;
+		this.distances = distances;
+		this.times = times;
+		this.size = size;
+		this.stoppedEarly = stoppedEarly;
+	}
+
+	/**
+	 * Gets the number of samples.
+	 *
+	 * @return the number of samples.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Gets the angle of a sample.
+	 *
+	 * @param index
+	 *            the index of the sample.
+	 * @return the angle of the sonar when the sample was read, in degrees from the equilibrium position. Positive is right, negative is left.
+	 */
+	public float getAngle(int index) {
+
+		checkIndex(index);
+		return angles[index];
+	}
+
+	/**
+	 * Gets the distance of a sample.
+	 *
+	 * @param index
+	 *            the index of the sample.
+	 * @return the distance, in m. Infinite if nothing was seen.
+	 */
+	public float getDistance(int index) {
+
+		checkIndex(index);
+		return distances[index];
+	}
+
+	/**
+	 * Gets the time of a sample.
+	 *
+	 * @param index
+	 *            the index of the sample.
+	 * @return the time the sample was read, from {@link System#nanoTime()}.
+	 */
+	public long getTime(int index) {
+
+		checkIndex(index);
+		return times[index];
+	}
+
+	/**
+	 * Gets how long the scan took, from the first sample to the last.
+	 *
+	 * @return the duration, in s.
+	 */
+	public double getDuration() {
+
+		return size < 2 ? 0 : (times[size - 1] - times[0]) / 1e9;
+	}
+
+	/**
+	 * Returns true if the scan stopped before it reached the end angle, because a sample was closer than the stopping distance.
+	 *
+	 * @return true if the scan stopped early.
+	 */
+	public boolean stoppedEarly() {
+
+		return stoppedEarly;
+	}
+
+	/**
+	 * Gets the closest distance seen between two angles.
+	 *
+	 * @param startAngle
+	 *            one end of the region, in degrees.
+	 * @param endAngle
+	 *            the other end of the region, in degrees.
+	 * @return the closest distance of the samples in the region, in m, or infinity if there are none.
+	 */
+	public float getMinimum(double startAngle, double endAngle) {
+
+		double low = Math.min(startAngle, endAngle);
+		double high = Math.max(startAngle, endAngle);
+		float minimum = Float.POSITIVE_INFINITY;
+		for (int x = 0; x < size; x++)
+			if (angles[x] >= low && angles[x] <= high && distances[x] < minimum)
+				minimum = distances[x];
+		return minimum;
+	}
+
+	/**
+	 * Returns true if everything in the scan is more than a distance away.
+	 *
+	 * @param threshold
+	 *            the distance, in m.
+	 * @return true if every sample is at least threshold away, and the scan did not stop early.
+	 */
+	public boolean isClear(double threshold) {
+
+		if (stoppedEarly)
+			return false;
+		for (int x = 0; x < size; x++)
+			if (distances[x] < threshold)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks that an index is in the scan.
+	 *
+	 * @param index
+	 *            the index.
+	 */
+	private void checkIndex(int index) {
+
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Sample " + index + " of " + size);
+	}
+
+	@Override
+	public String toString() {
+
+		String result = String.format("Scan of %d samples in %.2f s%s:", size, getDuration(), stoppedEarly ? ", stopped early" : "");
+		for (int x = 0; x < size; x++)
+			result += String.format(" %.0f=%.2f", angles[x], distances[x]);
+		return result;
+	}
+}
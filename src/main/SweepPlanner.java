@@ -0,0 +1,245 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import routefinder.Graph;
+
+/**
+ * Works out where the sonar has to look at an intersection, from the map. Traffic can only come from the roads that lead into the intersection,
+ * and only some of those roads matter for the turn the robot is about to make:
+ *
+ * <ul>
+ * <li>Turning right, the robot only has to give way to traffic from the left.</li>
+ * <li>Going straight, it has to give way to traffic from the left and the right.</li>
+ * <li>Turning left, it also has to give way to oncoming traffic.</li>
+ * </ul>
+ *
+ * Each road that matters gives a sector {@link #SECTOR_HALF_WIDTH} either side of the direction the road comes from. Overlapping sectors are
+ * merged, and sectors are cut off at the furthest the sonar can turn, the configured {@link RobotConfig#sonarMaxAngle}. A road beyond that is
+ * swept at the edge of the sonar's reach, as closely as it can be seen. A road with no sector is not swept.
+ *
+ * The angles of the map are headings in degrees, anticlockwise, as in {@link Graph#getStartAngle(String, String)}. The angles of the sectors are
+ * in degrees from straight ahead, positive right and negative left, like the angles of {@link Sonar}. Plans are cached, since the robot goes
+ * through the same intersections again and again.
+ */
+public class SweepPlanner {
+
+	/**
+	 * A region to sweep. Sectors are immutable.
+	 */
+	public static class Sector {
+
+		/**
+		 * The left edge of the sector, in degrees from straight ahead. Positive is right, negative is left.
+		 */
+		public final int start;
+		/**
+		 * The right edge of the sector, in degrees from straight ahead. At least {@link #start}.
+		 */
+		public final int end;
+
+		/**
+		 * Makes a new sector.
+		 *
+		 * @param start
+		 *            one edge of the sector, in degrees from straight ahead.
+		 * @param end
+		 *            the other edge of the sector, in degrees from straight ahead.
+		 */
+		public Sector(int start, int end) {
+
+			this.start = Math.min(start, end);
+			this.end = Math.max(start, end);
+		}
+
+		/**
+		 * Gets the width of the sector.
+		 *
+		 * @return the width, in degrees.
+		 */
+		public int getWidth() {
+
+			return end - start;
+		}
+
+		@Override
+		public String toString() {
+
+			return start + ".." + end;
+		}
+	}
+
+	/**
+	 * How far either side of the direction of a road its sector goes, in degrees. This covers a car anywhere in the near lane, and the width of
+	 * the sonar's beam.
+	 */
+	public static final int SECTOR_HALF_WIDTH = 30;
+	/**
+	 * The smallest turn, in degrees, that counts as a turn rather than going straight.
+	 */
+	private static final int TURN = 45;
+
+	/**
+	 * The map.
+	 */
+	private final Graph map;
+	/**
+	 * The furthest the sonar can look from straight ahead, in degrees.
+	 */
+	private final int maximumAngle;
+	/**
+	 * The plans made so far, by {@link #key(String, String, String)}.
+	 */
+	private final Map<String, List<Sector>> plans;
+
+	/**
+	 * Makes a new planner.
+	 *
+	 * @param map
+	 *            the map.
+	 * @param maximumAngle
+	 *            the furthest the sonar can turn from straight ahead, in degrees, as in {@link RobotConfig#sonarMaxAngle}.
+	 */
+	public SweepPlanner(Graph map, double maximumAngle) {
+
+		if (!(maximumAngle >= 0))
+			throw new IllegalArgumentException("The maximum angle cannot be negative: " + maximumAngle);
+		this.map = map;
+		this.maximumAngle = (int) Math.floor(maximumAngle);
+		plans = new HashMap<>();
+	}
+
+	/**
+	 * Plans the sweep for going through an intersection.
+	 *
+	 * @param from
+	 *            the node the robot is coming from.
+	 * @param node
+	 *            the intersection.
+	 * @param to
+	 *            the node the robot is going to.
+	 * @return the sectors to sweep, in order from left to right, or an empty list if nothing needs to be swept. The list cannot be modified.
+	 */
+	public synchronized List<Sector> plan(String from, String node, String to) {
+
+		String key = key(from, node, to);
+		List<Sector> plan = plans.get(key);
+		if (plan == null) {
+			plan = Collections.unmodifiableList(makePlan(from, node, to));
+			plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Makes a plan.
+	 *
+	 * @param from
+	 *            the node the robot is coming from.
+	 * @param node
+	 *            the intersection.
+	 * @param to
+	 *            the node the robot is going to.
+	 * @return the sectors to sweep, in order from left to right.
+	 */
+	private List<Sector> makePlan(String from, String node, String to) {
+
+		int arriving = map.getEndAngle(from, node);
+		int turn = normalize(arriving - map.getStartAngle(node, to));
+
+		List<Integer> starts = new ArrayList<>();
+		List<Integer> ends = new ArrayList<>();
+		for (String other : map.getIncoming(node)) {
+			if (other.equals(from))
+				continue;
+			// A car on the road comes from behind its own heading, so it is seen opposite to it
+			int direction = normalize(arriving - map.getEndAngle(other, node) - 180);
+			if (!matters(direction, turn))
+				continue;
+			starts.add(clamp(direction - SECTOR_HALF_WIDTH));
+			ends.add(clamp(direction + SECTOR_HALF_WIDTH));
+		}
+
+		// Merge the overlapping sectors, from left to right
+		List<Sector> plan = new ArrayList<>();
+		while (!starts.isEmpty()) {
+			int first = 0;
+			for (int i = 1; i < starts.size(); i++)
+				if (starts.get(i) < starts.get(first))
+					first = i;
+			int start = starts.remove(first);
+			int end = ends.remove(first);
+			if (!plan.isEmpty() && start <= plan.get(plan.size() - 1).end) {
+				Sector last = plan.remove(plan.size() - 1);
+				plan.add(new Sector(last.start, Math.max(last.end, end)));
+			} else
+				plan.add(new Sector(start, end));
+		}
+		return plan;
+	}
+
+	/**
+	 * Decides whether traffic from a direction matters for a turn.
+	 *
+	 * @param direction
+	 *            the direction the traffic comes from, in degrees from straight ahead. Positive is right, negative is left.
+	 * @param turn
+	 *            the turn, in degrees. Positive is right, negative is left.
+	 * @return true if the robot has to give way to the traffic.
+	 */
+	private static boolean matters(int direction, int turn) {
+
+		if (Math.abs(direction) > 180 - TURN)
+			// From behind; this is the robot's own road
+			return false;
+		if (direction < -TURN)
+			return true;
+		if (direction > TURN)
+			return turn <= TURN;
+		return turn < -TURN;
+	}
+
+	/**
+	 * Limits an angle to what the sonar can reach.
+	 *
+	 * @param angle
+	 *            the angle, in degrees from straight ahead.
+	 * @return the angle, no further than {@link #maximumAngle} either side.
+	 */
+	private int clamp(int angle) {
+
+		return Math.max(-maximumAngle, Math.min(maximumAngle, angle));
+	}
+
+	/**
+	 * Puts an angle in the range [-180, 180).
+	 *
+	 * @param angle
+	 *            the angle, in degrees.
+	 * @return the same angle in the range [-180, 180).
+	 */
+	private static int normalize(int angle) {
+
+		return ((angle + 180) % 360 + 360) % 360 - 180;
+	}
+
+	/**
+	 * Gets the key of a plan.
+	 *
+	 * @param from
+	 *            the node the robot is coming from.
+	 * @param node
+	 *            the intersection.
+	 * @param to
+	 *            the node the robot is going to.
+	 * @return the key.
+	 */
+	private static String key(String from, String node, String to) {
+
+		return from + '>' + node + '>' + to;
+	}
+}
@@ -1,11 +1,19 @@
 package main;
 
+import utilities.metrics.LoopMetrics;
+import utilities.metrics.MetricsRegistry;
+
 /**
  * @author jacob
  *
  */
 public class UtilityDaemon {
 
+	/**
+	 * The longest time, in ms, that {@link #terminateDeamon()} waits for the daemon thread to finish its current cycle.
+	 */
+	private static final long TERMINATE_TIMEOUT = 1000;
+
 	/**
 	 * True if the sensor daemon is active, i.e. not terminated.
 	 */
@@ -26,22 +34,44 @@ public class UtilityDaemon {
 	 * The stuff the utility daemon does while running
 	 */
 	private final Runnable task;
+	/**
+	 * The timing metrics for the task, registered under the name of the daemon, or a numbered version of it if another daemon has the same name.
+	 */
+	private final LoopMetrics metrics;
 	
 	/**
-	 * Makes a new UtilityDaemon to run a background task given by task
+	 * Makes a new UtilityDaemon to run a background task given by task. The daemon is named after the class of the task, or its full name if the
+	 * class is anonymous.
 	 *
 	 * @param task
 	 *            the task to run
 	 */
 	public UtilityDaemon(Runnable task) {
 
+		this(task, task.getClass().getSimpleName().isEmpty() ? task.getClass().getName() : task.getClass().getSimpleName());
+	}
+
+	/**
+	 * Makes a new UtilityDaemon to run a background task given by task, with the specified name. Use this when there is more than one daemon
+	 * running the same kind of task, so that their threads and metrics can be told apart.
+	 *
+	 * @param task
+	 *            the task to run
+	 * @param name
+	 *            the name of the daemon. The thread is named after it, and the timing metrics are registered under it. If another daemon has
+	 *            the same name, a number is added to it.
+	 */
+	public UtilityDaemon(Runnable task, String name) {
+
 		this.task = task;
+		metrics = new LoopMetrics();
+		name = MetricsRegistry.registerLoop(name, metrics);
 
 		// Set up and start the thread, which will, as isRunning is false, immediately go to sleep.
 		isActive = true;
 		isRunning = false;
 		runLock = new Object();
-		daemonThread = new Thread(new Daemon(), task.getClass().getSimpleName() + " daemon");
+		daemonThread = new Thread(new Daemon(), name + " daemon");
 		daemonThread.setDaemon(true);
 		daemonThread.start();
 	}
@@ -60,6 +90,20 @@ public class UtilityDaemon {
 		}
 	}
 	
+	/**
+	 * Starts the daemon thread without running the task on the calling thread, so the task only ever runs on the daemon thread. Unlike
+	 * {@link #startDaemon()}, the task may not have run yet when this method returns.
+	 */
+	public void resumeDaemon() {
+
+		if (!isActive)
+			throw new IllegalStateException(task.getClass().getSimpleName() + " daemon has been terminated.");
+		synchronized (runLock) {
+			isRunning = true;
+			runLock.notifyAll();
+		}
+	}
+
 	/**
 	 * Pauses the daemon thread. The thread can be restarted with {@link #startDaemon()}.
 	 */
@@ -74,18 +118,23 @@ public class UtilityDaemon {
 	}
 
 	/**
-	 * Terminates the daemon thread. This is irreversible; the thread cannot be restarted. Compare to {@link #pauseDeamon()}.
+	 * Terminates the daemon thread. This is irreversible; the thread cannot be restarted. Compare to {@link #pauseDeamon()}. Waits at most
+	 * {@link #TERMINATE_TIMEOUT} ms for the thread to finish, so that a task stuck in a read cannot hang the caller.
 	 */
 	public void terminateDeamon() {
 
 		if (!isActive)
 			throw new IllegalStateException(task.getClass().getSimpleName() + " daemon has been terminated.");
 		isActive = false;
-		pauseDeamon();
-		startDaemon();
+		// Wake the thread so it sees that it has been terminated
+		synchronized (runLock) {
+			isRunning = false;
+			runLock.notifyAll();
+		}
 		try {
-			daemonThread.join();
+			daemonThread.join(TERMINATE_TIMEOUT);
 		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 		isRunning = false;
 	}
@@ -108,6 +157,16 @@ public class UtilityDaemon {
 		return isRunning;
 	}
 
+	/**
+	 * Gets the timing metrics for the task.
+	 *
+	 * @return the timing metrics.
+	 */
+	public LoopMetrics getMetrics() {
+	
+		return metrics;
+	}
+
 	/**
 	 * The runnable daemon.
 	 *
@@ -119,10 +178,14 @@ public class UtilityDaemon {
 		public void run() {
 		
 			while (isActive) {
-				while (isRunning)
+				while (isRunning && isActive) {
+					long start = metrics.startIteration();
 					task.run();
+					metrics.endIteration(start);
+				}
+				metrics.pause();
 				synchronized (runLock) {
-					while (!isRunning)
+					while (!isRunning && isActive)
 						try {
 							runLock.wait();
 						} catch (InterruptedException e) {
@@ -2,6 +2,7 @@ package robotics.motion;
 
 import lejos.hardware.motor.BaseRegulatedMotor;
 import utilities.regulation.Controllable;
+import utilities.regulation.MotionProfile;
 import utilities.units.Quantity;
 import utilities.units.Unit;
 
@@ -15,6 +16,9 @@ import utilities.units.Unit;
  * <li><b>Spin: </b> makes the robot start spinning.</li>
  * </ol>
  *
+ * Moves can also follow a {@link MotionProfile}, which limits the jerk as well as the acceleration, and can blend one move into the next without
+ * stopping: see {@link #plan(Quantity[], Quantity[])} and {@link #follow(MotionProfile[], Quantity[])}.
+ *
  * @author Jacob Glueck
  */
 public class DifferentialPilot implements Controllable {
@@ -51,10 +55,18 @@ public class DifferentialPilot implements Controllable {
 	 * The rotational acceleration
 	 */
 	private double rotateAcceleration;
+	/**
+	 * The jerk of moves that follow a motion profile, in m/s/s/s.
+	 */
+	private double jerk;
 	/**
 	 * The parity, to ensure that forwards makes the robot move forwards.
 	 */
 	private final int parity;
+	/**
+	 * Drives the wheels along motion profiles.
+	 */
+	private final ProfileFollower follower;
 	/**
 	 * Normal parity.
 	 */
@@ -87,6 +99,10 @@ public class DifferentialPilot implements Controllable {
 	 * Represents the left side.
 	 */
 	private static final int LEFT = 1;
+	/**
+	 * The default jerk of moves that follow a motion profile, in m/s/s/s.
+	 */
+	public static final double DEFAULT_JERK = 5;
 
 	/**
 	 * Makes a new {@link DifferentialPilot} with the specified information.
@@ -132,7 +148,9 @@ public class DifferentialPilot implements Controllable {
 		acceleration = .5;
 		rotateSpeed = 100;
 		rotateAcceleration = 100;// 100;
+		jerk = DEFAULT_JERK;
 		this.parity = parity;
+		follower = new ProfileFollower(left, right, toAngularQuantity(1), toAngularQuantity(1), parity);
 		zeroDistance();
 	}
 
@@ -316,6 +334,108 @@ public class DifferentialPilot implements Controllable {
 		rotate(new Quantity(Integer.MAX_VALUE * direction, Unit.DEGREE), true);
 	}
 
+	// Profiles: the robot follows a motion profile.
+	/**
+	 * Plans a sequence of moves that blend into each other, with the speed, acceleration, and jerk of this pilot. The outer wheel of an arc is
+	 * kept below the speed, so arcs are slower than straight moves. The robot only stops between moves where it changes direction.
+	 *
+	 * @param distances
+	 *            the distance of each move. If positive, the robot will move forwards. If negative, the robot will move backwards.
+	 * @param curvatures
+	 *            the curvature of each move, as in {@link #travel(Quantity, Quantity, boolean)}.
+	 * @return the profiles of the moves, for {@link #follow(MotionProfile[], Quantity[])}.
+	 */
+	public MotionProfile[] plan(Quantity[] distances, Quantity[] curvatures) {
+
+		double[] lengths = new double[distances.length];
+		double[] speeds = new double[distances.length];
+		for (int x = 0; x < distances.length; x++) {
+			double curvature = curvatures[x].getValueIn(Unit.RECIPROCAL_METER);
+			lengths[x] = distances[x].getValueIn(Unit.METER);
+			speeds[x] = speed / Math.max(Math.abs(calculateArcCoefficient(curvature, DifferentialPilot.LEFT)),
+					Math.abs(calculateArcCoefficient(curvature, DifferentialPilot.RIGHT)));
+		}
+		return MotionProfile.blend(lengths, speeds, new MotionProfile.Limits(speed, acceleration, jerk));
+	}
+
+	/**
+	 * Follows a sequence of moves, one after the other. Does not return until the last move is complete, or the robot is stopped. If this thread
+	 * is interrupted, the robot stops.
+	 *
+	 * @param profiles
+	 *            the profile of each move, with the distances in m, usually from {@link #plan(Quantity[], Quantity[])}.
+	 * @param curvatures
+	 *            the curvature of each move, as in {@link #travel(Quantity, Quantity, boolean)}.
+	 */
+	public void follow(MotionProfile[] profiles, Quantity[] curvatures) {
+
+		double[] leftCoefficients = new double[profiles.length];
+		double[] rightCoefficients = new double[profiles.length];
+		for (int x = 0; x < profiles.length; x++) {
+			double curvature = curvatures[x].getValueIn(Unit.RECIPROCAL_METER);
+			leftCoefficients[x] = calculateArcCoefficient(curvature, DifferentialPilot.LEFT);
+			rightCoefficients[x] = calculateArcCoefficient(curvature, DifferentialPilot.RIGHT);
+		}
+		follow(profiles, leftCoefficients, rightCoefficients);
+	}
+
+	/**
+	 * Moves the robot along a path with the specified curvature, following a motion profile. Does not return until the profile has ended. If the
+	 * profile ends at rest, the robot stops exactly at the end; otherwise, it is left moving at the end velocity, ready for the next move.
+	 *
+	 * @param profile
+	 *            the profile, with the distance in m. If positive, the robot will move forwards. If negative, the robot will move backwards.
+	 * @param curvature
+	 *            the curvature of the robot's path, as in {@link #travel(Quantity, Quantity, boolean)}.
+	 */
+	public void follow(MotionProfile profile, Quantity curvature) {
+
+		follow(new MotionProfile[] { profile }, new Quantity[] { curvature });
+	}
+
+	/**
+	 * Rotates the robot around its center, following a motion profile. Does not return until the profile has ended.
+	 *
+	 * @param profile
+	 *            the profile, with the distance in degrees. If positive, the robot will rotate clockwise. If negative, the robot will rotate
+	 *            counterclockwise.
+	 */
+	public void followRotation(MotionProfile profile) {
+
+		double perDegree = trackWidth * Math.PI / 360;
+		follow(new MotionProfile[] { profile }, new double[] { perDegree }, new double[] { -perDegree });
+	}
+
+	/**
+	 * Follows a sequence of motion profiles with {@link #follower}. Wherever a profile ends at rest, whatever error is left is taken out before
+	 * the next one starts.
+	 *
+	 * @param profiles
+	 *            the profiles.
+	 * @param leftCoefficients
+	 *            the distance the left wheel moves for each unit of each profile, in m.
+	 * @param rightCoefficients
+	 *            the distance the right wheel moves for each unit of each profile, in m.
+	 */
+	private void follow(MotionProfile[] profiles, double[] leftCoefficients, double[] rightCoefficients) {
+
+		follower.start();
+		try {
+			for (int x = 0; x < profiles.length; x++) {
+				if (!follower.follow(profiles[x], leftCoefficients[x], rightCoefficients[x]))
+					return;
+				double outside = Math.max(Math.abs(leftCoefficients[x]), Math.abs(rightCoefficients[x]));
+				if (profiles[x].getEndVelocity() == 0 && follower.finish(profiles[x].getLimits().velocity * outside)) {
+					left.waitComplete();
+					right.waitComplete();
+				}
+			}
+		} catch (InterruptedException e) {
+			stop(true);
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	// Other motion methods
 	/**
 	 * Makes the robot stop.
@@ -325,6 +445,7 @@ public class DifferentialPilot implements Controllable {
 	 */
 	public void stop(boolean immediateReturn) {
 
+		follower.stop();
 		right.stop(true);
 		left.stop(immediateReturn);
 	}
@@ -428,6 +549,27 @@ public class DifferentialPilot implements Controllable {
 		this.speed = speed.getValueIn(Unit.METER_PER_SECOND);
 	}
 
+	/**
+	 * Gets the jerk of moves that follow a motion profile.
+	 *
+	 * @return the jerk, in m/s/s/s.
+	 */
+	public double getJerk() {
+
+		return jerk;
+	}
+
+	/**
+	 * Sets the jerk of moves that follow a motion profile. {@link Double#POSITIVE_INFINITY} gives trapezoidal profiles.
+	 *
+	 * @param jerk
+	 *            the jerk, in m/s/s/s.
+	 */
+	public void setJerk(double jerk) {
+
+		this.jerk = jerk;
+	}
+
 	/**
 	 * @param rotateSpeed
 	 *            the rotateSpeed to set
@@ -0,0 +1,199 @@
+package robotics.motion;
+
+import lejos.robotics.RegulatedMotor;
+import utilities.Delay;
+import utilities.regulation.MotionProfile;
+
+/**
+ * Drives a pair of wheels along a sequence of {@link MotionProfile}s. The wheel speeds are set every {@link #PERIOD} ms from the velocity of the
+ * profile, plus a correction for the difference between where the profile is and where the wheels have got to. Each move starts where the last
+ * should have ended, so that any error left at the end of one move is taken out in the next, and {@link #finish(double)} takes out whatever is
+ * left at the end.
+ *
+ * The pilot that owns the motors calls {@link #start()} before each sequence of moves, and {@link #stop()} whenever the robot is stopped. Once
+ * stopped, the follower does not touch the motors again until the next {@link #start()}, so a stop from another thread cannot be undone by the
+ * next speed update.
+ */
+public class ProfileFollower {
+
+	/**
+	 * The time between speed updates, in ms.
+	 */
+	public static final long PERIOD = 10;
+	/**
+	 * How fast an error in position is corrected, in 1/s.
+	 */
+	public static final double POSITION_GAIN = 5;
+	/**
+	 * How much faster than the profile the motors are allowed to accelerate, so that they can keep up with the profile and the corrections.
+	 */
+	public static final double ACCELERATION_MARGIN = 2;
+
+	/**
+	 * The motor on the left.
+	 */
+	private final RegulatedMotor left;
+	/**
+	 * The motor on the right.
+	 */
+	private final RegulatedMotor right;
+	/**
+	 * The degrees the left motor turns for each unit of distance its wheel moves.
+	 */
+	private final double leftDegPerDistance;
+	/**
+	 * The degrees the right motor turns for each unit of distance its wheel moves.
+	 */
+	private final double rightDegPerDistance;
+	/**
+	 * 1 if turning the motors forwards moves the robot forwards, -1 otherwise.
+	 */
+	private final int parity;
+	/**
+	 * The tacho counts the motors should be at when the current move ends. Only used by the following thread.
+	 */
+	private double leftTarget, rightTarget;
+	/**
+	 * True if the robot has been stopped since the last {@link #start()}. Guarded by this.
+	 */
+	private boolean stopped;
+
+	/**
+	 * Makes a new follower.
+	 *
+	 * @param left
+	 *            the motor on the left.
+	 * @param right
+	 *            the motor on the right.
+	 * @param leftDegPerDistance
+	 *            the degrees the left motor turns for each unit of distance its wheel moves.
+	 * @param rightDegPerDistance
+	 *            the degrees the right motor turns for each unit of distance its wheel moves.
+	 * @param parity
+	 *            1 if turning the motors forwards moves the robot forwards, -1 otherwise.
+	 */
+	public ProfileFollower(RegulatedMotor left, RegulatedMotor right, double leftDegPerDistance, double rightDegPerDistance, int parity) {
+
+		this.left = left;
+		this.right = right;
+		this.leftDegPerDistance = leftDegPerDistance;
+		this.rightDegPerDistance = rightDegPerDistance;
+		this.parity = parity;
+		stopped = true;
+	}
+
+	/**
+	 * Gets ready to follow a new sequence of moves from where the wheels are now. Any earlier stop is forgotten, so this must be called before
+	 * the motors are started.
+	 */
+	public synchronized void start() {
+
+		leftTarget = left.getTachoCount();
+		rightTarget = right.getTachoCount();
+		stopped = false;
+	}
+
+	/**
+	 * Stops following. The following thread returns from {@link #follow(MotionProfile, double, double)} at its next update without setting the
+	 * speeds again, and {@link #finish(double)} does nothing. This does not stop the motors; the caller must stop them after calling this.
+	 */
+	public synchronized void stop() {
+
+		stopped = true;
+	}
+
+	/**
+	 * Checks if following has been stopped.
+	 *
+	 * @return true if {@link #stop()} has been called since the last {@link #start()}.
+	 */
+	public synchronized boolean isStopped() {
+
+		return stopped;
+	}
+
+	/**
+	 * Follows one move. Returns when the profile ends, leaving the wheels running at its end velocity, ready for the next move.
+	 *
+	 * @param profile
+	 *            the profile of the move.
+	 * @param leftCoefficient
+	 *            the distance the left wheel moves for each unit of the profile.
+	 * @param rightCoefficient
+	 *            the distance the right wheel moves for each unit of the profile.
+	 * @return true if the move was completed, false if following was stopped.
+	 * @throws InterruptedException
+	 *             if this thread is interrupted. The wheels are left running.
+	 */
+	public boolean follow(MotionProfile profile, double leftCoefficient, double rightCoefficient) throws InterruptedException {
+
+		double leftStart = leftTarget;
+		double rightStart = rightTarget;
+		double norm = leftCoefficient * leftCoefficient + rightCoefficient * rightCoefficient;
+		double wheelAcceleration = profile.getLimits().acceleration * ACCELERATION_MARGIN
+				* Math.max(Math.abs(leftCoefficient), Math.abs(rightCoefficient));
+		synchronized (this) {
+			if (stopped)
+				return false;
+			left.setAcceleration((int) (wheelAcceleration * leftDegPerDistance));
+			right.setAcceleration((int) (wheelAcceleration * rightDegPerDistance));
+		}
+
+		profile.start();
+		double t;
+		while ((t = profile.getElapsedTime()) < profile.getDuration()) {
+			// The progress along the profile that best explains how far each wheel has moved
+			double leftMoved = (left.getTachoCount() - leftStart) * parity / leftDegPerDistance;
+			double rightMoved = (right.getTachoCount() - rightStart) * parity / rightDegPerDistance;
+			double progress = (leftMoved * leftCoefficient + rightMoved * rightCoefficient) / norm;
+			double velocity = profile.getVelocity(t) + POSITION_GAIN * (profile.getPosition(t) - progress);
+			synchronized (this) {
+				if (stopped)
+					return false;
+				run(left, velocity * leftCoefficient * leftDegPerDistance);
+				run(right, velocity * rightCoefficient * rightDegPerDistance);
+			}
+			Delay.delayI(PERIOD);
+		}
+		leftTarget = leftStart + profile.getDistance() * leftCoefficient * leftDegPerDistance * parity;
+		rightTarget = rightStart + profile.getDistance() * rightCoefficient * rightDegPerDistance * parity;
+		return true;
+	}
+
+	/**
+	 * Takes out whatever error is left at the end of the last move, by turning each motor to exactly where it should be. Returns immediately;
+	 * the caller waits for the motors.
+	 *
+	 * @param speed
+	 *            the speed of the wheels, in units of distance per second.
+	 * @return true if the motors were started, false if following was stopped.
+	 */
+	public synchronized boolean finish(double speed) {
+
+		if (stopped)
+			return false;
+		left.setSpeed((int) Math.round(speed * leftDegPerDistance));
+		right.setSpeed((int) Math.round(speed * rightDegPerDistance));
+		left.rotateTo((int) Math.round(leftTarget), true);
+		right.rotateTo((int) Math.round(rightTarget), true);
+		return true;
+	}
+
+	/**
+	 * Runs a motor at a speed, in either direction.
+	 *
+	 * @param motor
+	 *            the motor.
+	 * @param speed
+	 *            the speed, in degrees/second. If positive, the motor moves the robot forwards.
+	 */
+	private void run(RegulatedMotor motor, double speed) {
+
+		double angular = speed * parity;
+		motor.setSpeed((int) Math.round(Math.abs(angular)));
+		if (angular >= 0)
+			motor.forward();
+		else
+			motor.backward();
+	}
+}
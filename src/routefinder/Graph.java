@@ -162,6 +162,22 @@ public class Graph {
 		return endAng.get(dest);
 	}
 
+	//returns the nodes that have an arc to the node, or an empty set if there are none
+	public Set<String> getIncoming(String dest){
+
+		Set<String> incoming=new HashSet<String>();
+
+		for(Map.Entry<String,Map<String,Double>> entry:data.entrySet()){
+
+			if(entry.getValue().containsKey(dest)){
+
+				incoming.add(entry.getKey());
+			}
+		}
+
+		return incoming;
+	}
+
 	//Adds an edge between two nodes in a graph with the weight specified
 	public void addEdge(String src,String dest, double weight){
 
@@ -221,6 +221,12 @@ public class ShortestPathCalculator {
 		
 	}
 	
+	// returns the map of the city
+	public Graph getMap() {
+	
+		return map;
+	}
+	
 	// returns an angle from -90 to 90 which indicates the angle the robot should turn, positive is right, neg is left
 	public int calculateTurnAngle(String nodeA, String nodeB, String nodeC) throws IllegalArgumentException {
 	
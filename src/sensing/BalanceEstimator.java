@@ -0,0 +1,165 @@
+package sensing;
+
+/**
+ * Keeps the black and white calibration of a {@link ColorSensor} up to date while the robot runs. The calibration is taken once, before the run,
+ * but the raw readings drift as the lighting changes and the battery runs down. The estimator is given the raw readings that were classified as
+ * black (the road) or white (the line), and moves the calibration towards them with a slow exponential moving average.
+ *
+ * Only steady readings are used: a reading counts once the sensor has seen the same color for {@link #STEADY_SAMPLES} readings in a row, so the
+ * readings at the edge of a line, which are blends, are left out. The averages are applied to the sensor every {@link #APPLY_INTERVAL} readings,
+ * with {@link ColorSensor#setBalance(double[], double[])}, so the black and white change together. Each component can only drift
+ * {@link #MAXIMUM_DRIFT} of the original span away from the original calibration, so a run of misclassified readings cannot run away with it.
+ *
+ * An estimator should only be updated from the thread that reads its sensor.
+ */
+public class BalanceEstimator {
+
+	/**
+	 * A reading that is neither black nor white.
+	 */
+	public static final int NEITHER = 0;
+	/**
+	 * A reading of black.
+	 */
+	public static final int BLACK = 1;
+	/**
+	 * A reading of white.
+	 */
+	public static final int WHITE = 2;
+	/**
+	 * The default weight of each reading in the moving average. At 100 readings a second, the average follows a change with a time constant of
+	 * about 10 s of readings of that color, which is slow enough that a few misclassified readings do not move it.
+	 */
+	public static final double DEFAULT_RATE = .001;
+	/**
+	 * The number of readings in a row of the same color before they are used.
+	 */
+	public static final int STEADY_SAMPLES = 5;
+	/**
+	 * The number of readings used between updates of the sensor's calibration.
+	 */
+	public static final int APPLY_INTERVAL = 100;
+	/**
+	 * The furthest that a component can drift from the original calibration, as a fraction of the original span between black and white.
+	 */
+	public static final double MAXIMUM_DRIFT = .25;
+
+	/**
+	 * The sensor.
+	 */
+	private final ColorSensor sensor;
+	/**
+	 * The weight of each reading in the moving average.
+	 */
+	private final double rate;
+	/**
+	 * The calibration when the estimator was made, at index 0 for black and 1 for white.
+	 */
+	private final double[][] original;
+	/**
+	 * The moving averages, at index 0 for black and 1 for white.
+	 */
+	private final double[][] estimates;
+	/**
+	 * The color of the current run of readings.
+	 */
+	private int runColor;
+	/**
+	 * The number of readings in the current run.
+	 */
+	private int runLength;
+	/**
+	 * The number of readings used since the calibration was last applied.
+	 */
+	private int sinceApplied;
+	/**
+	 * The number of times the calibration has been applied.
+	 */
+	private long updates;
+
+	/**
+	 * Makes a new estimator with {@link #DEFAULT_RATE}.
+	 *
+	 * @param sensor
+	 *            the sensor. It should already be calibrated.
+	 */
+	public BalanceEstimator(ColorSensor sensor) {
+
+		this(sensor, DEFAULT_RATE);
+	}
+
+	/**
+	 * Makes a new estimator.
+	 *
+	 * @param sensor
+	 *            the sensor. It should already be calibrated.
+	 * @param rate
+	 *            the weight of each reading in the moving average, in the range (0, 1].
+	 */
+	public BalanceEstimator(ColorSensor sensor, double rate) {
+
+		if (!(rate > 0 && rate <= 1))
+			throw new IllegalArgumentException("The rate must be in the range (0, 1]: " + rate);
+		this.sensor = sensor;
+		this.rate = rate;
+		original = new double[][] { sensor.getBlack(), sensor.getWhite() };
+		estimates = new double[][] { sensor.getBlack(), sensor.getWhite() };
+		runColor = NEITHER;
+		runLength = 0;
+		sinceApplied = 0;
+		updates = 0;
+	}
+
+	/**
+	 * Adds a reading. This does not allocate anything, except when the calibration is applied.
+	 *
+	 * @param raw
+	 *            the raw reading, from {@link ColorSensor#readRaw(float[])}.
+	 * @param color
+	 *            what the reading was classified as: {@link #BLACK}, {@link #WHITE}, or {@link #NEITHER}.
+	 */
+	public void update(float[] raw, int color) {
+
+		if (color != runColor) {
+			runColor = color;
+			runLength = 0;
+		}
+		runLength++;
+		if (color == NEITHER || runLength < STEADY_SAMPLES)
+			return;
+
+		int index = color == BLACK ? 0 : 1;
+		double[] estimate = estimates[index];
+		for (int x = 0; x < 3; x++) {
+			double span = original[1][x] - original[0][x];
+			double limit = Math.abs(span) * MAXIMUM_DRIFT;
+			double value = estimate[x] + rate * (raw[x] - estimate[x]);
+			estimate[x] = Math.min(original[index][x] + limit, Math.max(original[index][x] - limit, value));
+		}
+		if (++sinceApplied >= APPLY_INTERVAL) {
+			sinceApplied = 0;
+			updates++;
+			sensor.setBalance(estimates[0], estimates[1]);
+		}
+	}
+
+	/**
+	 * Gets the number of times the calibration has been applied to the sensor.
+	 *
+	 * @return the number of updates.
+	 */
+	public long getUpdates() {
+
+		return updates;
+	}
+
+	/**
+	 * Gets the sensor.
+	 *
+	 * @return the sensor.
+	 */
+	public ColorSensor getSensor() {
+
+		return sensor;
+	}
+}
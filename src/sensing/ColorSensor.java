@@ -11,13 +11,10 @@ import utilities.Color;
 public abstract class ColorSensor {
 
 	/**
-	 * The raw reading when the sensor is over black.
+	 * The raw readings when the sensor is over black, at index 0, and over white, at index 1. The two are replaced together, never modified, so a
+	 * reading is never scaled with the black from one calibration and the white from another.
 	 */
-	private double[] black = { 0, 0, 0 };
-	/**
-	 * The raw reading when the sensor is over white.
-	 */
-	private double[] white = { 1, 1, 1 };
+	private volatile double[][] balance = { { 0, 0, 0 }, { 1, 1, 1 } };
 
 	/**
 	 * The index of red in the raw reading array.
@@ -32,13 +29,63 @@ public abstract class ColorSensor {
 	 */
 	public static final int BLUE = 2;
 	
+	/**
+	 * Reads the raw sensor values into a buffer, without allocating anything.
+	 *
+	 * @param sample
+	 *            the buffer to store the reading in. Must be at least 3 long. The red component is stored at the index indicated by {@link #RED}, the
+	 *            green component at the index indicated by {@link #GREEN}, and the blue component at the index indicated by {@link #BLUE}.
+	 */
+	public abstract void readRaw(float[] sample);
+	
 	/**
 	 * Gets the raw reading.
 	 *
 	 * @return the raw reading, with the red component at the index indicated by {@link #RED}, the green component at the index indicated by
 	 *         {@link #GREEN}, and the blue component at the index indicated by {@link #BLUE}.
 	 */
-	public abstract double[] getRawReading();
+	public double[] getRawReading() {
+	
+		float[] sample = new float[3];
+		readRaw(sample);
+		double[] result = new double[sample.length];
+		for (int x = 0; x < result.length; x++)
+			result[x] = sample[x];
+		return result;
+	}
+	
+	/**
+	 * Reads the scaled color from the sensor into a buffer. This does the same thing as {@link #getColor()}, but does not allocate anything, so it
+	 * should be used in loops that read the sensor continuously.
+	 *
+	 * @param result
+	 *            the buffer to store the scaled color in. Must be at least 3 long. The components are stored at the indices {@link #RED},
+	 *            {@link #GREEN}, and {@link #BLUE}, and are in the range [0, 1].
+	 */
+	public void readInto(float[] result) {
+	
+		readRaw(result);
+		scale(result, result);
+	}
+	
+	/**
+	 * Scales a raw reading with the current calibration. {@link #readInto(float[])} is the same as {@link #readRaw(float[])} followed by this; the
+	 * two steps are separate so that the raw reading can be kept, for example to adjust the calibration with.
+	 *
+	 * @param raw
+	 *            the raw reading, from {@link #readRaw(float[])}.
+	 * @param result
+	 *            the buffer to store the scaled color in. Can be the same as raw.
+	 */
+	public void scale(float[] raw, float[] result) {
+	
+		// Read the calibration once, in case it is replaced while this is running
+		double[][] balance = this.balance;
+		double[] black = balance[0];
+		double[] white = balance[1];
+		for (int x = 0; x < 3; x++)
+			result[x] = (float) Math.min(1, Math.max(0, (raw[x] - black[x]) / (white[x] - black[x])));
+	}
 	
 	/**
 	 * Gets the scaled color from the sensor. Ideally, if the surface is black, this should be (0,0,0). If the surface is red, the value should be
@@ -48,10 +95,8 @@ public abstract class ColorSensor {
 	 */
 	public Color getColor() {
 	
-		double[] raw = getRawReading();
-		double[] calibrated = new double[raw.length];
-		for (int x = 0; x < calibrated.length; x++)
-			calibrated[x] = Math.min(1, Math.max(0, (raw[x] - black[x]) / (white[x] - black[x])));
+		float[] calibrated = new float[3];
+		readInto(calibrated);
 		return new Color(calibrated[RED], calibrated[GREEN], calibrated[BLUE]);
 		
 	}
@@ -61,7 +106,7 @@ public abstract class ColorSensor {
 	 */
 	public void calibrateBlack() {
 	
-		black = getRawReading();
+		setBlack(getRawReading());
 	}
 	
 	/**
@@ -69,7 +114,7 @@ public abstract class ColorSensor {
 	 */
 	public void calibrateWhite() {
 
-		white = getRawReading();
+		setWhite(getRawReading());
 	}
 
 	/**
@@ -80,7 +125,7 @@ public abstract class ColorSensor {
 	 */
 	public double[] getBlack() {
 
-		return black;
+		return balance[0].clone();
 	}
 	
 	/**
@@ -92,7 +137,7 @@ public abstract class ColorSensor {
 	 */
 	public void setBlack(double[] black) {
 
-		this.black = black;
+		balance = new double[][] { black.clone(), balance[1] };
 	}
 	
 	/**
@@ -103,7 +148,7 @@ public abstract class ColorSensor {
 	 */
 	public double[] getWhite() {
 
-		return white;
+		return balance[1].clone();
 	}
 	
 	/**
@@ -115,6 +160,19 @@ public abstract class ColorSensor {
 	 */
 	public void setWhite(double[] white) {
 
-		this.white = white;
+		balance = new double[][] { balance[0], white.clone() };
+	}
+	
+	/**
+	 * Sets the black and white calibration data at once, so that no reading is scaled with one of them changed and the other not.
+	 *
+	 * @param black
+	 *            the raw sensor reading that the sensor should read when it is over black, in the order RGB.
+	 * @param white
+	 *            the raw sensor reading that the sensor should read when it is over white, in the order RGB.
+	 */
+	public void setBalance(double[] black, double[] white) {
+
+		balance = new double[][] { black.clone(), white.clone() };
 	}
 }
\ No newline at end of file
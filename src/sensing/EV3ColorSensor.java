@@ -38,29 +38,20 @@ public class EV3ColorSensor extends ColorSensor {
 	}
 	
 	/**
-	 *
+	 * Reads the raw RGB values. If the sensor cannot be read, the program stops until a button is pressed, and then the reading is .5 for each
+	 * component.
 	 */
 	@Override
-	public double[] getRawReading() {
-
-		// System.out.println("SROP: " + port);
+	public void readRaw(float[] sample) {
 
 		try {
-			float[] sample = new float[RGBMode.sampleSize()];
+			// The RGB mode has a sample size of 3, so it fills the first three elements
 			RGBMode.fetchSample(sample, 0);
-			double[] result = new double[sample.length];
-			for (int x = 0; x < result.length; x++)
-				result[x] = sample[x];
-			
-			// System.out.println("EROP: " + port);
-			return result;
-
 		} catch (I2CException e) {
 			ION2016.report("I2CE on EV3 sensor");
 			Button.waitForAnyPress();
 			Sound.beep();
-			// System.out.println("EROPE: " + port);
-			return new double[] { .5, .5, .5 };
+			sample[RED] = sample[GREEN] = sample[BLUE] = .5f;
 		}
 	}
 }
\ No newline at end of file
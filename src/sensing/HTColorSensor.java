@@ -33,21 +33,16 @@ public class HTColorSensor extends ColorSensor {
 	}
 	
 	/**
-	 * gets the raw reading
+	 * Reads the raw RGB values. If the sensor cannot be read, the reading is .5 for each component.
 	 */
 	@Override
-	public double[] getRawReading() {
+	public void readRaw(float[] sample) {
 
 		try {
-			float[] sample = new float[rgbMode.sampleSize()];
 			rgbMode.fetchSample(sample, 0);
-			double[] result = new double[sample.length];
-			for (int x = 0; x < result.length; x++)
-				result[x] = sample[x];
-			return result;
 		} catch (I2CException e) {
 			ION2016.report("I2CE on HT sensor");
-			return new double[] { .5, .5, .5 };
+			sample[RED] = sample[GREEN] = sample[BLUE] = .5f;
 		}
 	}
 
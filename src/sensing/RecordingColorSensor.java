@@ -0,0 +1,93 @@
+package sensing;
+
+/**
+ * A color sensor that records every raw reading of another color sensor with a {@link SensorRecorder}, along with every calibration, so that the
+ * run can be replayed with {@link ReplayColorSensor}. The calibration is kept by this sensor, not the wrapped one.
+ */
+public class RecordingColorSensor extends ColorSensor {
+
+	/**
+	 * The sensor that is recorded.
+	 */
+	private final ColorSensor sensor;
+	/**
+	 * The recorder.
+	 */
+	private final SensorRecorder recorder;
+	/**
+	 * The channel that the sensor is recorded on.
+	 */
+	private final int channel;
+
+	/**
+	 * Makes a new recording color sensor. The calibration of the wrapped sensor is copied and recorded.
+	 *
+	 * @param sensor
+	 *            the sensor to record.
+	 * @param recorder
+	 *            the recorder.
+	 * @param channel
+	 *            the channel to record the sensor on. Each sensor in a recording needs its own channel.
+	 */
+	public RecordingColorSensor(ColorSensor sensor, SensorRecorder recorder, int channel) {
+
+		this.sensor = sensor;
+		this.recorder = recorder;
+		this.channel = channel;
+		setBalance(sensor.getBlack(), sensor.getWhite());
+	}
+
+	/**
+	 * Reads the raw values from the wrapped sensor and records them.
+	 */
+	@Override
+	public void readRaw(float[] sample) {
+
+		sensor.readRaw(sample);
+		recorder.record(channel, System.nanoTime(), sample, 3);
+	}
+
+	@Override
+	public void calibrateBlack() {
+
+		setBlack(getRawReading());
+	}
+
+	@Override
+	public void calibrateWhite() {
+
+		setWhite(getRawReading());
+	}
+
+	@Override
+	public void setBlack(double[] black) {
+
+		super.setBlack(black);
+		recorder.recordCalibration(channel, SensorRecorder.BLACK, black);
+	}
+
+	@Override
+	public void setWhite(double[] white) {
+
+		super.setWhite(white);
+		recorder.recordCalibration(channel, SensorRecorder.WHITE, white);
+	}
+
+	@Override
+	public void setBalance(double[] black, double[] white) {
+
+		super.setBalance(black, white);
+		recorder.recordCalibration(channel, SensorRecorder.BLACK, black);
+		recorder.recordCalibration(channel, SensorRecorder.WHITE, white);
+	}
+
+	/**
+	 * Gets the sensor that is recorded.
+	 *
+	 * @return the wrapped sensor.
+	 */
+	public ColorSensor getSensor() {
+
+		return sensor;
+	}
+}
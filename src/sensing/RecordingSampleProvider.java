@@ -0,0 +1,63 @@
+package sensing;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * A sample provider that records every sample of another sample provider with a {@link SensorRecorder}, so that the run can be replayed with
+ * {@link ReplaySampleProvider}. Only the first three values of each sample are recorded.
+ */
+public class RecordingSampleProvider implements SampleProvider {
+
+	/**
+	 * The provider that is recorded.
+	 */
+	private final SampleProvider provider;
+	/**
+	 * The recorder.
+	 */
+	private final SensorRecorder recorder;
+	/**
+	 * The channel that the provider is recorded on.
+	 */
+	private final int channel;
+	/**
+	 * The values of the current sample, copied out of the caller's buffer, which may not start at 0. Guarded by this.
+	 */
+	private final float[] recorded;
+
+	/**
+	 * Makes a new recording sample provider.
+	 *
+	 * @param provider
+	 *            the provider to record.
+	 * @param recorder
+	 *            the recorder.
+	 * @param channel
+	 *            the channel to record the provider on. Each sensor in a recording needs its own channel.
+	 */
+	public RecordingSampleProvider(SampleProvider provider, SensorRecorder recorder, int channel) {
+
+		this.provider = provider;
+		this.recorder = recorder;
+		this.channel = channel;
+		recorded = new float[3];
+	}
+
+	@Override
+	public int sampleSize() {
+
+		return provider.sampleSize();
+	}
+
+	/**
+	 * Fetches a sample from the wrapped provider and records it. The sonar is read both by its daemon and by sweeps, so this is synchronized.
+	 */
+	@Override
+	public synchronized void fetchSample(float[] sample, int offset) {
+
+		provider.fetchSample(sample, offset);
+		int length = Math.min(recorded.length, provider.sampleSize());
+		System.arraycopy(sample, offset, recorded, 0, length);
+		recorder.record(channel, System.nanoTime(), recorded, length);
+	}
+}
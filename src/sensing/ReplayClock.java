@@ -0,0 +1,79 @@
+package sensing;
+
+/**
+ * Paces a replay. Every replayed sensor that shares a clock is paced against the same start time, so that the sensors stay in step with each other
+ * the way they were on the robot.
+ *
+ * In real time mode, a replayed sample is not returned until as much time has passed since the replay started as had passed since the recording
+ * started when the sample was taken. Otherwise, the samples are returned as fast as they are asked for, which is what benchmarks and regression
+ * runs want. Either way, each sensor returns the same samples in the same order, so a replay is deterministic.
+ */
+public class ReplayClock {
+
+	/**
+	 * True to replay in real time, false to replay as fast as possible.
+	 */
+	private final boolean realTime;
+	/**
+	 * The time of the first record in the recording, from {@link System#nanoTime()} on the robot.
+	 */
+	private final long recordingStart;
+	/**
+	 * The time at which the replay started, from {@link System#nanoTime()}, or 0 if it has not started yet. Guarded by this.
+	 */
+	private long replayStart;
+
+	/**
+	 * Makes a new clock.
+	 *
+	 * @param recording
+	 *            the recording being replayed.
+	 * @param realTime
+	 *            true to replay in real time, false to replay as fast as possible.
+	 */
+	public ReplayClock(SensorRecording recording, boolean realTime) {
+
+		this.realTime = realTime;
+		recordingStart = recording.size() == 0 ? 0 : recording.getTimestamp(0);
+		replayStart = 0;
+	}
+
+	/**
+	 * Returns true if this clock replays in real time.
+	 *
+	 * @return true if this clock replays in real time, false if it replays as fast as possible.
+	 */
+	public boolean isRealTime() {
+
+		return realTime;
+	}
+
+	/**
+	 * Waits until a sample is due. The first call starts the replay. In real time mode, this sleeps until the sample is due; otherwise, it returns
+	 * straight away.
+	 *
+	 * @param timestamp
+	 *            the time at which the sample was recorded, from {@link System#nanoTime()} on the robot.
+	 */
+	public void await(long timestamp) {
+
+		if (!realTime)
+			return;
+		long start;
+		synchronized (this) {
+			if (replayStart == 0)
+				replayStart = System.nanoTime();
+			start = replayStart;
+		}
+		long due = start + (timestamp - recordingStart);
+		long remaining;
+		while ((remaining = due - System.nanoTime()) > 0)
+			try {
+				Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+			} catch (InterruptedException e) {
+				// Keep the interrupt for the caller, and give up on pacing this sample
+				Thread.currentThread().interrupt();
+				return;
+			}
+	}
+}
@@ -0,0 +1,57 @@
+package sensing;
+
+/**
+ * A color sensor that replays one channel of a recording made by {@link SensorRecorder}. Each reading returns the next raw sample on the channel,
+ * and calibrations are applied at the point in the recording where they were made, so the calibrated readings are the same as on the robot. Once
+ * the channel runs out, the last sample is repeated.
+ */
+public class ReplayColorSensor extends ColorSensor {
+
+	/**
+	 * The cursor through the channel.
+	 */
+	private final ReplayCursor cursor;
+
+	/**
+	 * Makes a new replayed color sensor.
+	 *
+	 * @param recording
+	 *            the recording.
+	 * @param channel
+	 *            the channel that the sensor was recorded on.
+	 * @param clock
+	 *            the clock that paces the replay. Sensors that are replayed together should share a clock.
+	 */
+	public ReplayColorSensor(SensorRecording recording, int channel, ReplayClock clock) {
+
+		cursor = new ReplayCursor(recording, channel, clock);
+	}
+
+	/**
+	 * Reads the next raw sample from the recording. If the channel has no samples at all, the reading is .5 for each component, like a sensor that
+	 * cannot be read.
+	 */
+	@Override
+	public void readRaw(float[] sample) {
+
+		int index = cursor.nextSample(this);
+		if (index < 0) {
+			sample[RED] = sample[GREEN] = sample[BLUE] = .5f;
+			return;
+		}
+		SensorRecording recording = cursor.getRecording();
+		sample[RED] = recording.getValue(index, RED);
+		sample[GREEN] = recording.getValue(index, GREEN);
+		sample[BLUE] = recording.getValue(index, BLUE);
+	}
+
+	/**
+	 * Returns true once every sample on the channel has been replayed, so further readings would repeat the last one.
+	 *
+	 * @return true if the channel has run out.
+	 */
+	public boolean isFinished() {
+
+		return cursor.isFinished();
+	}
+}
@@ -0,0 +1,107 @@
+package sensing;
+
+/**
+ * Walks through the records of one channel of a recording. Used by the replayed sensors, each of which owns one cursor, so a cursor is only used by
+ * one thread.
+ */
+class ReplayCursor {
+
+	/**
+	 * The recording.
+	 */
+	private final SensorRecording recording;
+	/**
+	 * The channel.
+	 */
+	private final int channel;
+	/**
+	 * The clock that paces the replay.
+	 */
+	private final ReplayClock clock;
+	/**
+	 * The index of the next record to look at.
+	 */
+	private int position;
+	/**
+	 * The index of the last sample returned, or -1 if none has been.
+	 */
+	private int lastSample;
+
+	/**
+	 * Makes a new cursor at the start of the recording.
+	 *
+	 * @param recording
+	 *            the recording.
+	 * @param channel
+	 *            the channel.
+	 * @param clock
+	 *            the clock that paces the replay.
+	 */
+	ReplayCursor(SensorRecording recording, int channel, ReplayClock clock) {
+
+		this.recording = recording;
+		this.channel = channel;
+		this.clock = clock;
+		position = 0;
+		lastSample = -1;
+	}
+
+	/**
+	 * Moves to the next sample on the channel, applying any calibrations on the way. Once the channel runs out, the last sample is repeated.
+	 *
+	 * @param sensor
+	 *            the sensor that the calibrations are applied to, or null to skip them.
+	 * @return the index of the sample, or -1 if the channel has no samples.
+	 */
+	int nextSample(ColorSensor sensor) {
+
+		while (true) {
+			int index = recording.next(channel, position);
+			if (index >= recording.size()) {
+				position = index;
+				return lastSample;
+			}
+			position = index + 1;
+			int kind = recording.getKind(index);
+			if (kind == SensorRecorder.SAMPLE) {
+				clock.await(recording.getTimestamp(index));
+				lastSample = index;
+				return index;
+			}
+			if (sensor != null) {
+				double[] raw = { recording.getValue(index, 0), recording.getValue(index, 1), recording.getValue(index, 2) };
+				if (kind == SensorRecorder.BLACK)
+					sensor.setBlack(raw);
+				else if (kind == SensorRecorder.WHITE)
+					sensor.setWhite(raw);
+			}
+		}
+	}
+
+	/**
+	 * Returns true once every sample on the channel has been returned, so the next call to {@link #nextSample(ColorSensor)} would repeat the last
+	 * one.
+	 *
+	 * @return true if the channel has run out.
+	 */
+	boolean isFinished() {
+
+		int index = position;
+		while ((index = recording.next(channel, index)) < recording.size()) {
+			if (recording.getKind(index) == SensorRecorder.SAMPLE)
+				return false;
+			index++;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the recording.
+	 *
+	 * @return the recording.
+	 */
+	SensorRecording getRecording() {
+
+		return recording;
+	}
+}
@@ -0,0 +1,66 @@
+package sensing;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * A sample provider that replays one channel of a recording made by {@link SensorRecorder}, such as the distance mode of the sonar. Once the
+ * channel runs out, the last sample is repeated.
+ */
+public class ReplaySampleProvider implements SampleProvider {
+
+	/**
+	 * The cursor through the channel.
+	 */
+	private final ReplayCursor cursor;
+	/**
+	 * The number of values in each sample, from 1 to 3.
+	 */
+	private final int sampleSize;
+
+	/**
+	 * Makes a new replayed sample provider.
+	 *
+	 * @param recording
+	 *            the recording.
+	 * @param channel
+	 *            the channel that the provider was recorded on.
+	 * @param sampleSize
+	 *            the number of values in each sample, from 1 to 3. The distance mode of the sonar has 1.
+	 * @param clock
+	 *            the clock that paces the replay. Sensors that are replayed together should share a clock.
+	 */
+	public ReplaySampleProvider(SensorRecording recording, int channel, int sampleSize, ReplayClock clock) {
+
+		if (sampleSize < 1 || sampleSize > 3)
+			throw new IllegalArgumentException("A recorded sample has 1 to 3 values, not " + sampleSize);
+		cursor = new ReplayCursor(recording, channel, clock);
+		this.sampleSize = sampleSize;
+	}
+
+	@Override
+	public int sampleSize() {
+
+		return sampleSize;
+	}
+
+	/**
+	 * Fetches the next sample from the recording. If the channel has no samples at all, every value is infinite, like a sonar that sees nothing.
+	 */
+	@Override
+	public void fetchSample(float[] sample, int offset) {
+
+		int index = cursor.nextSample(null);
+		for (int x = 0; x < sampleSize; x++)
+			sample[offset + x] = index < 0 ? Float.POSITIVE_INFINITY : cursor.getRecording().getValue(index, x);
+	}
+
+	/**
+	 * Returns true once every sample on the channel has been replayed, so further readings would repeat the last one.
+	 *
+	 * @return true if the channel has run out.
+	 */
+	public boolean isFinished() {
+
+		return cursor.isFinished();
+	}
+}
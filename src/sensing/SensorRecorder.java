@@ -0,0 +1,238 @@
+package sensing;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records raw sensor samples to a binary file, so that a run can be replayed later with {@link SensorRecording}. The file is preallocated and
+ * memory mapped when the recorder is made, so recording a sample is a few stores into memory: it does not allocate, make a system call, or take a
+ * lock, and can be done at the full rate of the sensor loops. The operating system writes the pages to the file in the background.
+ *
+ * The file is a header of {@link #HEADER_SIZE} bytes followed by records of {@link #RECORD_SIZE} bytes. Each record holds a timestamp, up to three
+ * values, the channel the record belongs to, the kind of record, and a marker. The marker is written last, and the file starts out zeroed, so a
+ * record without a marker was never finished. This means a recording is still readable if the program is killed part way through.
+ *
+ * Any number of threads can record at once: each record claims its own slot, so threads never write to the same part of the file. When the file is
+ * full, further samples are dropped and counted.
+ */
+public class SensorRecorder {
+
+	/**
+	 * The magic number at the start of every recording.
+	 */
+	public static final int MAGIC = 0x494F4E52;
+	/**
+	 * The version of the file format.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The size of the header, in bytes: the magic number, the version, and the capacity, padded to the size of a record.
+	 */
+	public static final int HEADER_SIZE = 32;
+	/**
+	 * The size of each record, in bytes.
+	 */
+	public static final int RECORD_SIZE = 32;
+	/**
+	 * The marker written at the end of every finished record.
+	 */
+	static final int RECORD_MARKER = 0x52454321;
+
+	// Offsets of the fields within a record
+	/**
+	 * The offset of the timestamp, a long from {@link System#nanoTime()}.
+	 */
+	static final int TIMESTAMP = 0;
+	/**
+	 * The offset of the first of the three float values.
+	 */
+	static final int VALUES = 8;
+	/**
+	 * The offset of the channel, an int.
+	 */
+	static final int CHANNEL = 20;
+	/**
+	 * The offset of the kind, an int.
+	 */
+	static final int KIND = 24;
+	/**
+	 * The offset of the marker, an int.
+	 */
+	static final int MARKER = 28;
+
+	/**
+	 * The kind of record that holds a raw sample.
+	 */
+	public static final int SAMPLE = 0;
+	/**
+	 * The kind of record that holds a raw black calibration.
+	 */
+	public static final int BLACK = 1;
+	/**
+	 * The kind of record that holds a raw white calibration.
+	 */
+	public static final int WHITE = 2;
+
+	/**
+	 * The file.
+	 */
+	private final RandomAccessFile file;
+	/**
+	 * The mapped contents of the file. Only absolute gets and puts are used, so the position of the buffer is never changed and threads writing
+	 * different records do not interfere.
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The number of records that fit in the file.
+	 */
+	private final int capacity;
+	/**
+	 * The index of the next free record.
+	 */
+	private final AtomicInteger next;
+	/**
+	 * The number of samples dropped because the file was full.
+	 */
+	private final AtomicLong dropped;
+
+	/**
+	 * Makes a new recorder, which creates the file, or overwrites it if it exists, and preallocates space for the specified number of records.
+	 *
+	 * @param fileName
+	 *            the name of the file.
+	 * @param capacity
+	 *            the number of records that the file can hold. Must be positive.
+	 * @throws IOException
+	 *             if the file cannot be created or mapped.
+	 */
+	public SensorRecorder(String fileName, int capacity) throws IOException {
+
+		if (capacity <= 0)
+			throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+		long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A recording cannot hold " + capacity + " records.");
+		this.capacity = capacity;
+		file = new RandomAccessFile(fileName, "rw");
+		// Start from an empty file, so that any records from an old recording are zeroed
+		file.setLength(0);
+		file.setLength(size);
+		buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putInt(8, capacity);
+		next = new AtomicInteger(0);
+		dropped = new AtomicLong(0);
+	}
+
+	/**
+	 * Records a raw sample.
+	 *
+	 * @param channel
+	 *            the channel, which identifies the sensor.
+	 * @param timestamp
+	 *            the time at which the sample was taken, from {@link System#nanoTime()}.
+	 * @param sample
+	 *            the sample. Up to the first three values are recorded.
+	 * @param length
+	 *            the number of values in the sample.
+	 * @return true if the sample was recorded, false if the file is full.
+	 */
+	public boolean record(int channel, long timestamp, float[] sample, int length) {
+
+		int slot = next.getAndIncrement();
+		if (slot >= capacity) {
+			// Keep next from wrapping around if the loops run for a very long time after the file fills
+			next.set(capacity);
+			dropped.incrementAndGet();
+			return false;
+		}
+		int base = HEADER_SIZE + slot * RECORD_SIZE;
+		buffer.putLong(base + TIMESTAMP, timestamp);
+		for (int x = 0; x < 3; x++)
+			buffer.putFloat(base + VALUES + 4 * x, x < length ? sample[x] : 0);
+		buffer.putInt(base + CHANNEL, channel);
+		buffer.putInt(base + KIND, SAMPLE);
+		buffer.putInt(base + MARKER, RECORD_MARKER);
+		return true;
+	}
+
+	/**
+	 * Records a calibration, so that a replay applies the same calibration at the same point.
+	 *
+	 * @param channel
+	 *            the channel, which identifies the sensor.
+	 * @param kind
+	 *            {@link #BLACK} or {@link #WHITE}.
+	 * @param raw
+	 *            the raw calibration reading, indexed by {@link ColorSensor#RED}, {@link ColorSensor#GREEN}, and {@link ColorSensor#BLUE}.
+	 * @return true if the calibration was recorded, false if the file is full.
+	 */
+	public boolean recordCalibration(int channel, int kind, double[] raw) {
+
+		if (kind != BLACK && kind != WHITE)
+			throw new IllegalArgumentException("Not a calibration: " + kind);
+		int slot = next.getAndIncrement();
+		if (slot >= capacity) {
+			next.set(capacity);
+			dropped.incrementAndGet();
+			return false;
+		}
+		int base = HEADER_SIZE + slot * RECORD_SIZE;
+		buffer.putLong(base + TIMESTAMP, System.nanoTime());
+		for (int x = 0; x < 3; x++)
+			buffer.putFloat(base + VALUES + 4 * x, (float) raw[x]);
+		buffer.putInt(base + CHANNEL, channel);
+		buffer.putInt(base + KIND, kind);
+		buffer.putInt(base + MARKER, RECORD_MARKER);
+		return true;
+	}
+
+	/**
+	 * Gets the number of records in the file so far.
+	 *
+	 * @return the number of records.
+	 */
+	public int size() {
+
+		return Math.min(next.get(), capacity);
+	}
+
+	/**
+	 * Gets the number of records that fit in the file.
+	 *
+	 * @return the capacity.
+	 */
+	public int capacity() {
+
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of samples that were dropped because the file was full.
+	 *
+	 * @return the number of dropped samples.
+	 */
+	public long getDropped() {
+
+		return dropped.get();
+	}
+
+	/**
+	 * Writes everything recorded so far to the file and closes it. Samples recorded after this are lost; the sensors should be stopped first.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public void close() throws IOException {
+
+		buffer.force();
+		file.close();
+	}
+}
@@ -0,0 +1,163 @@
+package sensing;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A recording made by {@link SensorRecorder}, opened for replay. The file is memory mapped, so opening a recording does not read it into memory,
+ * and a recording can be replayed through {@link ReplayColorSensor} and {@link ReplaySampleProvider} without allocating.
+ *
+ * The recording ends at the first unfinished record, so a recording that was cut off, for example because the program was killed, can still be
+ * replayed up to that point.
+ */
+public class SensorRecording {
+
+	/**
+	 * The mapped contents of the file. Only absolute gets are used, so the recording can be read by several threads at once.
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The number of finished records.
+	 */
+	private final int size;
+
+	/**
+	 * Opens a recording.
+	 *
+	 * @param fileName
+	 *            the name of the file.
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a recording.
+	 */
+	public SensorRecording(String fileName) throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			long length = file.length();
+			if (length < SensorRecorder.HEADER_SIZE)
+				throw new IOException(fileName + " is too short to be a recording.");
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+		} finally {
+			// The mapping stays valid after the file is closed
+			file.close();
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.getInt(0) != SensorRecorder.MAGIC)
+			throw new IOException(fileName + " is not a recording.");
+		if (buffer.getInt(4) != SensorRecorder.VERSION)
+			throw new IOException(fileName + " is version " + buffer.getInt(4) + ", not " + SensorRecorder.VERSION + ".");
+		int capacity = Math.min(buffer.getInt(8), (buffer.capacity() - SensorRecorder.HEADER_SIZE) / SensorRecorder.RECORD_SIZE);
+		int count = 0;
+		while (count < capacity && buffer.getInt(offset(count) + SensorRecorder.MARKER) == SensorRecorder.RECORD_MARKER)
+			count++;
+		size = count;
+	}
+
+	/**
+	 * Gets the offset of a record in the file.
+	 *
+	 * @param index
+	 *            the index of the record.
+	 * @return the offset, in bytes.
+	 */
+	private static int offset(int index) {
+
+		return SensorRecorder.HEADER_SIZE + index * SensorRecorder.RECORD_SIZE;
+	}
+
+	/**
+	 * Gets the number of records in the recording.
+	 *
+	 * @return the number of records.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 * Gets the time at which a record was made.
+	 *
+	 * @param index
+	 *            the index of the record.
+	 * @return the time, from {@link System#nanoTime()} on the robot.
+	 */
+	public long getTimestamp(int index) {
+
+		return buffer.getLong(offset(index) + SensorRecorder.TIMESTAMP);
+	}
+
+	/**
+	 * Gets the channel of a record.
+	 *
+	 * @param index
+	 *            the index of the record.
+	 * @return the channel, which identifies the sensor.
+	 */
+	public int getChannel(int index) {
+
+		return buffer.getInt(offset(index) + SensorRecorder.CHANNEL);
+	}
+
+	/**
+	 * Gets the kind of a record.
+	 *
+	 * @param index
+	 *            the index of the record.
+	 * @return {@link SensorRecorder#SAMPLE}, {@link SensorRecorder#BLACK}, or {@link SensorRecorder#WHITE}.
+	 */
+	public int getKind(int index) {
+
+		return buffer.getInt(offset(index) + SensorRecorder.KIND);
+	}
+
+	/**
+	 * Gets a value of a record.
+	 *
+	 * @param index
+	 *            the index of the record.
+	 * @param value
+	 *            the index of the value, from 0 to 2.
+	 * @return the value.
+	 */
+	public float getValue(int index, int value) {
+
+		return buffer.getFloat(offset(index) + SensorRecorder.VALUES + 4 * value);
+	}
+
+	/**
+	 * Finds the next record on a channel.
+	 *
+	 * @param channel
+	 *            the channel.
+	 * @param from
+	 *            the index to start looking at.
+	 * @return the index of the first record at or after from on the channel, or {@link #size()} if there are none.
+	 */
+	public int next(int channel, int from) {
+
+		int index = from;
+		while (index < size && getChannel(index) != channel)
+			index++;
+		return index;
+	}
+
+	/**
+	 * Counts the samples on a channel.
+	 *
+	 * @param channel
+	 *            the channel.
+	 * @return the number of {@link SensorRecorder#SAMPLE} records on the channel.
+	 */
+	public int countSamples(int channel) {
+
+		int count = 0;
+		for (int x = 0; x < size; x++)
+			if (getChannel(x) == channel && getKind(x) == SensorRecorder.SAMPLE)
+				count++;
+		return count;
+	}
+}
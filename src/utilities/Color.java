@@ -169,6 +169,28 @@ public class Color {
 	 */
 	public double determineComposition(Color c1, Color c2) {
 
+		return determineComposition(red, green, blue, c1, c2);
+	}
+
+	/**
+	 * Determines the ratio that c1 and c2 were combined in to produce the color with the specified components. This is the same as
+	 * {@link #determineComposition(Color, Color)}, but does not need a color object for the color being tested, so it can be used on raw sensor
+	 * buffers without allocating anything.
+	 *
+	 * @param red
+	 *            the red component of the color being tested.
+	 * @param green
+	 *            the green component of the color being tested.
+	 * @param blue
+	 *            the blue component of the color being tested.
+	 * @param c1
+	 *            the first color used to make the color being tested
+	 * @param c2
+	 *            the second color used to make the color being tested
+	 * @return the ratio such that c1 * ratio + c2 * (1 - ratio), for each component. Takes the average ratio for each component, to get the best fit.
+	 */
+	public static double determineComposition(double red, double green, double blue, Color c1, Color c2) {
+
 		double rr = (red - c2.red) / (c1.red - c2.red);
 		if (c1.red - c2.red == 0)
 			rr = 1;
@@ -0,0 +1,190 @@
+package utilities;
+
+/**
+ * A precomputed color classification table. The RGB cube is split into bins, and the best match and best blend are calculated once for the center
+ * of each bin when the table is made. After that, classifying a sensor reading is a matter of finding its bin and reading an array, instead of
+ * searching the palette.
+ *
+ * The match and blend are those for the center of the bin, so they can differ from the exact answers near the edge between two colors. With 32 bins
+ * per channel, each component is off by at most 1/64. The blend composition is not looked up, but calculated from the reading itself, as it is
+ * what line following steers by, and the composition at the center of a bin can be off by as much as 0.15.
+ */
+public class ColorLookupTable {
+	
+	/**
+	 * The default number of bits per channel. 5 bits gives 32 bins per channel, or 32768 bins in all.
+	 */
+	public static final int DEFAULT_BITS = 5;
+	
+	/**
+	 * The palette the table was made from.
+	 */
+	private final ColorPalette palette;
+	/**
+	 * The number of bits per channel.
+	 */
+	private final int bits;
+	/**
+	 * The number of bins per channel, minus one. Also used to scale components to bin numbers.
+	 */
+	private final int maxBin;
+	/**
+	 * The palette index of the best match for each bin, or -1 if there is no good match.
+	 */
+	private final byte[] matches;
+	/**
+	 * The palette index of the best blend for each bin.
+	 */
+	private final byte[] blends;
+	/**
+	 * The road color.
+	 */
+	private final Color road;
+	
+	/**
+	 * Makes a new lookup table with {@link #DEFAULT_BITS} bits per channel.
+	 * 
+	 * @param palette
+	 *            the palette to match colors against. The palette should not change after the table is made.
+	 * @param blendColors
+	 *            the palette indices of the colors that the road color might be blended with.
+	 * @param roadColor
+	 *            the palette index of the road color.
+	 */
+	public ColorLookupTable(ColorPalette palette, int[] blendColors, int roadColor) {
+	
+		this(palette, blendColors, roadColor, DEFAULT_BITS);
+	}
+	
+	/**
+	 * Makes a new lookup table.
+	 * 
+	 * @param palette
+	 *            the palette to match colors against. The palette should not change after the table is made.
+	 * @param blendColors
+	 *            the palette indices of the colors that the road color might be blended with.
+	 * @param roadColor
+	 *            the palette index of the road color.
+	 * @param bits
+	 *            the number of bits per channel, in the range [1, 7].
+	 */
+	public ColorLookupTable(ColorPalette palette, int[] blendColors, int roadColor, int bits) {
+	
+		if (bits < 1 || bits > 7)
+			throw new IllegalArgumentException("The number of bits per channel must be in the range [1, 7].");
+		if (palette.numColors() > Byte.MAX_VALUE)
+			throw new IllegalArgumentException("The palette has too many colors for a lookup table.");
+		if (blendColors.length == 0)
+			throw new IllegalArgumentException("There must be at least one blend color.");
+		if (roadColor < 0 || roadColor >= palette.numColors())
+			throw new IllegalArgumentException("The road color must be in the palette.");
+		
+		this.palette = palette;
+		this.bits = bits;
+		int binsPerChannel = 1 << bits;
+		maxBin = binsPerChannel - 1;
+		int size = binsPerChannel * binsPerChannel * binsPerChannel;
+		matches = new byte[size];
+		blends = new byte[size];
+		road = palette.getColor(roadColor);
+		
+		for (int r = 0; r < binsPerChannel; r++)
+			for (int g = 0; g < binsPerChannel; g++)
+				for (int b = 0; b < binsPerChannel; b++) {
+					// Classify the center of the bin
+					double red = (r + .5) / binsPerChannel;
+					double green = (g + .5) / binsPerChannel;
+					double blue = (b + .5) / binsPerChannel;
+					int bin = (r << bits | g) << bits | b;
+					matches[bin] = (byte) palette.getBestMatchIndex(red, green, blue);
+					blends[bin] = (byte) palette.getBestBlendIndex(blendColors, roadColor, red, green, blue);
+				}
+	}
+	
+	/**
+	 * Finds the bin that a color is in.
+	 * 
+	 * @param red
+	 *            the red component, in the range [0, 1].
+	 * @param green
+	 *            the green component, in the range [0, 1].
+	 * @param blue
+	 *            the blue component, in the range [0, 1].
+	 * @return the bin, to be passed to the other methods of this class.
+	 */
+	public int getBin(float red, float green, float blue) {
+	
+		return (toBin(red) << bits | toBin(green)) << bits | toBin(blue);
+	}
+	
+	/**
+	 * Gets the palette index of the best match for a bin.
+	 * 
+	 * @param bin
+	 *            the bin, from {@link #getBin(float, float, float)}.
+	 * @return the palette index of the best match, or -1 if there is no good match.
+	 * @see ColorPalette#getBestMatchIndex(double, double, double)
+	 */
+	public int getMatch(int bin) {
+	
+		return matches[bin];
+	}
+	
+	/**
+	 * Gets the palette index of the best blend for a bin.
+	 * 
+	 * @param bin
+	 *            the bin, from {@link #getBin(float, float, float)}.
+	 * @return the palette index of the best blend.
+	 * @see ColorPalette#getBestBlendIndex(int[], int, double, double, double)
+	 */
+	public int getBlend(int bin) {
+	
+		return blends[bin];
+	}
+	
+	/**
+	 * Calculates the composition of a color as a blend of the best blend color for its bin and the road color. This is exact for the color, not
+	 * the center of the bin, and takes a few arithmetic operations.
+	 * 
+	 * @param bin
+	 *            the bin of the color, from {@link #getBin(float, float, float)}.
+	 * @param red
+	 *            the red component.
+	 * @param green
+	 *            the green component.
+	 * @param blue
+	 *            the blue component.
+	 * @return the composition of the blend of the best blend color and the road color.
+	 * @see Color#determineComposition(double, double, double, Color, Color)
+	 */
+	public double getComposition(int bin, float red, float green, float blue) {
+	
+		return Color.determineComposition(red, green, blue, palette.getColor(blends[bin]), road);
+	}
+	
+	/**
+	 * Gets the palette the table was made from.
+	 * 
+	 * @return the palette.
+	 */
+	public ColorPalette getPalette() {
+	
+		return palette;
+	}
+	
+	/**
+	 * Converts a color component to a bin number along one channel.
+	 * 
+	 * @param component
+	 *            the component, in the range [0, 1]. Values outside the range are clamped.
+	 * @return the bin number, in the range [0, {@link #maxBin}].
+	 */
+	private int toBin(float component) {
+	
+		int bin = (int) (component * (maxBin + 1));
+		if (bin < 0)
+			return 0;
+		return bin > maxBin ? maxBin : bin;
+	}
+}
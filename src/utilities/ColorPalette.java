@@ -1,5 +1,7 @@
 package utilities;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -7,6 +9,9 @@ import java.util.TreeMap;
 /**
  * This class represents a palette of colors and is intended for use with color matching.
  *
+ * Each color in the palette has an index, which is its position in alphabetical order by name. The methods that take and return indices, and take
+ * color components instead of color objects, do not allocate anything, and should be used in loops that match colors continuously.
+ *
  * @author Tom Casey Rushad Antia
  */
 public class ColorPalette {
@@ -15,6 +20,22 @@ public class ColorPalette {
 	 * The available colors.
 	 */
 	private final Map<String, Color> colorMap;
+	/**
+	 * The names of the colors, in alphabetical order. names[x] is the name of the color with index x.
+	 */
+	private String[] names;
+	/**
+	 * The colors, in the same order as {@link #names}.
+	 */
+	private Color[] colorArray;
+	/**
+	 * The classifier used to find the best match, or null to match with the fixed tolerance in {@link #isInRange(double)}.
+	 */
+	private GaussianClassifier classifier;
+	/**
+	 * The palette index of each color of {@link #classifier}, or -1 if the palette does not have it.
+	 */
+	private int[] classIndices;
 
 	/**
 	 * Makes a new empty palette.
@@ -22,6 +43,10 @@ public class ColorPalette {
 	public ColorPalette() {
 
 		colorMap = new TreeMap<>();
+		names = new String[0];
+		colorArray = new Color[0];
+		classifier = null;
+		classIndices = new int[0];
 	}
 
 	/**
@@ -37,16 +62,59 @@ public class ColorPalette {
 		if (c == null)
 			throw new IllegalArgumentException("Colors cannot be null!");
 		colorMap.put(name, c);
+
+		// Rebuild the arrays; the map is sorted by name, so the indices are alphabetical
+		names = colorMap.keySet().toArray(new String[colorMap.size()]);
+		colorArray = colorMap.values().toArray(new Color[colorMap.size()]);
+		indexClasses();
+	}
+
+	/**
+	 * Sets the classifier used to find the best match. The colors of the classifier are matched to the colors of the palette by name; a reading
+	 * classified as a color that the palette does not have is not a good match.
+	 *
+	 * @param classifier
+	 *            the classifier, or null to match with a fixed tolerance around each color.
+	 */
+	public void setClassifier(GaussianClassifier classifier) {
+
+		this.classifier = classifier;
+		indexClasses();
+	}
+
+	/**
+	 * Gets the classifier used to find the best match.
+	 *
+	 * @return the classifier, or null if colors are matched with a fixed tolerance.
+	 */
+	public GaussianClassifier getClassifier() {
+
+		return classifier;
+	}
+
+	/**
+	 * Looks up the palette index of each color of the classifier. Called whenever the palette or the classifier changes.
+	 */
+	private void indexClasses() {
+
+		if (classifier == null) {
+			classIndices = new int[0];
+			return;
+		}
+		int[] indices = new int[classifier.numClasses()];
+		for (int x = 0; x < indices.length; x++)
+			indices[x] = indexOf(classifier.getName(x));
+		classIndices = indices;
 	}
 
 	/**
 	 * Gets the colors in the palette.
 	 *
-	 * @return The color map.
+	 * @return The color map. It cannot be modified; use {@link #add(Color, String)} instead.
 	 */
 	public Map<String, Color> getColors() {
 
-		return colorMap;
+		return Collections.unmodifiableMap(colorMap);
 	}
 	
 	/**
@@ -61,6 +129,63 @@ public class ColorPalette {
 		return colorMap.get(name);
 	}
 
+	/**
+	 * Gets the color with the specified index.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @return the color with the specified index.
+	 */
+	public Color getColor(int index) {
+
+		return colorArray[index];
+	}
+
+	/**
+	 * Gets the name of the color with the specified index.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @return the name of the color.
+	 */
+	public String getName(int index) {
+
+		return names[index];
+	}
+
+	/**
+	 * Gets the index of the color with the specified name.
+	 *
+	 * @param name
+	 *            the name of the color.
+	 * @return the index of the color, or -1 if there is no color with that name.
+	 */
+	public int indexOf(String name) {
+
+		int index = Arrays.binarySearch(names, name);
+		return index < 0 ? -1 : index;
+	}
+
+	/**
+	 * Gets the indices of the colors with the specified names.
+	 *
+	 * @param colors
+	 *            the names of the colors.
+	 * @return the indices of the colors, in the iteration order of the set.
+	 */
+	public int[] indicesOf(Set<String> colors) {
+
+		int[] result = new int[colors.size()];
+		int x = 0;
+		for (String color : colors) {
+			result[x] = indexOf(color);
+			if (result[x] < 0)
+				throw new IllegalArgumentException("The color " + color + " is not in the palette.");
+			x++;
+		}
+		return result;
+	}
+
 	/**
 	 * Finds the best color match in the palette.
 	 *
@@ -71,51 +196,61 @@ public class ColorPalette {
 	 */
 	public String getBestMatch(Color color) {
 	
+		int index = getBestMatchIndex(color.getRed(), color.getGreen(), color.getBlue());
+		return index < 0 ? "" : names[index];
+	}
+
+	/**
+	 * Finds the best color match in the palette. This does the same thing as {@link #getBestMatch(Color)}, but does not allocate anything. If the
+	 * palette has a classifier, the classifier decides; otherwise, the best match is the closest color within a fixed tolerance of each component.
+	 *
+	 * @param red
+	 *            the red component of the color to match.
+	 * @param green
+	 *            the green component of the color to match.
+	 * @param blue
+	 *            the blue component of the color to match.
+	 * @return The index of the best match or, if there is not a good match, -1. In the event of a tie, the first match will be returned.
+	 */
+	public int getBestMatchIndex(double red, double green, double blue) {
+
+		GaussianClassifier classifier = this.classifier;
+		if (classifier != null) {
+			int match = classifier.classify(red, green, blue);
+			return match < 0 ? -1 : classIndices[match];
+		}
+
 		double bestDistance = Double.POSITIVE_INFINITY;
-		String bestKey = "";
+		int bestIndex = -1;
 
-		for (String key : colorMap.keySet()) {
-			Color toTest = colorMap.get(key);
-			if (isInRange(color, toTest)) {
-				double distance = Color.getDistance(toTest, color);
+		for (int x = 0; x < colorArray.length; x++) {
+			Color toTest = colorArray[x];
+			double dr = toTest.getRed() - red;
+			double dg = toTest.getGreen() - green;
+			double db = toTest.getBlue() - blue;
+			if (isInRange(dr) && isInRange(dg) && isInRange(db)) {
+				double distance = Math.sqrt(dr * dr + dg * dg + db * db);
 				if (distance < bestDistance) {
-					bestKey = key;
+					bestIndex = x;
 					bestDistance = distance;
 				}
 			}
-			
 		}
 
-		return bestKey;
+		return bestIndex;
 	}
 	
 	/**
-	 * Checks to see if the color toTest is close enough to the color rgb.
+	 * Checks to see if two color components are close enough.
 	 *
-	 * @param toTest
-	 *            the color to test.
-	 * @param rgb
-	 *            the target color.
-	 * @return true if toTest is close enough to rgb.
+	 * @param difference
+	 *            the difference between the two components.
+	 * @return true if the two components are close enough.
 	 */
-	private boolean isInRange(Color toTest, Color rgb) {
-	
-		return isInRange(toTest.getRed(), rgb.getRed()) && isInRange(toTest.getGreen(), rgb.getGreen()) && isInRange(toTest.getBlue(), rgb.getBlue());
-	}
-	
-	/**
-	 * Checks to see if two numbers are close enough
-	 *
-	 * @param x
-	 *            the first number.
-	 * @param y
-	 *            the second number.
-	 * @return true if the two numbers are close enough.
-	 */
-	private boolean isInRange(double x, double y) {
+	private boolean isInRange(double difference) {
 
 		// TODO externalize this!
-		return Math.abs(x - y) <= .137254902;
+		return Math.abs(difference) <= .137254902;
 	}
 	
 	/**
@@ -139,11 +274,35 @@ public class ColorPalette {
 	 */
 	public String getBestBlend(Set<String> colors, String blendedWith, Color toTest) {
 
+		if (colors.size() == 0)
+			return null;
+		return names[getBestBlendIndex(indicesOf(colors), indexOf(blendedWith), toTest.getRed(), toTest.getGreen(), toTest.getBlue())];
+	}
+
+	/**
+	 * Finds the best blend. This does the same thing as {@link #getBestBlend(Set, String, Color)}, but uses indices and color components, and does
+	 * not allocate anything.
+	 *
+	 * @param colors
+	 *            the indices of the colors, each to paired with blendedWith. The indices can be found with {@link #indicesOf(Set)}.
+	 * @param blendedWith
+	 *            the index of the color to blend with each color in colors.
+	 * @param red
+	 *            the red component of the color to test.
+	 * @param green
+	 *            the green component of the color to test.
+	 * @param blue
+	 *            the blue component of the color to test.
+	 * @return the index of the color in colors that, paired with blendedWith, created the closest line. Returns -1 if colors.length == 0.
+	 */
+	public int getBestBlendIndex(int[] colors, int blendedWith, double red, double green, double blue) {
+
 		double bestDistance = Double.POSITIVE_INFINITY;
-		String bestColor = null;
+		int bestColor = -1;
 
-		for (String color : colors) {
-			double distance = pointLineDistance(getColor(color), getColor(blendedWith), toTest);
+		Color end = colorArray[blendedWith];
+		for (int color : colors) {
+			double distance = pointLineDistance(colorArray[color], end, red, green, blue);
 			if (distance < bestDistance) {
 				bestDistance = distance;
 				bestColor = color;
@@ -159,66 +318,36 @@ public class ColorPalette {
 	 *            the color that is the start of the line.
 	 * @param lineEnd
 	 *            the color that is the end of the line.
-	 * @param point
-	 *            the point.
+	 * @param red
+	 *            the red component of the point.
+	 * @param green
+	 *            the green component of the point.
+	 * @param blue
+	 *            the blue component of the point.
 	 * @return the minimum distance between the point and the line.
 	 */
-	private double pointLineDistance(Color lineStart, Color lineEnd, Color point) {
-	
-		double[] x1 = lineStart.toDoubleArray();
-		double[] x2 = lineEnd.toDoubleArray();
-		double[] x0 = point.toDoubleArray();
-		
-		// |(x0 - x1) x (x0 - x2)| / |x2 - x1|
-		return vecMag(vecCross(vecSubtract(x0, x1), vecSubtract(x0, x2))) / vecMag(vecSubtract(x2, x1));
-		
-	}
-	
-	/**
-	 * Subtracts to arrays like vectors.
-	 *
-	 * @param a
-	 *            the first vector
-	 * @param b
-	 *            the second vector
-	 * @return a-b
-	 */
-	private double[] vecSubtract(double[] a, double[] b) {
-
-		double[] result = new double[a.length];
-		for (int x = 0; x < result.length; x++)
-			result[x] = a[x] - b[x];
-		return result;
-	}
-	
-	/**
-	 * Calculates the magnitude of a vector
-	 *
-	 * @param a
-	 *            the vector.
-	 * @return the magnitude.
-	 */
-	private double vecMag(double[] a) {
-	
-		double result = 0;
-		for (double element : a)
-			result += Math.pow(element, 2);
-		return Math.sqrt(result);
-	}
+	private static double pointLineDistance(Color lineStart, Color lineEnd, double red, double green, double blue) {
 	
-	/**
-	 * Calculates the cross product between two vectors.
-	 *
-	 * @param a
-	 *            vector a.
-	 * @param b
-	 *            vector b.
-	 * @return a x b.
-	 */
-	private double[] vecCross(double[] a, double[] b) {
+		// a = x0 - x1, b = x0 - x2
+		double a0 = red - lineStart.getRed();
+		double a1 = green - lineStart.getGreen();
+		double a2 = blue - lineStart.getBlue();
+		double b0 = red - lineEnd.getRed();
+		double b1 = green - lineEnd.getGreen();
+		double b2 = blue - lineEnd.getBlue();
 
 		// a x b = i (a2 * b3 - a3 * b2) + j (a3 * b1 - a1 * b3) + k (a1 * b2 - a2 * b1),
-		return new double[] { a[1] * b[2] - a[2] * b[1], a[2] * b[0] - a[0] * b[2], a[0] * b[1] - a[1] * b[0] };
+		double c0 = a1 * b2 - a2 * b1;
+		double c1 = a2 * b0 - a0 * b2;
+		double c2 = a0 * b1 - a1 * b0;
+
+		// x2 - x1 = a - b
+		double d0 = a0 - b0;
+		double d1 = a1 - b1;
+		double d2 = a2 - b2;
+
+		// |(x0 - x1) x (x0 - x2)| / |x2 - x1|
+		return Math.sqrt((c0 * c0 + c1 * c1 + c2 * c2) / (d0 * d0 + d1 * d1 + d2 * d2));
 	}
 	
 	/**
@@ -0,0 +1,402 @@
+package utilities;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import utilities.io.IO;
+import utilities.io.Serializer;
+
+/**
+ * Classifies colors with a Gaussian model of each color, fitted to many calibration samples. Each color is described by the mean and covariance of
+ * its samples, so a color that the sensor reads noisily, or that varies across the course, gets a wide region, and a steady color gets a narrow
+ * one, instead of every color getting the same fixed tolerance.
+ *
+ * A reading is classified as the color with the best Gaussian discriminant, the squared Mahalanobis distance d' S^-1 d plus ln |S|, where d is the
+ * difference from the mean and S is the covariance. The inverse covariances and log determinants are computed once, when the classifier is made,
+ * so classifying a reading costs a fixed 12 multiply-adds per color, and does not allocate anything. A reading whose squared Mahalanobis distance
+ * from every color is above the maximum distance is not a good match for any color.
+ *
+ * Classifiers are made with a {@link Trainer}, saved and loaded with {@link #serializer()}, and used for matching by
+ * {@link ColorPalette#setClassifier(GaussianClassifier)}. They are immutable.
+ */
+public class GaussianClassifier {
+
+	/**
+	 * The default maximum squared Mahalanobis distance: 99.9% of the readings of a color fall within it (the chi-squared distribution with 3
+	 * degrees of freedom).
+	 */
+	public static final double DEFAULT_MAXIMUM_DISTANCE = 16.27;
+	/**
+	 * The variance added to each component, so that a color whose samples are all the same (the sensor readings are quantized) still has a
+	 * covariance that can be inverted. Equivalent to a standard deviation of about .003.
+	 */
+	public static final double MINIMUM_VARIANCE = 1e-5;
+	/**
+	 * Identifies a serialized classifier.
+	 */
+	private static final int MAGIC = 0x47434c53;
+	/**
+	 * The version of the serialized format.
+	 */
+	private static final int VERSION = 1;
+	/**
+	 * The number of doubles serialized for each color: the sample count, the mean, the inverse covariance, and the log determinant.
+	 */
+	private static final int CLASS_SIZE = 11;
+
+	/**
+	 * The names of the colors, in alphabetical order. The index of a color is its position in this array.
+	 */
+	private final String[] names;
+	/**
+	 * The number of samples that each color was fitted to.
+	 */
+	private final long[] counts;
+	/**
+	 * The means, 3 per color: red, green, and blue.
+	 */
+	private final double[] means;
+	/**
+	 * The inverse covariances, 6 per color, as the symmetric matrix elements rr, gg, bb, rg, rb, and gb.
+	 */
+	private final double[] inverses;
+	/**
+	 * The log determinants of the covariances.
+	 */
+	private final double[] logDeterminants;
+	/**
+	 * The maximum squared Mahalanobis distance for a reading to match a color.
+	 */
+	private final double maximumDistance;
+
+	/**
+	 * Makes a new classifier from precomputed parameters. The arrays are not copied.
+	 *
+	 * @param names
+	 *            the names of the colors, in alphabetical order.
+	 * @param counts
+	 *            the number of samples of each color.
+	 * @param means
+	 *            the means, 3 per color.
+	 * @param inverses
+	 *            the inverse covariances, 6 per color.
+	 * @param logDeterminants
+	 *            the log determinants of the covariances.
+	 * @param maximumDistance
+	 *            the maximum squared Mahalanobis distance for a match.
+	 */
+	private GaussianClassifier(String[] names, long[] counts, double[] means, double[] inverses, double[] logDeterminants, double maximumDistance) {
+
+		if (!(maximumDistance > 0))
+			throw new IllegalArgumentException("The maximum distance must be positive: " + maximumDistance);
+		this.names = names;
+		this.counts = counts;
+		this.means = means;
+		this.inverses = inverses;
+		this.logDeterminants = logDeterminants;
+		this.maximumDistance = maximumDistance;
+	}
+
+	/**
+	 * Classifies a reading.
+	 *
+	 * @param red
+	 *            the red component, in the range [0, 1].
+	 * @param green
+	 *            the green component, in the range [0, 1].
+	 * @param blue
+	 *            the blue component, in the range [0, 1].
+	 * @return the index of the best color, or -1 if the reading is beyond the maximum distance of every color.
+	 */
+	public int classify(double red, double green, double blue) {
+
+		double bestScore = Double.POSITIVE_INFINITY;
+		int bestIndex = -1;
+		for (int x = 0; x < names.length; x++) {
+			double distance = getDistance(x, red, green, blue);
+			if (distance <= maximumDistance) {
+				double score = distance + logDeterminants[x];
+				if (score < bestScore) {
+					bestScore = score;
+					bestIndex = x;
+				}
+			}
+		}
+		return bestIndex;
+	}
+
+	/**
+	 * Gets the squared Mahalanobis distance of a reading from a color.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @param red
+	 *            the red component.
+	 * @param green
+	 *            the green component.
+	 * @param blue
+	 *            the blue component.
+	 * @return the squared distance, in standard deviations squared.
+	 */
+	public double getDistance(int index, double red, double green, double blue) {
+
+		int m = 3 * index;
+		int i = 6 * index;
+		double dr = red - means[m];
+		double dg = green - means[m + 1];
+		double db = blue - means[m + 2];
+		return inverses[i] * dr * dr + inverses[i + 1] * dg * dg + inverses[i + 2] * db * db + 2
+				* (inverses[i + 3] * dr * dg + inverses[i + 4] * dr * db + inverses[i + 5] * dg * db);
+	}
+
+	/**
+	 * Gets the number of colors.
+	 *
+	 * @return the number of colors.
+	 */
+	public int numClasses() {
+
+		return names.length;
+	}
+
+	/**
+	 * Gets the name of a color.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @return the name.
+	 */
+	public String getName(int index) {
+
+		return names[index];
+	}
+
+	/**
+	 * Gets the mean of a color.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @return the mean of the samples of the color.
+	 */
+	public Color getMean(int index) {
+
+		return new Color(means[3 * index], means[3 * index + 1], means[3 * index + 2]);
+	}
+
+	/**
+	 * Gets the number of samples that a color was fitted to.
+	 *
+	 * @param index
+	 *            the index of the color.
+	 * @return the number of samples.
+	 */
+	public long getSampleCount(int index) {
+
+		return counts[index];
+	}
+
+	/**
+	 * Gets the maximum squared Mahalanobis distance for a reading to match a color.
+	 *
+	 * @return the maximum distance.
+	 */
+	public double getMaximumDistance() {
+
+		return maximumDistance;
+	}
+
+	@Override
+	public String toString() {
+
+		String result = "{";
+		for (int x = 0; x < names.length; x++)
+			result += (x > 0 ? ", " : "") + names[x] + "=" + getMean(x) + " (" + counts[x] + " samples)";
+		return result + "}";
+	}
+
+	/**
+	 * Makes a serializer for classifiers, which can be used with {@link IO#save(String, Serializer, Object...)} and
+	 * {@link IO#read(String, Serializer)}.
+	 *
+	 * @return the serializer.
+	 */
+	public static Serializer<GaussianClassifier> serializer() {
+
+		return new Serializer<GaussianClassifier>() {
+
+			@Override
+			public byte[] serialize(GaussianClassifier data) {
+
+				int numClasses = data.names.length;
+				double[] parameters = new double[1 + CLASS_SIZE * numClasses];
+				parameters[0] = data.maximumDistance;
+				for (int x = 0; x < numClasses; x++) {
+					int offset = 1 + CLASS_SIZE * x;
+					parameters[offset] = data.counts[x];
+					System.arraycopy(data.means, 3 * x, parameters, offset + 1, 3);
+					System.arraycopy(data.inverses, 6 * x, parameters, offset + 4, 6);
+					parameters[offset + 10] = data.logDeterminants[x];
+				}
+				return IO.serialize(IO.serialize(MAGIC, VERSION), IO.serialize(data.names), IO.serialize(parameters));
+			}
+
+			@Override
+			public GaussianClassifier deserialize(byte[] bytes) {
+
+				byte[][] parts = IO.deserializeBytes(bytes);
+				int[] header = parts == null || parts.length != 3 ? null : IO.deserializeInt(parts[0]);
+				if (header == null || header.length != 2 || header[0] != MAGIC)
+					throw new IllegalArgumentException("Not a color classifier");
+				if (header[1] != VERSION)
+					throw new IllegalArgumentException("Unsupported color classifier version " + header[1]);
+				String[] names = IO.deserializeString(parts[1]);
+				double[] parameters = IO.deserializeDouble(parts[2]);
+				int numClasses = names.length;
+				if (parameters.length != 1 + CLASS_SIZE * numClasses)
+					throw new IllegalArgumentException("The color classifier is truncated");
+				long[] counts = new long[numClasses];
+				double[] means = new double[3 * numClasses];
+				double[] inverses = new double[6 * numClasses];
+				double[] logDeterminants = new double[numClasses];
+				for (int x = 0; x < numClasses; x++) {
+					int offset = 1 + CLASS_SIZE * x;
+					counts[x] = (long) parameters[offset];
+					System.arraycopy(parameters, offset + 1, means, 3 * x, 3);
+					System.arraycopy(parameters, offset + 4, inverses, 6 * x, 6);
+					logDeterminants[x] = parameters[offset + 10];
+				}
+				return new GaussianClassifier(names, counts, means, inverses, logDeterminants, parameters[0]);
+			}
+
+			@Override
+			public GaussianClassifier[] createResultArray(int length) {
+
+				return new GaussianClassifier[length];
+			}
+		};
+	}
+
+	/**
+	 * Fits a {@link GaussianClassifier} to samples. The trainer only keeps running sums, so it can take any number of samples without storing them.
+	 */
+	public static class Trainer {
+
+		/**
+		 * The running sums for each color, by name: the count, the sums of red, green, and blue, and the sums of the products rr, gg, bb, rg, rb,
+		 * and gb.
+		 */
+		private final Map<String, double[]> sums = new TreeMap<>();
+
+		/**
+		 * Adds a sample of a color.
+		 *
+		 * @param name
+		 *            the name of the color.
+		 * @param red
+		 *            the red component of the sample.
+		 * @param green
+		 *            the green component of the sample.
+		 * @param blue
+		 *            the blue component of the sample.
+		 */
+		public void add(String name, double red, double green, double blue) {
+
+			double[] sum = sums.get(name);
+			if (sum == null) {
+				sum = new double[10];
+				sums.put(name, sum);
+			}
+			sum[0]++;
+			sum[1] += red;
+			sum[2] += green;
+			sum[3] += blue;
+			sum[4] += red * red;
+			sum[5] += green * green;
+			sum[6] += blue * blue;
+			sum[7] += red * green;
+			sum[8] += red * blue;
+			sum[9] += green * blue;
+		}
+
+		/**
+		 * Gets the number of samples of a color.
+		 *
+		 * @param name
+		 *            the name of the color.
+		 * @return the number of samples added.
+		 */
+		public long getCount(String name) {
+
+			double[] sum = sums.get(name);
+			return sum == null ? 0 : (long) sum[0];
+		}
+
+		/**
+		 * Fits a classifier with {@link GaussianClassifier#DEFAULT_MAXIMUM_DISTANCE}.
+		 *
+		 * @return the classifier.
+		 */
+		public GaussianClassifier build() {
+
+			return build(DEFAULT_MAXIMUM_DISTANCE);
+		}
+
+		/**
+		 * Fits a classifier to the samples added so far.
+		 *
+		 * @param maximumDistance
+		 *            the maximum squared Mahalanobis distance for a reading to match a color.
+		 * @return the classifier.
+		 */
+		public GaussianClassifier build(double maximumDistance) {
+
+			int numClasses = sums.size();
+			String[] names = sums.keySet().toArray(new String[numClasses]);
+			long[] counts = new long[numClasses];
+			double[] means = new double[3 * numClasses];
+			double[] inverses = new double[6 * numClasses];
+			double[] logDeterminants = new double[numClasses];
+			for (int x = 0; x < numClasses; x++) {
+				double[] sum = sums.get(names[x]);
+				double n = sum[0];
+				if (n < 2)
+					throw new IllegalArgumentException("The color " + names[x] + " needs at least 2 samples, not " + (long) n);
+				counts[x] = (long) n;
+				double r = sum[1] / n;
+				double g = sum[2] / n;
+				double b = sum[3] / n;
+				means[3 * x] = r;
+				means[3 * x + 1] = g;
+				means[3 * x + 2] = b;
+
+				// The sample covariance, from the sums of products
+				double rr = (sum[4] - n * r * r) / (n - 1) + MINIMUM_VARIANCE;
+				double gg = (sum[5] - n * g * g) / (n - 1) + MINIMUM_VARIANCE;
+				double bb = (sum[6] - n * b * b) / (n - 1) + MINIMUM_VARIANCE;
+				double rg = (sum[7] - n * r * g) / (n - 1);
+				double rb = (sum[8] - n * r * b) / (n - 1);
+				double gb = (sum[9] - n * g * b) / (n - 1);
+
+				// Invert the symmetric matrix by cofactors
+				double crr = gg * bb - gb * gb;
+				double cgg = rr * bb - rb * rb;
+				double cbb = rr * gg - rg * rg;
+				double crg = rb * gb - rg * bb;
+				double crb = rg * gb - rb * gg;
+				double cgb = rg * rb - rr * gb;
+				double determinant = rr * crr + rg * crg + rb * crb;
+				if (!(determinant > 0))
+					throw new IllegalArgumentException("The samples of " + names[x] + " do not have a valid covariance");
+				int i = 6 * x;
+				inverses[i] = crr / determinant;
+				inverses[i + 1] = cgg / determinant;
+				inverses[i + 2] = cbb / determinant;
+				inverses[i + 3] = crg / determinant;
+				inverses[i + 4] = crb / determinant;
+				inverses[i + 5] = cgb / determinant;
+				logDeterminants[x] = Math.log(determinant);
+			}
+			return new GaussianClassifier(names, counts, means, inverses, logDeterminants, maximumDistance);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package utilities.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import utilities.metrics.Counter;
+import utilities.metrics.LatencyHistogram;
+import utilities.metrics.MetricsRegistry;
+import utilities.metrics.RunningStatistics;
+
+/**
+ * Delivers events to a listener on a dedicated thread. Each producer thread gets its own {@link EventRing}, so publishing an event never takes a
+ * lock or waits for the listener. The dispatcher thread takes the events from all the rings, oldest sequence number first, and passes them to the
+ * listener. When
+ * there are no events, the dispatcher thread parks until a producer wakes it.
+ *
+ * The dispatcher registers these metrics, all prefixed with its name:
+ * <ul>
+ * <li>latency: the time from when an event was made to when it was passed to the listener.</li>
+ * <li>handling: the time the listener took for each event.</li>
+ * <li>depth: the number of events waiting, sampled as each event is dispatched.</li>
+ * <li>dropped [producer]: the number of events a producer could not publish because its ring was full.</li>
+ * </ul>
+ *
+ * @param <E>
+ *            the type of the events.
+ */
+public class EventDispatcher<E extends TimedEvent> {
+	
+	/**
+	 * The longest time the dispatcher thread sleeps before checking the rings again, even if it is not woken. This is only a safety net.
+	 */
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	/**
+	 * The name of the dispatcher, used for the thread and the metrics.
+	 */
+	private final String name;
+	/**
+	 * The listener that receives the events.
+	 */
+	private final EventListener<E> listener;
+	/**
+	 * The producers. Copied on write, so the dispatcher thread can read it without a lock.
+	 */
+	private volatile List<Producer> producers;
+	/**
+	 * The dispatcher thread.
+	 */
+	private final Thread thread;
+	/**
+	 * True while the dispatcher thread is about to park or parked. Producers only wake the thread when this is true.
+	 */
+	private volatile boolean sleeping;
+	/**
+	 * True until {@link #terminate()} is called.
+	 */
+	private volatile boolean isActive;
+	/**
+	 * The time from when each event was made to when it was dispatched.
+	 */
+	private final LatencyHistogram latency;
+	/**
+	 * The time the listener took for each event.
+	 */
+	private final LatencyHistogram handling;
+	/**
+	 * The number of events waiting when each event was dispatched. Only written by the dispatcher thread.
+	 */
+	private final RunningStatistics depth;
+	
+	/**
+	 * Makes a new dispatcher. The dispatcher thread is not started until {@link #start()} is called, but events can be published before then.
+	 * 
+	 * @param name
+	 *            the name of the dispatcher, used for the thread and the metrics.
+	 * @param listener
+	 *            the listener that receives the events.
+	 */
+	public EventDispatcher(String name, EventListener<E> listener) {
+	
+		this.name = name;
+		this.listener = listener;
+		producers = new ArrayList<>();
+		thread = new Thread(new Dispatcher(), name + " dispatcher");
+		thread.setDaemon(true);
+		sleeping = false;
+		isActive = true;
+		latency = MetricsRegistry.histogram(name + " latency");
+		handling = MetricsRegistry.histogram(name + " handling");
+		depth = new RunningStatistics();
+		MetricsRegistry.register(name + " depth", depth);
+	}
+	
+	/**
+	 * Makes a new producer with its own ring. Each producer must only be used by one thread.
+	 * 
+	 * @param producerName
+	 *            the name of the producer, used for its metrics.
+	 * @param capacity
+	 *            the maximum number of events waiting from this producer.
+	 * @return the producer.
+	 */
+	public synchronized Producer createProducer(String producerName, int capacity) {
+	
+		Producer producer = new Producer(producerName, capacity);
+		List<Producer> newProducers = new ArrayList<>(producers);
+		newProducers.add(producer);
+		producers = newProducers;
+		return producer;
+	}
+	
+	/**
+	 * Starts the dispatcher thread.
+	 */
+	public void start() {
+	
+		thread.start();
+	}
+	
+	/**
+	 * Stops the dispatcher thread once the event it is handling, if any, is done. Events that have not been dispatched are lost. This is
+	 * irreversible.
+	 */
+	public void terminate() {
+	
+		isActive = false;
+		LockSupport.unpark(thread);
+		if (Thread.currentThread() != thread)
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+			}
+	}
+	
+	/**
+	 * Gets the number of events waiting from all producers.
+	 * 
+	 * @return the number of events waiting.
+	 */
+	public int getDepth() {
+	
+		int total = 0;
+		for (Producer producer : producers)
+			total += producer.ring.size();
+		return total;
+	}
+	
+	/**
+	 * Gets the dispatch latency metrics.
+	 * 
+	 * @return the time from when each event was made to when it was dispatched.
+	 */
+	public LatencyHistogram getLatency() {
+	
+		return latency;
+	}
+	
+	/**
+	 * Gets the handling time metrics.
+	 * 
+	 * @return the time the listener took for each event.
+	 */
+	public LatencyHistogram getHandling() {
+	
+		return handling;
+	}
+	
+	/**
+	 * Gets the name of the dispatcher.
+	 * 
+	 * @return the name.
+	 */
+	public String getName() {
+	
+		return name;
+	}
+	
+	/**
+	 * Takes the event with the lowest sequence number from the rings.
+	 * 
+	 * @param current
+	 *            the current list of producers.
+	 * @return the event, or null if all the rings are empty.
+	 */
+	private E next(List<Producer> current) {
+	
+		Producer oldest = null;
+		long oldestSequence = Long.MAX_VALUE;
+		for (int x = 0; x < current.size(); x++) {
+			Producer producer = current.get(x);
+			E head = producer.ring.peek();
+			if (head != null && head.getSequence() < oldestSequence) {
+				oldest = producer;
+				oldestSequence = head.getSequence();
+			}
+		}
+		return oldest == null ? null : oldest.ring.poll();
+	}
+	
+	/**
+	 * Publishes events to a dispatcher from one thread.
+	 */
+	public class Producer {
+		
+		/**
+		 * The ring that holds the events from this producer.
+		 */
+		private final EventRing<E> ring;
+		/**
+		 * The number of events that could not be published because the ring was full.
+		 */
+		private final Counter dropped;
+		
+		/**
+		 * Makes a new producer.
+		 * 
+		 * @param producerName
+		 *            the name of the producer, used for its metrics.
+		 * @param capacity
+		 *            the capacity of the ring.
+		 */
+		private Producer(String producerName, int capacity) {
+		
+			ring = new EventRing<>(capacity);
+			dropped = MetricsRegistry.counter(name + " dropped " + producerName);
+		}
+		
+		/**
+		 * Publishes an event. This never blocks.
+		 * 
+		 * @param event
+		 *            the event.
+		 * @return true if the event was published, false if it was dropped because too many events from this producer are waiting.
+		 */
+		public boolean publish(E event) {
+		
+			if (!ring.offer(event)) {
+				dropped.increment();
+				return false;
+			}
+			// The offer was a volatile write, so if the dispatcher has not seen it, it has already said it is sleeping
+			if (sleeping)
+				LockSupport.unpark(thread);
+			return true;
+		}
+		
+		/**
+		 * Gets the number of events that have been dropped.
+		 * 
+		 * @return the number of events that could not be published because the ring was full.
+		 */
+		public long getDropped() {
+		
+			return dropped.get();
+		}
+	}
+	
+	/**
+	 * The dispatcher thread.
+	 */
+	private class Dispatcher implements Runnable {
+		
+		@Override
+		public void run() {
+		
+			while (isActive) {
+				List<Producer> current = producers;
+				E event = next(current);
+				if (event == null) {
+					// Say that this thread is going to sleep, then check again, so an event published in between is not missed
+					sleeping = true;
+					event = next(current);
+					if (event == null) {
+						LockSupport.parkNanos(this, MAX_PARK_NANOS);
+						sleeping = false;
+						continue;
+					}
+					sleeping = false;
+				}
+				
+				long start = System.nanoTime();
+				latency.record(start - event.getTimestamp());
+				depth.add(getDepth());
+				try {
+					listener.eventReceived(event);
+				} catch (RuntimeException e) {
+					// Keep dispatching; one bad event should not stop the robot from hearing about the rest
+					e.printStackTrace();
+				}
+				handling.record(System.nanoTime() - start);
+			}
+		}
+	}
+}
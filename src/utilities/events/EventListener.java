@@ -0,0 +1,19 @@
+package utilities.events;
+
+/**
+ * Receives events from an {@link EventDispatcher}.
+ *
+ * @param <E>
+ *            the type of the events.
+ */
+public interface EventListener<E> {
+	
+	/**
+	 * Called on the dispatcher's thread for every event. Events from one producer arrive in the order they were published. Events from different
+	 * producers are merged by sequence number, so they arrive in the order they were made, except for events made at almost the same moment.
+	 * 
+	 * @param event
+	 *            the event.
+	 */
+	public void eventReceived(E event);
+}
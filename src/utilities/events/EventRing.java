@@ -0,0 +1,148 @@
+package utilities.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue for passing events from exactly one producer thread to exactly one consumer thread. It is a ring buffer: the producer
+ * only writes {@link #tail}, and the consumer only writes {@link #head}, so neither side ever waits for the other. If the ring is full, new events
+ * are rejected rather than blocking the producer, which is usually a sensor loop that must keep running.
+ *
+ * Using a ring from more than one producer or more than one consumer thread will lose or duplicate events.
+ *
+ * @param <E>
+ *            the type of the events.
+ */
+public class EventRing<E> {
+	
+	/**
+	 * The events. Slot i % capacity holds event i.
+	 */
+	private final Object[] buffer;
+	/**
+	 * The capacity minus one, used to find slots. The capacity is a power of two.
+	 */
+	private final int mask;
+	/**
+	 * The number of events that have been taken. Only written by the consumer.
+	 */
+	private final AtomicLong head;
+	/**
+	 * The number of events that have been added. Only written by the producer.
+	 */
+	private final AtomicLong tail;
+	/**
+	 * The producer's copy of {@link #head}. It is only refreshed when the ring looks full, so the producer rarely reads the consumer's variable.
+	 */
+	private long producerHead;
+	/**
+	 * The consumer's copy of {@link #tail}. It is only refreshed when the ring looks empty.
+	 */
+	private long consumerTail;
+	
+	/**
+	 * Makes a new ring.
+	 * 
+	 * @param capacity
+	 *            the maximum number of events in the ring. It is rounded up to a power of two.
+	 */
+	public EventRing(int capacity) {
+	
+		if (capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException("The capacity must be in the range [1, 2^30].");
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		buffer = new Object[size];
+		mask = size - 1;
+		head = new AtomicLong(0);
+		tail = new AtomicLong(0);
+		producerHead = 0;
+		consumerTail = 0;
+	}
+	
+	/**
+	 * Adds an event to the ring. Must only be called from the producer thread.
+	 * 
+	 * The new tail is written with a volatile write, not a lazy one, so that a consumer that checks the ring and then goes to sleep cannot miss the
+	 * event (see {@link EventDispatcher}).
+	 * 
+	 * @param event
+	 *            the event. Must not be null.
+	 * @return true if the event was added, false if the ring is full.
+	 */
+	public boolean offer(E event) {
+	
+		if (event == null)
+			throw new NullPointerException("Events cannot be null.");
+		long t = tail.get();
+		if (t - producerHead >= buffer.length) {
+			producerHead = head.get();
+			if (t - producerHead >= buffer.length)
+				return false;
+		}
+		buffer[(int) t & mask] = event;
+		tail.set(t + 1);
+		return true;
+	}
+	
+	/**
+	 * Removes the oldest event from the ring. Must only be called from the consumer thread.
+	 * 
+	 * @return the oldest event, or null if the ring is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+	
+		long h = head.get();
+		if (h >= consumerTail) {
+			consumerTail = tail.get();
+			if (h >= consumerTail)
+				return null;
+		}
+		int slot = (int) h & mask;
+		E event = (E) buffer[slot];
+		// Clear the slot so the event can be collected
+		buffer[slot] = null;
+		head.lazySet(h + 1);
+		return event;
+	}
+	
+	/**
+	 * Gets the oldest event in the ring without removing it. Must only be called from the consumer thread.
+	 * 
+	 * @return the oldest event, or null if the ring is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E peek() {
+	
+		long h = head.get();
+		if (h >= consumerTail) {
+			consumerTail = tail.get();
+			if (h >= consumerTail)
+				return null;
+		}
+		return (E) buffer[(int) h & mask];
+	}
+	
+	/**
+	 * Gets the number of events in the ring. This can be called from any thread, but the answer may be out of date by the time it is used.
+	 * 
+	 * @return the number of events in the ring.
+	 */
+	public int size() {
+	
+		// Read the head first, so the size can never be negative
+		long h = head.get();
+		return (int) (tail.get() - h);
+	}
+	
+	/**
+	 * Gets the maximum number of events in the ring.
+	 * 
+	 * @return the capacity.
+	 */
+	public int capacity() {
+	
+		return buffer.length;
+	}
+}
@@ -0,0 +1,22 @@
+package utilities.events;
+
+/**
+ * An event that knows when it was made. Events should be immutable, as they are passed between threads.
+ */
+public interface TimedEvent {
+	
+	/**
+	 * Gets the time at which the event was made.
+	 * 
+	 * @return the time, from {@link System#nanoTime()}.
+	 */
+	public long getTimestamp();
+	
+	/**
+	 * Gets the sequence number of the event. Events made later have higher sequence numbers, so events from different producers can be put back in
+	 * order.
+	 * 
+	 * @return the sequence number.
+	 */
+	public long getSequence();
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains all the classes related to passing events between threads.
+ */
+package utilities.events;
@@ -0,0 +1,85 @@
+package utilities.filter;
+
+/**
+ * This is an exponential moving average filter. Each new value moves the output a fixed fraction of the way towards that value, so recent values
+ * count more than old ones. It uses constant time and memory no matter how long the filter has run.
+ */
+public class ExponentialFilter implements Filter {
+	
+	/**
+	 * The fraction of the way the output moves towards each new value.
+	 */
+	private final double alpha;
+	/**
+	 * The current output.
+	 */
+	private double output;
+	/**
+	 * True if at least one value has been added.
+	 */
+	private boolean hasValue;
+	
+	/**
+	 * Makes a new exponential filter.
+	 * 
+	 * @param alpha
+	 *            the fraction of the way the output moves towards each new value, in the range (0, 1]. A value of 1 turns the filter off; smaller
+	 *            values filter more heavily.
+	 */
+	public ExponentialFilter(double alpha) {
+	
+		if (!(alpha > 0 && alpha <= 1))
+			throw new IllegalArgumentException("alpha must be in the range (0, 1].");
+		this.alpha = alpha;
+		reset();
+	}
+	
+	/**
+	 * Makes a new exponential filter with roughly the same amount of smoothing as a {@link MeanValueFilter} of the specified length.
+	 * 
+	 * @param n
+	 *            the length of the equivalent mean value filter. Must be positive.
+	 * @return the filter.
+	 */
+	public static ExponentialFilter withSpan(int n) {
+	
+		return new ExponentialFilter(2.0 / (n + 1));
+	}
+	
+	/**
+	 * Adds a value of the function to be filtered. The first value sets the output directly.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	@Override
+	public void addValue(double value) {
+	
+		if (hasValue)
+			output += alpha * (value - output);
+		else {
+			output = value;
+			hasValue = true;
+		}
+	}
+	
+	/**
+	 * Returns the exponential moving average of the values added.
+	 */
+	@Override
+	public double getFilteredOutput() {
+	
+		if (!hasValue)
+			throw new IllegalStateException("There are no input values!");
+		return output;
+	}
+	
+	/**
+	 * Forgets all the values added.
+	 */
+	public void reset() {
+	
+		output = 0;
+		hasValue = false;
+	}
+}
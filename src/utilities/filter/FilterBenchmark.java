@@ -0,0 +1,55 @@
+package utilities.filter;
+
+import java.util.Random;
+
+/**
+ * Measures how long each filter takes per sample. Each filter is fed a noisy signal, and after every value the output is read, which is how the
+ * control loops use the filters. Run it on the robot to get numbers that mean something for the control loops; the first rounds let the JIT warm
+ * up and should be ignored.
+ */
+public class FilterBenchmark {
+	
+	/**
+	 * The number of samples fed to each filter per round.
+	 */
+	private static final int SAMPLES = 1000000;
+	/**
+	 * The number of rounds to run.
+	 */
+	private static final int ROUNDS = 5;
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            optionally, the window length to use. The default is 15.
+	 */
+	public static void main(String[] args) {
+	
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+		
+		double[] signal = new double[SAMPLES];
+		Random random = new Random(0);
+		for (int x = 0; x < signal.length; x++)
+			signal[x] = Math.sin(x / 100.0) + random.nextGaussian() * 0.1;
+		
+		String[] names = { "MeanValueFilter", "ExponentialFilter", "MedianFilter", "SavitzkyGolayDerivativeFilter" };
+		for (int round = 0; round < ROUNDS; round++) {
+			System.out.println("Round " + (round + 1) + ", n = " + n);
+			Filter[] filters = { new MeanValueFilter(n), ExponentialFilter.withSpan(n), new MedianFilter(n), new SavitzkyGolayDerivativeFilter(n, 0.01) };
+			for (int f = 0; f < filters.length; f++) {
+				// Prime the filter so the derivative filter has enough values to give an output
+				filters[f].addValue(0);
+				double sink = 0;
+				long start = System.nanoTime();
+				for (int x = 0; x < signal.length; x++) {
+					filters[f].addValue(signal[x]);
+					sink += filters[f].getFilteredOutput();
+				}
+				long elapsed = System.nanoTime() - start;
+				// Print the sink so the loop cannot be optimized away
+				System.out.printf("  %-30s %7.1f ns/sample (%.3f)%n", names[f], (double) elapsed / signal.length, sink);
+			}
+		}
+	}
+}
@@ -3,17 +3,32 @@ package utilities.filter;
 import java.util.NoSuchElementException;
 
 /**
- * This is a mean value filter. It stores the last inputs and calculates the filtered output as an average of the recent previous inputs.
+ * This is a mean value filter. It stores the last inputs and calculates the filtered output as an average of the recent previous inputs. The filter
+ * keeps a running sum, so both adding a value and getting the output take constant time.
  * 
  * @author Jacob Glueck
  * 
  */
 public class MeanValueFilter implements Filter {
 	
+	/**
+	 * The number of values that are added between recalculations of {@link #sum}. Adding and subtracting values from a running sum slowly
+	 * accumulates rounding error, so the sum is periodically recalculated from the stored values.
+	 */
+	private static final int RENORMALIZE_INTERVAL = 4096;
+	
 	/**
 	 * Stores the previous values used for computing the average.
 	 */
 	RingBuffer input;
+	/**
+	 * The sum of all the values in {@link #input}.
+	 */
+	private double sum;
+	/**
+	 * The number of values added since {@link #sum} was last recalculated.
+	 */
+	private int addsSinceRenormalize;
 	
 	/**
 	 * Makes a new mean value filter with the specified value for n. n represents the number of values the filter will use in the average when
@@ -26,6 +41,8 @@ public class MeanValueFilter implements Filter {
 	public MeanValueFilter(int n) {
 	
 		input = new RingBuffer(n);
+		sum = 0;
+		addsSinceRenormalize = 0;
 	}
 	
 	/**
@@ -37,7 +54,18 @@ public class MeanValueFilter implements Filter {
 	@Override
 	public void addValue(double value) {
 	
+		// Take the value that is about to be overwritten out of the sum
+		if (input.size == input.data.length)
+			sum -= input.peek();
 		input.add(value);
+		sum += value;
+		
+		if (++addsSinceRenormalize >= RENORMALIZE_INTERVAL) {
+			sum = 0;
+			for (int x = 0; x < input.size; x++)
+				sum += input.get(x);
+			addsSinceRenormalize = 0;
+		}
 		// System.out.println(input + "|||\t\t" + value);
 	}
 	
@@ -50,11 +78,7 @@ public class MeanValueFilter implements Filter {
 		if (input.size == 0)
 			throw new IllegalStateException("There are no input values!");
 		
-		double total = 0;
-		for (int x = 0; x < input.size; x++)
-			total += input.get(x);
-		
-		return total / input.size;
+		return sum / input.size;
 	}
 	
 	/**
@@ -147,7 +171,8 @@ public class MeanValueFilter implements Filter {
 		 */
 		public double get(int index) {
 		
-			return data[(index + frontLoc) % data.length];
+			int loc = index + frontLoc;
+			return data[loc >= data.length ? loc - data.length : loc];
 		}
 		
 		/**
@@ -159,7 +184,7 @@ public class MeanValueFilter implements Filter {
 		 */
 		private int increment(int curVal) {
 		
-			return (curVal + 1) % data.length;
+			return curVal + 1 == data.length ? 0 : curVal + 1;
 		}
 		
 		/**
@@ -0,0 +1,281 @@
+package utilities.filter;
+
+/**
+ * This is a moving median filter. The output is the median of the last n values, which makes it good at removing single sample spikes, such as the
+ * ones the ultrasonic sensor produces.
+ * 
+ * The window is split between two heaps: a max heap holding the smaller half of the values and a min heap holding the larger half, so the median is
+ * always at the top of the heaps. Each heap entry knows its position, so the oldest value can be removed from the middle of a heap when it leaves
+ * the window. Adding a value takes O(log n) time and no allocation, and getting the output takes constant time.
+ */
+public class MedianFilter implements Filter {
+	
+	/**
+	 * Indicates that a window slot is in the low (max) heap.
+	 */
+	private static final int LOW = 0;
+	/**
+	 * Indicates that a window slot is in the high (min) heap.
+	 */
+	private static final int HIGH = 1;
+	
+	/**
+	 * The values in the window, indexed by slot. Slots are reused in order, so the slot after the newest value holds the oldest value.
+	 */
+	private final double[] values;
+	/**
+	 * The heap that each slot is in, either {@link #LOW} or {@link #HIGH}.
+	 */
+	private final int[] heapOf;
+	/**
+	 * The position of each slot within its heap.
+	 */
+	private final int[] positionOf;
+	/**
+	 * The heaps. heaps[LOW] is a max heap and heaps[HIGH] is a min heap; both hold slot indices.
+	 */
+	private final int[][] heaps;
+	/**
+	 * The number of slots in each heap. The low heap always has as many slots as the high heap, or one more.
+	 */
+	private final int[] heapSizes;
+	/**
+	 * The slot the next value will go in.
+	 */
+	private int nextSlot;
+	/**
+	 * The number of values in the window.
+	 */
+	private int size;
+	
+	/**
+	 * Makes a new median filter that takes the median of the last n values.
+	 * 
+	 * @param n
+	 *            the number of values in the window. Must be positive.
+	 */
+	public MedianFilter(int n) {
+	
+		if (n <= 0)
+			throw new IllegalArgumentException("The window must hold at least one value.");
+		values = new double[n];
+		heapOf = new int[n];
+		positionOf = new int[n];
+		heaps = new int[2][n];
+		heapSizes = new int[2];
+		reset();
+	}
+	
+	/**
+	 * Adds a value of the function to be filtered. If the window is full, the oldest value is dropped.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	@Override
+	public void addValue(double value) {
+	
+		int slot = nextSlot;
+		nextSlot = nextSlot + 1 == values.length ? 0 : nextSlot + 1;
+		
+		// The slot is reused, so take the old value out first
+		if (size == values.length)
+			remove(slot);
+		else
+			size++;
+		
+		values[slot] = value;
+		if (heapSizes[LOW] == 0 || value <= values[heaps[LOW][0]])
+			insert(LOW, slot);
+		else
+			insert(HIGH, slot);
+		rebalance();
+	}
+	
+	/**
+	 * Returns the median of the values in the window. If there is an even number of values, the mean of the two middle values is returned.
+	 */
+	@Override
+	public double getFilteredOutput() {
+	
+		if (size == 0)
+			throw new IllegalStateException("There are no input values!");
+		double low = values[heaps[LOW][0]];
+		if (heapSizes[LOW] > heapSizes[HIGH])
+			return low;
+		return (low + values[heaps[HIGH][0]]) / 2;
+	}
+	
+	/**
+	 * Gets the number of values in the window.
+	 * 
+	 * @return the number of values in the window.
+	 */
+	public int size() {
+	
+		return size;
+	}
+	
+	/**
+	 * Forgets all the values added.
+	 */
+	public void reset() {
+	
+		heapSizes[LOW] = 0;
+		heapSizes[HIGH] = 0;
+		nextSlot = 0;
+		size = 0;
+	}
+	
+	/**
+	 * Moves values between the heaps so the low heap has as many values as the high heap, or one more.
+	 */
+	private void rebalance() {
+	
+		if (heapSizes[LOW] > heapSizes[HIGH] + 1)
+			insert(HIGH, removeTop(LOW));
+		else if (heapSizes[HIGH] > heapSizes[LOW])
+			insert(LOW, removeTop(HIGH));
+	}
+	
+	/**
+	 * Inserts a slot into a heap.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param slot
+	 *            the slot.
+	 */
+	private void insert(int heap, int slot) {
+	
+		int position = heapSizes[heap]++;
+		place(heap, position, slot);
+		siftUp(heap, position);
+	}
+	
+	/**
+	 * Removes the top slot from a heap.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @return the slot that was removed.
+	 */
+	private int removeTop(int heap) {
+	
+		int slot = heaps[heap][0];
+		removeAt(heap, 0);
+		return slot;
+	}
+	
+	/**
+	 * Removes a slot from whichever heap it is in, and rebalances the heaps.
+	 * 
+	 * @param slot
+	 *            the slot.
+	 */
+	private void remove(int slot) {
+	
+		removeAt(heapOf[slot], positionOf[slot]);
+		rebalance();
+	}
+	
+	/**
+	 * Removes the slot at a position in a heap by moving the last slot into its place.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param position
+	 *            the position.
+	 */
+	private void removeAt(int heap, int position) {
+	
+		int last = --heapSizes[heap];
+		if (position == last)
+			return;
+		int moved = heaps[heap][last];
+		place(heap, position, moved);
+		// The moved slot may belong above or below its new position
+		siftUp(heap, position);
+		siftDown(heap, positionOf[moved]);
+	}
+	
+	/**
+	 * Moves a slot up a heap until the heap property holds.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param position
+	 *            the position of the slot.
+	 */
+	private void siftUp(int heap, int position) {
+	
+		int slot = heaps[heap][position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!before(heap, slot, heaps[heap][parent]))
+				break;
+			place(heap, position, heaps[heap][parent]);
+			position = parent;
+		}
+		place(heap, position, slot);
+	}
+	
+	/**
+	 * Moves a slot down a heap until the heap property holds.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param position
+	 *            the position of the slot.
+	 */
+	private void siftDown(int heap, int position) {
+	
+		int slot = heaps[heap][position];
+		int heapSize = heapSizes[heap];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && before(heap, heaps[heap][child + 1], heaps[heap][child]))
+				child++;
+			if (!before(heap, heaps[heap][child], slot))
+				break;
+			place(heap, position, heaps[heap][child]);
+			position = child;
+		}
+		place(heap, position, slot);
+	}
+	
+	/**
+	 * Puts a slot at a position in a heap and records where it is.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param position
+	 *            the position.
+	 * @param slot
+	 *            the slot.
+	 */
+	private void place(int heap, int position, int slot) {
+	
+		heaps[heap][position] = slot;
+		heapOf[slot] = heap;
+		positionOf[slot] = position;
+	}
+	
+	/**
+	 * Checks to see if slot a belongs closer to the top of a heap than slot b.
+	 * 
+	 * @param heap
+	 *            the heap, either {@link #LOW} or {@link #HIGH}.
+	 * @param a
+	 *            the first slot.
+	 * @param b
+	 *            the second slot.
+	 * @return true if a belongs closer to the top than b.
+	 */
+	private boolean before(int heap, int a, int b) {
+	
+		return heap == LOW ? values[a] > values[b] : values[a] < values[b];
+	}
+}
@@ -0,0 +1,151 @@
+package utilities.filter;
+
+/**
+ * This filter estimates the time derivative of a signal using a Savitzky-Golay filter: a least squares polynomial fit over a window of the last n
+ * values. For a first derivative at the center of the window, the linear and quadratic fits give the same result, which is
+ * 
+ * <pre>
+ * sum(k * x_k) / sum(k^2) / dt
+ * </pre>
+ * 
+ * where k runs from -(n - 1) / 2 to (n - 1) / 2. Because the estimate is for the center of the window, it lags the input by (n - 1) / 2 samples.
+ * 
+ * The sums are kept as running totals, so adding a value and getting the output both take constant time. Like {@link MeanValueFilter}, the totals
+ * are periodically recalculated to stop rounding error from building up.
+ */
+public class SavitzkyGolayDerivativeFilter implements Filter {
+	
+	/**
+	 * The number of values that are added between recalculations of the running sums.
+	 */
+	private static final int RENORMALIZE_INTERVAL = 4096;
+	
+	/**
+	 * The values in the window, stored as a ring.
+	 */
+	private final double[] values;
+	/**
+	 * The index of the oldest value.
+	 */
+	private int oldest;
+	/**
+	 * The number of values in the window.
+	 */
+	private int size;
+	/**
+	 * The sum of the values in the window.
+	 */
+	private double sum;
+	/**
+	 * The sum of i * x_i, where i is the age rank of the value in the window: 0 for the oldest, size - 1 for the newest.
+	 */
+	private double weightedSum;
+	/**
+	 * The time between samples, in seconds.
+	 */
+	private final double samplePeriod;
+	/**
+	 * The number of values added since the running sums were last recalculated.
+	 */
+	private int addsSinceRenormalize;
+	
+	/**
+	 * Makes a new derivative filter.
+	 * 
+	 * @param n
+	 *            the number of values in the window. Must be at least 2.
+	 * @param samplePeriod
+	 *            the time between samples, in seconds. The output is in units of the input per second.
+	 */
+	public SavitzkyGolayDerivativeFilter(int n, double samplePeriod) {
+	
+		if (n < 2)
+			throw new IllegalArgumentException("The window must hold at least two values.");
+		if (!(samplePeriod > 0))
+			throw new IllegalArgumentException("The sample period must be positive.");
+		values = new double[n];
+		this.samplePeriod = samplePeriod;
+		reset();
+	}
+	
+	/**
+	 * Adds a value of the function to be filtered. The values should be evenly spaced in time.
+	 * 
+	 * @param value
+	 *            The value.
+	 */
+	@Override
+	public void addValue(double value) {
+	
+		if (size == values.length) {
+			// Every value gets one rank older, and the oldest is dropped
+			double dropped = values[oldest];
+			sum -= dropped;
+			weightedSum -= sum;
+			values[oldest] = value;
+			oldest = oldest + 1 == values.length ? 0 : oldest + 1;
+		} else {
+			int loc = oldest + size;
+			values[loc >= values.length ? loc - values.length : loc] = value;
+			size++;
+		}
+		weightedSum += (size - 1) * value;
+		sum += value;
+		
+		if (++addsSinceRenormalize >= RENORMALIZE_INTERVAL)
+			renormalize();
+	}
+	
+	/**
+	 * Returns the estimated derivative at the center of the window, in units of the input per second. If the window is not yet full, the estimate
+	 * uses the values that are there.
+	 */
+	@Override
+	public double getFilteredOutput() {
+	
+		if (size < 2)
+			throw new IllegalStateException("At least two values are needed to estimate a derivative!");
+		// sum((i - c) * x_i) with c = (size - 1) / 2, divided by sum((i - c)^2) = size * (size^2 - 1) / 12
+		double centered = weightedSum - (size - 1) / 2.0 * sum;
+		return centered * 12 / ((double) size * ((double) size * size - 1)) / samplePeriod;
+	}
+	
+	/**
+	 * Gets the number of samples by which the output lags the input. The output is for the center of the values in the window, so the lag grows
+	 * as the window fills, and is (n - 1) / 2 once it is full.
+	 * 
+	 * @return the lag, in samples, for the values in the window now. 0 if there are none.
+	 */
+	public double getLag() {
+	
+		return Math.max(0, size - 1) / 2.0;
+	}
+	
+	/**
+	 * Forgets all the values added.
+	 */
+	public void reset() {
+	
+		oldest = 0;
+		size = 0;
+		sum = 0;
+		weightedSum = 0;
+		addsSinceRenormalize = 0;
+	}
+	
+	/**
+	 * Recalculates the running sums from the stored values.
+	 */
+	private void renormalize() {
+	
+		sum = 0;
+		weightedSum = 0;
+		for (int i = 0; i < size; i++) {
+			int loc = oldest + i;
+			double value = values[loc >= values.length ? loc - values.length : loc];
+			sum += value;
+			weightedSum += i * value;
+		}
+		addsSinceRenormalize = 0;
+	}
+}
@@ -0,0 +1,65 @@
+package utilities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a counter that can be safely incremented by any number of threads without locking.
+ */
+public class Counter {
+
+	/**
+	 * The count.
+	 */
+	private final AtomicLong count;
+
+	/**
+	 * Makes a new counter, starting at zero.
+	 */
+	public Counter() {
+
+		count = new AtomicLong();
+	}
+
+	/**
+	 * Adds one to the counter.
+	 */
+	public void increment() {
+
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Adds the specified amount to the counter.
+	 *
+	 * @param amount
+	 *            the amount to add.
+	 */
+	public void add(long amount) {
+
+		count.addAndGet(amount);
+	}
+
+	/**
+	 * Gets the current count.
+	 *
+	 * @return the current count.
+	 */
+	public long get() {
+
+		return count.get();
+	}
+
+	/**
+	 * Resets the counter to zero.
+	 */
+	public void reset() {
+
+		count.set(0);
+	}
+
+	@Override
+	public String toString() {
+
+		return Long.toString(count.get());
+	}
+}
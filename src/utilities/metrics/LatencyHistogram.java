@@ -0,0 +1,184 @@
+package utilities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class represents a histogram of durations with fixed, power of two buckets. Bucket 0 holds durations below {@link #RESOLUTION} ns, and bucket
+ * x holds durations in [RESOLUTION * 2^(x - 1), RESOLUTION * 2^x). The last bucket also holds everything longer. Recording a duration is lock free
+ * and does not allocate, so it can be done from inside control loops.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The upper bound of the first bucket, in ns.
+	 */
+	public static final long RESOLUTION = 1024;
+	/**
+	 * The number of buckets. The last bucket starts at about 4.3 s.
+	 */
+	public static final int NUM_BUCKETS = 24;
+
+	/**
+	 * The number of durations recorded in each bucket.
+	 */
+	private final AtomicLongArray buckets;
+	/**
+	 * The number of durations recorded.
+	 */
+	private final AtomicLong count;
+	/**
+	 * The sum of all the durations recorded, in ns.
+	 */
+	private final AtomicLong sum;
+	/**
+	 * The longest duration recorded, in ns.
+	 */
+	private final AtomicLong max;
+
+	/**
+	 * Makes a new empty histogram.
+	 */
+	public LatencyHistogram() {
+
+		buckets = new AtomicLongArray(NUM_BUCKETS);
+		count = new AtomicLong();
+		sum = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos
+	 *            the duration, in ns. Negative durations are recorded as zero.
+	 */
+	public void record(long nanos) {
+
+		if (nanos < 0)
+			nanos = 0;
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+		long currentMax;
+		while (nanos > (currentMax = max.get()))
+			if (max.compareAndSet(currentMax, nanos))
+				break;
+	}
+
+	/**
+	 * Calculates the bucket that a duration belongs in.
+	 *
+	 * @param nanos
+	 *            the duration, in ns. Must not be negative.
+	 * @return the index of the bucket.
+	 */
+	private static int bucketOf(long nanos) {
+
+		int bucket = 64 - Long.numberOfLeadingZeros(nanos / RESOLUTION);
+		return Math.min(bucket, NUM_BUCKETS - 1);
+	}
+
+	/**
+	 * Gets the upper bound of a bucket.
+	 *
+	 * @param bucket
+	 *            the index of the bucket.
+	 * @return the upper bound of the bucket, in ns. The last bucket has no upper bound, so {@link Long#MAX_VALUE} is returned.
+	 */
+	public static long upperBound(int bucket) {
+
+		if (bucket >= NUM_BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return RESOLUTION << bucket;
+	}
+
+	/**
+	 * Gets the number of durations recorded.
+	 *
+	 * @return the number of durations recorded.
+	 */
+	public long getCount() {
+
+		return count.get();
+	}
+
+	/**
+	 * Gets the mean of the recorded durations.
+	 *
+	 * @return the mean, in ns, or 0 if nothing has been recorded.
+	 */
+	public double getMean() {
+
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * Gets the longest duration recorded.
+	 *
+	 * @return the longest duration, in ns.
+	 */
+	public long getMax() {
+
+		return max.get();
+	}
+
+	/**
+	 * Estimates a percentile. The estimate is the upper bound of the bucket the percentile falls in, so it is at most a factor of two too large.
+	 *
+	 * @param fraction
+	 *            the percentile, as a fraction in the range [0, 1]. For example, .99 is the 99th percentile.
+	 * @return the estimate, in ns, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double fraction) {
+
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long target = (long) Math.ceil(fraction * n);
+		long seen = 0;
+		for (int x = 0; x < NUM_BUCKETS; x++) {
+			seen += buckets.get(x);
+			if (seen >= target)
+				return Math.min(upperBound(x), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Gets the number of durations in a bucket.
+	 *
+	 * @param bucket
+	 *            the index of the bucket.
+	 * @return the number of durations in the bucket.
+	 */
+	public long getBucketCount(int bucket) {
+
+		return buckets.get(bucket);
+	}
+
+	/**
+	 * Clears the histogram. Durations recorded while the histogram is being cleared may be partially lost.
+	 */
+	public void reset() {
+
+		for (int x = 0; x < NUM_BUCKETS; x++)
+			buckets.set(x, 0);
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Makes a readable string.
+	 *
+	 * @return a string with the count, mean, median, 99th percentile and maximum. All times are in ms.
+	 */
+	@Override
+	public String toString() {
+
+		return String.format("n=%d mean=%.3f p50=%.3f p99=%.3f max=%.3f ms", getCount(), getMean() / 1e6, getPercentile(.5) / 1e6,
+				getPercentile(.99) / 1e6, getMax() / 1e6);
+	}
+}
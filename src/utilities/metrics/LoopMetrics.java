@@ -0,0 +1,130 @@
+package utilities.metrics;
+
+/**
+ * This class holds the metrics for one control loop: the period between the starts of consecutive iterations, the execution time of each iteration,
+ * the age of the sensor data when it is acted on, and the number of iterations. Only the thread running the loop should call
+ * {@link #startIteration()} and {@link #endIteration(long)}.
+ */
+public class LoopMetrics {
+
+	/**
+	 * The time between the starts of consecutive iterations.
+	 */
+	private final LatencyHistogram period;
+	/**
+	 * The time each iteration took.
+	 */
+	private final LatencyHistogram execution;
+	/**
+	 * The age of the sensor data when it was acted on.
+	 */
+	private final LatencyHistogram age;
+	/**
+	 * The number of iterations.
+	 */
+	private final Counter iterations;
+	/**
+	 * The start time of the last iteration, in ns, or {@link Long#MIN_VALUE} if the loop has not run since it was last paused.
+	 */
+	private long lastStart;
+
+	/**
+	 * Makes a new set of loop metrics.
+	 */
+	public LoopMetrics() {
+
+		period = new LatencyHistogram();
+		execution = new LatencyHistogram();
+		age = new LatencyHistogram();
+		iterations = new Counter();
+		lastStart = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Marks the start of an iteration.
+	 *
+	 * @return the start time, in ns, to pass to {@link #endIteration(long)}.
+	 */
+	public long startIteration() {
+
+		long now = System.nanoTime();
+		if (lastStart != Long.MIN_VALUE)
+			period.record(now - lastStart);
+		lastStart = now;
+		return now;
+	}
+
+	/**
+	 * Marks the end of an iteration.
+	 *
+	 * @param start
+	 *            the start time returned by {@link #startIteration()}.
+	 */
+	public void endIteration(long start) {
+
+		execution.record(System.nanoTime() - start);
+		iterations.increment();
+	}
+
+	/**
+	 * Marks the loop as paused, so that the time spent paused is not recorded as a period.
+	 */
+	public void pause() {
+
+		lastStart = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Records the age of sensor data that is about to be acted on.
+	 *
+	 * @param sampleTime
+	 *            the time the data was sampled, from {@link System#nanoTime()}.
+	 */
+	public void recordAge(long sampleTime) {
+
+		age.record(System.nanoTime() - sampleTime);
+	}
+
+	/**
+	 * @return the period histogram
+	 */
+	public LatencyHistogram getPeriod() {
+
+		return period;
+	}
+
+	/**
+	 * @return the execution time histogram
+	 */
+	public LatencyHistogram getExecution() {
+
+		return execution;
+	}
+
+	/**
+	 * @return the sensor data age histogram
+	 */
+	public LatencyHistogram getAge() {
+
+		return age;
+	}
+
+	/**
+	 * @return the iteration counter
+	 */
+	public Counter getIterations() {
+
+		return iterations;
+	}
+
+	@Override
+	public String toString() {
+
+		String result = "iterations=" + iterations + "\n";
+		result += "  period:    " + period + "\n";
+		result += "  execution: " + execution;
+		if (age.getCount() > 0)
+			result += "\n  age:       " + age;
+		return result;
+	}
+}
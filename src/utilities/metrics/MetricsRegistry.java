@@ -0,0 +1,153 @@
+package utilities.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds all the named metrics. Metrics are looked up by name once, when the measured object is made, and then updated directly, so the
+ * registry is never touched from inside a control loop.
+ */
+public class MetricsRegistry {
+
+	/**
+	 * All the metrics, by name. The values are {@link Counter}s, {@link LatencyHistogram}s, {@link LoopMetrics} and {@link RunningStatistics}.
+	 */
+	private static final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * True if the shutdown hook has been installed.
+	 */
+	private static boolean hookInstalled = false;
+
+	/**
+	 * Prevent the class from being initialized.
+	 */
+	private MetricsRegistry() {
+
+	}
+
+	/**
+	 * Gets the counter with the specified name, making it if it does not exist.
+	 *
+	 * @param name
+	 *            the name.
+	 * @return the counter.
+	 */
+	public static Counter counter(String name) {
+
+		return get(name, new Counter(), Counter.class);
+	}
+
+	/**
+	 * Gets the histogram with the specified name, making it if it does not exist.
+	 *
+	 * @param name
+	 *            the name.
+	 * @return the histogram.
+	 */
+	public static LatencyHistogram histogram(String name) {
+
+		return get(name, new LatencyHistogram(), LatencyHistogram.class);
+	}
+
+	/**
+	 * Gets the loop metrics with the specified name, making them if they do not exist.
+	 *
+	 * @param name
+	 *            the name.
+	 * @return the loop metrics.
+	 */
+	public static LoopMetrics loop(String name) {
+
+		return get(name, new LoopMetrics(), LoopMetrics.class);
+	}
+
+	/**
+	 * Registers loop metrics without sharing them with anything else. They are registered under the specified name or, if that is taken, under
+	 * the name followed by the first number from 2 up that makes it unique. Use this instead of {@link #loop(String)} when each owner must have
+	 * its own metrics, since {@link LoopMetrics} must only be updated by one thread.
+	 *
+	 * @param name
+	 *            the name.
+	 * @param loop
+	 *            the loop metrics.
+	 * @return the name the metrics were registered under.
+	 */
+	public static String registerLoop(String name, LoopMetrics loop) {
+
+		String unique = name;
+		for (int x = 2; metrics.putIfAbsent(unique, loop) != null; x++)
+			unique = name + " " + x;
+		return unique;
+	}
+
+	/**
+	 * Registers statistics under the specified name, replacing anything registered under that name. Unlike the other metrics,
+	 * {@link RunningStatistics} are owned by the object that updates them.
+	 *
+	 * @param name
+	 *            the name.
+	 * @param statistics
+	 *            the statistics.
+	 */
+	public static void register(String name, RunningStatistics statistics) {
+
+		metrics.put(name, statistics);
+	}
+
+	/**
+	 * Gets a metric, making it if it does not exist.
+	 *
+	 * @param name
+	 *            the name.
+	 * @param fresh
+	 *            the metric to use if there is no metric with the specified name.
+	 * @param type
+	 *            the type of the metric.
+	 * @return the metric.
+	 */
+	private static <T> T get(String name, T fresh, Class<T> type) {
+
+		Object existing = metrics.putIfAbsent(name, fresh);
+		if (existing == null)
+			return fresh;
+		if (!type.isInstance(existing))
+			throw new IllegalArgumentException(name + " is a " + existing.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+		return type.cast(existing);
+	}
+
+	/**
+	 * Prints all the metrics, sorted by name.
+	 *
+	 * @param out
+	 *            the stream to print to.
+	 */
+	public static void dump(PrintStream out) {
+
+		Map<String, Object> sorted = new TreeMap<>(metrics);
+		out.println("Metrics:");
+		for (String name : sorted.keySet())
+			out.println(name + ": " + sorted.get(name));
+	}
+
+	/**
+	 * Makes the metrics print to {@link System#out} when the program exits. Calling this more than once has no further effect.
+	 */
+	public static synchronized void dumpOnShutdown() {
+
+		if (hookInstalled)
+			return;
+		hookInstalled = true;
+		Runtime.getRuntime().addShutdownHook(new Thread("Metrics dump") {
+
+			@Override
+			public void run() {
+
+				dump(System.out);
+			}
+		});
+	}
+}
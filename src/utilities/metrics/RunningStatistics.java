@@ -0,0 +1,144 @@
+package utilities.metrics;
+
+/**
+ * This class keeps the mean and variance of a series of values using Welford's online algorithm, which is numerically stable and uses constant
+ * memory. It is not thread safe: only one thread should call {@link #add(double)}. Other threads may read the statistics, but the values they see
+ * may be slightly out of date.
+ */
+public class RunningStatistics {
+
+	/**
+	 * The number of values added.
+	 */
+	private long count;
+	/**
+	 * The mean of the values added.
+	 */
+	private double mean;
+	/**
+	 * The sum of the squares of the differences from the mean.
+	 */
+	private double m2;
+	/**
+	 * The smallest value added.
+	 */
+	private double min;
+	/**
+	 * The largest value added.
+	 */
+	private double max;
+
+	/**
+	 * Makes a new empty set of statistics.
+	 */
+	public RunningStatistics() {
+
+		reset();
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value
+	 *            the value.
+	 */
+	public void add(double value) {
+
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Clears all the statistics.
+	 */
+	public void reset() {
+
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Gets the number of values added.
+	 *
+	 * @return the number of values added.
+	 */
+	public long getCount() {
+
+		return count;
+	}
+
+	/**
+	 * Gets the mean.
+	 *
+	 * @return the mean, or NaN if no values have been added.
+	 */
+	public double getMean() {
+
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Gets the population variance.
+	 *
+	 * @return the population variance, or NaN if no values have been added.
+	 */
+	public double getVariance() {
+
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * Gets the population standard deviation.
+	 *
+	 * @return the population standard deviation, or NaN if no values have been added.
+	 */
+	public double getStandardDeviation() {
+
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Gets the root mean square of the values added. This is calculated from the mean and variance, as sqrt(mean^2 + variance).
+	 *
+	 * @return the root mean square, or NaN if no values have been added.
+	 */
+	public double getRootMeanSquare() {
+
+		return count == 0 ? Double.NaN : Math.sqrt(mean * mean + m2 / count);
+	}
+
+	/**
+	 * Gets the smallest value added.
+	 *
+	 * @return the smallest value, or {@link Double#POSITIVE_INFINITY} if no values have been added.
+	 */
+	public double getMin() {
+
+		return min;
+	}
+
+	/**
+	 * Gets the largest value added.
+	 *
+	 * @return the largest value, or {@link Double#NEGATIVE_INFINITY} if no values have been added.
+	 */
+	public double getMax() {
+
+		return max;
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("n=%d mean=%.4f sd=%.4f min=%.4f max=%.4f", count, getMean(), getStandardDeviation(), min, max);
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains all the classes related to measuring the performance of the robot's control loops.
+ */
+package utilities.metrics;
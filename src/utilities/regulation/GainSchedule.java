@@ -0,0 +1,139 @@
+package utilities.regulation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * This class represents a gain schedule: a table of controller gains indexed by an operating point, such as the travel speed. Between two rows of
+ * the table, the gains are linearly interpolated. Outside of the table, the gains of the closest row are used.
+ *
+ * This class is intended to be used inside control loops: {@link #getGains(double, double[])} does not allocate, and remembers the last row used so
+ * that the lookup is constant time when the operating point changes slowly. Because of this, a schedule should only be used by one thread.
+ */
+public class GainSchedule {
+
+	/**
+	 * The operating points, in ascending order.
+	 */
+	private final double[] points;
+	/**
+	 * The gains. gains[row][x] is gain x at the operating point points[row].
+	 */
+	private final double[][] gains;
+	/**
+	 * The number of gains in each row.
+	 */
+	private final int numGains;
+	/**
+	 * The index of the row at or below the last operating point that was looked up.
+	 */
+	private int lastRow;
+
+	/**
+	 * Makes a new gain schedule. The rows do not need to be sorted; they are sorted by operating point here.
+	 *
+	 * @param points
+	 *            the operating points. There must be at least one, and no two may be equal.
+	 * @param gains
+	 *            the gains for each operating point. gains[row] holds the gains for points[row], and all rows must have the same length.
+	 */
+	public GainSchedule(double[] points, double[][] gains) {
+
+		if (points.length == 0 || points.length != gains.length)
+			throw new IllegalArgumentException("There must be one row of gains for every operating point.");
+
+		// Sort the rows by operating point
+		Integer[] order = new Integer[points.length];
+		for (int x = 0; x < order.length; x++)
+			order[x] = x;
+		final double[] unsorted = points;
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+
+				return Double.compare(unsorted[a], unsorted[b]);
+			}
+		});
+
+		numGains = gains[0].length;
+		this.points = new double[points.length];
+		this.gains = new double[points.length][];
+		for (int x = 0; x < order.length; x++) {
+			if (gains[order[x]].length != numGains)
+				throw new IllegalArgumentException("All rows must have the same number of gains.");
+			if (x > 0 && points[order[x]] == this.points[x - 1])
+				throw new IllegalArgumentException("Operating point " + points[order[x]] + " appears twice.");
+			this.points[x] = points[order[x]];
+			this.gains[x] = Arrays.copyOf(gains[order[x]], numGains);
+		}
+		lastRow = 0;
+	}
+
+	/**
+	 * Calculates the gains at the specified operating point and stores them in result.
+	 *
+	 * @param point
+	 *            the operating point.
+	 * @param result
+	 *            the array to store the gains in. Must be at least {@link #getNumGains()} long.
+	 * @return result, for convenience.
+	 */
+	public double[] getGains(double point, double[] result) {
+
+		// Clamp to the ends of the table
+		if (point <= points[0] || points.length == 1) {
+			System.arraycopy(gains[0], 0, result, 0, numGains);
+			return result;
+		}
+		int last = points.length - 1;
+		if (point >= points[last]) {
+			System.arraycopy(gains[last], 0, result, 0, numGains);
+			return result;
+		}
+
+		// Walk from the last row used, so a slowly changing operating point only takes a step or two
+		int row = lastRow;
+		while (row > 0 && point < points[row])
+			row--;
+		while (row < last - 1 && point >= points[row + 1])
+			row++;
+		lastRow = row;
+
+		double ratio = (point - points[row]) / (points[row + 1] - points[row]);
+		double[] low = gains[row];
+		double[] high = gains[row + 1];
+		for (int x = 0; x < numGains; x++)
+			result[x] = low[x] + (high[x] - low[x]) * ratio;
+		return result;
+	}
+
+	/**
+	 * Gets the number of gains in each row.
+	 *
+	 * @return the number of gains in each row.
+	 */
+	public int getNumGains() {
+
+		return numGains;
+	}
+
+	/**
+	 * Gets the number of rows in the schedule.
+	 *
+	 * @return the number of rows in the schedule.
+	 */
+	public int size() {
+
+		return points.length;
+	}
+
+	@Override
+	public String toString() {
+
+		String result = "";
+		for (int x = 0; x < points.length; x++)
+			result += points[x] + ": " + Arrays.toString(gains[x]) + "\n";
+		return result;
+	}
+}
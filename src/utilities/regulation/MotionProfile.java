@@ -0,0 +1,526 @@
+package utilities.regulation;
+
+/**
+ * A driver that moves the target smoothly over a distance, within limits on velocity, acceleration, and jerk. The velocity goes from the start
+ * velocity up to a peak, holds it, and comes down to the end velocity. Each change of velocity is an S-curve: the acceleration ramps up at the
+ * jerk limit, holds at the acceleration limit, and ramps back down, so the motors are never asked for a step in acceleration. With an infinite
+ * jerk limit, the changes are straight ramps and the profile is the usual trapezoid.
+ *
+ * A move does not have to start or end at rest. {@link #blend(double[], double[], Limits)} plans a sequence of moves whose end velocities are the
+ * start velocities of the next, as fast as the limits and the lengths of the moves allow, so the robot does not stop between them.
+ *
+ * The distance may be in any unit, as long as the limits are in the same unit. The velocities are speeds in the direction of the move, and are
+ * never negative. The clock starts on the first call to {@link #getTarget()}, or on {@link #start()}.
+ */
+public class MotionProfile implements Driver {
+
+	/**
+	 * The limits of a profile. Limits are immutable.
+	 */
+	public static class Limits {
+
+		/**
+		 * The largest velocity, in units/s.
+		 */
+		public final double velocity;
+		/**
+		 * The largest acceleration, in units/s/s.
+		 */
+		public final double acceleration;
+		/**
+		 * The largest jerk, in units/s/s/s, or {@link Double#POSITIVE_INFINITY} for a trapezoidal profile.
+		 */
+		public final double jerk;
+
+		/**
+		 * Makes new limits.
+		 *
+		 * @param velocity
+		 *            the largest velocity, in units/s.
+		 * @param acceleration
+		 *            the largest acceleration, in units/s/s.
+		 * @param jerk
+		 *            the largest jerk, in units/s/s/s, or {@link Double#POSITIVE_INFINITY} for a trapezoidal profile.
+		 */
+		public Limits(double velocity, double acceleration, double jerk) {
+
+			if (!(velocity > 0))
+				throw new IllegalArgumentException("The velocity limit must be positive: " + velocity);
+			if (!(acceleration > 0))
+				throw new IllegalArgumentException("The acceleration limit must be positive: " + acceleration);
+			if (!(jerk > 0))
+				throw new IllegalArgumentException("The jerk limit must be positive: " + jerk);
+			this.velocity = velocity;
+			this.acceleration = acceleration;
+			this.jerk = jerk;
+		}
+
+		/**
+		 * Gets the time to change velocity.
+		 *
+		 * @param from
+		 *            the velocity at the start, in units/s.
+		 * @param to
+		 *            the velocity at the end, in units/s.
+		 * @return the time, in s.
+		 */
+		public double changeTime(double from, double to) {
+
+			double change = Math.abs(to - from);
+			if (change == 0)
+				return 0;
+			double ramp = acceleration / jerk;
+			if (change >= acceleration * ramp)
+				return change / acceleration + ramp;
+			return 2 * Math.sqrt(change / jerk);
+		}
+
+		/**
+		 * Gets the distance covered while changing velocity. The S-curve is symmetric, so this is the average velocity times the time.
+		 *
+		 * @param from
+		 *            the velocity at the start, in units/s.
+		 * @param to
+		 *            the velocity at the end, in units/s.
+		 * @return the distance, in units.
+		 */
+		public double changeDistance(double from, double to) {
+
+			return (from + to) / 2 * changeTime(from, to);
+		}
+
+		/**
+		 * Gets the fastest velocity that can be changed to or from a velocity over a distance.
+		 *
+		 * @param velocity
+		 *            the velocity at the other end, in units/s.
+		 * @param distance
+		 *            the distance, in units.
+		 * @return the velocity, in units/s, at most {@link #velocity}.
+		 */
+		public double reachable(double velocity, double distance) {
+
+			if (velocity >= this.velocity || changeDistance(velocity, this.velocity) <= distance)
+				return this.velocity;
+			double low = velocity, high = this.velocity;
+			for (int x = 0; x < SEARCH_STEPS; x++) {
+				double middle = (low + high) / 2;
+				if (changeDistance(velocity, middle) <= distance)
+					low = middle;
+				else
+					high = middle;
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * The number of bisection steps used to find velocities. Each halves the error.
+	 */
+	private static final int SEARCH_STEPS = 50;
+
+	/**
+	 * The limits.
+	 */
+	private final Limits limits;
+	/**
+	 * The distance, in units. May be negative.
+	 */
+	private final double distance;
+	/**
+	 * The direction of the move: 1 or -1.
+	 */
+	private final double direction;
+	/**
+	 * The velocity at the start, in units/s.
+	 */
+	private final double startVelocity;
+	/**
+	 * The velocity at the end, in units/s.
+	 */
+	private final double endVelocity;
+	/**
+	 * The highest velocity reached, in units/s.
+	 */
+	private final double peakVelocity;
+	/**
+	 * The constant jerk pieces of the profile. For piece <code>i</code>, <code>times[i]</code> is when it starts, in s, and
+	 * <code>positions[i]</code>, <code>velocities[i]</code>, and <code>accelerations[i]</code> are the state at that time, in the direction of the
+	 * move. <code>jerks[i]</code> is the jerk during it. There is one more time than there are pieces: the end.
+	 */
+	private final double[] times, positions, velocities, accelerations, jerks;
+	/**
+	 * The number of pieces.
+	 */
+	private int pieces;
+	/**
+	 * The distance from the end within which {@link #moveComplete(double)} accepts the current value, in units.
+	 */
+	private double tolerance;
+	/**
+	 * The time the profile started, from {@link System#nanoTime()}, or {@link Long#MIN_VALUE} if it has not started.
+	 */
+	private volatile long startTime;
+
+	/**
+	 * Makes a profile that starts and ends at rest.
+	 *
+	 * @param distance
+	 *            the distance to move, in units. May be negative.
+	 * @param limits
+	 *            the limits.
+	 */
+	public MotionProfile(double distance, Limits limits) {
+
+		this(distance, 0, 0, limits);
+	}
+
+	/**
+	 * Makes a profile.
+	 *
+	 * @param distance
+	 *            the distance to move, in units. May be negative.
+	 * @param startVelocity
+	 *            the speed at the start, in units/s, in the direction of the move.
+	 * @param endVelocity
+	 *            the speed at the end, in units/s, in the direction of the move. If it cannot be reached from the start velocity over the
+	 *            distance, the closest velocity that can is used instead.
+	 * @param limits
+	 *            the limits.
+	 */
+	public MotionProfile(double distance, double startVelocity, double endVelocity, Limits limits) {
+
+		if (!(startVelocity >= 0) || !(endVelocity >= 0))
+			throw new IllegalArgumentException("The velocities cannot be negative: " + startVelocity + ", " + endVelocity);
+		if (Double.isNaN(distance) || Double.isInfinite(distance))
+			throw new IllegalArgumentException("The distance must be finite: " + distance);
+		this.limits = limits;
+		this.distance = distance;
+		direction = distance < 0 ? -1 : 1;
+		double length = Math.abs(distance);
+		this.startVelocity = startVelocity;
+
+		// Change to the end velocity over the whole distance if it is too far away to reach
+		double end = endVelocity;
+		if (limits.changeDistance(startVelocity, end) > length) {
+			double low = Math.min(startVelocity, end), high = Math.max(startVelocity, end);
+			for (int x = 0; x < SEARCH_STEPS; x++) {
+				double middle = (low + high) / 2;
+				if ((limits.changeDistance(startVelocity, middle) <= length) == (end > startVelocity))
+					low = middle;
+				else
+					high = middle;
+			}
+			end = end > startVelocity ? low : high;
+		}
+		this.endVelocity = end;
+
+		// Find the highest velocity that leaves room to slow down to the end velocity
+		double ceiling = Math.max(limits.velocity, Math.max(startVelocity, end));
+		double peak = ceiling;
+		if (limits.changeDistance(startVelocity, ceiling) + limits.changeDistance(ceiling, end) > length) {
+			double low = Math.max(startVelocity, end), high = ceiling;
+			for (int x = 0; x < SEARCH_STEPS; x++) {
+				double middle = (low + high) / 2;
+				if (limits.changeDistance(startVelocity, middle) + limits.changeDistance(middle, end) <= length)
+					low = middle;
+				else
+					high = middle;
+			}
+			peak = low;
+		}
+		peakVelocity = peak;
+		double cruise = length - limits.changeDistance(startVelocity, peak) - limits.changeDistance(peak, end);
+
+		// At most three pieces for each change of velocity and one for the cruise
+		times = new double[8];
+		positions = new double[8];
+		velocities = new double[8];
+		accelerations = new double[8];
+		jerks = new double[7];
+		pieces = 0;
+		addChange(startVelocity, peak);
+		if (peak > 0 && cruise > 0)
+			addPiece(cruise / peak, 0, 0);
+		addChange(peak, end);
+		tolerance = Double.POSITIVE_INFINITY;
+		startTime = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Adds the pieces of an S-curve from the current velocity to another.
+	 *
+	 * @param from
+	 *            the velocity at the start, in units/s.
+	 * @param to
+	 *            the velocity at the end, in units/s.
+	 */
+	private void addChange(double from, double to) {
+
+		double change = Math.abs(to - from);
+		if (change == 0)
+			return;
+		double sign = Math.signum(to - from);
+		double a = limits.acceleration;
+		double j = limits.jerk;
+		if (Double.isInfinite(j))
+			addPiece(change / a, sign * a, 0);
+		else if (change >= a * a / j) {
+			addPiece(a / j, 0, sign * j);
+			addPiece(change / a - a / j, sign * a, 0);
+			addPiece(a / j, sign * a, -sign * j);
+		} else {
+			double ramp = Math.sqrt(change / j);
+			addPiece(ramp, 0, sign * j);
+			addPiece(ramp, sign * j * ramp, -sign * j);
+		}
+	}
+
+	/**
+	 * Adds a piece of constant jerk to the end of the profile.
+	 *
+	 * @param duration
+	 *            the length of the piece, in s.
+	 * @param acceleration
+	 *            the acceleration at its start, in units/s/s.
+	 * @param jerk
+	 *            the jerk, in units/s/s/s.
+	 */
+	private void addPiece(double duration, double acceleration, double jerk) {
+
+		if (!(duration > 0))
+			return;
+		int x = pieces++;
+		if (x == 0)
+			velocities[0] = startVelocity;
+		accelerations[x] = acceleration;
+		jerks[x] = jerk;
+		double t = duration;
+		times[x + 1] = times[x] + t;
+		positions[x + 1] = positions[x] + velocities[x] * t + acceleration * t * t / 2 + jerk * t * t * t / 6;
+		velocities[x + 1] = velocities[x] + acceleration * t + jerk * t * t / 2;
+		accelerations[x + 1] = acceleration + jerk * t;
+	}
+
+	/**
+	 * Plans a sequence of moves that blend into each other. The velocity between two moves is as high as both of their velocity limits and the
+	 * lengths of the moves around it allow; it is 0 where the direction changes or a move has no length, and at the start and end of the
+	 * sequence.
+	 *
+	 * @param distances
+	 *            the distance of each move, in units. May be negative.
+	 * @param velocities
+	 *            the velocity limit of each move, in units/s, or null to use the limit in the limits for all of them.
+	 * @param limits
+	 *            the limits. Its velocity limit applies where velocities does not give one.
+	 * @return the profiles, in order.
+	 */
+	public static MotionProfile[] blend(double[] distances, double[] velocities, Limits limits) {
+
+		int n = distances.length;
+		Limits[] moveLimits = new Limits[n];
+		for (int x = 0; x < n; x++)
+			moveLimits[x] = velocities == null ? limits : new Limits(Math.min(velocities[x], limits.velocity), limits.acceleration, limits.jerk);
+
+		// The velocity at each junction, starting with the limits of the moves on either side
+		double[] junctions = new double[n + 1];
+		for (int x = 1; x < n; x++)
+			if (distances[x - 1] != 0 && distances[x] != 0 && Math.signum(distances[x - 1]) == Math.signum(distances[x]))
+				junctions[x] = Math.min(moveLimits[x - 1].velocity, moveLimits[x].velocity);
+		// Leave room to slow down for the junctions ahead, then to speed up from the ones behind
+		for (int x = n - 1; x >= 0; x--)
+			junctions[x] = Math.min(junctions[x], moveLimits[x].reachable(junctions[x + 1], Math.abs(distances[x])));
+		for (int x = 0; x < n; x++)
+			junctions[x + 1] = Math.min(junctions[x + 1], moveLimits[x].reachable(junctions[x], Math.abs(distances[x])));
+
+		MotionProfile[] profiles = new MotionProfile[n];
+		for (int x = 0; x < n; x++)
+			profiles[x] = new MotionProfile(distances[x], junctions[x], junctions[x + 1], moveLimits[x]);
+		return profiles;
+	}
+
+	/**
+	 * Starts the clock, if it has not already started.
+	 */
+	public synchronized void start() {
+
+		if (startTime == Long.MIN_VALUE)
+			startTime = System.nanoTime();
+	}
+
+	/**
+	 * Gets the time since the profile started.
+	 *
+	 * @return the time, in s, or 0 if the profile has not started.
+	 */
+	public double getElapsedTime() {
+
+		long start = startTime;
+		return start == Long.MIN_VALUE ? 0 : (System.nanoTime() - start) / 1e9;
+	}
+
+	/**
+	 * Gets the position now, starting the clock if it has not started.
+	 *
+	 * @return the position, in units.
+	 */
+	@Override
+	public double getTarget() {
+
+		start();
+		return getPosition(getElapsedTime());
+	}
+
+	/**
+	 * Returns true once the profile has ended and the current value is within the tolerance of the distance.
+	 */
+	@Override
+	public boolean moveComplete(double currentValue) {
+
+		return startTime != Long.MIN_VALUE && getElapsedTime() >= getDuration() && Math.abs(currentValue - distance) <= tolerance;
+	}
+
+	/**
+	 * Gets the piece of the profile at a time.
+	 *
+	 * @param t
+	 *            the time, in s, from 0 to {@link #getDuration()}.
+	 * @return the index of the piece.
+	 */
+	private int pieceAt(double t) {
+
+		int x = 0;
+		while (x < pieces - 1 && t >= times[x + 1])
+			x++;
+		return x;
+	}
+
+	/**
+	 * Gets the position at a time.
+	 *
+	 * @param t
+	 *            the time since the start, in s. After the end, the position keeps moving at the end velocity.
+	 * @return the position, in units, from 0 to the distance.
+	 */
+	public double getPosition(double t) {
+
+		if (t <= 0)
+			return 0;
+		if (t >= getDuration())
+			return distance + direction * endVelocity * (t - getDuration());
+		int x = pieceAt(t);
+		double dt = t - times[x];
+		return direction * (positions[x] + velocities[x] * dt + accelerations[x] * dt * dt / 2 + jerks[x] * dt * dt * dt / 6);
+	}
+
+	/**
+	 * Gets the velocity at a time.
+	 *
+	 * @param t
+	 *            the time since the start, in s.
+	 * @return the velocity, in units/s, negative if the distance is.
+	 */
+	public double getVelocity(double t) {
+
+		if (t <= 0)
+			return direction * startVelocity;
+		if (t >= getDuration())
+			return direction * endVelocity;
+		int x = pieceAt(t);
+		double dt = t - times[x];
+		return direction * (velocities[x] + accelerations[x] * dt + jerks[x] * dt * dt / 2);
+	}
+
+	/**
+	 * Gets the acceleration at a time.
+	 *
+	 * @param t
+	 *            the time since the start, in s.
+	 * @return the acceleration, in units/s/s, in the same sense as the distance.
+	 */
+	public double getAcceleration(double t) {
+
+		if (t <= 0 || t >= getDuration())
+			return 0;
+		int x = pieceAt(t);
+		return direction * (accelerations[x] + jerks[x] * (t - times[x]));
+	}
+
+	/**
+	 * Gets how long the profile lasts.
+	 *
+	 * @return the duration, in s.
+	 */
+	public double getDuration() {
+
+		return times[pieces];
+	}
+
+	/**
+	 * Gets the distance.
+	 *
+	 * @return the distance, in units.
+	 */
+	public double getDistance() {
+
+		return distance;
+	}
+
+	/**
+	 * Gets the speed at the start.
+	 *
+	 * @return the speed, in units/s.
+	 */
+	public double getStartVelocity() {
+
+		return startVelocity;
+	}
+
+	/**
+	 * Gets the speed at the end. This is less than the end velocity asked for if that could not be reached.
+	 *
+	 * @return the speed, in units/s.
+	 */
+	public double getEndVelocity() {
+
+		return endVelocity;
+	}
+
+	/**
+	 * Gets the highest speed reached.
+	 *
+	 * @return the speed, in units/s.
+	 */
+	public double getPeakVelocity() {
+
+		return peakVelocity;
+	}
+
+	/**
+	 * Gets the limits.
+	 *
+	 * @return the limits.
+	 */
+	public Limits getLimits() {
+
+		return limits;
+	}
+
+	/**
+	 * Sets how close to the distance the current value must be for {@link #moveComplete(double)}. By default, the move is complete as soon as the
+	 * profile ends.
+	 *
+	 * @param tolerance
+	 *            the tolerance, in units.
+	 */
+	public void setTolerance(double tolerance) {
+
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("%.3f from %.3f through %.3f to %.3f in %.3f s", distance, startVelocity, peakVelocity, endVelocity, getDuration());
+	}
+}
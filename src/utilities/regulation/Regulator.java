@@ -1,5 +1,10 @@
 package utilities.regulation;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import utilities.metrics.LoopMetrics;
+import utilities.metrics.MetricsRegistry;
+import utilities.metrics.RunningStatistics;
 import utilities.task.STATE;
 import utilities.task.TaskMonitor;
 
@@ -59,15 +64,18 @@ public class Regulator {
 	 */
 	private boolean isLogging;
 	
-	// Sum of squares of errors, for debugging.
 	/**
-	 * The current sum of the squares of the error
+	 * The statistics of the error (current value - target) over every regulation cycle since the last call to {@link #resetError()}.
+	 */
+	private final RunningStatistics errorStatistics;
+	/**
+	 * The timing metrics for the regulation loop.
 	 */
-	private double sumE2;
+	private final LoopMetrics loopMetrics;
 	/**
-	 * The current number of errors summed in {@link #sumE2}.
+	 * The number of regulators made, used to give each regulator's metrics a unique name.
 	 */
-	private int numError;
+	private static final AtomicInteger numRegulators = new AtomicInteger();
 	
 	/**
 	 * Makes a new regulator with the specified information. The regulator is
@@ -166,6 +174,12 @@ public class Regulator {
 		isLogging = false;
 		log = new RegulationLog();
 		
+		// Register the metrics
+		String name = "Regulator " + numRegulators.getAndIncrement();
+		loopMetrics = MetricsRegistry.loop(name);
+		errorStatistics = new RunningStatistics();
+		MetricsRegistry.register(name + " error", errorStatistics);
+		
 		// Make the regulator, make it a daemon thread and then start it.
 		regulationActive = false;
 		regulationLoop = new RegulationLoop();
@@ -304,19 +318,38 @@ public class Regulator {
 	 */
 	public void resetError() {
 	
-		sumE2 = 0;
-		numError = 0;
+		errorStatistics.reset();
 	}
 	
 	/**
-	 * Gets the current Root Mean Square Error (RMSE). The RMSE is calculated by keeping a running total of the squares of errors from
-	 * every regulation cycle. Then, it is divided by the number of cycles.
+	 * Gets the current Root Mean Square Error (RMSE). The RMSE is calculated from the running mean and variance of the error from every
+	 * regulation cycle.
 	 *
 	 * @return The RMSE. A smaller number means that the motor is performing better.
 	 */
 	public double getRMSE() {
 	
-		return Math.sqrt(sumE2 / numError);
+		return errorStatistics.getRootMeanSquare();
+	}
+	
+	/**
+	 * Gets the statistics of the error over every regulation cycle since the last call to {@link #resetError()}.
+	 *
+	 * @return The error statistics.
+	 */
+	public RunningStatistics getErrorStatistics() {
+	
+		return errorStatistics;
+	}
+	
+	/**
+	 * Gets the timing metrics for the regulation loop.
+	 *
+	 * @return The timing metrics.
+	 */
+	public LoopMetrics getLoopMetrics() {
+	
+		return loopMetrics;
 	}
 	
 	/**
@@ -338,6 +371,8 @@ public class Regulator {
 				// Regulate while regulation is active
 				while (regulationActive) {
 					
+					long iterationStart = loopMetrics.startIteration();
+					
 					// Get the target and the current value
 					double target;
 					double currentValue = monitor.getCurrentValue();
@@ -381,11 +416,11 @@ public class Regulator {
 					if (isLogging)
 						log.log(System.currentTimeMillis(), currentValue, target, output);
 					
-					// DEBUG
-					sumE2 += Math.pow(currentValue - target, 2);
-					numError++;
+					errorStatistics.add(currentValue - target);
+					loopMetrics.endIteration(iterationStart);
 				}
 				
+				loopMetrics.pause();
 				process.halt();
 				
 				// Wait until notified
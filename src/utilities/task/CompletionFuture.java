@@ -0,0 +1,150 @@
+package utilities.task;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} that is completed by whoever produces the result, rather than by running a task on an executor. This is used for results that
+ * arrive from a daemon thread, such as a sensor event: the daemon calls {@link #complete(Object)}, and the client waits with {@link #get()}.
+ *
+ * A future can only be completed once. Whichever of {@link #complete(Object)}, {@link #fail(Throwable)}, and {@link #cancel(boolean)} is called
+ * first wins, and the others return false.
+ *
+ * @param <T>
+ *            the type of the result.
+ */
+public class CompletionFuture<T> implements Future<T> {
+
+	/**
+	 * The state of the future, as a {@link STATE}: {@link STATE#IN_PROGRESS} until the future is done, then {@link STATE#COMPLETED} if there is a
+	 * result, or {@link STATE#ABORTED} if it failed or was cancelled. Guarded by this.
+	 */
+	private STATE state;
+	/**
+	 * The result. Guarded by this.
+	 */
+	private T result;
+	/**
+	 * The reason the future failed, or null if it has not failed. Guarded by this.
+	 */
+	private Throwable failure;
+	/**
+	 * True if the future was cancelled. Guarded by this.
+	 */
+	private boolean cancelled;
+
+	/**
+	 * Makes a new future that has not been completed.
+	 */
+	public CompletionFuture() {
+
+		state = STATE.IN_PROGRESS;
+		result = null;
+		failure = null;
+		cancelled = false;
+	}
+
+	/**
+	 * Completes the future with a result, and wakes everyone waiting for it.
+	 *
+	 * @param result
+	 *            the result.
+	 * @return true if this completed the future, false if it was already done.
+	 */
+	public synchronized boolean complete(T result) {
+
+		if (state != STATE.IN_PROGRESS)
+			return false;
+		this.result = result;
+		state = STATE.COMPLETED;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Fails the future, and wakes everyone waiting for it. {@link #get()} will throw an {@link ExecutionException} caused by the failure.
+	 *
+	 * @param failure
+	 *            the reason the future failed.
+	 * @return true if this failed the future, false if it was already done.
+	 */
+	public synchronized boolean fail(Throwable failure) {
+
+		if (state != STATE.IN_PROGRESS)
+			return false;
+		this.failure = failure;
+		state = STATE.ABORTED;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Cancels the future. Subclasses can override this to stop whatever was going to complete it, but must call this method too.
+	 *
+	 * @param mayInterruptIfRunning
+	 *            ignored; there is no thread to interrupt.
+	 * @return true if this cancelled the future, false if it was already done.
+	 */
+	@Override
+	public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+
+		if (state != STATE.IN_PROGRESS)
+			return false;
+		cancelled = true;
+		state = STATE.ABORTED;
+		notifyAll();
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+
+		return cancelled;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+
+		return state != STATE.IN_PROGRESS;
+	}
+
+	@Override
+	public synchronized T get() throws InterruptedException, ExecutionException {
+
+		while (state == STATE.IN_PROGRESS)
+			wait();
+		return report();
+	}
+
+	@Override
+	public synchronized T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (state == STATE.IN_PROGRESS) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+				throw new TimeoutException();
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return report();
+	}
+
+	/**
+	 * Returns the result, or throws the reason there is none. Must be called with the lock held, once the future is done.
+	 *
+	 * @return the result.
+	 * @throws ExecutionException
+	 *             if the future failed.
+	 */
+	private T report() throws ExecutionException {
+
+		if (cancelled)
+			throw new CancellationException();
+		if (failure != null)
+			throw new ExecutionException(failure);
+		return result;
+	}
+}